@@ -9,7 +9,8 @@ public abstract class Countable implements Numerical{
 	public enum DisplayType{
 		DECIMAL,WHOLENUMBER,WHOLENUMBERFRACTION,CUSTOM;
 	}
-	protected DisplayType _displayType;
+	// how this countable is drawn. It never changes; withDisplayType gives the same value drawn another way
+	protected final DisplayType _displayType;
 	
 	/** Constructor initializes fields
 	 * 
@@ -28,13 +29,30 @@ public abstract class Countable implements Numerical{
 	}
 	
 	
-	/** Sets the DisplayType of this Countable
+	/** Gets this Countable as it would be drawn in another DisplayType. Countables never change, so this
+	 *  does not change this one
 	 * 
-	 * @param toSet the DisplayType to set this to
+	 * @param displayType the DisplayType of the returned Countable
+	 * @return a Countable with the same value as this one, rendered in displayType
 	 */
-	public void setDisplayType(DisplayType toSet){
-		_displayType = toSet;
-	}
+	public abstract Countable withDisplayType(DisplayType displayType);
+	
+	
+	/** Hashes everything that a computation on this Countable depends on: its values, its shape and how it is
+	 *  drawn. Two Countables with equal content have the same hash, whether or not they are the same object
+	 * 
+	 * @return the content hash of this Countable
+	 */
+	public abstract int contentHash();
+	
+	
+	/** Compares content rather than identity, so that a computation on one Countable can stand in for the same
+	 *  computation on the other
+	 * 
+	 * @param other the Countable to compare to
+	 * @return true iff other has the same kind, values, shape and DisplayType as this Countable
+	 */
+	public abstract boolean contentEquals(Countable other);
 	
 	public abstract String toLatex();
 
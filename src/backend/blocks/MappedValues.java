@@ -0,0 +1,282 @@
+package backend.blocks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * An array of doubles that lives in a memory-mapped file instead of on the heap (see FileChannel.map), for
+ * matrices larger than the heap. The operating system pages the file in and out as it is read, so the values
+ * cost no garbage collection and only the parts in use take memory.
+ *
+ * The file holds the doubles back to back, little-endian. A mapping can be at most 2GB, so the file is mapped
+ * in chunks. Reads never change the position of a shared buffer, so any number of threads can read at once.
+ * Values can only be written while the array is being filled in, before a Matrix is made from it.
+ *
+ * A temporary file (see createTemp) is deleted once its values are unreachable, so the answers of out of core
+ * operations don't fill the disk while the program runs. A file can't be deleted on every system while it is
+ * still mapped, so one that won't go yet is tried again later, and at the latest when the program exits
+ *
+ * @author baebi
+ */
+public class MappedValues {
+	// each chunk maps 2^27 doubles = 1GB of the file
+	private static final int CHUNK_SHIFT = 27;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	// how long the deleting thread waits before trying again to delete files that were still mapped
+	private static final long RETRY_MILLIS = 1000;
+
+	// temporary files are deleted once their MappedValues are collected and put here
+	private static final ReferenceQueue<MappedValues> COLLECTED = new ReferenceQueue<>();
+
+	// keeps the references to temporary files reachable until their files are deleted
+	private static final Set<TempFile> TEMP_FILES = new HashSet<>();
+
+	static {
+		new Deleter().start();
+	}
+
+	private final File _file;
+	private final long _size;
+	private final boolean _writable;
+	private final DoubleBuffer[] _chunks;
+
+
+	/**
+	 * @param file the file the values are in
+	 * @param size the number of values
+	 * @param writable true to map the file for writing as well as reading
+	 * @throws IOException if the file can't be mapped
+	 */
+	private MappedValues(File file, long size, boolean writable) throws IOException {
+		_file = file;
+		_size = size;
+		_writable = writable;
+		_chunks = new DoubleBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+		try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+				FileChannel channel = raf.getChannel()){
+			if (writable){
+				raf.setLength(8*size);
+			}
+			// the mappings stay valid after the channel is closed
+			for (int i = 0; i < _chunks.length; i++){
+				long start = (long) i << CHUNK_SHIFT;
+				long length = Math.min(CHUNK_SIZE, size - start);
+				_chunks[i] = channel.map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, 8*start, 8*length)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+		}
+	}
+
+
+	/**
+	 * Maps an existing file of values for reading
+	 *
+	 * @param file the file, holding 8 bytes per value
+	 * @return the values in the file
+	 * @throws IOException if the file can't be read or its length isn't a whole number of values
+	 */
+	public static MappedValues open(File file) throws IOException {
+		long length = file.length();
+		if (length % 8 != 0){
+			throw new IOException("ERROR (MappedValues): "+file+" is not a whole number of doubles");
+		}
+		return new MappedValues(file, length/8, false);
+	}
+
+
+	/**
+	 * Makes a file for values to be written to, replacing whatever the file held. The values start as 0
+	 *
+	 * @param file the file
+	 * @param size the number of values
+	 * @return the values, which can be written
+	 * @throws IOException if the file can't be made
+	 */
+	public static MappedValues create(File file, long size) throws IOException {
+		if (size < 0){
+			throw new IllegalArgumentException("ERROR (MappedValues): the size can't be negative");
+		}
+		return new MappedValues(file, size, true);
+	}
+
+
+	/**
+	 * Makes a temporary file for values to be written to, such as the answer to an operation on mapped
+	 * matrices. The file is deleted once the values are unreachable, or when the program exits
+	 *
+	 * @param size the number of values
+	 * @return the values, which can be written
+	 * @throws IOException if the file can't be made
+	 */
+	public static MappedValues createTemp(long size) throws IOException {
+		File file = File.createTempFile("matrix", ".bin");
+		file.deleteOnExit();
+		MappedValues values;
+		try {
+			values = create(file, size);
+		} catch (IOException e){
+			file.delete();
+			throw e;
+		}
+		synchronized (TEMP_FILES){
+			TEMP_FILES.add(new TempFile(values, file));
+		}
+		return values;
+	}
+
+
+	/**
+	 * @return the number of values
+	 */
+	public long size(){
+		return _size;
+	}
+
+
+	/**
+	 * @return the file the values are in
+	 */
+	public File getFile(){
+		return _file;
+	}
+
+
+	/**
+	 * @param index the index of a value
+	 * @return the value
+	 */
+	public double get(long index){
+		return _chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & (CHUNK_SIZE-1)));
+	}
+
+
+	/**
+	 * Reads a run of values, which may cross from one chunk into the next
+	 *
+	 * @param index the index of the first value
+	 * @param dst where the values go
+	 * @param offset where in dst the first value goes
+	 * @param length the number of values
+	 */
+	public void get(long index, double[] dst, int offset, int length){
+		while (length > 0){
+			DoubleBuffer chunk = _chunks[(int) (index >>> CHUNK_SHIFT)].duplicate(); // its own position
+			int start = (int) (index & (CHUNK_SIZE-1));
+			int count = Math.min(length, chunk.capacity() - start);
+			chunk.position(start);
+			chunk.get(dst, offset, count);
+			index += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+
+	/**
+	 * @param index the index of a value
+	 * @param value the value to write there
+	 */
+	public void put(long index, double value){
+		checkWritable();
+		_chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & (CHUNK_SIZE-1)), value);
+	}
+
+
+	/**
+	 * Writes a run of values, which may cross from one chunk into the next
+	 *
+	 * @param index the index to write the first value at
+	 * @param src the values
+	 * @param offset where in src the first value is
+	 * @param length the number of values
+	 */
+	public void put(long index, double[] src, int offset, int length){
+		checkWritable();
+		while (length > 0){
+			DoubleBuffer chunk = _chunks[(int) (index >>> CHUNK_SHIFT)].duplicate();
+			int start = (int) (index & (CHUNK_SIZE-1));
+			int count = Math.min(length, chunk.capacity() - start);
+			chunk.position(start);
+			chunk.put(src, offset, count);
+			index += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+
+	/**
+	 * @throws IllegalStateException if the values were opened for reading only
+	 */
+	private void checkWritable(){
+		if (!_writable){
+			throw new IllegalStateException("ERROR (MappedValues): "+_file+" was opened for reading only");
+		}
+	}
+
+
+	/**
+	 * Deletes the file of temporary values once they have been collected
+	 */
+	private static class TempFile extends PhantomReference<MappedValues> {
+		private final File _file;
+
+		TempFile(MappedValues values, File file){
+			super(values, COLLECTED);
+			_file = file;
+		}
+	}
+
+
+	/**
+	 * Waits for temporary values to be collected and deletes their files. A file that can't be deleted because
+	 * its mapping hasn't been released yet is tried again every RETRY_MILLIS
+	 */
+	private static class Deleter extends Thread {
+		Deleter(){
+			super("MappedValues deleter");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run(){
+			List<TempFile> pending = new ArrayList<>();
+			while (true){
+				try {
+					Reference<? extends MappedValues> ref = pending.isEmpty() ? COLLECTED.remove() : COLLECTED.remove(RETRY_MILLIS);
+					while (ref != null){
+						pending.add((TempFile) ref);
+						ref = COLLECTED.poll();
+					}
+				} catch (InterruptedException e){
+					return;
+				}
+				Iterator<TempFile> it = pending.iterator();
+				while (it.hasNext()){
+					TempFile temp = it.next();
+					if (temp._file.delete() || !temp._file.exists()){
+						it.remove();
+						synchronized (TEMP_FILES){
+							TEMP_FILES.remove(temp);
+						}
+					}
+				}
+			}
+		}
+	}
+}
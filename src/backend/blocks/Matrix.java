@@ -1,5 +1,7 @@
 package backend.blocks;
 
+import java.util.BitSet;
+
 import matrixDraw.MatrixDraw;
 
 
@@ -9,18 +11,44 @@ import matrixDraw.MatrixDraw;
  * @author baebi
  */
 public class Matrix extends Countable{
-	private int _numRows,_numCols;
+	private final int _numRows,_numCols;
 	private static String _name = "MATRIX";
-	private String _id;
 	
-	// multidimensional array containing double values of matrix (regardless of stated format)
-	private Double[][] _internalValues;
+	// A Matrix never changes once it is constructed, so one Matrix can be read by any number of computations
+	// at once and views can share its values without copying them. A different DisplayType is a new view
+	// (withDisplayType), not a change to this matrix
+	
+	// double values of matrix (regardless of stated format), packed column by column when this matrix 
+	// owns them: the entry at (row,col) lives at index col*_numRows + row
+	private final double[] _internalValues;
+	
+	// the values when they live in a memory-mapped file instead (see MappedValues), laid out the same way as
+	// _internalValues, which is then null. null for matrices on the heap. Mapped matrices are always complete
+	private final MappedValues _mappedValues;
+	
+	// a bit is set iff the index at the same position in _internalValues has been given a value. Matrices built in the 
+	// Construct editor can be incomplete, so this replaces the null entries of the old Double[][]. null if every
+	// index is set and the matrix is mapped, since a bit per index would not fit on the heap either
+	private final BitSet _isSet;
+	private final int _numSet;
+	
+	// where (row,col) lives in _internalValues: _offset + row*_rowStride + col*_colStride. A matrix that owns
+	// its values is packed (0, 1, _numRows); views made by transposeView and subMatrixView share another
+	// matrix's array and only differ in these three numbers
+	private final int _offset, _rowStride, _colStride;
 	
-	// multidimensional array containing representations of _internalValues contingent on stated format
-	private String[][] _displayValues;
+	// representations of _internalValues in this matrix's DisplayType. Entries are only formatted when they
+	// are first read, since most intermediate matrices are never shown index by index. Two threads may format
+	// the same entry; they get the same string, so the race is harmless and needs no lock
+	private volatile String[][] _displayValues;
 	
-	// multidimensional array containing representations of _internalValues. This is manually set
-	private String[][] _customDisplayValues;
+	// multidimensional array containing representations of _internalValues, given at construction. null if
+	// there are none
+	private final String[][] _customDisplayValues;
+	
+	// hash of the values, shape and display of this matrix, computed when it is first needed (see contentHash).
+	// 0 until then. As with _displayValues, two threads may both compute it and get the same number
+	private int _contentHash;
 	
 	
 	
@@ -31,99 +59,184 @@ public class Matrix extends Countable{
 	/** 
 	 * Constructor 1 for Matrix (This is if you have all the values you want for the matrix)
 	 * 
-	 * @param isFraction boolean indicating if the values of the matrix should be displayed
-	 * in fraction format
-	 * @param isDouble boolean indicating if the values of the matrix should be displayed
-	 * in decimal format
+	 * @param displayType the way this matrix should be rendered at display-time
 	 * @param values the values of this matrix. THE FIRST DIMENSION IS COLUMNS; THE
-	 * SECOND DIMENSION IS ROWS
+	 * SECOND DIMENSION IS ROWS. null entries are left unset
 	 */
 	public Matrix(DisplayType displayType, Double[][] values) throws IllegalArgumentException {
 		super(displayType);
 		_numCols = values.length;
 		_numRows = values[0].length;
-		_internalValues = values;
-		_displayValues = new String[_numCols][_numRows];
+		_internalValues = new double[_numCols*_numRows];
+		_mappedValues = null;
+		_isSet = new BitSet(_numCols*_numRows);
+		_offset = 0;
+		_rowStride = 1;
+		_colStride = _numRows;
+		int numSet = 0;
 		for (int i = 0; i < _numCols; i++){
 			for (int j = 0; j < _numRows; j++){
-				setDisplayIndex(j,i);
+				if (values[i][j] != null){
+					_internalValues[i*_numRows + j] = values[i][j];
+					_isSet.set(i*_numRows + j);
+					numSet++;
+				}
 			}
 		}
-
-		_customDisplayValues = new String[_numCols][_numRows];
+		_numSet = numSet;
+		_customDisplayValues = null;
+	}
+	
+	
+	/** 
+	 *  Constructor 2 for Matrix (This is if the values are already packed into a primitive array, as 
+	 *  the Computables produce them). The array is used directly, not copied, so the caller must not
+	 *  change it afterwards
+	 * 
+	 * @param displayType the way this matrix should be rendered at display-time
+	 * @param numRows the number of rows in this matrix
+	 * @param numCols the number of columns in this matrix
+	 * @param values the values of this matrix in column-major order (index col*numRows + row)
+	 */
+	public Matrix(DisplayType displayType, int numRows, int numCols, double[] values) throws IllegalArgumentException {
+		this(displayType,numRows,numCols,values,null);
 	}
 	
 	
 	/** 
-	 *  Constructor 2 for Matrix (This is if you know the size of the matrix, but have
-	 *  not determined the values to enter)
+	 *  Constructor 3 for Matrix: packed values as in constructor 2, along with the strings to show in each
+	 *  index when the matrix is drawn in CUSTOM format. Neither array is copied
 	 * 
-	 * @param isFraction boolean indicating if the values of the matrix should be displayed
-	 * in fraction format
-	 * @param isDouble boolean indicating if the values of the matrix should be displayed
-	 * in decimal format
+	 * @param displayType the way this matrix should be rendered at display-time
 	 * @param numRows the number of rows in this matrix
 	 * @param numCols the number of columns in this matrix
+	 * @param values the values of this matrix in column-major order (index col*numRows + row)
+	 * @param customDisplayValues the custom strings. THE FIRST DIMENSION IS COLUMNS; THE SECOND DIMENSION
+	 * IS ROWS. May be null
 	 */
-	public Matrix(DisplayType displayType, int numRows, int numCols){
+	public Matrix(DisplayType displayType, int numRows, int numCols, double[] values, String[][] customDisplayValues) throws IllegalArgumentException {
 		super(displayType);
+		if (values.length != numRows*numCols){
+			throw new IllegalArgumentException("ERROR (Matrix): expected "+(numRows*numCols)+" values, given "+values.length);
+		}
+		if (customDisplayValues != null && (customDisplayValues.length != numCols || customDisplayValues[0].length != numRows)){
+			throw new IllegalArgumentException("ERROR (Matrix): custom display values must have the same dimensions as the Matrix");
+		}
 		_numRows = numRows;
 		_numCols = numCols;
-		_internalValues = new Double[numCols][numRows];
-		_customDisplayValues = new String[_numCols][_numRows];
-		_displayValues = new String[_numCols][_numRows];
+		_internalValues = values;
+		_mappedValues = null;
+		_isSet = new BitSet(numCols*numRows);
+		_isSet.set(0, numCols*numRows);
+		_numSet = numCols*numRows;
+		_offset = 0;
+		_rowStride = 1;
+		_colStride = numRows;
+		_customDisplayValues = customDisplayValues;
 	}
 	
 	
+	/** 
+	 *  Constructor 4 for Matrix: values in a memory-mapped file, for matrices too large for the heap. The
+	 *  values are read from the file as they are needed, never copied onto the heap all at once
+	 * 
+	 * @param displayType the way this matrix should be rendered at display-time
+	 * @param numRows the number of rows in this matrix
+	 * @param numCols the number of columns in this matrix
+	 * @param values the values of this matrix in column-major order (index col*numRows + row). Must not be
+	 * written to afterwards
+	 */
+	public Matrix(DisplayType displayType, int numRows, int numCols, MappedValues values) throws IllegalArgumentException {
+		super(displayType);
+		if ((long) numRows*numCols > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("ERROR (Matrix): a matrix can have at most "+Integer.MAX_VALUE+" entries");
+		}
+		if (values.size() != (long) numRows*numCols){
+			throw new IllegalArgumentException("ERROR (Matrix): expected "+(numRows*numCols)+" values, given "+values.size());
+		}
+		_numRows = numRows;
+		_numCols = numCols;
+		_internalValues = null;
+		_mappedValues = values;
+		_isSet = null;
+		_numSet = numCols*numRows;
+		_offset = 0;
+		_rowStride = 1;
+		_colStride = numRows;
+		_customDisplayValues = null;
+	}
 	
-	//===================================================
-	// Setters for matrix indices, size, and displayType
-	//===================================================
 	
-	/** Sets the value at a specified index in this matrix
+	/** 
+	 *  Constructor for a view onto the values of another Matrix. No values are copied; since neither
+	 *  matrix can change, they can share the array for good
 	 * 
-	 * @param value the value to set the index to
-	 * @param row the row of the index to set
-	 * @param col the column of the index to set
+	 * @param source the matrix whose values this matrix reads
+	 * @param displayType the way this matrix should be rendered at display-time
+	 * @param numRows the number of rows in this view
+	 * @param numCols the number of columns in this view
+	 * @param offset the index in the source array of (0,0) of this view
+	 * @param rowStride the distance in the source array between consecutive rows of this view
+	 * @param colStride the distance in the source array between consecutive columns of this view
+	 * @param customDisplayValues the custom strings of the view, or null
 	 */
-	public void setValueIndex(double value, int row, int col){
-		if (row > _numRows - 1 || col > _numCols - 1){
-			throw new IllegalArgumentException("ERROR: Index exceeds matrix dimension");
-		}
+	private Matrix(Matrix source, DisplayType displayType, int numRows, int numCols, int offset, int rowStride, int colStride,
+			String[][] customDisplayValues){
+		super(displayType);
+		_numRows = numRows;
+		_numCols = numCols;
+		_internalValues = source._internalValues;
+		_mappedValues = source._mappedValues;
+		_isSet = source._isSet;
+		_offset = offset;
+		_rowStride = rowStride;
+		_colStride = colStride;
+		_customDisplayValues = customDisplayValues;
 		
-		if (row < 0 || col < 0){
-			throw new IllegalArgumentException("ERROR: Index must be nonnegative");
+		if (source.isComplete()){
+			_numSet = numRows*numCols;
+		}else{
+			int numSet = 0;
+			for (int i = 0; i < _numCols; i++){
+				for (int j = 0; j < _numRows; j++){
+					if (isSet(j,i)){
+						numSet++;
+					}
+				}
+			}
+			_numSet = numSet;
 		}
-		
-		_internalValues[col][row] = value;
-		setDisplayIndex(row,col);
 	}
 	
-
+	
+	
+	//===================================================
+	// Display
+	//===================================================
+	
 	/** 
-	 * Sets the index of the matrix as the user should see it (bases setting on DisplayType)
+	 * Formats the index of the matrix as the user should see it (bases formatting on DisplayType)
 	 * 
-	 * @param row the row of the index to set
-	 * @param col the column of the index to set
+	 * @param row the row of the index to format
+	 * @param col the column of the index to format
+	 * @return the display string, or null if the index is unset or the DisplayType has no automatic format
 	 */
-	private void setDisplayIndex(int row, int col){
-		if (_internalValues[col][row] != null){
+	private String formatDisplayIndex(int row, int col){
+		if (isSet(row,col)){
 			switch (_displayType){
 				case DECIMAL:{
-					_displayValues[col][row] = Double.toString(_internalValues[col][row]);
-					break;
+					return Double.toString(get(row,col));
 				}
 				case WHOLENUMBERFRACTION:{
 					// TODO
-					break;
+					return null;
 				}
 				case WHOLENUMBER:{
-					_displayValues[col][row] = Integer.toString((int) Math.floor(_internalValues[col][row]));
-					break;
+					return Integer.toString((int) Math.floor(get(row,col)));
 				}
 				case CUSTOM:{
 					// do nothing
-					break;
+					return null;
 				}
 				default:{
 					System.out.println(_displayType);
@@ -131,79 +244,156 @@ public class Matrix extends Countable{
 				}
 			}
 		}
+		return null;
 	}
 	
 	
 	/** 
-	 * Sets the index of an entry in _customDisplayValues
+	 * Returns this matrix as it would be drawn in another DisplayType. The values are shared, not copied
 	 * 
-	 * @param row the row to set
-	 * @param col the column to set
+	 * @param displayType the DisplayType of the returned matrix
+	 * @return a matrix with the same values and custom display strings, rendered in displayType
 	 */
-	public void setCustomDisplayIndex(int row, int col, String setting){
-		_customDisplayValues[col][row] = setting;
+	@Override
+	public Matrix withDisplayType(DisplayType displayType){
+		if (displayType == _displayType){
+			return this;
+		}
+		return new Matrix(this, displayType, _numRows, _numCols, _offset, _rowStride, _colStride, _customDisplayValues);
 	}
 	
 	
+			
+	//==========================================
+	// Getters for matrix values
+	//==========================================
+	
 	/** 
-	 * Sets all of the _customDisplayVals at once
+	 * Gets the value at a specified index. An index that was never set reads as 0
 	 * 
-	 * @param displayVals the matrix of custom strings
+	 * @param row the row of the index
+	 * @param col the column of the index
+	 * @return the value at (row,col)
 	 */
-	public void setCustomDisplay(String[][] displayVals){
-		if (displayVals.length != _numCols || displayVals[0].length != _numRows){
-			throw new IllegalArgumentException("ERROR (Matrix): setCustomDisplay only allows a " +
-					"multidimensional array of the same dimenions as this Matrix");
+	public double get(int row, int col){
+		if (_mappedValues != null){
+			return _mappedValues.get(_offset + row*_rowStride + col*_colStride);
 		}
-		_customDisplayValues = displayVals;
+		return _internalValues[_offset + row*_rowStride + col*_colStride];
+	}
+	
+	
+	/**
+	 * @param row the row of the index
+	 * @param col the column of the index
+	 * @return true iff a value has been set at (row,col)
+	 */
+	public boolean isSet(int row, int col){
+		return _isSet == null || _isSet.get(_offset + row*_rowStride + col*_colStride);
+	}
+	
+	
+	/**
+	 * @return true iff every index of this matrix has been set
+	 */
+	public boolean isComplete(){
+		return _numSet == _numRows*_numCols;
 	}
 	
 	
 	/** 
-	 *  Changes the dimension of the matrix. If the dimensions shrink, the values in the higher row or columns are removed.
-	 *  If the dimensions increase, additional rows and columns will be initialized to null. Columns will be appended to the
-	 *  right of the matrix and rows will be appended to the bottom of the matrix.
+	 * Returns a copy of the values in this matrix packed in column-major order
 	 * 
-	 * @param row the new row length
-	 * @param col the new column length
+	 * @return an array where the value at (row,col) is at index col*getNumRows() + row
 	 */
-	public void changeDimensions(int rows, int cols){
-		Double[][] newMatrix = new Double[cols][rows];
-		int leastColumns = (cols > _numCols) ? _numCols : cols;
-		int leastRows = (rows > _numRows) ? _numRows : rows;
-		
-		for(int i = 0; i < leastColumns; i++){
-			for(int j=0; j< leastRows; j++){
-				newMatrix[i][j] = _internalValues[i][j];
+	public double[] toColumnMajor(){
+		if (_mappedValues != null){
+			double[] toReturn = new double[_numCols*_numRows];
+			readBlock(0, 0, _numRows, _numCols, toReturn);
+			return toReturn;
+		}
+		if (_offset == 0 && _rowStride == 1 && _colStride == _numRows && _internalValues.length == _numRows*_numCols){
+			return _internalValues.clone();
+		}
+		double[] toReturn = new double[_numCols*_numRows];
+		for (int i = 0; i < _numCols; i++){
+			for (int j = 0; j < _numRows; j++){
+				toReturn[i*_numRows + j] = get(j,i);
 			}
 		}
-		
-		_internalValues = newMatrix;
-		_numCols = cols;
-		_numRows = rows;
+		return toReturn;
 	}
 	
 	
 	/** 
-	 * Resets the DisplayType of this matrix and resets all of the _displayValues entries
+	 * Copies a rectangular block of this matrix into an array, packed in column-major order. This is how
+	 * operations on mapped matrices read them a tile at a time; columns are read in one run each when they
+	 * are contiguous
 	 * 
-	 * @param displayType the DisplayType to set this matrix to
+	 * @param row the row of the first index to copy
+	 * @param col the column of the first index to copy
+	 * @param numRows the number of rows to copy
+	 * @param numCols the number of columns to copy
+	 * @param dst the array to copy into. The value at (row+i,col+j) goes to index j*numRows + i
 	 */
-	public void setDisplayType(DisplayType displayType){
-		_displayType = displayType;
-		for (int i = 0; i < _numCols; i++){
-			for (int j = 0; j < _numRows; j++){
-				setDisplayIndex(j,i);
+	public void readBlock(int row, int col, int numRows, int numCols, double[] dst){
+		for (int j = 0; j < numCols; j++){
+			int start = _offset + row*_rowStride + (col+j)*_colStride;
+			if (_rowStride != 1){
+				for (int i = 0; i < numRows; i++){
+					dst[j*numRows + i] = get(row+i, col+j);
+				}
+			}else if (_mappedValues != null){
+				_mappedValues.get(start, dst, j*numRows, numRows);
+			}else{
+				System.arraycopy(_internalValues, start, dst, j*numRows, numRows);
 			}
 		}
 	}
 	
 	
-			
+	/**
+	 * @return true iff the values of this matrix live in a memory-mapped file rather than on the heap
+	 */
+	public boolean isMapped(){
+		return _mappedValues != null;
+	}
+	
+	
 	//==========================================
-	// Getters for matrix values
+	// Read-only views
 	//==========================================
 	
+	/** 
+	 * Returns the transpose of this matrix without copying any values. The view and this matrix
+	 * read the same array
+	 * 
+	 * @return a numCols by numRows matrix whose (row,col) entry is this matrix's (col,row) entry
+	 */
+	public Matrix transposeView(){
+		return new Matrix(this, _displayType, _numCols, _numRows, _offset, _colStride, _rowStride, null);
+	}
+	
+	
+	/** 
+	 * Returns a rectangular block of this matrix without copying any values. The view and this matrix
+	 * read the same array
+	 * 
+	 * @param row the row of this matrix that becomes row 0 of the view
+	 * @param col the column of this matrix that becomes column 0 of the view
+	 * @param numRows the number of rows in the view
+	 * @param numCols the number of columns in the view
+	 * @return the numRows by numCols block of this matrix starting at (row,col)
+	 */
+	public Matrix subMatrixView(int row, int col, int numRows, int numCols){
+		if (row < 0 || col < 0 || numRows < 1 || numCols < 1 || row + numRows > _numRows || col + numCols > _numCols){
+			throw new IllegalArgumentException("ERROR (Matrix): a "+numRows+"x"+numCols+" block at ("+row+","+col+
+					") does not fit in a "+_numRows+"x"+_numCols+" matrix");
+		}
+		return new Matrix(this, _displayType, numRows, numCols, _offset + row*_rowStride + col*_colStride, _rowStride, _colStride, null);
+	}
+	
+	
 	/** 
 	 * Returns a copy of the values in this matrix
 	 * 
@@ -213,10 +403,10 @@ public class Matrix extends Countable{
 		Double[][] toReturn = new Double[_numCols][_numRows]; // we want to return a copy
 		for (int i = 0; i < _numCols; i++){
 			for (int j =0; j<_numRows; j++){
-				if (_internalValues[i][j] == null){
+				if (!isSet(j,i)){
 					toReturn[i][j] = null;
 				}else{
-					toReturn[i][j] = new Double(_internalValues[i][j]);
+					toReturn[i][j] = get(j,i);
 				}
 			}
 		}
@@ -233,17 +423,46 @@ public class Matrix extends Countable{
 		String[][] toReturn = new String[_numCols][_numRows]; // we want to return a copy
 		for (int i = 0; i < _numCols; i++){
 			for (int j =0; j<_numRows; j++){
-				if (_displayValues[i][j] == null){
-					toReturn[i][j] = null;
-				}else{
-					toReturn[i][j] = _displayValues[i][j];
-				}
+				toReturn[i][j] = getDisplayIndex(j,i);
 			}
 		}
 		return toReturn;
 	}
 	
 	
+	/**
+	 * @param row the row of the index
+	 * @param col the column of the index
+	 * @return the display string at (row,col), without copying the rest of the display values
+	 */
+	public String getDisplayIndex(int row, int col){
+		String[][] display = _displayValues;
+		if (display == null){
+			display = new String[_numCols][_numRows];
+			_displayValues = display;
+		}
+		String value = display[col][row];
+		if (value == null){
+			value = formatDisplayIndex(row,col);
+			display[col][row] = value;
+		}
+		return value;
+	}
+	
+	
+	/**
+	 * @param row the row of the index
+	 * @param col the column of the index
+	 * @return the custom display string at (row,col), without copying the rest of the custom display values
+	 */
+	public String getCustomDisplayIndex(int row, int col){
+		if (_customDisplayValues == null){
+			return null;
+		}
+		return _customDisplayValues[col][row];
+	}
+	
+	
 	/** 
 	 * Returns a copy of the custom display strings of this matrix
 	 * 
@@ -253,11 +472,7 @@ public class Matrix extends Countable{
 		String[][] toReturn = new String[_numCols][_numRows]; // we want to return a copy
 		for (int i = 0; i < _numCols; i++){
 			for (int j =0; j<_numRows; j++){
-				if (_customDisplayValues[i][j] == null){
-					toReturn[i][j] = null;
-				}else{
-					toReturn[i][j] = _customDisplayValues[i][j];
-				}
+				toReturn[i][j] = getCustomDisplayIndex(j,i);
 			}
 		}
 		return toReturn;
@@ -270,20 +485,6 @@ public class Matrix extends Countable{
 		return _name;
 	}
 	
-	/**
-	 * @param id sets the id of this matrix. Used for testing
-	 */
-	public void setID(String id){
-		_id = id;
-	}
-
-	/**
-	 * @return returns the id of this matrix. Used for testing
-	 */
-	public String getID(){
-		return _id;
-	}
-	
 	/**
 	 * @return the number of rows in this matrix
 	 */
@@ -298,8 +499,103 @@ public class Matrix extends Countable{
 		return _numCols;
 	}
 	
+	
+	//==========================================
+	// Content
+	//==========================================
+	
+	/** 
+	 * Computed once per matrix, since a matrix never changes. Reads every index the first time, so it is 
+	 * linear in the size of the matrix; after that it is free. A mapped matrix is too large to read just to
+	 * look it up, so it is hashed by where its values are instead: the file and its layout in it
+	 * 
+	 * @see backend.blocks.Countable#contentHash()
+	 */
+	@Override
+	public int contentHash(){
+		int hash = _contentHash;
+		if (hash == 0){
+			hash = 31*(31*_numRows + _numCols) + _displayType.ordinal();
+			if (_mappedValues != null){
+				hash = 31*(31*(31*(31*hash + System.identityHashCode(_mappedValues)) + _offset) + _rowStride) + _colStride;
+			}else{
+				for (int i = 0; i < _numCols; i++){
+					for (int j = 0; j < _numRows; j++){
+						if (isSet(j,i)){
+							long bits = Double.doubleToLongBits(get(j,i));
+							hash = 31*hash + (int)(bits ^ (bits >>> 32));
+						}else{
+							hash = 31*hash + 1;
+						}
+						if (_customDisplayValues != null && _customDisplayValues[i][j] != null){
+							hash = 31*hash + _customDisplayValues[i][j].hashCode();
+						}
+					}
+				}
+			}
+			if (hash == 0){
+				hash = 1; // keep 0 for "not computed yet"
+			}
+			_contentHash = hash;
+		}
+		return hash;
+	}
+	
+	
+	/** 
+	 * Mapped matrices are compared by where their values are, like contentHash, so they are only equal to
+	 * views of the same values with the same layout: a mapped matrix and a copy of its values are not equal
+	 * 
+	 * @see backend.blocks.Countable#contentEquals(backend.blocks.Countable)
+	 */
+	@Override
+	public boolean contentEquals(Countable other){
+		if (other == this){
+			return true;
+		}
+		if (!(other instanceof Matrix)){
+			return false;
+		}
+		Matrix m = (Matrix) other;
+		if (m._numRows != _numRows || m._numCols != _numCols || m._displayType != _displayType){
+			return false;
+		}
+		if (contentHash() != m.contentHash()){
+			return false;
+		}
+		if (m._customDisplayValues != _customDisplayValues){
+			for (int i = 0; i < _numCols; i++){
+				for (int j = 0; j < _numRows; j++){
+					String a = getCustomDisplayIndex(j,i);
+					String b = m.getCustomDisplayIndex(j,i);
+					if (a == null ? b != null : !a.equals(b)){
+						return false;
+					}
+				}
+			}
+		}
+		if (m._internalValues == _internalValues && m._mappedValues == _mappedValues && m._offset == _offset && m._rowStride == _rowStride && m._colStride == _colStride){
+			return true; // views of the same values
+		}
+		if (_mappedValues != null || m._mappedValues != null){
+			return false;
+		}
+		for (int i = 0; i < _numCols; i++){
+			for (int j = 0; j < _numRows; j++){
+				if (isSet(j,i) != m.isSet(j,i) || (isSet(j,i) && Double.doubleToLongBits(get(j,i)) != Double.doubleToLongBits(m.get(j,i)))){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	
 	//TODO: SHOULD MOVE ACTUAL MATRIX TO LATEX METHOD HERE!!
 	public String toLatex(){
+		if (_mappedValues != null){ // far too large to draw
+			return "\\mathrm{"+_numRows+" \\times "+_numCols+" \\ memory \\ mapped \\ matrix}";
+		}
 		return MatrixDraw.getCorrectLatex(_displayType,this);
 	}
 
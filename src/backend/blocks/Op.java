@@ -13,6 +13,7 @@ public enum Op {
 	//rank 1 operations
 	MULTIPLY(1,false,"TIMES"),  
 	SS_DIVIDE(1,false,"SS_DIVIDE"),
+	SOLVE(1,false,"SOLVE"),
 	
 	//rank 0 (unary) operations
 	DETERMINANT(0,true,"DETERMINANT"),
@@ -21,7 +22,10 @@ public enum Op {
 	M_INVERSE(0,true,"M-INVERSE"),
 	POWER(0,false,"POWER"),
 	M_RANK(0,true,"M-RANK"),
-	M_TRANSPOSE(0,true,"M-TRANSPOSE");
+	M_TRANSPOSE(0,true,"M-TRANSPOSE"),
+	SVD(0,true,"SVD"),
+	TRUNCATED_SVD(0,false,"TRUNCATED-SVD"),
+	M_EIGEN(0,true,"EIGENVALUES");
 	
 	// do not give rank below zero
 	
@@ -78,6 +82,8 @@ public enum Op {
 			return "-";
 		case SS_DIVIDE:
 			return "/";
+		case SOLVE:
+			return "\\backslash ";
 		case MULTIPLY: 
 			return "*";
 		case DETERMINANT:
@@ -94,6 +100,12 @@ public enum Op {
 			return "Rank";
 		case M_TRANSPOSE:
 			return "T";
+		case SVD:
+			return "SVD";
+		case TRUNCATED_SVD:
+			return "SVDk";
+		case M_EIGEN:
+			return "eig";
 		default:
 			return "?";
 		}
@@ -107,6 +119,8 @@ public enum Op {
 			return "icons/minus.png";
 		case SS_DIVIDE:
 			return "icons/divide.png";
+		case SOLVE:
+			return "icons/solve.png";
 		case MULTIPLY: 
 			return "icons/multiply.png";
 		case DETERMINANT:
@@ -123,6 +137,12 @@ public enum Op {
 			return "icons/rank.png";
 		case M_TRANSPOSE:
 			return "icons/transpose.png";
+		case SVD:
+			return "icons/svd.png";
+		case TRUNCATED_SVD:
+			return "icons/svdk.png";
+		case M_EIGEN:
+			return "icons/eig.png";
 		default:
 			return "?";
 		}
@@ -1,12 +1,12 @@
 package backend.blocks;
 
 /**
- *  A container for a scalar value
+ *  A container for a scalar value. Scalars never change once constructed, so one can be read by any
+ *  number of computations at once
  */
 public class Scalar extends Countable{
-	private double _value;              // the double value of this Scalar
-	private String _displayValue;       // this is automatically generated based on the decided number format
-	private String _customDisplayValue; // this is manually set by an outside user
+	private final double _value;        // the double value of this Scalar
+	private String _displayValue;       // this is generated based on the decided number format when first read
 	private static String _name = "SCALAR";
 	
 	/** 
@@ -18,23 +18,6 @@ public class Scalar extends Countable{
 	public Scalar (double value,DisplayType displayType){
 		super(displayType);
 		_value = value;
-		_displayValue = setDisplayValue(_value);
-	}
-	
-	/**
-	 * Sets the custom display value of this Scalar
-	 * 
-	 * @param s the string you want to set the display value to
-	 */
-	public void setCustomDisplayValue(String s){
-		_customDisplayValue = s;
-	}
-	
-	/**
-	 * @return the custom display value of this Scalar
-	 */
-	public String getCustomDisplayValue(){
-		return _customDisplayValue;
 	}
 	
 	
@@ -49,38 +32,85 @@ public class Scalar extends Countable{
 	
 	
 	/** 
-	 * Get the String representation of the contained value
+	 * Get the String representation of the contained value. Two threads may both format it the first time it
+	 * is read; they get the same string, so the race is harmless
 	 * 
 	 * @return the string representation of the value of this scalar
 	 */
 	public String getDisplayValue(){
-		return _displayValue;
+		String displayValue = _displayValue;
+		if (displayValue == null){
+			displayValue = formatDisplayValue(_value,_displayType);
+			_displayValue = displayValue;
+		}
+		return displayValue;
+	}
+	
+	
+	/** 
+	 * Get the String representation of the contained value as it would look in another DisplayType
+	 * 
+	 * @param displayType the DisplayType to format the value in
+	 * @return the string representation of the value of this scalar
+	 */
+	public String getDisplayValue(DisplayType displayType){
+		if (displayType == _displayType){
+			return getDisplayValue();
+		}
+		return formatDisplayValue(_value,displayType);
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see backend.blocks.Countable#withDisplayType(backend.blocks.Countable.DisplayType)
+	 */
+	@Override
+	public Scalar withDisplayType(DisplayType displayType){
+		if (displayType == _displayType){
+			return this;
+		}
+		return new Scalar(_value,displayType);
 	}
 
 
-	@Override // useful for testing
-	public String getName() {
-		return _name; 
+	/* (non-Javadoc)
+	 * @see backend.blocks.Countable#contentHash()
+	 */
+	@Override
+	public int contentHash(){
+		long bits = Double.doubleToLongBits(_value);
+		return 31*(int)(bits ^ (bits >>> 32)) + _displayType.ordinal();
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see backend.blocks.Countable#contentEquals(backend.blocks.Countable)
+	 */
+	@Override
+	public boolean contentEquals(Countable other){
+		if (!(other instanceof Scalar)){
+			return false;
+		}
+		return Double.doubleToLongBits(_value) == Double.doubleToLongBits(((Scalar) other)._value) 
+				&& _displayType == other._displayType;
 	}
 
 
-	/** Sets the display value to a string
-	 * 
-	 * @param operatorStep the value to set 
-	 */
-	public void setDisplayValue(String operatorStep) {
-		_displayValue = operatorStep;
+	@Override // useful for testing
+	public String getName() {
+		return _name; 
 	}
 	
 	
-	/** Sets the String representation of the value depending on global display parameters
+	/** Gets the String representation of a value in a DisplayType
 	 * 
 	 * @param val the value to display
+	 * @param displayType the format to display it in
 	 * @return the string representing this value
 	 */
-	private String setDisplayValue(double val){
+	private static String formatDisplayValue(double val, DisplayType displayType){
 		// TODO add fraction handling
-		switch (_displayType){
+		switch (displayType){
 		case WHOLENUMBERFRACTION:{
 			return null; // TODO
 		}
@@ -102,7 +132,7 @@ public class Scalar extends Countable{
 	
 	//TODO: CHECK
 	public String toLatex(){
-		return _displayValue;
+		return getDisplayValue();
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,435 @@
+package backend.blocks;
+
+import java.util.Arrays;
+
+
+/**
+ * A matrix that stores only its nonzero entries, for matrices that are mostly zeros (ex: the adjacency matrix
+ * of a graph, or a finite difference stencil). A 100000 x 100000 matrix with a few nonzeros per column takes a
+ * few megabytes this way, where a Matrix of the same size couldn't be made at all.
+ *
+ * The entries are kept in compressed sparse column (CSC) form: the nonzeros of column j are at indices
+ * [colStart[j], colStart[j+1]) of rowIndex and values, sorted by row. The CSC arrays of the transpose are the
+ * compressed sparse row (CSR) arrays of the matrix itself, so row-wise kernels work on the transpose. Every
+ * index is set (there are no null entries) and no stored value is 0, so equal matrices have equal arrays.
+ *
+ * Like Matrix, a SparseMatrix never changes once it is constructed. The arrays are not copied, so whoever
+ * hands them over must not change them afterwards
+ *
+ * @author baebi
+ */
+public class SparseMatrix extends Countable{
+	private static String _name = "SPARSE_MATRIX";
+
+	// results with a larger share of nonzeros than this are stored densely (see toPreferredStorage). Past about
+	// a tenth, the indirection of the sparse kernels costs more than skipping the zeros saves
+	public static final double DENSE_FILL_RATIO = 0.1;
+
+	// matrices with more rows or columns than this are drawn as a summary rather than index by index
+	private static final int DRAW_LIMIT = 12;
+
+	private final int _numRows, _numCols;
+	private final int[] _colStart;
+	private final int[] _rowIndex;
+	private final double[] _values;
+
+	// hash of the values, shape and display of this matrix, computed when it is first needed. 0 until then
+	private int _contentHash;
+
+
+
+	//===================================
+	// Constructors
+	//===================================
+
+	/**
+	 * Makes a sparse matrix from its CSC arrays, which are checked and used directly. Explicit zeros are
+	 * dropped, in which case rowIndex and values are copied instead
+	 *
+	 * @param displayType the way this matrix should be rendered at display-time
+	 * @param numRows the number of rows in this matrix
+	 * @param numCols the number of columns in this matrix
+	 * @param colStart numCols+1 offsets: the nonzeros of column j are at [colStart[j], colStart[j+1])
+	 * @param rowIndex the row of each nonzero, increasing within each column
+	 * @param values the value of each nonzero
+	 * @throws IllegalArgumentException if the arrays don't describe a numRows by numCols matrix
+	 */
+	public SparseMatrix(DisplayType displayType, int numRows, int numCols, int[] colStart, int[] rowIndex, double[] values) throws IllegalArgumentException {
+		super(displayType);
+		if (numRows < 0 || numCols < 0 || colStart.length != numCols+1 || colStart[0] != 0 ||
+				rowIndex.length != values.length || colStart[numCols] != values.length){
+			throw new IllegalArgumentException("ERROR (SparseMatrix): the column offsets don't fit a "+numRows+"x"+numCols+" matrix with "+values.length+" nonzeros");
+		}
+		int zeros = 0;
+		for (int j = 0; j < numCols; j++){
+			if (colStart[j+1] < colStart[j]){
+				throw new IllegalArgumentException("ERROR (SparseMatrix): column offsets must not decrease");
+			}
+			for (int k = colStart[j]; k < colStart[j+1]; k++){
+				if (rowIndex[k] < 0 || rowIndex[k] >= numRows || (k > colStart[j] && rowIndex[k] <= rowIndex[k-1])){
+					throw new IllegalArgumentException("ERROR (SparseMatrix): rows must be in range and increasing within column "+j);
+				}
+				if (values[k] == 0){
+					zeros++;
+				}
+			}
+		}
+		_numRows = numRows;
+		_numCols = numCols;
+		if (zeros == 0){
+			_colStart = colStart;
+			_rowIndex = rowIndex;
+			_values = values;
+			return;
+		}
+		_colStart = new int[numCols+1];
+		_rowIndex = new int[values.length - zeros];
+		_values = new double[values.length - zeros];
+		int next = 0;
+		for (int j = 0; j < numCols; j++){
+			for (int k = colStart[j]; k < colStart[j+1]; k++){
+				if (values[k] != 0){
+					_rowIndex[next] = rowIndex[k];
+					_values[next++] = values[k];
+				}
+			}
+			_colStart[j+1] = next;
+		}
+	}
+
+
+	/**
+	 * Constructor for a matrix that shares the arrays of another, drawn another way
+	 */
+	private SparseMatrix(SparseMatrix source, DisplayType displayType){
+		super(displayType);
+		_numRows = source._numRows;
+		_numCols = source._numCols;
+		_colStart = source._colStart;
+		_rowIndex = source._rowIndex;
+		_values = source._values;
+	}
+
+
+	/**
+	 * Makes a sparse matrix from a list of entries in any order. Entries at the same index are added up
+	 *
+	 * @param displayType the way the matrix should be rendered at display-time
+	 * @param numRows the number of rows in the matrix
+	 * @param numCols the number of columns in the matrix
+	 * @param rows the row of each entry
+	 * @param cols the column of each entry
+	 * @param values the value of each entry
+	 * @return the matrix
+	 * @throws IllegalArgumentException if the lists have different lengths or an entry is out of range
+	 */
+	public static SparseMatrix fromEntries(DisplayType displayType, int numRows, int numCols, int[] rows, int[] cols, double[] values) throws IllegalArgumentException {
+		if (rows.length != cols.length || rows.length != values.length){
+			throw new IllegalArgumentException("ERROR (SparseMatrix): every entry needs a row, a column and a value");
+		}
+		// counting sort by column, then sort each column by row
+		int[] colStart = new int[numCols+1];
+		for (int k = 0; k < cols.length; k++){
+			if (rows[k] < 0 || rows[k] >= numRows || cols[k] < 0 || cols[k] >= numCols){
+				throw new IllegalArgumentException("ERROR (SparseMatrix): entry ("+rows[k]+","+cols[k]+") is outside a "+numRows+"x"+numCols+" matrix");
+			}
+			colStart[cols[k]+1]++;
+		}
+		for (int j = 0; j < numCols; j++){
+			colStart[j+1] += colStart[j];
+		}
+		int[] next = Arrays.copyOf(colStart, numCols);
+		long[] packed = new long[rows.length]; // row in the high bits, entry in the low bits, so sorting sorts by row
+		for (int k = 0; k < cols.length; k++){
+			packed[next[cols[k]]++] = ((long) rows[k] << 32) | k;
+		}
+		int[] rowIndex = new int[rows.length];
+		double[] sorted = new double[rows.length];
+		int size = 0;
+		int[] mergedStart = new int[numCols+1];
+		for (int j = 0; j < numCols; j++){
+			Arrays.sort(packed, colStart[j], colStart[j+1]);
+			for (int k = colStart[j]; k < colStart[j+1]; k++){
+				int row = (int) (packed[k] >>> 32);
+				double value = values[(int) packed[k]];
+				if (size > mergedStart[j] && rowIndex[size-1] == row){
+					sorted[size-1] += value;
+				}else{
+					rowIndex[size] = row;
+					sorted[size++] = value;
+				}
+			}
+			mergedStart[j+1] = size;
+		}
+		return new SparseMatrix(displayType, numRows, numCols, mergedStart, Arrays.copyOf(rowIndex, size), Arrays.copyOf(sorted, size));
+	}
+
+
+	/**
+	 * @param matrix a dense matrix with every index set
+	 * @return the same matrix stored sparsely
+	 * @throws IllegalArgumentException if some index of the matrix isn't set
+	 */
+	public static SparseMatrix fromMatrix(Matrix matrix) throws IllegalArgumentException {
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Matrix should not contain null indices");
+		}
+		return fromColumnMajor(matrix.getDisplayType(), matrix.getNumRows(), matrix.getNumCols(), matrix.toColumnMajor());
+	}
+
+
+	/**
+	 * @param displayType the way the matrix should be rendered at display-time
+	 * @param numRows the number of rows in the matrix
+	 * @param numCols the number of columns in the matrix
+	 * @param values every value of the matrix, in column-major order (index col*numRows + row)
+	 * @return the same matrix stored sparsely
+	 */
+	public static SparseMatrix fromColumnMajor(DisplayType displayType, int numRows, int numCols, double[] values){
+		int nonZeros = 0;
+		for (double value : values){
+			if (value != 0){
+				nonZeros++;
+			}
+		}
+		int[] colStart = new int[numCols+1];
+		int[] rowIndex = new int[nonZeros];
+		double[] nonZeroValues = new double[nonZeros];
+		int next = 0;
+		for (int j = 0; j < numCols; j++){
+			for (int i = 0; i < numRows; i++){
+				double value = values[j*numRows + i];
+				if (value != 0){
+					rowIndex[next] = i;
+					nonZeroValues[next++] = value;
+				}
+			}
+			colStart[j+1] = next;
+		}
+		return new SparseMatrix(displayType, numRows, numCols, colStart, rowIndex, nonZeroValues);
+	}
+
+
+	/**
+	 * Picks the storage for a matrix that was computed densely: sparse if few enough of its values are
+	 * nonzero, dense otherwise
+	 *
+	 * @param displayType the way the matrix should be rendered at display-time
+	 * @param numRows the number of rows in the matrix
+	 * @param numCols the number of columns in the matrix
+	 * @param values every value of the matrix, in column-major order. Kept if the matrix is stored densely
+	 * @return a SparseMatrix or a Matrix with these values
+	 */
+	public static Countable fromColumnMajorPreferred(DisplayType displayType, int numRows, int numCols, double[] values){
+		int nonZeros = 0;
+		for (double value : values){
+			if (value != 0){
+				nonZeros++;
+			}
+		}
+		if (values.length > 0 && (double) nonZeros/values.length > DENSE_FILL_RATIO){
+			return new Matrix(displayType, numRows, numCols, values);
+		}
+		return fromColumnMajor(displayType, numRows, numCols, values);
+	}
+
+
+
+	//===================================
+	// Conversion
+	//===================================
+
+	/**
+	 * @return true if this matrix is small enough to be stored densely in one array
+	 */
+	public boolean fitsDensely(){
+		return (long) _numRows*_numCols <= Integer.MAX_VALUE - 8;
+	}
+
+
+	/**
+	 * The dense fallback, for computations that have no sparse kernel
+	 *
+	 * @return this matrix stored densely
+	 * @throws IllegalArgumentException if the matrix is too large to store densely
+	 */
+	public Matrix toMatrix() throws IllegalArgumentException {
+		if (!fitsDensely()){
+			throw new IllegalArgumentException("ERROR: A "+_numRows+"x"+_numCols+" sparse matrix is too large for this operation");
+		}
+		double[] values = new double[_numRows*_numCols];
+		for (int j = 0; j < _numCols; j++){
+			for (int k = _colStart[j]; k < _colStart[j+1]; k++){
+				values[j*_numRows + _rowIndex[k]] = _values[k];
+			}
+		}
+		return new Matrix(_displayType, _numRows, _numCols, values);
+	}
+
+
+	/**
+	 * @return this matrix stored densely if more than DENSE_FILL_RATIO of it is nonzero and it fits,
+	 * 		otherwise this matrix
+	 */
+	public Countable toPreferredStorage(){
+		if (getFillRatio() > DENSE_FILL_RATIO && fitsDensely()){
+			return toMatrix();
+		}
+		return this;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.blocks.Countable#withDisplayType(backend.blocks.Countable.DisplayType)
+	 */
+	@Override
+	public SparseMatrix withDisplayType(DisplayType displayType){
+		if (displayType == _displayType){
+			return this;
+		}
+		return new SparseMatrix(this, displayType);
+	}
+
+
+
+	//===================================
+	// Getters
+	//===================================
+
+	/**
+	 * @param row the row of the index
+	 * @param col the column of the index
+	 * @return the value at (row,col). Takes time logarithmic in the nonzeros of the column
+	 */
+	public double get(int row, int col){
+		int k = Arrays.binarySearch(_rowIndex, _colStart[col], _colStart[col+1], row);
+		return k < 0 ? 0 : _values[k];
+	}
+
+
+	/**
+	 * @return the CSC column offsets. Shared, not copied: must not be changed
+	 */
+	public int[] getColumnStarts(){
+		return _colStart;
+	}
+
+
+	/**
+	 * @return the row of each nonzero, in CSC order. Shared, not copied: must not be changed
+	 */
+	public int[] getRowIndices(){
+		return _rowIndex;
+	}
+
+
+	/**
+	 * @return the value of each nonzero, in CSC order. Shared, not copied: must not be changed
+	 */
+	public double[] getNonZeroValues(){
+		return _values;
+	}
+
+
+	/**
+	 * @return the number of nonzero entries
+	 */
+	public int getNumNonZeros(){
+		return _values.length;
+	}
+
+
+	/**
+	 * @return the share of the entries that are nonzero, from 0 to 1
+	 */
+	public double getFillRatio(){
+		long size = (long) _numRows*_numCols;
+		return size == 0 ? 0 : (double) _values.length/size;
+	}
+
+
+	/**
+	 * @return the number of rows in this matrix
+	 */
+	public int getNumRows(){
+		return _numRows;
+	}
+
+
+	/**
+	 * @return the number of columns in this matrix
+	 */
+	public int getNumCols(){
+		return _numCols;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.blocks.Numerical#getName()
+	 */
+	@Override
+	public String getName(){
+		return _name;
+	}
+
+
+
+	//==========================================
+	// Content
+	//==========================================
+
+	/**
+	 * Computed once per matrix from the nonzeros only, so it is linear in their number rather than in the
+	 * size of the matrix
+	 *
+	 * @see backend.blocks.Countable#contentHash()
+	 */
+	@Override
+	public int contentHash(){
+		int hash = _contentHash;
+		if (hash == 0){
+			hash = 31*(31*(31*_numRows + _numCols) + _displayType.ordinal()) + 7;
+			hash = 31*hash + Arrays.hashCode(_colStart);
+			hash = 31*hash + Arrays.hashCode(_rowIndex);
+			hash = 31*hash + Arrays.hashCode(_values);
+			if (hash == 0){
+				hash = 1; // keep 0 for "not computed yet"
+			}
+			_contentHash = hash;
+		}
+		return hash;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.blocks.Countable#contentEquals(backend.blocks.Countable)
+	 */
+	@Override
+	public boolean contentEquals(Countable other){
+		if (other == this){
+			return true;
+		}
+		if (!(other instanceof SparseMatrix)){
+			return false;
+		}
+		SparseMatrix m = (SparseMatrix) other;
+		return m._numRows == _numRows && m._numCols == _numCols && m._displayType == _displayType &&
+				contentHash() == m.contentHash() && Arrays.equals(m._colStart, _colStart) &&
+				Arrays.equals(m._rowIndex, _rowIndex) && Arrays.equals(m._values, _values);
+	}
+
+
+	/**
+	 * Small matrices are drawn like a Matrix. Larger ones are summarized, since drawing every zero of a
+	 * large sparse matrix is neither possible nor useful
+	 *
+	 * @see backend.blocks.Numerical#toLatex()
+	 */
+	@Override
+	public String toLatex(){
+		if (_numRows <= DRAW_LIMIT && _numCols <= DRAW_LIMIT){
+			return toMatrix().toLatex();
+		}
+		return "\\mathrm{"+_numRows+" \\times "+_numCols+" \\ sparse \\ matrix \\ with \\ "+_values.length+" \\ nonzeros}";
+	}
+}
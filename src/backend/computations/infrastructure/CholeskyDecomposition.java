@@ -0,0 +1,154 @@
+package backend.computations.infrastructure;
+
+import backend.blocks.Matrix;
+
+/**
+ * Cholesky decomposition of a symmetric positive-definite matrix, A = LL^T. It needs no pivoting and half the
+ * work of LUDecomposition, and factoring fails exactly when the matrix is not positive-definite, so trying it is
+ * also the test. Only the lower triangle of the matrix is read
+ *
+ * @author baebi
+ */
+public class CholeskyDecomposition {
+	private int _n;
+
+	// L packed into the lower triangle of a column-major array: (row,col) is at col*_n + row. The upper
+	// triangle is left as it was in the matrix
+	private double[] _l;
+
+	private boolean _isPositiveDefinite = true;
+
+
+	/**
+	 * Factors a square matrix
+	 *
+	 * @param matrix the matrix to factor. It is not modified
+	 * @throws IllegalArgumentException if the matrix is not square or has unset indices
+	 */
+	public CholeskyDecomposition(Matrix matrix) throws IllegalArgumentException {
+		if (matrix.getNumRows() != matrix.getNumCols()){
+			throw new IllegalArgumentException("Matrix must have the same number of columns and rows");
+		}
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_n = matrix.getNumRows();
+		_l = matrix.toColumnMajor();
+		factor();
+	}
+
+
+	/**
+	 * Computes L a column at a time: column j is column j of A minus the columns of L to its left, each
+	 * weighted by its entry in row j, divided by the square root of its diagonal entry. Stops at the first
+	 * diagonal entry that isn't positive
+	 */
+	private void factor(){
+		int n = _n;
+		double[] a = _l;
+		double maxDiagonal = 0;
+		for (int j = 0; j < n; j++){
+			maxDiagonal = Math.max(maxDiagonal, Math.abs(a[j*n + j]));
+		}
+		double tolerance = n * Math.ulp(maxDiagonal);
+		for (int j = 0; j < n; j++){
+			for (int k = 0; k < j; k++){
+				double factor = a[k*n + j];
+				if (factor == 0){
+					continue;
+				}
+				for (int i = j; i < n; i++){
+					a[j*n + i] -= a[k*n + i] * factor;
+				}
+			}
+			double diagonal = a[j*n + j];
+			if (!(diagonal > tolerance)){ // also catches NaN
+				_isPositiveDefinite = false;
+				return;
+			}
+			double root = Math.sqrt(diagonal);
+			for (int i = j; i < n; i++){
+				a[j*n + i] /= root;
+			}
+		}
+	}
+
+
+	/**
+	 * @return true iff the matrix is positive-definite to working precision, so the factors can be used
+	 */
+	public boolean isPositiveDefinite(){
+		return _isPositiveDefinite;
+	}
+
+
+	/**
+	 * Solves AX = B by forward substitution with L and back substitution with L^T, a block of right-hand sides
+	 * at a time like LUDecomposition.solve. Back substitution with L^T reads the columns of L, which are
+	 * contiguous, as dot products
+	 *
+	 * @param b the right-hand sides, n x numRhs and column-major. It is not modified
+	 * @param numRhs the number of right-hand sides
+	 * @return X, n x numRhs and column-major
+	 * @throws IllegalStateException if the matrix is not positive-definite
+	 */
+	public double[] solve(double[] b, int numRhs){
+		if (!_isPositiveDefinite){
+			throw new IllegalStateException("ERROR (CholeskyDecomposition): the matrix is not positive-definite");
+		}
+		int n = _n;
+		double[] x = b.clone();
+		for (int start = 0; start < numRhs; start += LUDecomposition.RHS_BLOCK){
+			int end = Math.min(numRhs, start + LUDecomposition.RHS_BLOCK);
+			// L Y = B
+			for (int k = 0; k < n; k++){
+				double diagonal = _l[k*n + k];
+				for (int c = start; c < end; c++){
+					double y = x[c*n + k] /= diagonal;
+					if (y != 0){
+						for (int i = k+1; i < n; i++){
+							x[c*n + i] -= y * _l[k*n + i];
+						}
+					}
+				}
+			}
+			// L^T X = Y
+			for (int k = n-1; k >= 0; k--){
+				double diagonal = _l[k*n + k];
+				for (int c = start; c < end; c++){
+					double sum = x[c*n + k];
+					for (int i = k+1; i < n; i++){
+						sum -= _l[k*n + i] * x[c*n + i];
+					}
+					x[c*n + k] = sum / diagonal;
+				}
+			}
+		}
+		return x;
+	}
+
+
+	/**
+	 * @return L, n x n lower triangular and column-major
+	 * @throws IllegalStateException if the matrix is not positive-definite
+	 */
+	public double[] getL(){
+		if (!_isPositiveDefinite){
+			throw new IllegalStateException("ERROR (CholeskyDecomposition): the matrix is not positive-definite");
+		}
+		int n = _n;
+		double[] l = new double[n*n];
+		for (int j = 0; j < n; j++){
+			System.arraycopy(_l, j*n + j, l, j*n + j, n-j);
+		}
+		return l;
+	}
+
+
+	/**
+	 * @return the dimension of the factored matrix
+	 */
+	public int getSize(){
+		return _n;
+	}
+}
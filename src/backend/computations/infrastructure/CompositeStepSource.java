@@ -0,0 +1,69 @@
+package backend.computations.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins lists of steps end to end without copying them, so a Computable can embed the (possibly lazy) steps of
+ * another Computable inside its own
+ *
+ * @author baebi
+ */
+public class CompositeStepSource implements StepSource {
+	private List<List<String>> _parts = new ArrayList<>();
+	private List<String> _prefixes = new ArrayList<>();
+
+
+	/**
+	 * Appends a list of steps
+	 *
+	 * @param steps the steps to append. They are read when they are asked for, not now
+	 * @return this
+	 */
+	public CompositeStepSource add(List<String> steps){
+		return add(steps,"");
+	}
+
+
+	/**
+	 * Appends a list of steps, each with some LaTeX in front of it (for instance an indent)
+	 *
+	 * @param steps the steps to append. They are read when they are asked for, not now
+	 * @param prefix the string to put in front of each step
+	 * @return this
+	 */
+	public CompositeStepSource add(List<String> steps, String prefix){
+		_parts.add(steps);
+		_prefixes.add(prefix);
+		return this;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.computations.infrastructure.StepSource#size()
+	 */
+	@Override
+	public int size(){
+		int size = 0;
+		for (List<String> part : _parts){
+			size += part.size();
+		}
+		return size;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.computations.infrastructure.StepSource#getStep(int)
+	 */
+	@Override
+	public String getStep(int index){
+		for (int i = 0; i < _parts.size(); i++){
+			List<String> part = _parts.get(i);
+			if (index < part.size()){
+				return _prefixes.get(i) + part.get(index);
+			}
+			index -= part.size();
+		}
+		throw new IndexOutOfBoundsException("No step at this index");
+	}
+}
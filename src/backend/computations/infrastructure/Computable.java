@@ -15,6 +15,17 @@ import backend.blocks.Countable.DisplayType;
  */
 public abstract class Computable{
 	
+	// true if only the answer is wanted. Implementors then skip all step generation and toLatex() is empty
+	protected boolean _answerOnly = false;
+	
+	
+	/**
+	 * @return true iff this Computable was asked for its answer only, without steps
+	 */
+	public boolean isAnswerOnly(){
+		return _answerOnly;
+	}
+	
 	
 	/** 
 	 * Returns the solution computed in the constructor of this Computable
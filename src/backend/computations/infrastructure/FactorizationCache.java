@@ -0,0 +1,273 @@
+package backend.computations.infrastructure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import backend.blocks.Matrix;
+
+/**
+ * A bounded cache of the factorizations of matrices, so that the Computables that eliminate on a matrix (its
+ * determinant, inverse, rank, column space, row reduction and linear systems) factor it once between them
+ * instead of once each. A matrix never changes, so its factors never go stale; like SolutionCache, matrices are
+ * looked up by content (see Matrix.contentHash), so an equal matrix built again, like a saved one that is
+ * parsed again, finds the factors of the first.
+ *
+ * Each matrix gets one entry holding whichever of its LU, QR and Cholesky decompositions have been asked for.
+ * The decompositions are never modified after they are made, so one can be used by any number of threads.
+ * Entries are weighed by the memory they keep alive, the matrix included, and the least recently used are
+ * evicted once the total passes the limit. Hits and misses are counted for tuning the limit
+ *
+ * @author baebi
+ */
+public class FactorizationCache {
+	// limit of the shared cache until it is changed
+	public static final long DEFAULT_MAX_BYTES = 32L*1024*1024;
+
+	// rough cost of things that aren't values, like object headers and references
+	private static final long OVERHEAD_BYTES = 64;
+
+	private static final FactorizationCache SHARED = new FactorizationCache(DEFAULT_MAX_BYTES);
+
+	private long _maxBytes;
+	private long _bytes;
+	private long _hits, _misses, _evictions;
+
+	// in order of use, least recently used first
+	private LinkedHashMap<Key,Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The factorizations an entry can hold
+	 */
+	private enum Kind {
+		LU, QR, CHOLESKY
+	}
+
+
+	/**
+	 * @param maxBytes about how much memory the cached factors may keep alive. 0 turns caching off
+	 */
+	public FactorizationCache(long maxBytes){
+		if (maxBytes < 0){
+			throw new IllegalArgumentException("ERROR (FactorizationCache): the memory limit can't be negative");
+		}
+		_maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * @return the cache shared by the Computables
+	 */
+	public static FactorizationCache getShared(){
+		return SHARED;
+	}
+
+
+	/**
+	 * @param matrix a matrix with no unset indices
+	 * @return its LU decomposition, factored now if it isn't cached
+	 * @throws IllegalArgumentException if the matrix has unset indices
+	 */
+	public LUDecomposition getLU(Matrix matrix) throws IllegalArgumentException {
+		return (LUDecomposition) get(matrix, Kind.LU);
+	}
+
+
+	/**
+	 * @param matrix a matrix with no unset indices and at least as many rows as columns
+	 * @return its QR decomposition, factored now if it isn't cached
+	 * @throws IllegalArgumentException if the matrix has unset indices or more columns than rows
+	 */
+	public QRDecomposition getQR(Matrix matrix) throws IllegalArgumentException {
+		return (QRDecomposition) get(matrix, Kind.QR);
+	}
+
+
+	/**
+	 * @param matrix a square matrix with no unset indices
+	 * @return its Cholesky decomposition, factored now if it isn't cached. Whether the matrix was positive-definite
+	 * is cached too
+	 * @throws IllegalArgumentException if the matrix has unset indices or is not square
+	 */
+	public CholeskyDecomposition getCholesky(Matrix matrix) throws IllegalArgumentException {
+		return (CholeskyDecomposition) get(matrix, Kind.CHOLESKY);
+	}
+
+
+	/**
+	 * Returns a cached factorization, factoring and caching it first if there is none. The lock is not held
+	 * while factoring, so two threads asking for the same missing factors may both compute them
+	 */
+	private Object get(Matrix matrix, Kind kind){
+		Key key = new Key(matrix);
+		synchronized (this){
+			Entry entry = _entries.get(key);
+			if (entry != null && entry._factors[kind.ordinal()] != null){
+				_hits++;
+				return entry._factors[kind.ordinal()];
+			}
+			_misses++;
+		}
+
+		Object factors;
+		long bytes;
+		int m = matrix.getNumRows(), n = matrix.getNumCols();
+		switch (kind){
+			case LU:{
+				factors = new LUDecomposition(matrix);
+				bytes = OVERHEAD_BYTES + 8L*m*n + 4L*(m + Math.min(m,n));
+				break;
+			}
+			case QR:{
+				factors = new QRDecomposition(matrix);
+				bytes = OVERHEAD_BYTES + 8L*m*n + 8L*n;
+				break;
+			}
+			default:{
+				factors = new CholeskyDecomposition(matrix);
+				bytes = OVERHEAD_BYTES + 8L*m*n;
+			}
+		}
+
+		synchronized (this){
+			Entry entry = _entries.get(key);
+			if (entry == null){
+				// the entry keeps the matrix alive as its key, and with it the file of a mapped matrix
+				long matrixBytes = OVERHEAD_BYTES + 8L*m*n;
+				if (matrixBytes + bytes > _maxBytes){
+					return factors;
+				}
+				entry = new Entry(matrixBytes);
+				_entries.put(key, entry);
+				_bytes += matrixBytes;
+			}
+			if (entry._factors[kind.ordinal()] == null){
+				entry._factors[kind.ordinal()] = factors;
+				entry._bytes += bytes;
+				_bytes += bytes;
+				evict();
+			}
+			return entry._factors[kind.ordinal()];
+		}
+	}
+
+
+	/**
+	 * Changes the memory limit, evicting entries until the cache fits in it
+	 *
+	 * @param maxBytes about how much memory the cached factors may keep alive. 0 turns caching off
+	 */
+	public synchronized void setMaxBytes(long maxBytes){
+		if (maxBytes < 0){
+			throw new IllegalArgumentException("ERROR (FactorizationCache): the memory limit can't be negative");
+		}
+		_maxBytes = maxBytes;
+		evict();
+	}
+
+
+	/**
+	 * @return the memory limit
+	 */
+	public synchronized long getMaxBytes(){
+		return _maxBytes;
+	}
+
+
+	/**
+	 * @return the estimated memory kept alive by the cached factors and their matrices
+	 */
+	public synchronized long getBytes(){
+		return _bytes;
+	}
+
+
+	/**
+	 * @return the number of matrices with cached factors
+	 */
+	public synchronized int size(){
+		return _entries.size();
+	}
+
+
+	/**
+	 * @return the number of lookups that found cached factors
+	 */
+	public synchronized long getHits(){
+		return _hits;
+	}
+
+
+	/**
+	 * @return the number of lookups that had to factor
+	 */
+	public synchronized long getMisses(){
+		return _misses;
+	}
+
+
+	/**
+	 * @return the number of matrices whose factors were evicted to stay under the memory limit
+	 */
+	public synchronized long getEvictions(){
+		return _evictions;
+	}
+
+
+	/**
+	 * Empties the cache and zeroes the statistics
+	 */
+	public synchronized void clear(){
+		_entries.clear();
+		_bytes = 0;
+		_hits = _misses = _evictions = 0;
+	}
+
+
+	/**
+	 * Evicts least recently used entries until the cache fits in its limit. An entry that was just used is the
+	 * most recent, so it only goes if it doesn't fit on its own
+	 */
+	private void evict(){
+		Iterator<Entry> it = _entries.values().iterator();
+		while (_bytes > _maxBytes && it.hasNext()){
+			_bytes -= it.next()._bytes;
+			it.remove();
+			_evictions++;
+		}
+	}
+
+
+	/**
+	 * What factors are looked up by: the content of the matrix
+	 */
+	private static class Key {
+		private final Matrix _matrix;
+
+		Key(Matrix matrix){
+			_matrix = matrix;
+		}
+
+		@Override
+		public int hashCode(){
+			return _matrix.contentHash();
+		}
+
+		@Override
+		public boolean equals(Object o){
+			return (o instanceof Key) && _matrix.contentEquals(((Key) o)._matrix);
+		}
+	}
+
+
+	/**
+	 * The cached factors of one matrix, indexed by Kind, and their weight
+	 */
+	private static class Entry {
+		private final Object[] _factors = new Object[Kind.values().length];
+		private long _bytes;
+
+		Entry(long bytes){
+			_bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package backend.computations.infrastructure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Scalar;
+import backend.computations.operations.Determinant;
+import backend.computations.operations.M_Columnspace;
+import backend.computations.operations.M_Inverse;
+import backend.computations.operations.M_Rank;
+import backend.computations.operations.M_RowReduce;
+
+/**
+ * Tests for the cache of LU, QR and Cholesky factors, and for what is read from them
+ *
+ * @author baebi
+ */
+public class FactorizationCacheTest {
+	private Matrix matrixA = new Matrix(DisplayType.DECIMAL, new Double[][]{{2.0,1.0},{1.0,3.0}});
+	private Matrix sameAsA = new Matrix(DisplayType.DECIMAL, new Double[][]{{2.0,1.0},{1.0,3.0}});
+	private Matrix matrixB = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,5.0}});
+	// rank 2, with pivots in columns 0 and 2
+	private Matrix wide = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0,1.0},{2.0,4.0,2.0},{0.0,1.0,3.0},{1.0,3.0,4.0}});
+
+	@Test // equal content finds the same factors, and each kind is factored once
+	public void hitTest(){
+		FactorizationCache cache = new FactorizationCache(FactorizationCache.DEFAULT_MAX_BYTES);
+		LUDecomposition lu = cache.getLU(matrixA);
+		assertTrue(cache.getLU(sameAsA) == lu);
+		assertTrue(cache.getLU(matrixA.transposeView().transposeView()) == lu);
+		QRDecomposition qr = cache.getQR(matrixA);
+		CholeskyDecomposition cholesky = cache.getCholesky(sameAsA);
+		assertTrue(cache.getQR(sameAsA) == qr && cache.getCholesky(matrixA) == cholesky);
+		assertTrue(cholesky.isPositiveDefinite());
+		assertTrue(cache.size() == 1);
+		assertTrue(cache.getHits() == 4 && cache.getMisses() == 3);
+
+		cache.getLU(matrixB);
+		assertTrue(cache.size() == 2 && cache.getMisses() == 4);
+	}
+
+	@Test // the least recently used matrix loses its factors once the limit is passed
+	public void evictionTest(){
+		FactorizationCache cache = new FactorizationCache(FactorizationCache.DEFAULT_MAX_BYTES);
+		cache.getLU(matrixA);
+		long oneEntry = cache.getBytes();
+		cache.getLU(matrixB);
+		LUDecomposition lu = cache.getLU(matrixA); // A is now the most recent
+		cache.setMaxBytes(oneEntry);
+		assertTrue(cache.size() == 1 && cache.getEvictions() == 1);
+		assertTrue(cache.getLU(sameAsA) == lu);
+
+		cache.setMaxBytes(0); // caching off
+		assertTrue(cache.size() == 0 && cache.getBytes() == 0);
+		assertTrue(cache.getLU(matrixA) != lu && cache.size() == 0);
+	}
+
+	@Test // rank, pivot columns and reduced echelon form of a matrix that isn't square or of full rank
+	public void echelonTest(){
+		LUDecomposition lu = new LUDecomposition(wide);
+		assertTrue(lu.getRank() == 2 && lu.isSingular());
+		int[] pivots = lu.getPivotColumns();
+		assertTrue(pivots.length == 2 && pivots[0] == 0 && pivots[1] == 2);
+		double[] rref = lu.getReducedEchelonForm();
+		double[][] expected = {{1,2,0,1},{0,0,1,1},{0,0,0,0}};
+		for (int i = 0; i < 3; i++){
+			for (int j = 0; j < 4; j++){
+				assertEquals(expected[i][j], rref[j*3 + i], 1e-12);
+			}
+		}
+		// L U gives back the rows of the matrix in pivot order
+		double[] l = lu.getL(), u = lu.getU();
+		int[] rows = lu.getPivots();
+		for (int i = 0; i < 3; i++){
+			for (int j = 0; j < 4; j++){
+				double sum = 0;
+				for (int k = 0; k < 3; k++){
+					sum += l[k*3 + i] * u[j*3 + k];
+				}
+				assertEquals(wide.get(rows[i],j), sum, 1e-12);
+			}
+		}
+	}
+
+	@Test // a pivot below the rank tolerance still counts in the determinant
+	public void scaledDeterminantTest() throws Exception {
+		Double[][] values = new Double[5][5];
+		double[] diagonal = {1e10, 1, 1, 1, 1e-10};
+		for (int i = 0; i < 5; i++){
+			for (int j = 0; j < 5; j++){
+				values[i][j] = i == j ? diagonal[i] : 0.0;
+			}
+		}
+		Matrix m = new Matrix(DisplayType.DECIMAL, values);
+		LUDecomposition lu = new LUDecomposition(m);
+		assertTrue(lu.getRank() == 4);
+		assertEquals(1, lu.getDeterminant(), 1e-12);
+		assertEquals(1, ((Scalar) new Determinant(m,true).getSolution().getAnswer()).getValue(), 1e-12);
+		assertEquals(1, ((Scalar) new Determinant(m,false).getSolution().getAnswer()).getValue(), 1e-12);
+	}
+
+	@Test // the Computables that only want answers agree with their steps, and share one factorization
+	public void sharedTest() throws Exception {
+		FactorizationCache cache = FactorizationCache.getShared();
+		Matrix m = new Matrix(DisplayType.DECIMAL, new Double[][]{{4.0,1.0,2.0},{1.0,5.0,3.0},{2.0,3.0,6.0}});
+		long misses = cache.getMisses();
+		assertEquals(((Scalar) new Determinant(m,false).getSolution().getAnswer()).getValue(),
+				((Scalar) new Determinant(m,true).getSolution().getAnswer()).getValue(), 1e-9);
+		assertTrue(((Scalar) new M_Rank(m,true).getSolution().getAnswer()).getValue() == 3);
+		Matrix inverse = (Matrix) new M_Inverse(m,true).getSolution().getAnswer();
+		Matrix stepped = (Matrix) new M_Inverse(m,false).getSolution().getAnswer();
+		for (int i = 0; i < 3; i++){
+			for (int j = 0; j < 3; j++){
+				assertEquals(stepped.get(i,j), inverse.get(i,j), 1e-12);
+			}
+		}
+		assertTrue(((Matrix) new M_Columnspace(m,true).getSolution().getAnswer()).contentEquals(m));
+		Matrix reduced = (Matrix) new M_RowReduce(m,true).getSolution().getAnswer();
+		for (int i = 0; i < 3; i++){
+			for (int j = 0; j < 3; j++){
+				assertEquals(i == j ? 1 : 0, reduced.get(i,j), 0);
+			}
+		}
+		assertTrue(cache.getMisses() <= misses + 1);
+	}
+
+	@Test // with steps or without, a pivot that is only rounding error is zero, so the answers agree
+	public void singularAgreeTest() throws Exception {
+		Matrix m = new Matrix(DisplayType.DECIMAL, new Double[][]{{0.1,0.4,0.7},{0.2,0.5,0.8},{0.3,0.6,0.9}});
+		for (boolean answerOnly : new boolean[]{true, false}){
+			assertTrue(((Scalar) new M_Rank(m,answerOnly).getSolution().getAnswer()).getValue() == 2);
+			assertTrue(((Matrix) new M_Columnspace(m,answerOnly).getSolution().getAnswer()).getNumCols() == 2);
+			Matrix reduced = (Matrix) new M_RowReduce(m,answerOnly).getSolution().getAnswer();
+			double[][] expected = {{1,0,-1},{0,1,2},{0,0,0}};
+			for (int i = 0; i < 3; i++){
+				for (int j = 0; j < 3; j++){
+					assertEquals(expected[i][j], reduced.get(i,j), i == 2 ? 0 : 1e-12);
+				}
+			}
+		}
+		assertEquals(((Scalar) new Determinant(m,false).getSolution().getAnswer()).getValue(),
+				((Scalar) new Determinant(m,true).getSolution().getAnswer()).getValue(), 1e-15);
+	}
+}
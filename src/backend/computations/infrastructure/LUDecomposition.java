@@ -0,0 +1,390 @@
+package backend.computations.infrastructure;
+
+import backend.blocks.Matrix;
+
+/**
+ * LU decomposition with partial pivoting, PA = LU, of a matrix of any shape. U is in row echelon form: a column
+ * whose entries below the rows already used are all numerically zero gets no pivot, so the pivots are the pivot
+ * columns of row reduction, their number is the rank, and the reduced echelon form follows from U without
+ * eliminating again. For a square matrix of full rank this is the usual LU. This is the numeric engine behind
+ * the Computables that only need an answer; it works on a single packed array and takes O(mn min(m,n)) time
+ *
+ * @author baebi
+ */
+public class LUDecomposition {
+	private int _m, _n;
+
+	// L and U packed into one column-major array: (row,col) is at col*_m + row. L is unit lower triangular, so
+	// its diagonal of ones is not stored; the multipliers of the k-th pivot are below row k of its column
+	private double[] _lu;
+
+	// _pivots[i] is the row of the original matrix that ended up in row i
+	private int[] _pivots;
+	private int _pivotSign = 1;
+
+	// the column of each pivot, in order. Only the first _rank are used
+	private int[] _pivotColumns;
+	private int _rank;
+
+	// largest absolute value in the original matrix, used to decide when a pivot is numerically zero
+	private double _maxAbs;
+
+	// the determinant of a square matrix whose rank is short of full. Pivots factor() drops as rounding error
+	// are not on U's diagonal, so it is found by eliminating again with every pivot that isn't exactly zero
+	private double _determinant;
+
+	// solve works through this many right-hand sides at a time
+	static final int RHS_BLOCK = 16;
+
+
+	/**
+	 * Factors a matrix
+	 *
+	 * @param matrix the matrix to factor. It is not modified
+	 * @throws IllegalArgumentException if the matrix has unset indices
+	 */
+	public LUDecomposition(Matrix matrix) throws IllegalArgumentException {
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_m = matrix.getNumRows();
+		_n = matrix.getNumCols();
+		_lu = matrix.toColumnMajor();
+		_pivots = new int[_m];
+		for (int i = 0; i < _m; i++){
+			_pivots[i] = i;
+		}
+		_pivotColumns = new int[Math.min(_m, _n)];
+		for (double v : _lu){
+			_maxAbs = Math.max(_maxAbs, Math.abs(v));
+		}
+		factor();
+		if (_m == _n && _rank < _n){
+			_determinant = determinant(matrix.toColumnMajor(), _n);
+		}
+	}
+
+
+	/**
+	 * Runs Gaussian elimination in place on _lu, one column at a time so that the inner loops walk down
+	 * contiguous columns. Row r is the next row to get a pivot; a column without one leaves r where it is. A
+	 * column has no pivot if all its candidates are within rounding error of the largest entry of the matrix
+	 */
+	private void factor(){
+		int m = _m, n = _n;
+		double[] a = _lu;
+		double tolerance = zeroTolerance(_maxAbs, m, n);
+		int r = 0;
+		for (int k = 0; k < n && r < m; k++){
+			// find the largest candidate in column k, from row r down
+			int p = r;
+			double max = Math.abs(a[k*m + r]);
+			for (int i = r+1; i < m; i++){
+				double abs = Math.abs(a[k*m + i]);
+				if (abs > max){
+					max = abs;
+					p = i;
+				}
+			}
+			if (max <= tolerance){
+				for (int i = r; i < m; i++){
+					a[k*m + i] = 0; // what is left is rounding error; U is exactly echelon
+				}
+				continue;
+			}
+
+			if (p != r){
+				for (int j = 0; j < n; j++){
+					double temp = a[j*m + p];
+					a[j*m + p] = a[j*m + r];
+					a[j*m + r] = temp;
+				}
+				int temp = _pivots[p];
+				_pivots[p] = _pivots[r];
+				_pivots[r] = temp;
+				_pivotSign = -_pivotSign;
+			}
+
+			// multipliers of L go below the pivot
+			double pivot = a[k*m + r];
+			for (int i = r+1; i < m; i++){
+				a[k*m + i] /= pivot;
+			}
+
+			// update the trailing columns
+			for (int j = k+1; j < n; j++){
+				double factor = a[j*m + r];
+				if (factor == 0){
+					continue;
+				}
+				for (int i = r+1; i < m; i++){
+					a[j*m + i] -= a[k*m + i] * factor;
+				}
+			}
+			_pivotColumns[r++] = k;
+		}
+		_rank = r;
+	}
+
+
+	/**
+	 * The Computables that eliminate with steps treat a value as zero by this same test, so that their rank and
+	 * pivots agree with the ones read from the factors
+	 *
+	 * @param maxAbs the largest absolute value in the matrix
+	 * @param m the number of rows
+	 * @param n the number of columns
+	 * @return the largest absolute value that is rounding error rather than a pivot
+	 */
+	public static double zeroTolerance(double maxAbs, int m, int n){
+		return Math.max(m, n) * Math.ulp(maxAbs);
+	}
+
+
+	/**
+	 * Unlike the rank, the determinant doesn't depend on the tolerance for a zero pivot: a badly scaled matrix
+	 * can have true pivots below it, and they still count
+	 *
+	 * @return the determinant of the factored matrix, the signed product of the diagonal of U
+	 * @throws IllegalStateException if the matrix is not square
+	 */
+	public double getDeterminant(){
+		checkSquare();
+		if (_rank < _n){
+			return _determinant;
+		}
+		double det = _pivotSign;
+		for (int i = 0; i < _n; i++){
+			det *= _lu[i*_m + i];
+		}
+		return det;
+	}
+
+
+	/**
+	 * Gaussian elimination with the same pivoting as factor(), except that a column only goes without a pivot
+	 * if its candidates are exactly zero
+	 *
+	 * @param a a square matrix, column-major. It is eliminated in place
+	 * @param n the number of rows and columns
+	 * @return the signed product of the pivots
+	 */
+	private static double determinant(double[] a, int n){
+		double det = 1;
+		for (int k = 0; k < n; k++){
+			int p = k;
+			double max = Math.abs(a[k*n + k]);
+			for (int i = k+1; i < n; i++){
+				double abs = Math.abs(a[k*n + i]);
+				if (abs > max){
+					max = abs;
+					p = i;
+				}
+			}
+			if (max == 0){
+				return 0;
+			}
+			if (p != k){
+				for (int j = k; j < n; j++){
+					double temp = a[j*n + p];
+					a[j*n + p] = a[j*n + k];
+					a[j*n + k] = temp;
+				}
+				det = -det;
+			}
+
+			double pivot = a[k*n + k];
+			det *= pivot;
+			for (int i = k+1; i < n; i++){
+				a[k*n + i] /= pivot;
+			}
+			for (int j = k+1; j < n; j++){
+				double factor = a[j*n + k];
+				if (factor == 0){
+					continue;
+				}
+				for (int i = k+1; i < n; i++){
+					a[j*n + i] -= a[k*n + i] * factor;
+				}
+			}
+		}
+		return det;
+	}
+
+
+	/**
+	 * Decides singularity numerically rather than by an exact zero determinant (see factor)
+	 *
+	 * @return true iff the factored matrix is not square or is singular to working precision
+	 */
+	public boolean isSingular(){
+		return _m != _n || _rank < _n;
+	}
+
+
+	/**
+	 * @return the number of pivots, which is the rank of the factored matrix to working precision
+	 */
+	public int getRank(){
+		return _rank;
+	}
+
+
+	/**
+	 * @return the columns with pivots, in order. They are the leftmost columns that are a basis for the
+	 * column space
+	 */
+	public int[] getPivotColumns(){
+		int[] columns = new int[_rank];
+		System.arraycopy(_pivotColumns, 0, columns, 0, _rank);
+		return columns;
+	}
+
+
+	/**
+	 * Solves AX = B with the stored factors: B is permuted like the rows of A, then solved by forward
+	 * substitution with L and back substitution with U. The right-hand sides are solved RHS_BLOCK at a time,
+	 * and each column of L or U is applied to every right-hand side of the block while it is in cache, so many
+	 * right-hand sides cost little more than one pass over the factors per block
+	 *
+	 * @param b the right-hand sides, n x numRhs and column-major. It is not modified
+	 * @param numRhs the number of right-hand sides
+	 * @return X, n x numRhs and column-major
+	 * @throws IllegalStateException if the factored matrix is singular
+	 */
+	public double[] solve(double[] b, int numRhs){
+		if (isSingular()){
+			throw new IllegalStateException("ERROR (LUDecomposition): the matrix is singular");
+		}
+		int n = _n;
+		double[] x = new double[n*numRhs];
+		for (int c = 0; c < numRhs; c++){
+			for (int i = 0; i < n; i++){
+				x[c*n + i] = b[c*n + _pivots[i]];
+			}
+		}
+		for (int start = 0; start < numRhs; start += RHS_BLOCK){
+			int end = Math.min(numRhs, start + RHS_BLOCK);
+			// L Y = PB
+			for (int k = 0; k < n; k++){
+				for (int c = start; c < end; c++){
+					double y = x[c*n + k];
+					if (y != 0){
+						for (int i = k+1; i < n; i++){
+							x[c*n + i] -= y * _lu[k*n + i];
+						}
+					}
+				}
+			}
+			// U X = Y
+			for (int k = n-1; k >= 0; k--){
+				double pivot = _lu[k*n + k];
+				for (int c = start; c < end; c++){
+					double y = x[c*n + k] /= pivot;
+					if (y != 0){
+						for (int i = 0; i < k; i++){
+							x[c*n + i] -= y * _lu[k*n + i];
+						}
+					}
+				}
+			}
+		}
+		return x;
+	}
+
+
+	/**
+	 * Finishes row reduction from U: each pivot row is divided by its pivot and subtracted from the rows above
+	 * it, last pivot first. Pivots are set to exactly 1 and the entries above them to exactly 0
+	 *
+	 * @return the reduced row echelon form of the factored matrix, m x n and column-major
+	 */
+	public double[] getReducedEchelonForm(){
+		int m = _m, n = _n;
+		double[] rref = getU();
+		for (int r = _rank-1; r >= 0; r--){
+			int p = _pivotColumns[r];
+			double pivot = rref[p*m + r];
+			for (int j = p; j < n; j++){
+				rref[j*m + r] /= pivot;
+			}
+			rref[p*m + r] = 1;
+			for (int i = 0; i < r; i++){
+				double factor = rref[p*m + i];
+				if (factor == 0){
+					continue;
+				}
+				for (int j = p+1; j < n; j++){
+					rref[j*m + i] -= factor * rref[j*m + r];
+				}
+				rref[p*m + i] = 0;
+			}
+		}
+		return rref;
+	}
+
+
+	/**
+	 * @return L, m x m unit lower triangular and column-major
+	 */
+	public double[] getL(){
+		int m = _m;
+		double[] l = new double[m*m];
+		for (int j = 0; j < m; j++){
+			l[j*m + j] = 1;
+		}
+		for (int r = 0; r < _rank; r++){
+			System.arraycopy(_lu, _pivotColumns[r]*m + r+1, l, r*m + r+1, m-r-1);
+		}
+		return l;
+	}
+
+
+	/**
+	 * @return U, m x n in row echelon form and column-major
+	 */
+	public double[] getU(){
+		int m = _m;
+		double[] u = new double[m*_n];
+		// row r of U starts at the r-th pivot, so column j holds rows up to the last pivot at or before it
+		int rows = 0;
+		for (int j = 0; j < _n; j++){
+			if (rows < _rank && _pivotColumns[rows] == j){
+				rows++;
+			}
+			System.arraycopy(_lu, j*m, u, j*m, rows);
+		}
+		return u;
+	}
+
+
+	/**
+	 * @return the row of the original matrix that ended up in each row of LU
+	 */
+	public int[] getPivots(){
+		return _pivots.clone();
+	}
+
+
+	/**
+	 * @return the number of rows of the factored matrix
+	 */
+	public int getNumRows(){
+		return _m;
+	}
+
+
+	/**
+	 * @return the number of columns of the factored matrix
+	 */
+	public int getNumCols(){
+		return _n;
+	}
+
+
+	private void checkSquare(){
+		if (_m != _n){
+			throw new IllegalStateException("ERROR (LUDecomposition): the matrix is not square");
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package backend.computations.infrastructure;
+
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only list of steps backed by a StepSource. Each step is rendered the first time it is asked for and
+ * kept in a small cache of recently used steps; older ones are evicted and rendered again if they are needed,
+ * so memory stays proportional to the steps being looked at rather than to the total number of steps
+ *
+ * @author baebi
+ */
+public class LazyStepList extends AbstractList<String> {
+	// number of rendered steps kept around
+	public static final int CACHE_SIZE = 32;
+
+	private StepSource _source;
+	private Map<Integer,String> _cache;
+
+
+	/**
+	 * @param source the source that renders the steps
+	 */
+	public LazyStepList(StepSource source){
+		_source = source;
+		_cache = new LinkedHashMap<Integer,String>(CACHE_SIZE, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer,String> eldest){
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public synchronized String get(int index){
+		if (index < 0 || index >= _source.size()){
+			throw new IndexOutOfBoundsException("Step " + index + " of " + _source.size());
+		}
+		String step = _cache.get(index);
+		if (step == null){
+			step = _source.getStep(index);
+			_cache.put(index, step);
+		}
+		return step;
+	}
+
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size(){
+		return _source.size();
+	}
+}
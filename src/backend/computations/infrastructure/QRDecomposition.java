@@ -0,0 +1,313 @@
+package backend.computations.infrastructure;
+
+import backend.blocks.Matrix;
+
+/**
+ * Householder QR decomposition of a matrix with at least as many rows as columns, A = QR. Like LUDecomposition it
+ * works on a single packed array and is meant for Computables that need orthonormal bases rather than steps; it
+ * takes O(mn^2) time
+ *
+ * @author baebi
+ */
+public class QRDecomposition {
+	private int _m, _n;
+
+	// the Householder vectors packed into one column-major array: (row,col) is at col*_m + row. Column k holds
+	// the vector of the k-th reflection on and below the diagonal, and R above the diagonal
+	private double[] _qr;
+
+	// the diagonal of R, which doesn't fit in _qr next to the Householder vectors
+	private double[] _rDiag;
+
+
+	/**
+	 * Factors a matrix
+	 *
+	 * @param matrix the matrix to factor. It is not modified
+	 * @throws IllegalArgumentException if the matrix has more columns than rows or has unset indices
+	 */
+	public QRDecomposition(Matrix matrix) throws IllegalArgumentException {
+		this(checked(matrix).toColumnMajor(), matrix.getNumRows(), matrix.getNumCols());
+	}
+
+
+	/**
+	 * Factors a matrix that is already packed
+	 *
+	 * @param values the matrix, column-major. It is factored in place, so the caller must not use it afterwards
+	 * @param m the number of rows
+	 * @param n the number of columns
+	 * @throws IllegalArgumentException if n > m
+	 */
+	public QRDecomposition(double[] values, int m, int n) throws IllegalArgumentException {
+		if (n > m){
+			throw new IllegalArgumentException("ERROR (QRDecomposition): the matrix can't have more columns than rows");
+		}
+		_m = m;
+		_n = n;
+		_qr = values;
+		_rDiag = new double[n];
+		factor();
+	}
+
+
+	/**
+	 * @param matrix a matrix
+	 * @return the matrix
+	 * @throws IllegalArgumentException if the matrix has unset indices
+	 */
+	private static Matrix checked(Matrix matrix){
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		return matrix;
+	}
+
+
+	/**
+	 * Zeroes each column below the diagonal with a Householder reflection, applying the reflection to the
+	 * columns after it. Everything walks down contiguous columns
+	 */
+	private void factor(){
+		int m = _m;
+		double[] a = _qr;
+		for (int k = 0; k < _n; k++){
+			// the length of column k on and below the diagonal, scaled so that squaring can't overflow
+			double scale = 0;
+			for (int i = k; i < m; i++){
+				scale = Math.max(scale, Math.abs(a[k*m + i]));
+			}
+			if (scale == 0){
+				_rDiag[k] = 0;
+				continue; // nothing to zero, and no reflection is stored
+			}
+			double sum = 0;
+			for (int i = k; i < m; i++){
+				double x = a[k*m + i] / scale;
+				sum += x*x;
+			}
+			double norm = scale * Math.sqrt(sum);
+			if (a[k*m + k] < 0){
+				norm = -norm; // reflect away from the diagonal entry so that nothing cancels
+			}
+
+			// the Householder vector, scaled so that its first entry is 1 + |a_kk| / norm
+			for (int i = k; i < m; i++){
+				a[k*m + i] /= norm;
+			}
+			a[k*m + k] += 1;
+
+			// reflect the trailing columns
+			for (int j = k+1; j < _n; j++){
+				double s = 0;
+				for (int i = k; i < m; i++){
+					s += a[k*m + i] * a[j*m + i];
+				}
+				s = -s / a[k*m + k];
+				for (int i = k; i < m; i++){
+					a[j*m + i] += s * a[k*m + i];
+				}
+			}
+			_rDiag[k] = -norm;
+		}
+	}
+
+
+	/**
+	 * @return Q with as many columns as the factored matrix (the "thin" Q), m x n and column-major. Its columns
+	 * are orthonormal and span the columns of the factored matrix when it has full rank
+	 */
+	public double[] getQ(){
+		int m = _m;
+		double[] q = new double[m*_n];
+		// apply the reflections, last first, to the first n columns of the identity
+		for (int k = _n-1; k >= 0; k--){
+			q[k*m + k] = 1;
+			if (_rDiag[k] == 0){
+				continue; // no reflection was stored for this column
+			}
+			for (int j = k; j < _n; j++){
+				double s = 0;
+				for (int i = k; i < m; i++){
+					s += _qr[k*m + i] * q[j*m + i];
+				}
+				s = -s / _qr[k*m + k];
+				for (int i = k; i < m; i++){
+					q[j*m + i] += s * _qr[k*m + i];
+				}
+			}
+		}
+		return q;
+	}
+
+
+	/**
+	 * @return R, n x n upper triangular and column-major
+	 */
+	public double[] getR(){
+		int n = _n;
+		double[] r = new double[n*n];
+		for (int j = 0; j < n; j++){
+			System.arraycopy(_qr, j*_m, r, j*n, j);
+			r[j*n + j] = _rDiag[j];
+		}
+		return r;
+	}
+
+
+	/**
+	 * Like LUDecomposition.isSingular, a diagonal entry of R counts as zero if it is within rounding error of the
+	 * largest entry of R, which is the size of the largest column of the factored matrix
+	 *
+	 * @return true iff the columns of the factored matrix are independent to working precision
+	 */
+	public boolean isFullRank(){
+		double max = 0;
+		for (int j = 0; j < _n; j++){
+			max = Math.max(max, Math.abs(_rDiag[j]));
+			for (int i = 0; i < j; i++){
+				max = Math.max(max, Math.abs(_qr[j*_m + i]));
+			}
+		}
+		double tolerance = Math.max(_m, _n) * Math.ulp(1.0) * max;
+		for (double d : _rDiag){
+			if (Math.abs(d) <= tolerance){
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Applies the reflections in order, so that B becomes Q^T B for the full m x m Q. The right-hand sides are
+	 * taken LUDecomposition.RHS_BLOCK at a time so that each Householder vector is reused while it is in cache
+	 *
+	 * @param b m x numRhs and column-major. It is not modified
+	 * @param numRhs the number of columns of b
+	 * @return Q^T B, m x numRhs and column-major
+	 */
+	public double[] applyQTranspose(double[] b, int numRhs){
+		double[] y = b.clone();
+		for (int start = 0; start < numRhs; start += LUDecomposition.RHS_BLOCK){
+			int end = Math.min(numRhs, start + LUDecomposition.RHS_BLOCK);
+			for (int k = 0; k < _n; k++){
+				reflect(k, y, start, end);
+			}
+		}
+		return y;
+	}
+
+
+	/**
+	 * Solves AX = B in the least squares sense, which is the exact solution when one exists: X = R^-1 (Q^T B)
+	 * restricted to its first n rows
+	 *
+	 * @param b the right-hand sides, m x numRhs and column-major. It is not modified
+	 * @param numRhs the number of right-hand sides
+	 * @return X, n x numRhs and column-major
+	 * @throws IllegalStateException if the factored matrix doesn't have full rank
+	 */
+	public double[] solve(double[] b, int numRhs){
+		if (!isFullRank()){
+			throw new IllegalStateException("ERROR (QRDecomposition): the columns of the matrix are dependent");
+		}
+		int m = _m, n = _n;
+		double[] y = applyQTranspose(b, numRhs);
+		double[] x = new double[n*numRhs];
+		for (int c = 0; c < numRhs; c++){
+			System.arraycopy(y, c*m, x, c*n, n);
+		}
+		for (int start = 0; start < numRhs; start += LUDecomposition.RHS_BLOCK){
+			int end = Math.min(numRhs, start + LUDecomposition.RHS_BLOCK);
+			// R X = Y, reading the columns of R above the diagonal
+			for (int k = n-1; k >= 0; k--){
+				for (int c = start; c < end; c++){
+					double value = x[c*n + k] /= _rDiag[k];
+					if (value != 0){
+						for (int i = 0; i < k; i++){
+							x[c*n + i] -= value * _qr[k*m + i];
+						}
+					}
+				}
+			}
+		}
+		return x;
+	}
+
+
+	/**
+	 * Finds the solution of A^T X = B with the least norm, for the underdetermined systems whose matrix is the
+	 * transpose of a tall one: R^T Z = B by forward substitution, then X = Q [Z; 0]
+	 *
+	 * @param b the right-hand sides, n x numRhs and column-major. It is not modified
+	 * @param numRhs the number of right-hand sides
+	 * @return X, m x numRhs and column-major
+	 * @throws IllegalStateException if the factored matrix doesn't have full rank
+	 */
+	public double[] solveTransposed(double[] b, int numRhs){
+		if (!isFullRank()){
+			throw new IllegalStateException("ERROR (QRDecomposition): the columns of the matrix are dependent");
+		}
+		int m = _m, n = _n;
+		double[] x = new double[m*numRhs];
+		for (int c = 0; c < numRhs; c++){
+			System.arraycopy(b, c*n, x, c*m, n);
+		}
+		for (int start = 0; start < numRhs; start += LUDecomposition.RHS_BLOCK){
+			int end = Math.min(numRhs, start + LUDecomposition.RHS_BLOCK);
+			// R^T Z = B: row k of R^T is column k of R, so each step is a dot product down a column
+			for (int k = 0; k < n; k++){
+				for (int c = start; c < end; c++){
+					double sum = x[c*m + k];
+					for (int i = 0; i < k; i++){
+						sum -= _qr[k*m + i] * x[c*m + i];
+					}
+					x[c*m + k] = sum / _rDiag[k];
+				}
+			}
+			// X = Q [Z; 0], the reflections in reverse
+			for (int k = n-1; k >= 0; k--){
+				reflect(k, x, start, end);
+			}
+		}
+		return x;
+	}
+
+
+	/**
+	 * Applies the k-th reflection to columns start to end-1 of an m-row array
+	 */
+	private void reflect(int k, double[] y, int start, int end){
+		if (_rDiag[k] == 0){
+			return; // no reflection was stored for this column
+		}
+		int m = _m;
+		for (int c = start; c < end; c++){
+			double s = 0;
+			for (int i = k; i < m; i++){
+				s += _qr[k*m + i] * y[c*m + i];
+			}
+			s = -s / _qr[k*m + k];
+			for (int i = k; i < m; i++){
+				y[c*m + i] += s * _qr[k*m + i];
+			}
+		}
+	}
+
+
+	/**
+	 * @return the number of rows of the factored matrix
+	 */
+	public int getNumRows(){
+		return _m;
+	}
+
+
+	/**
+	 * @return the number of columns of the factored matrix
+	 */
+	public int getNumCols(){
+		return _n;
+	}
+}
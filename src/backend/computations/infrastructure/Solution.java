@@ -37,6 +37,20 @@ public class Solution{
 	}
 	
 	
+	/** 
+	 * Constructor for a Solution whose steps are rendered on demand. getLatex() then returns a read-only list that
+	 * only keeps the most recently read steps in memory
+	 * 
+	 * @parm op the operation that resulted in this solution
+	 * @param inputs the input countables that resulted in this solution. THIS SHOULD BE ORDERED. (ex: A - B;  List {A, B})
+	 * @param answer the answer to the solution
+	 * @param steps the source that renders the steps to the answer
+	 */
+	public Solution(Op op, List<Countable> inputs, Countable answer, StepSource steps){
+		this(op,inputs,answer,new LazyStepList(steps));
+	}
+	
+	
 	/**
 	 * @return returns the display type of the answer of this Solution
 	 */
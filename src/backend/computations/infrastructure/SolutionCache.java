@@ -0,0 +1,299 @@
+package backend.computations.infrastructure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import backend.blocks.Countable;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.SparseMatrix;
+
+/**
+ * A bounded cache of Solutions, looked up by what they were computed from rather than by which objects they were
+ * computed from: the Op, the content of the input Countables (see Countable.contentHash) and whether steps were
+ * made. Computing the same thing on equal matrices a second time returns the Solution from the first time.
+ *
+ * Each entry is weighed by an estimate of the memory it keeps alive, and the least recently used entries are
+ * evicted once the total passes the limit. Solutions never change, so a cached one can be handed out any number
+ * of times. Hits and misses are counted for tuning the limit
+ *
+ * @author baebi
+ */
+public class SolutionCache {
+	// limit of the shared cache until it is changed
+	public static final long DEFAULT_MAX_BYTES = 64L*1024*1024;
+
+	// rough cost of things that aren't values, like object headers and references
+	private static final long OVERHEAD_BYTES = 64;
+
+	// rough cost of a step that is drawn on demand, for the records it is drawn from
+	private static final long LAZY_STEP_BYTES = 48;
+
+	private static final SolutionCache SHARED = new SolutionCache(DEFAULT_MAX_BYTES);
+
+	private long _maxBytes;
+	private long _bytes;
+	private long _hits, _misses, _evictions;
+
+	// in order of use, least recently used first
+	private LinkedHashMap<Key,Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+
+
+	/**
+	 * Computes a Solution when it isn't in the cache
+	 *
+	 * @param <E> the kind of exception the computation can throw
+	 */
+	public interface Loader<E extends Exception> {
+
+		/**
+		 * @return the newly computed Solution
+		 * @throws E if the computation fails. Failures are not cached
+		 */
+		public Solution load() throws E;
+	}
+
+
+	/**
+	 * @param maxBytes about how much memory the cached Solutions may keep alive. 0 turns caching off
+	 */
+	public SolutionCache(long maxBytes){
+		if (maxBytes < 0){
+			throw new IllegalArgumentException("ERROR (SolutionCache): the memory limit can't be negative");
+		}
+		_maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * @return the cache shared by the Parser and the Computables
+	 */
+	public static SolutionCache getShared(){
+		return SHARED;
+	}
+
+
+	/**
+	 * Returns the cached Solution to a computation, computing and caching it first if there is none. The lock is
+	 * not held while computing, so two threads asking for the same missing Solution may both compute it
+	 *
+	 * @param op the operation
+	 * @param answerOnly true if the Solution only holds the answer, without steps
+	 * @param loader computes the Solution on a miss
+	 * @param inputs the inputs of the operation, in order
+	 * @return the Solution, or null if the loader gave null
+	 * @throws E if the loader fails
+	 */
+	public <E extends Exception> Solution get(Op op, boolean answerOnly, Loader<E> loader, Countable... inputs) throws E {
+		Key key = new Key(op,answerOnly,inputs);
+		synchronized (this){
+			Entry entry = _entries.get(key);
+			if (entry != null){
+				_hits++;
+				return entry._solution;
+			}
+			_misses++;
+		}
+
+		Solution solution = loader.load();
+		if (solution == null){
+			return null;
+		}
+		long bytes = estimateBytes(solution,inputs);
+		synchronized (this){
+			if (bytes <= _maxBytes && !_entries.containsKey(key)){
+				_entries.put(key, new Entry(solution,bytes));
+				_bytes += bytes;
+				evict();
+			}
+		}
+		return solution;
+	}
+
+
+	/**
+	 * Changes the memory limit, evicting entries until the cache fits in it
+	 *
+	 * @param maxBytes about how much memory the cached Solutions may keep alive. 0 turns caching off
+	 */
+	public synchronized void setMaxBytes(long maxBytes){
+		if (maxBytes < 0){
+			throw new IllegalArgumentException("ERROR (SolutionCache): the memory limit can't be negative");
+		}
+		_maxBytes = maxBytes;
+		evict();
+	}
+
+
+	/**
+	 * @return the memory limit
+	 */
+	public synchronized long getMaxBytes(){
+		return _maxBytes;
+	}
+
+
+	/**
+	 * @return the estimated memory kept alive by the cached Solutions
+	 */
+	public synchronized long getBytes(){
+		return _bytes;
+	}
+
+
+	/**
+	 * @return the number of cached Solutions
+	 */
+	public synchronized int size(){
+		return _entries.size();
+	}
+
+
+	/**
+	 * @return the number of lookups that found a cached Solution
+	 */
+	public synchronized long getHits(){
+		return _hits;
+	}
+
+
+	/**
+	 * @return the number of lookups that had to compute the Solution
+	 */
+	public synchronized long getMisses(){
+		return _misses;
+	}
+
+
+	/**
+	 * @return the number of Solutions evicted to stay under the memory limit
+	 */
+	public synchronized long getEvictions(){
+		return _evictions;
+	}
+
+
+	/**
+	 * Empties the cache and zeroes the statistics
+	 */
+	public synchronized void clear(){
+		_entries.clear();
+		_bytes = 0;
+		_hits = _misses = _evictions = 0;
+	}
+
+
+	/**
+	 * Evicts least recently used entries until the cache fits in its limit
+	 */
+	private void evict(){
+		Iterator<Entry> it = _entries.values().iterator();
+		while (_bytes > _maxBytes && it.hasNext()){
+			_bytes -= it.next()._bytes;
+			it.remove();
+			_evictions++;
+		}
+	}
+
+
+	/**
+	 * Estimates the memory an entry keeps alive: its inputs, its answer and its steps
+	 *
+	 * @param solution the cached Solution
+	 * @param inputs the inputs in the key
+	 * @return the estimate in bytes
+	 */
+	private static long estimateBytes(Solution solution, Countable[] inputs){
+		long bytes = OVERHEAD_BYTES + estimateBytes(solution.getAnswer());
+		for (Countable input : inputs){
+			bytes += estimateBytes(input);
+		}
+		List<String> steps = solution.getLatex();
+		if (steps instanceof LazyStepList){
+			bytes += steps.size()*LAZY_STEP_BYTES; // don't draw the steps just to weigh them
+		}else if (steps != null){
+			for (String step : steps){
+				bytes += OVERHEAD_BYTES + 2L*step.length();
+			}
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * @param countable a Countable
+	 * @return the estimated memory the Countable takes
+	 */
+	private static long estimateBytes(Countable countable){
+		if (countable instanceof Matrix){
+			// a mapped matrix is weighed the same: its values are in a file rather than on the heap, but an
+			// entry keeps the file from being deleted (see MappedValues.createTemp)
+			Matrix m = (Matrix) countable;
+			return OVERHEAD_BYTES + 8L*m.getNumRows()*m.getNumCols();
+		}
+		if (countable instanceof SparseMatrix){
+			SparseMatrix m = (SparseMatrix) countable;
+			return OVERHEAD_BYTES + 12L*m.getNumNonZeros() + 4L*m.getNumCols();
+		}
+		return OVERHEAD_BYTES;
+	}
+
+
+	/**
+	 * What a Solution is looked up by. Inputs are compared by content
+	 */
+	private static class Key {
+		private final Op _op;
+		private final boolean _answerOnly;
+		private final Countable[] _inputs;
+		private final int _hash;
+
+		Key(Op op, boolean answerOnly, Countable[] inputs){
+			_op = op;
+			_answerOnly = answerOnly;
+			_inputs = inputs.clone();
+			int hash = 31*op.ordinal() + (answerOnly ? 1 : 0);
+			for (Countable input : _inputs){
+				hash = 31*hash + input.contentHash();
+			}
+			_hash = hash;
+		}
+
+		@Override
+		public int hashCode(){
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			if (other._hash != _hash || other._op != _op || other._answerOnly != _answerOnly || other._inputs.length != _inputs.length){
+				return false;
+			}
+			for (int i = 0; i < _inputs.length; i++){
+				if (!_inputs[i].contentEquals(other._inputs[i])){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+
+	/**
+	 * A cached Solution and its weight
+	 */
+	private static class Entry {
+		private final Solution _solution;
+		private final long _bytes;
+
+		Entry(Solution solution, long bytes){
+			_solution = solution;
+			_bytes = bytes;
+		}
+	}
+}
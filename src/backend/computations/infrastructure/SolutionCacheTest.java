@@ -0,0 +1,118 @@
+package backend.computations.infrastructure;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.MappedValues;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.computations.operations.M_Transpose;
+
+/**
+ * Tests for the content-addressed Solution cache
+ *
+ * @author baebi
+ */
+public class SolutionCacheTest {
+	private Matrix matrixA = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,4.0}});
+	private Matrix sameAsA = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,4.0}});
+	private Matrix matrixB = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,5.0}});
+
+	// counts how many times it actually computes
+	private static class TransposeLoader implements SolutionCache.Loader<RuntimeException> {
+		private Matrix _matrix;
+		private int _loads = 0;
+
+		TransposeLoader(Matrix matrix){
+			_matrix = matrix;
+		}
+
+		@Override
+		public Solution load(){
+			_loads++;
+			return new M_Transpose(_matrix,true).getSolution();
+		}
+	}
+
+	@Test // equal content is a hit even if it is a different object
+	public void contentHitTest(){
+		SolutionCache cache = new SolutionCache(SolutionCache.DEFAULT_MAX_BYTES);
+		TransposeLoader loader = new TransposeLoader(matrixA);
+		Solution first = cache.get(Op.M_TRANSPOSE, true, loader, matrixA);
+		Solution second = cache.get(Op.M_TRANSPOSE, true, loader, sameAsA);
+		assertTrue(first == second);
+		assertTrue(loader._loads == 1);
+		assertTrue(cache.getHits() == 1 && cache.getMisses() == 1);
+	}
+
+	@Test // different values, display or mode are different keys
+	public void missTest(){
+		SolutionCache cache = new SolutionCache(SolutionCache.DEFAULT_MAX_BYTES);
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixA), matrixA);
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixB), matrixB);
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixA), matrixA.withDisplayType(DisplayType.WHOLENUMBER));
+		cache.get(Op.M_TRANSPOSE, false, new TransposeLoader(matrixA), matrixA);
+		assertTrue(cache.getHits() == 0 && cache.getMisses() == 4);
+		assertTrue(cache.size() == 4);
+	}
+
+	@Test // the least recently used entries go first once the limit is passed
+	public void evictionTest(){
+		SolutionCache cache = new SolutionCache(SolutionCache.DEFAULT_MAX_BYTES);
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixA), matrixA);
+		long oneEntry = cache.getBytes();
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixB), matrixB);
+		cache.get(Op.M_TRANSPOSE, true, new TransposeLoader(matrixA), matrixA); // A is now the most recent
+		cache.setMaxBytes(oneEntry);
+		assertTrue(cache.size() == 1 && cache.getEvictions() == 1);
+
+		TransposeLoader loader = new TransposeLoader(matrixA);
+		cache.get(Op.M_TRANSPOSE, true, loader, matrixA);
+		assertTrue(loader._loads == 0);
+
+		cache.setMaxBytes(0); // caching off
+		assertTrue(cache.size() == 0 && cache.getBytes() == 0);
+		cache.get(Op.M_TRANSPOSE, true, loader, matrixA);
+		assertTrue(loader._loads == 1 && cache.size() == 0);
+	}
+
+	@Test // content hashes follow content
+	public void contentHashTest(){
+		assertTrue(matrixA.contentHash() == sameAsA.contentHash());
+		assertTrue(matrixA.contentEquals(sameAsA));
+		assertTrue(!matrixA.contentEquals(matrixB));
+		assertTrue(matrixA.transposeView().transposeView().contentEquals(matrixA));
+		assertTrue(!matrixA.contentEquals(matrixA.withDisplayType(DisplayType.WHOLENUMBER)));
+	}
+
+	@Test // a mapped answer is weighed by its values, so it can't pin a large file
+	public void mappedWeightTest() throws Exception {
+		MappedValues values = MappedValues.createTemp(100*100);
+		final Matrix mapped = new Matrix(DisplayType.DECIMAL, 100, 100, values);
+		SolutionCache cache = new SolutionCache(8L*100*100);
+		cache.get(Op.M_TRANSPOSE, true, new SolutionCache.Loader<RuntimeException>(){
+			@Override
+			public Solution load(){
+				return new Solution(Op.M_TRANSPOSE, new ArrayList<Countable>(), mapped, new ArrayList<String>());
+			}
+		}, matrixA);
+		assertTrue(cache.size() == 0);
+	}
+
+	@Test // mapped matrices are looked up by where their values are, without reading them
+	public void mappedIdentityTest() throws Exception {
+		MappedValues values = MappedValues.createTemp(2*2);
+		values.put(0, matrixA.toColumnMajor(), 0, 4);
+		Matrix mapped = new Matrix(DisplayType.DECIMAL, 2, 2, values);
+		Matrix sameValues = new Matrix(DisplayType.DECIMAL, 2, 2, values);
+		assertTrue(mapped.contentEquals(sameValues) && mapped.contentHash() == sameValues.contentHash());
+		assertTrue(mapped.transposeView().transposeView().contentEquals(mapped));
+		assertTrue(!mapped.contentEquals(mapped.transposeView()));
+		assertTrue(!mapped.contentEquals(matrixA) && !matrixA.contentEquals(mapped));
+	}
+}
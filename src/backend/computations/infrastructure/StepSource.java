@@ -0,0 +1,24 @@
+package backend.computations.infrastructure;
+
+/**
+ * An indexable source of steps. Implementors keep only compact records of what happened during a computation
+ * and render the LaTeX for a step when it is asked for, so the strings never all exist at once
+ *
+ * @author baebi
+ */
+public interface StepSource {
+
+	/**
+	 * @return the total number of steps
+	 */
+	public int size();
+
+
+	/**
+	 * Renders one step
+	 *
+	 * @param index the index of the step, from 0 to size()-1
+	 * @return the LaTeX string for the step
+	 */
+	public String getStep(int index);
+}
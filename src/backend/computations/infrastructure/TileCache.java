@@ -0,0 +1,289 @@
+package backend.computations.infrastructure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import backend.blocks.Matrix;
+
+/**
+ * A bounded cache of square tiles read from matrices, for computations that work on matrices too large for the
+ * heap a tile at a time (see MM_Multiply.mappedMultiplyAdd). Only the tiles in the cache are on the heap.
+ *
+ * Tiles can be asked for ahead of time with prefetch, which reads them on a background thread while the caller
+ * computes with the tiles it already has. Each tile is weighed by its size, and the least recently used tiles
+ * are evicted once the total passes the limit; a tile that is evicted and asked for again is read again. Hits
+ * and misses are counted for tuning the limit
+ *
+ * @author baebi
+ */
+public class TileCache {
+	// tiles of 512 x 512 doubles, 2MB each
+	public static final int DEFAULT_TILE_SIZE = 512;
+
+	// room for 128 default tiles
+	public static final long DEFAULT_MAX_BYTES = 256L*1024*1024;
+
+	// reads prefetched tiles. One thread is enough, since reads from one disk don't go faster in parallel, and
+	// it is a daemon so it never keeps the program running
+	private static final ExecutorService READER = Executors.newSingleThreadExecutor(new ThreadFactory(){
+		@Override
+		public Thread newThread(Runnable r){
+			Thread thread = new Thread(r, "TileCache reader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final int _tileSize;
+	private final long _maxBytes;
+	private long _bytes;
+	private long _hits, _misses, _evictions;
+
+	// in order of use, least recently used first. A tile being prefetched is in here before it is read
+	private LinkedHashMap<Key,Entry> _tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+
+	/**
+	 * @param tileSize the number of rows and columns in a tile. Tiles at the bottom and right edges of a matrix
+	 * are smaller
+	 * @param maxBytes about how much memory the cached tiles may take. It should hold at least the tiles being
+	 * computed with and the ones being prefetched, or prefetched tiles are evicted before they are used
+	 */
+	public TileCache(int tileSize, long maxBytes){
+		if (tileSize < 1){
+			throw new IllegalArgumentException("ERROR (TileCache): tiles must have at least one row and column");
+		}
+		if (maxBytes < 0){
+			throw new IllegalArgumentException("ERROR (TileCache): the memory limit can't be negative");
+		}
+		_tileSize = tileSize;
+		_maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * @return a cache with the default tile size and memory limit
+	 */
+	public static TileCache withDefaults(){
+		return new TileCache(DEFAULT_TILE_SIZE, DEFAULT_MAX_BYTES);
+	}
+
+
+	/**
+	 * Returns a tile, reading it if it isn't in the cache. Waits for the read to finish if the tile is being
+	 * prefetched
+	 *
+	 * @param matrix the matrix the tile is from
+	 * @param tileRow the row of the tile: it starts at row tileRow*getTileSize() of the matrix
+	 * @param tileCol the column of the tile: it starts at column tileCol*getTileSize() of the matrix
+	 * @return the values of the tile, packed in column-major order. They must not be changed
+	 */
+	public double[] get(Matrix matrix, int tileRow, int tileCol){
+		Key key = new Key(matrix,tileRow,tileCol);
+		FutureTask<double[]> read = null;
+		Future<double[]> tile;
+		synchronized (this){
+			Entry entry = _tiles.get(key);
+			if (entry != null){
+				_hits++;
+				tile = entry._tile;
+			}else{
+				_misses++;
+				read = newRead(key);
+				tile = read;
+				add(key,read);
+			}
+		}
+		if (read != null){
+			read.run(); // on this thread, since it is needed now
+		}
+		try{
+			return tile.get();
+		}catch(ExecutionException e){
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("ERROR (TileCache): "+e.getCause().getMessage());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("ERROR (TileCache): interrupted while reading a tile");
+		}
+	}
+
+
+	/**
+	 * Starts reading a tile on the background thread, unless it is already in the cache. Returns at once
+	 *
+	 * @param matrix the matrix the tile is from
+	 * @param tileRow the row of the tile
+	 * @param tileCol the column of the tile
+	 */
+	public void prefetch(Matrix matrix, int tileRow, int tileCol){
+		Key key = new Key(matrix,tileRow,tileCol);
+		synchronized (this){
+			if (_tiles.containsKey(key)){
+				return;
+			}
+			FutureTask<double[]> read = newRead(key);
+			add(key,read);
+			READER.execute(read);
+		}
+	}
+
+
+	/**
+	 * @param key a tile
+	 * @return a task that reads the tile from its matrix
+	 */
+	private FutureTask<double[]> newRead(final Key key){
+		final int row = key._tileRow*_tileSize;
+		final int col = key._tileCol*_tileSize;
+		final int numRows = Math.min(_tileSize, key._matrix.getNumRows() - row);
+		final int numCols = Math.min(_tileSize, key._matrix.getNumCols() - col);
+		if (row < 0 || col < 0 || numRows < 1 || numCols < 1){
+			throw new IllegalArgumentException("ERROR (TileCache): tile ("+key._tileRow+","+key._tileCol+") is outside the matrix");
+		}
+		return new FutureTask<>(new Callable<double[]>(){
+			@Override
+			public double[] call(){
+				double[] tile = new double[numRows*numCols];
+				key._matrix.readBlock(row, col, numRows, numCols, tile);
+				return tile;
+			}
+		});
+	}
+
+
+	/**
+	 * Adds a tile, then evicts least recently used tiles other than it until the cache fits in its limit
+	 *
+	 * @param key the tile
+	 * @param tile its values, or the read that will produce them
+	 */
+	private void add(Key key, Future<double[]> tile){
+		long bytes = 8L*Math.min(_tileSize, key._matrix.getNumRows() - key._tileRow*_tileSize)*
+				Math.min(_tileSize, key._matrix.getNumCols() - key._tileCol*_tileSize);
+		_tiles.put(key, new Entry(tile,bytes));
+		_bytes += bytes;
+		Iterator<Map.Entry<Key,Entry>> it = _tiles.entrySet().iterator();
+		while (_bytes > _maxBytes && it.hasNext()){
+			Map.Entry<Key,Entry> eldest = it.next();
+			if (eldest.getKey().equals(key)){
+				break; // the newest tile is last, so everything before it is gone
+			}
+			_bytes -= eldest.getValue()._bytes;
+			it.remove();
+			_evictions++;
+		}
+	}
+
+
+	/**
+	 * @return the number of rows and columns in a tile
+	 */
+	public int getTileSize(){
+		return _tileSize;
+	}
+
+
+	/**
+	 * @return the memory limit
+	 */
+	public long getMaxBytes(){
+		return _maxBytes;
+	}
+
+
+	/**
+	 * @return the memory taken by the cached tiles, including ones still being read
+	 */
+	public synchronized long getBytes(){
+		return _bytes;
+	}
+
+
+	/**
+	 * @return the number of lookups that found the tile cached or being prefetched
+	 */
+	public synchronized long getHits(){
+		return _hits;
+	}
+
+
+	/**
+	 * @return the number of lookups that had to read the tile
+	 */
+	public synchronized long getMisses(){
+		return _misses;
+	}
+
+
+	/**
+	 * @return the number of tiles evicted to stay under the memory limit
+	 */
+	public synchronized long getEvictions(){
+		return _evictions;
+	}
+
+
+	/**
+	 * Empties the cache and zeroes the statistics
+	 */
+	public synchronized void clear(){
+		_tiles.clear();
+		_bytes = 0;
+		_hits = _misses = _evictions = 0;
+	}
+
+
+	/**
+	 * A tile and the memory it takes
+	 */
+	private static class Entry {
+		private final Future<double[]> _tile;
+		private final long _bytes;
+
+		Entry(Future<double[]> tile, long bytes){
+			_tile = tile;
+			_bytes = bytes;
+		}
+	}
+
+
+	/**
+	 * What a tile is looked up by. Matrices are compared by identity, since reading a tile is cheaper than
+	 * hashing a matrix that doesn't fit on the heap
+	 */
+	private static class Key {
+		private final Matrix _matrix;
+		private final int _tileRow, _tileCol;
+
+		Key(Matrix matrix, int tileRow, int tileCol){
+			_matrix = matrix;
+			_tileRow = tileRow;
+			_tileCol = tileCol;
+		}
+
+		@Override
+		public int hashCode(){
+			return 31*(31*System.identityHashCode(_matrix) + _tileRow) + _tileCol;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if (!(other instanceof Key)){
+				return false;
+			}
+			Key k = (Key) other;
+			return k._matrix == _matrix && k._tileRow == _tileRow && k._tileCol == _tileCol;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package backend.computations.infrastructure;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+
+/**
+ * Tests for the bounded tile cache
+ *
+ * @author baebi
+ */
+public class TileCacheTest {
+	// 5x3, with the value at (row,col) being 10*row + col
+	private Matrix matrix = new Matrix(DisplayType.DECIMAL, new Double[][]{{0.0,10.0,20.0,30.0,40.0},{1.0,11.0,21.0,31.0,41.0},{2.0,12.0,22.0,32.0,42.0}});
+
+	@Test // tiles are packed column by column, and the ones on the edges are smaller
+	public void tileTest(){
+		TileCache cache = new TileCache(2, TileCache.DEFAULT_MAX_BYTES);
+		double[] tile = cache.get(matrix,1,0);
+		assertTrue(tile.length == 4 && tile[0] == 20 && tile[1] == 30 && tile[2] == 21 && tile[3] == 31);
+		double[] corner = cache.get(matrix,2,1);
+		assertTrue(corner.length == 1 && corner[0] == 42);
+		assertTrue(cache.get(matrix,1,0) == tile);
+		assertTrue(cache.getHits() == 1 && cache.getMisses() == 2);
+		try{
+			cache.get(matrix,3,0);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+	@Test // a prefetched tile is a hit, and is the same as one read on demand
+	public void prefetchTest(){
+		TileCache cache = new TileCache(2, TileCache.DEFAULT_MAX_BYTES);
+		cache.prefetch(matrix,0,1);
+		double[] tile = cache.get(matrix,0,1);
+		assertTrue(cache.getHits() == 1 && cache.getMisses() == 0);
+		assertTrue(tile.length == 2 && tile[0] == 2 && tile[1] == 12);
+	}
+
+	@Test // the least recently used tiles go first once the limit is passed
+	public void evictionTest(){
+		TileCache cache = new TileCache(2, 8*4*2); // two full tiles
+		double[] first = cache.get(matrix,0,0);
+		cache.get(matrix,1,0);
+		cache.get(matrix,0,0); // now (1,0) is the least recently used
+		cache.get(matrix,1,1);
+		assertTrue(cache.getEvictions() == 1 && cache.getBytes() <= cache.getMaxBytes());
+		assertTrue(cache.get(matrix,0,0) == first);
+		cache.get(matrix,1,0);
+		assertTrue(cache.getMisses() == 4);
+	}
+}
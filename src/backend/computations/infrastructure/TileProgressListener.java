@@ -0,0 +1,18 @@
+package backend.computations.infrastructure;
+
+/**
+ * For the objects that follow a computation done a tile at a time (see MM_Multiply.mappedMultiplyAdd), such as a
+ * progress bar
+ *
+ * @author baebi
+ */
+public interface TileProgressListener {
+
+	/**
+	 * Called on the computing thread each time a tile of the answer is finished
+	 *
+	 * @param tilesDone the number of tiles of the answer finished so far
+	 * @param totalTiles the number of tiles in the answer
+	 */
+	public void tileComputed(int tilesDone, int totalTiles);
+}
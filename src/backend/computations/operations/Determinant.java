@@ -5,6 +5,7 @@ import java.util.*;
 import backend.blocks.*;
 import backend.blocks.Countable.DisplayType;
 import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
 import backend.computations.infrastructure.Solution;
 import matrixDraw.*;
 
@@ -17,7 +18,6 @@ public class Determinant extends Computable
   	private Solution _solution;
   	private List<String> steps=new ArrayList<>();
   	private DisplayType answerDisplayType;
-  	private boolean _hideSteps = false;
 
 	@Override
 	public Solution getSolution()
@@ -32,41 +32,56 @@ public class Determinant extends Computable
 	 */
 	public Determinant(Matrix matrix) throws Exception
 	{
-		
-		steps.add(" \\mathrm{\\vspace{10mm} Calculate \\ the \\ Determinant \\\\ \\vspace{10mm}");
+		this(matrix,false);
+	}
 
-		answerDisplayType = matrix.getDisplayType();
-		steps.add("\\vspace{10mm} \\hspace{15mm} " +MatrixDraw.getCorrectLatex(answerDisplayType,matrix));
-		
-		Double[][] values = matrix.getValues();
 
-		for(int i = 0; i < values.length; i++)
+	/** Finds the determinant of a matrix
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if only the answer is wanted. The determinant is then found by LU
+	 * decomposition, shared with the other Computables through the FactorizationCache, and no steps are generated
+	 */
+	public Determinant(Matrix matrix, boolean answerOnly) throws Exception
+	{
+		_answerOnly=answerOnly;
+		answerDisplayType = matrix.getDisplayType();
+		if (!matrix.isComplete())
 		{
-			for (int j = 0; j < values[0].length; j++)
-			{
-				if (values[i][j] == null)
-				{
-					throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
-				}
-			}
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
 		}
-		Scalar answer=calcDet(values,0);
+
+		if (matrix.getNumRows()!=matrix.getNumCols())
+			throw new IllegalArgumentException("Matrix must have the same number of columns and rows");
 
 		List<Countable> inputs = new ArrayList<>();
 		inputs.add(matrix);
-		
-		List<String> latex;
-		if (!_hideSteps){
-			latex = toLatex();
-		}else{
-			latex = new ArrayList<>();
-			latex.add("\\mathrm{\\vspace{10mm} Calculate \\ the \\ Determinant}");
-			latex.add("\\mathrm{\\vspace{10mm}  Steps \\ omitted \\ for \\ matrices  \\ larger \\ than \\ 4 \\ by \\ 4, \\ for \\ your \\ own \\ good!");
-			List<String> l = toLatex();
-			latex.add("\\vspace{10mm}"+l.get(l.size()-1));
+
+		//cofactor expansion takes factorial time, so only use it when its steps will be shown
+		if (answerOnly || matrix.getNumCols() > 4)
+		{
+			double det=FactorizationCache.getShared().getLU(matrix).getDeterminant();
+			Scalar answer=new Scalar(det,answerDisplayType);
+
+			List<String> latex = new ArrayList<>();
+			if (!answerOnly){
+				latex.add("\\mathrm{\\vspace{10mm} Calculate \\ the \\ Determinant}");
+				latex.add("\\vspace{10mm} \\mathrm{Steps \\ omitted \\ for \\ matrices \\ larger \\ than \\ 4 \\ by \\ 4, \\ for \\ your \\ own \\ good!}");
+				String detString = shortenDecimal(Double.toString(det));
+				latex.add("\\vspace{10mm}\\vspace{15mm}\\hspace{0mm}\\mathrm{The \\ overall \\ determinant \\ is \\ "+detString+".}");
+			}
+			steps = latex;
+			_solution = new Solution(Op.DETERMINANT, inputs, answer, latex);
+			return;
 		}
+
+		steps.add(" \\mathrm{\\vspace{10mm} Calculate \\ the \\ Determinant \\\\ \\vspace{10mm}");
+		steps.add("\\vspace{10mm} \\hspace{15mm} " +MatrixDraw.getCorrectLatex(answerDisplayType,matrix));
 		
-		_solution = new Solution(Op.DETERMINANT, inputs, answer, latex);
+		Double[][] values = matrix.getValues();
+		Scalar answer=calcDet(values,0);
+		
+		_solution = new Solution(Op.DETERMINANT, inputs, answer, toLatex());
 	}
 
 	/**returns the matrix without the y-th row, and the x-th column*/
@@ -103,9 +118,6 @@ public class Determinant extends Computable
 		if (values.length!=values[0].length)
 			throw new IllegalArgumentException("Matrix must have the same number of columns and rows");
 
-		if (values.length > 4){
-			_hideSteps = true;
-		}
 		//if it is just a 1x1 matrix
 		if (values.length==1)
 		{
@@ -239,4 +239,59 @@ public class DeterminantTest
 		catch (Exception e)
 		{}
 	}
+
+	@Test
+	public void size5() throws Exception
+	{
+		//large enough that the steps are hidden and the LU path is used
+		Double[][] v=new Double[][]{{2.0,1.0,0.0,0.0,0.0},{1.0,2.0,1.0,0.0,0.0},{0.0,1.0,2.0,1.0,0.0},
+			{0.0,0.0,1.0,2.0,1.0},{0.0,0.0,0.0,1.0,2.0}};
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		Determinant d=new Determinant(m);
+		Solution s=d.getSolution();
+		assertTrue(Math.abs(((Scalar)(s.getAnswer())).getValue()-6)<1e-9);
+		assertTrue(d.toLatex().size()==3);
+	}
+
+	@Test
+	public void answerOnly() throws Exception
+	{
+		Double[][] v=new Double[][]{{0.0,3.0,1.0},{2.0,1.0,4.0},{5.0,2.0,2.0}};
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		double steps=((Scalar)(new Determinant(m).getSolution().getAnswer())).getValue();
+		Determinant d=new Determinant(m,true);
+		double lu=((Scalar)(d.getSolution().getAnswer())).getValue();
+		assertTrue(Math.abs(steps-lu)<1e-9);
+		assertTrue(d.toLatex().size()==0);
+	}
+
+	@Test
+	public void large() throws Exception
+	{
+		//a 60x60 triangular matrix: the determinant is the product of the diagonal
+		int n=60;
+		Double[][] v=new Double[n][n];
+		double expected=1;
+		for (int i=0;i<n;i++)
+		{
+			for (int j=0;j<n;j++)
+			{
+				v[i][j]=(j<=i) ? new Double(1+(i+j)%3) : new Double(0);
+			}
+			expected*=v[i][i];
+		}
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		double det=((Scalar)(new Determinant(m).getSolution().getAnswer())).getValue();
+		assertTrue(Math.abs(det-expected)<1e-9*Math.abs(expected));
+	}
+
+	@Test
+	public void singular() throws Exception
+	{
+		Double[][] v=new Double[][]{{1.0,2.0,3.0,4.0,5.0},{2.0,4.0,6.0,8.0,10.0},{0.0,1.0,0.0,1.0,0.0},
+			{3.0,1.0,4.0,1.0,5.0},{9.0,2.0,6.0,5.0,3.0}};
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		double det=((Scalar)(new Determinant(m).getSolution().getAnswer())).getValue();
+		assertTrue(Math.abs(det)<1e-9);
+	}
 }
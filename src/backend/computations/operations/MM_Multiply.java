@@ -3,17 +3,26 @@
  */
 package backend.computations.operations;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import matrixDraw.MatrixDraw;
 
 import backend.blocks.Countable;
 import backend.blocks.Countable.DisplayType;
+import backend.blocks.MappedValues;
 import backend.blocks.Matrix;
 import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
+import backend.computations.infrastructure.TileCache;
+import backend.computations.infrastructure.TileProgressListener;
 
 /** 
  * Performs a matrix multiplication operation
@@ -25,6 +34,26 @@ public class MM_Multiply extends Computable {
 	private Matrix _matrixA, _matrixB,_step1Matrix;
 	private DisplayType _displayType;
 	
+	// the tiles of the arguments when the product is computed out of core, or null when it is computed on the heap
+	private TileCache _tileCache;
+	
+	// the steps spell out the equation for this many indices of the product, so only these get explanation
+	// strings. MM_MultiplyAdd shows its equations the same way
+	private static final int SHOWN_EQUATIONS = 5;
+	
+	// the product is computed in tiles of this many rows of the first factor by this many of its columns,
+	// 128 x 128 doubles = 128KB, which stays in L2 while every column of the product in a task reuses it
+	private static final int TILE_ROWS = 128;
+	private static final int TILE_INNER = 128;
+	
+	// products with fewer multiply-adds than this are not worth splitting across threads
+	private static final long PARALLEL_THRESHOLD = 64L*64*64;
+	
+	// the fewest product columns one fork-join task handles
+	private static final int MIN_TASK_COLUMNS = 16;
+	
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+	
 	
 	/* (non-Javadoc)
 	 * @see backend.operations.Computable#getSolution()
@@ -42,6 +71,36 @@ public class MM_Multiply extends Computable {
 	 * @param matrixB the second factor
 	 */
 	public MM_Multiply(Matrix matrixA, Matrix matrixB){
+		this(matrixA,matrixB,false);
+	}
+	
+	
+	/** 
+	 * Creates the Solution to a multiplication
+	 * 
+	 * @param matrixA the first factor
+	 * @param matrixB the second factor
+	 * @param answerOnly true if only the product is wanted, in which case no steps are generated
+	 */
+	public MM_Multiply(Matrix matrixA, Matrix matrixB, boolean answerOnly){
+		this(matrixA,matrixB,answerOnly,null,null);
+	}
+	
+	
+	/** 
+	 * Creates the Solution to a multiplication, out of core if asked to: the product is computed a tile at a time
+	 * into a memory-mapped file, with only the tiles in tileCache on the heap (see mappedMultiplyAdd). Products
+	 * with a mapped factor are always computed this way, with a default cache if none is given
+	 * 
+	 * @param matrixA the first factor
+	 * @param matrixB the second factor
+	 * @param answerOnly true if only the product is wanted, in which case no steps are generated
+	 * @param tileCache the cache to read tiles of the factors through, or null to compute on the heap when
+	 * neither factor is mapped
+	 * @param listener told as each tile of an out of core product is finished, or null
+	 */
+	public MM_Multiply(Matrix matrixA, Matrix matrixB, boolean answerOnly, TileCache tileCache, TileProgressListener listener){
+		_answerOnly = answerOnly;
 		_matrixA = matrixA;
 		_matrixB = matrixB;
 		List<Countable> inputs = new ArrayList<>();
@@ -50,45 +109,32 @@ public class MM_Multiply extends Computable {
 		DisplayType answerDisplayType = resolveDisplayType(inputs);
 		_displayType = answerDisplayType;
 		
-		_matrixA.setDisplayType(answerDisplayType);
-		_matrixB.setDisplayType(answerDisplayType);
-		
-		Double[][] aValues = matrixA.getValues();
-		Double[][] bValues = matrixB.getValues();
-		String[][] aDisplay = matrixA.getDisplayValues();
-		String[][] bDisplay = matrixB.getDisplayValues();
-		
-		if(aValues.length != bValues[0].length){
+		if(matrixA.getNumCols() != matrixB.getNumRows()){
 			throw new IllegalArgumentException("Number of columns of first matrix must equal number of rows of second matrix");
 		}
+		if (!matrixA.isComplete() || !matrixB.isComplete()){
+			throw new IllegalArgumentException("ERROR: Matrix should not contain null indices");
+		}
 		
-		// we will end up with two steps: an answer, and a matrix of strings showing how each index was calculated
-		Double[][] result = new Double[matrixB.getNumCols()][matrixA.getNumRows()];
-		String[][] multStep = new String[matrixB.getNumCols()][matrixA.getNumRows()];
-		
-		// for each index in the result matrix
-		for (int col = 0; col < result.length; col++){
-			for (int row = 0; row < result[0].length; row++){
-				String expanded = "";
-				double res = 0;
-				for (int i = 0; i < matrixA.getNumCols(); i++){
-					if (aValues[i][row] == null || bValues[col][i] == null){
-						throw new IllegalArgumentException("ERROR: Matrix should not contain null indices");
-					}
-					res += aValues[i][row] * bValues[col][i];
-					expanded += "("+shortenDecimal(aDisplay[i][row])+" \\ * \\ "+shortenDecimal(bDisplay[col][i])+") \\ + \\ ";
-				}
-				expanded = expanded.substring(0,expanded.length()-7);
-				expanded += " \\ = \\ "+shortenDecimal(getDisplayValue(res,answerDisplayType));
-				result[col][row] = res; 
-				multStep[col][row] = expanded;
+		if (tileCache != null || matrixA.isMapped() || matrixB.isMapped()){ // the product is streamed into a file
+			_tileCache = (tileCache != null) ? tileCache : TileCache.withDefaults();
+			try{
+				_step1Matrix = mappedMultiplyAdd(1,matrixA,matrixB,0,null,answerDisplayType,_tileCache,listener);
+			}catch(IOException e){
+				throw new IllegalArgumentException("ERROR: "+e.getMessage());
 			}
+			_solution = new Solution(Op.MULTIPLY,inputs,_step1Matrix,toLatex());
+			return;
 		}
-		_step1Matrix = new Matrix(DisplayType.CUSTOM,result);
-		_step1Matrix.setCustomDisplay(multStep);
+		
+		// we will end up with two steps: an answer, and a matrix of strings showing how each index was calculated
+		int numRows = matrixA.getNumRows();
+		int numCols = matrixB.getNumCols();
+		double[] result = product(matrixA.toColumnMajor(),matrixB.toColumnMajor(),numRows,matrixA.getNumCols(),numCols);
+		_step1Matrix = explainedAnswer(this,null,matrixA,matrixB,null,true,result,answerDisplayType,answerOnly);
 		
 		// second step shows the resulting matrix product
-		Matrix step2Matrix = new Matrix(answerDisplayType,result);
+		Matrix step2Matrix = new Matrix(answerDisplayType,numRows,numCols,result);
 		
 		List<String> latex = toLatex();
 		
@@ -97,6 +143,406 @@ public class MM_Multiply extends Computable {
 	}
 
 
+	/** 
+	 * Makes the answer of s * A * B + C with the equation at each index the steps show, or at every index if
+	 * the answer is itself drawn from them. The scalar and the added matrix are optional, so MM_MultiplyAdd
+	 * words its equations the same way
+	 * 
+	 * @param computable formats the numbers
+	 * @param scalar what the product is multiplied by, or null for none
+	 * @param matrixA the first factor
+	 * @param matrixB the second factor
+	 * @param matrixC the matrix added to the product, or null for none
+	 * @param isPlus true if matrixC is added, false if it is subtracted
+	 * @param result the answer, column-major
+	 * @param displayType the DisplayType of the answer
+	 * @param answerOnly true if no steps are wanted, in which case no equations are made
+	 * @return the answer as a CUSTOM matrix
+	 */
+	static Matrix explainedAnswer(Computable computable, Scalar scalar, Matrix matrixA, Matrix matrixB, Matrix matrixC,
+			boolean isPlus, double[] result, DisplayType displayType, boolean answerOnly){
+		int numRows = matrixA.getNumRows();
+		int numCols = matrixB.getNumCols();
+		// only the indices the steps show get an explanation string, unless the answer is itself drawn from them
+		int toExplain = (displayType == DisplayType.CUSTOM) ? numRows*numCols : Math.min(SHOWN_EQUATIONS,numRows*numCols);
+		if (answerOnly){
+			toExplain = 0;
+		}
+		String[][] explanations = (toExplain == 0) ? null : new String[numCols][numRows];
+		for (int cell = 0; cell < toExplain; cell++){
+			int col = cell / numRows;
+			int row = cell % numRows;
+			StringBuilder expanded = new StringBuilder();
+			if (scalar != null){
+				expanded.append(computable.shortenDecimal(scalar.getDisplayValue(displayType))).append(" \\ * \\ [");
+			}
+			for (int i = 0; i < matrixA.getNumCols(); i++){
+				if (i > 0){
+					expanded.append(" \\ + \\ ");
+				}
+				expanded.append("(").append(computable.shortenDecimal(computable.getDisplayValue(matrixA.get(row,i),displayType))).append(" \\ * \\ ")
+					.append(computable.shortenDecimal(computable.getDisplayValue(matrixB.get(i,col),displayType))).append(")");
+			}
+			if (scalar != null){
+				expanded.append("]");
+			}
+			if (matrixC != null){
+				expanded.append(isPlus ? " \\ + \\ " : " \\ - \\ ").append(computable.shortenDecimal(computable.getDisplayValue(matrixC.get(row,col),displayType)));
+			}
+			expanded.append(" \\ = \\ ").append(computable.shortenDecimal(computable.getDisplayValue(result[col*numRows + row],displayType)));
+			explanations[col][row] = expanded.toString();
+		}
+		return new Matrix(DisplayType.CUSTOM,numRows,numCols,result,explanations);
+	}
+	
+	
+	/** 
+	 * Adds the steps that show the equations at the first SHOWN_EQUATIONS indices of an answer made by
+	 * explainedAnswer
+	 * 
+	 * @param steps the steps to add to
+	 * @param explained the answer
+	 */
+	static void addEquationSteps(List<String> steps, Matrix explained){
+		steps.add("\\vspace{15mm} 2. \\ \\mathrm{Equation \\ at \\ each \\ index}");
+		int counter = 0;
+		for (int i = 0; i < explained.getNumCols() && counter < SHOWN_EQUATIONS; i++){
+			for (int j = 0; j < explained.getNumRows(); j++){
+				steps.add("\\vspace{15mm} \\hspace{15mm} \\mathrm{Row \\ "+(j+1)+" \\ of \\ 1st \\ matrix \\ multiplied \\ with \\ column \\ " + (i+1) + " \\ of \\ 2nd \\ matrix: }\\\\ \\vspace{10mm} \\hspace{60mm} "+explained.getCustomDisplayIndex(j,i));
+				counter++;
+				if (counter >= SHOWN_EQUATIONS){
+					steps.add("\\vspace{25mm} \\hspace{15mm} \\mathrm{Continue \\ by \\ multiplying \\ together \\ the \\ remaining \\ rows \\ and \\ columns \\\\ of \\ the \\ matrices}");
+					break;
+				}
+			}
+		}
+	}
+	
+	
+	/** 
+	 * Multiplies two matrices stored as packed column-major arrays, with no display work. Large products
+	 * are split by columns across a fork-join pool
+	 * 
+	 * @param a the first factor, aRows by aCols
+	 * @param b the second factor, aCols by bCols
+	 * @param aRows the number of rows of a
+	 * @param aCols the number of columns of a (and rows of b)
+	 * @param bCols the number of columns of b
+	 * @return the aRows by bCols product, column-major
+	 */
+	public static double[] product(double[] a, double[] b, int aRows, int aCols, int bCols){
+		return multiplyAdd(1,a,b,0,null,aRows,aCols,bCols);
+	}
+	
+	
+	/** 
+	 * Computes alpha*ab + beta*c in one pass over packed column-major arrays, writing straight into the
+	 * result instead of making ab and alpha*ab first. The result starts as beta*c and the products are
+	 * added to it, with alpha folded into each entry of b as it is read
+	 * 
+	 * @param alpha what the product is scaled by
+	 * @param a the first factor, aRows by aCols
+	 * @param b the second factor, aCols by bCols
+	 * @param beta what c is scaled by
+	 * @param c the matrix to add, aRows by bCols, or null to add nothing. It is not changed
+	 * @param aRows the number of rows of a
+	 * @param aCols the number of columns of a (and rows of b)
+	 * @param bCols the number of columns of b
+	 * @return the aRows by bCols result, column-major
+	 */
+	public static double[] multiplyAdd(double alpha, double[] a, double[] b, double beta, double[] c, int aRows, int aCols, int bCols){
+		double[] result = new double[aRows*bCols];
+		if (c != null && beta != 0){
+			for (int i = 0; i < result.length; i++){
+				result[i] = beta * c[i];
+			}
+		}
+		if (alpha == 0){
+			return result;
+		}
+		if ((long) aRows*aCols*bCols < PARALLEL_THRESHOLD){
+			productColumns(alpha,a,b,result,aRows,aCols,0,bCols);
+		}else{
+			POOL.invoke(new ProductTask(alpha,a,b,result,aRows,aCols,0,bCols));
+		}
+		return result;
+	}
+	
+	
+	/** 
+	 * Computes alpha*ab + beta*c into a memory-mapped file, for arguments or answers too large for the heap,
+	 * reading tiles of a and b through a default TileCache
+	 * 
+	 * @param alpha what the product is scaled by
+	 * @param a the first factor, mapped or not
+	 * @param b the second factor, mapped or not, with as many rows as a has columns
+	 * @param beta what c is scaled by
+	 * @param c the matrix to add, with the dimensions of the product, or null to add nothing
+	 * @param displayType how the answer is drawn
+	 * @return the answer, stored in a temporary mapped file
+	 * @throws IOException if the file for the answer can't be made
+	 */
+	public static Matrix mappedMultiplyAdd(double alpha, Matrix a, Matrix b, double beta, Matrix c, DisplayType displayType) throws IOException {
+		return mappedMultiplyAdd(alpha,a,b,beta,c,displayType,TileCache.withDefaults(),null);
+	}
+	
+	
+	/** 
+	 * Computes alpha*ab + beta*c out of core: the answer is computed a tile at a time into a memory-mapped file,
+	 * and only the tiles of a and b in tileCache are on the heap. Each tile of the answer starts as beta times
+	 * the same tile of c, and the products of the tiles of a and b along it are added in. While one pair of
+	 * tiles is multiplied, the cache reads the next pair on its background thread, so reading and computing
+	 * overlap. Tiles of the answer are finished a column of tiles at a time, so each tile of b is reused down
+	 * the column while it is still cached. Large tiles are multiplied across the fork-join pool
+	 * 
+	 * @param alpha what the product is scaled by
+	 * @param a the first factor, mapped or not
+	 * @param b the second factor, mapped or not, with as many rows as a has columns
+	 * @param beta what c is scaled by
+	 * @param c the matrix to add, with the dimensions of the product, or null to add nothing
+	 * @param displayType how the answer is drawn
+	 * @param tileCache the cache to read tiles of a and b through. Its tile size is the tile size of the product
+	 * @param listener told as each tile of the answer is finished, or null
+	 * @return the answer, stored in a temporary mapped file
+	 * @throws IOException if the file for the answer can't be made
+	 */
+	public static Matrix mappedMultiplyAdd(double alpha, Matrix a, Matrix b, double beta, Matrix c, DisplayType displayType,
+			TileCache tileCache, TileProgressListener listener) throws IOException {
+		int numRows = a.getNumRows();
+		int inner = a.getNumCols();
+		int numCols = b.getNumCols();
+		int tileSize = tileCache.getTileSize();
+		int rowTiles = (numRows + tileSize - 1) / tileSize;
+		int innerTiles = (inner + tileSize - 1) / tileSize;
+		int colTiles = (numCols + tileSize - 1) / tileSize;
+		MappedValues result = MappedValues.createTemp((long) numRows*numCols);
+		double[] cTile = new double[Math.min(tileSize,numRows)*Math.min(tileSize,numCols)];
+		int tilesDone = 0;
+		
+		if (alpha != 0 && inner > 0){
+			tileCache.prefetch(a,0,0);
+			tileCache.prefetch(b,0,0);
+		}
+		for (int j = 0; j < colTiles; j++){
+			int col = j*tileSize;
+			int cols = Math.min(tileSize, numCols - col);
+			for (int i = 0; i < rowTiles; i++){
+				int row = i*tileSize;
+				int rows = Math.min(tileSize, numRows - row);
+				if (c != null && beta != 0){
+					c.readBlock(row, col, rows, cols, cTile);
+					for (int t = 0; t < rows*cols; t++){
+						cTile[t] *= beta;
+					}
+				}else{
+					Arrays.fill(cTile, 0, rows*cols, 0);
+				}
+				for (int k = 0; k < innerTiles && alpha != 0; k++){
+					// the next pair of tiles is read while this one is multiplied
+					int nextK = k+1, nextI = i, nextJ = j;
+					if (nextK == innerTiles){
+						nextK = 0;
+						if (++nextI == rowTiles){
+							nextI = 0;
+							nextJ++;
+						}
+					}
+					if (nextJ < colTiles){
+						tileCache.prefetch(a,nextI,nextK);
+						tileCache.prefetch(b,nextK,nextJ);
+					}
+					double[] aTile = tileCache.get(a,i,k);
+					double[] bTile = tileCache.get(b,k,j);
+					int depth = Math.min(tileSize, inner - k*tileSize);
+					if ((long) rows*depth*cols < PARALLEL_THRESHOLD){
+						productColumns(alpha,aTile,bTile,cTile,rows,depth,0,cols);
+					}else{
+						POOL.invoke(new ProductTask(alpha,aTile,bTile,cTile,rows,depth,0,cols));
+					}
+				}
+				for (int t = 0; t < cols; t++){
+					result.put((long) (col+t)*numRows + row, cTile, t*rows, rows);
+				}
+				tilesDone++;
+				if (listener != null){
+					listener.tileComputed(tilesDone, rowTiles*colTiles);
+				}
+			}
+		}
+		return new Matrix(displayType,numRows,numCols,result);
+	}
+	
+	
+	/** 
+	 * Multiplies two sparse matrices, column by column (Gustavson's algorithm): column j of the product is
+	 * the sum of the columns of a picked out by the nonzeros of column j of b. Takes time proportional to the
+	 * number of multiplications of nonzeros, not to the size of the matrices
+	 * 
+	 * @param a the first factor
+	 * @param b the second factor, with as many rows as a has columns
+	 * @param displayType how the product is drawn
+	 * @return the product, stored sparsely
+	 */
+	public static SparseMatrix sparseProduct(SparseMatrix a, SparseMatrix b, DisplayType displayType){
+		int[] aStart = a.getColumnStarts(), aRows = a.getRowIndices();
+		int[] bStart = b.getColumnStarts(), bRows = b.getRowIndices();
+		double[] aValues = a.getNonZeroValues(), bValues = b.getNonZeroValues();
+		int numRows = a.getNumRows();
+		int numCols = b.getNumCols();
+		
+		double[] sums = new double[numRows];     // the column being computed, at the rows in touched
+		int[] lastCol = new int[numRows];        // the last column each row was touched in, plus one
+		int[] touched = new int[numRows];
+		int[] colStart = new int[numCols+1];
+		int[] rowIndex = new int[Math.max(16, aValues.length + bValues.length)];
+		double[] values = new double[rowIndex.length];
+		int next = 0;
+		for (int j = 0; j < numCols; j++){
+			int numTouched = 0;
+			for (int kb = bStart[j]; kb < bStart[j+1]; kb++){
+				int k = bRows[kb];
+				double bkj = bValues[kb];
+				for (int ka = aStart[k]; ka < aStart[k+1]; ka++){
+					int i = aRows[ka];
+					if (lastCol[i] != j+1){
+						lastCol[i] = j+1;
+						sums[i] = 0;
+						touched[numTouched++] = i;
+					}
+					sums[i] += aValues[ka] * bkj;
+				}
+			}
+			Arrays.sort(touched, 0, numTouched);
+			if (next + numTouched > rowIndex.length){
+				int size = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L*rowIndex.length, (long) next + numTouched));
+				rowIndex = Arrays.copyOf(rowIndex, size);
+				values = Arrays.copyOf(values, size);
+			}
+			for (int t = 0; t < numTouched; t++){
+				if (sums[touched[t]] != 0){
+					rowIndex[next] = touched[t];
+					values[next++] = sums[touched[t]];
+				}
+			}
+			colStart[j+1] = next;
+		}
+		return new SparseMatrix(displayType, numRows, numCols, colStart, Arrays.copyOf(rowIndex, next), Arrays.copyOf(values, next));
+	}
+	
+	
+	/** 
+	 * Multiplies a sparse matrix by a dense one. Each nonzero of column k of the sparse matrix meets row k of
+	 * the dense one, so only the nonzeros are read
+	 * 
+	 * @param sparse the sparse factor
+	 * @param dense the values of the dense factor, column-major
+	 * @param denseRows the number of rows of the dense factor
+	 * @param denseCols the number of columns of the dense factor
+	 * @param sparseFirst true for sparse * dense, false for dense * sparse
+	 * @return the values of the product, column-major
+	 */
+	public static double[] sparseDenseProduct(SparseMatrix sparse, double[] dense, int denseRows, int denseCols, boolean sparseFirst){
+		int[] colStart = sparse.getColumnStarts(), rowIndex = sparse.getRowIndices();
+		double[] values = sparse.getNonZeroValues();
+		if (sparseFirst){
+			// column j of the product is the sum over k of column k of the sparse factor times dense(k,j)
+			int numRows = sparse.getNumRows();
+			double[] result = new double[numRows*denseCols];
+			for (int j = 0; j < denseCols; j++){
+				for (int k = 0; k < sparse.getNumCols(); k++){
+					double dkj = dense[j*denseRows + k];
+					if (dkj == 0){
+						continue;
+					}
+					for (int ka = colStart[k]; ka < colStart[k+1]; ka++){
+						result[j*numRows + rowIndex[ka]] += values[ka] * dkj;
+					}
+				}
+			}
+			return result;
+		}
+		// column j of the product is the sum over the nonzeros (k,j) of the sparse factor of column k of the dense one
+		int numCols = sparse.getNumCols();
+		double[] result = new double[denseRows*numCols];
+		for (int j = 0; j < numCols; j++){
+			for (int kb = colStart[j]; kb < colStart[j+1]; kb++){
+				int k = rowIndex[kb];
+				double skj = values[kb];
+				for (int i = 0; i < denseRows; i++){
+					result[j*denseRows + i] += dense[k*denseRows + i] * skj;
+				}
+			}
+		}
+		return result;
+	}
+	
+	
+	/** 
+	 * Adds columns [colStart,colEnd) of the product alpha*ab to c, tile by tile. Within a tile the loops run
+	 * down columns of a and c, so the innermost loop is contiguous
+	 * 
+	 * @param alpha what the product is scaled by
+	 * @param a the first factor, aRows by aCols
+	 * @param b the second factor
+	 * @param c the matrix to add the product to
+	 * @param aRows the number of rows of a
+	 * @param aCols the number of columns of a (and rows of b)
+	 * @param colStart the first column of c to compute
+	 * @param colEnd one past the last column of c to compute
+	 */
+	private static void productColumns(double alpha, double[] a, double[] b, double[] c, int aRows, int aCols, int colStart, int colEnd){
+		for (int kTile = 0; kTile < aCols; kTile += TILE_INNER){
+			int kEnd = Math.min(kTile + TILE_INNER, aCols);
+			for (int iTile = 0; iTile < aRows; iTile += TILE_ROWS){
+				int iEnd = Math.min(iTile + TILE_ROWS, aRows);
+				for (int j = colStart; j < colEnd; j++){
+					for (int k = kTile; k < kEnd; k++){
+						double bkj = alpha * b[j*aCols + k];
+						for (int i = iTile; i < iEnd; i++){
+							c[j*aRows + i] += a[k*aRows + i] * bkj;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/** 
+	 * Computes a range of columns of a product, splitting the range in half until it is small. The halves
+	 * write to disjoint columns of the product, so no locking is needed
+	 */
+	private static class ProductTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private double _alpha;
+		private double[] _a, _b, _c;
+		private int _aRows, _aCols, _colStart, _colEnd;
+		
+		public ProductTask(double alpha, double[] a, double[] b, double[] c, int aRows, int aCols, int colStart, int colEnd){
+			_alpha = alpha;
+			_a = a;
+			_b = b;
+			_c = c;
+			_aRows = aRows;
+			_aCols = aCols;
+			_colStart = colStart;
+			_colEnd = colEnd;
+		}
+		
+		@Override
+		protected void compute(){
+			int numCols = _colEnd - _colStart;
+			if (numCols <= MIN_TASK_COLUMNS || (long) _aRows*_aCols*numCols < PARALLEL_THRESHOLD){
+				productColumns(_alpha,_a,_b,_c,_aRows,_aCols,_colStart,_colEnd);
+			}else{
+				int mid = _colStart + numCols/2;
+				invokeAll(new ProductTask(_alpha,_a,_b,_c,_aRows,_aCols,_colStart,mid),
+						new ProductTask(_alpha,_a,_b,_c,_aRows,_aCols,mid,_colEnd));
+			}
+		}
+	}
+
+
 	@Override
 	/**
 	 * Three steps:
@@ -106,7 +552,16 @@ public class MM_Multiply extends Computable {
 	 */
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{Matrix \\ Multiply:}");
+		if (_tileCache != null){ // the factors may not fit on the heap, so they are only summarized
+			toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}"+_matrixA.toLatex()+" \\times "+_matrixB.toLatex());
+			toReturn.add("\\vspace{15mm} \\mathrm{Computed \\ a \\ "+_tileCache.getTileSize()+" \\times "+_tileCache.getTileSize()+" \\ tile \\ at \\ a \\ time}");
+			toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+_step1Matrix.toLatex());
+			return toReturn;
+		}
 		StringBuilder b = new StringBuilder();
 		String m1String = MatrixDraw.getCorrectLatex(_displayType,_matrixA);
 		String m2String = MatrixDraw.getCorrectLatex(_displayType,_matrixB);
@@ -117,23 +572,7 @@ public class MM_Multiply extends Computable {
 		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}"+b.toString());
 		b.delete(0, b.length());
 		
-		toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Equation \\ at \\ each \\ index}");
-		// make list of equations for each index
-		int counter = 0;
-		String[][] customEntries = _step1Matrix.getCustomDisplayValues();
-		for (int i = 0; i < customEntries.length; i++){
-			for (int j = 0; j < customEntries[0].length; j++){
-				toReturn.add("\\vspace{15mm} \\hspace{15mm} \\mathrm{Column \\ "+(i+1)+" \\ of \\ 1st \\ matrix \\ multiplied \\ with \\ row \\ " + (j+1) + " \\ of \\ 2nd \\ matrix: }\\\\ \\vspace{10mm} \\hspace{60mm} "+customEntries[i][j]);
-				counter++;
-				if (counter > 4){
-					toReturn.add("\\vspace{25mm} \\hspace{15mm} \\mathrm{Continue \\ by \\ multiplying \\ together \\ the \\ remaining \\ rows \\ and \\ columns \\\\ of \\ the \\ matrices}");
-					break;
-				}
-			}
-			if (counter > 4){
-				break;
-			}
-		}
+		addEquationSteps(toReturn,_step1Matrix);
 		
 		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+MatrixDraw.getCorrectLatex(_displayType,_step1Matrix));
 		return toReturn;
@@ -0,0 +1,157 @@
+package backend.computations.operations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import matrixDraw.MatrixDraw;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Computes s * A * B + C (or - C) as one operation, without making A * B or s * A * B along the way. The
+ * scalar and the added matrix are both optional, so this also computes scaled products s * A * B
+ *
+ * The Solution's inputs are the scalar (if any), A, B and then C (if any), and its Op is PLUS or MINUS when a
+ * matrix is added and MULTIPLY otherwise
+ *
+ * @author baebi
+ */
+public class MM_MultiplyAdd extends Computable {
+	private Solution _solution;
+	private Scalar _scalar;
+	private Matrix _matrixA, _matrixB, _matrixC, _step1Matrix;
+	private boolean _isPlus;
+	private DisplayType _displayType;
+
+
+	/* (non-Javadoc)
+	 * @see backend.operations.Computable#getSolution()
+	 */
+	@Override
+	public Solution getSolution() {
+		return _solution;
+	}
+
+
+	/**
+	 * Creates the Solution to s * A * B + C
+	 *
+	 * @param scalar what the product is multiplied by, or null for 1
+	 * @param matrixA the first factor
+	 * @param matrixB the second factor
+	 * @param matrixC the matrix added to the product, or null for none
+	 * @param isPlus true if matrixC is added, false if it is subtracted
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 */
+	public MM_MultiplyAdd(Scalar scalar, Matrix matrixA, Matrix matrixB, Matrix matrixC, boolean isPlus, boolean answerOnly){
+		_answerOnly = answerOnly;
+		_scalar = scalar;
+		_matrixA = matrixA;
+		_matrixB = matrixB;
+		_matrixC = matrixC;
+		_isPlus = isPlus;
+		List<Countable> inputs = new ArrayList<>();
+		if (scalar != null){
+			inputs.add(scalar);
+		}
+		inputs.add(matrixA);
+		inputs.add(matrixB);
+		if (matrixC != null){
+			inputs.add(matrixC);
+		}
+		DisplayType answerDisplayType = resolveDisplayType(inputs);
+		_displayType = answerDisplayType;
+
+		// same checks, in the same order, as multiplying and then adding
+		if (matrixA.getNumCols() != matrixB.getNumRows()){
+			throw new IllegalArgumentException("Number of columns of first matrix must equal number of rows of second matrix");
+		}
+		if (!matrixA.isComplete() || !matrixB.isComplete()){
+			throw new IllegalArgumentException("ERROR: Matrix should not contain null indices");
+		}
+		int numRows = matrixA.getNumRows();
+		int numCols = matrixB.getNumCols();
+		if (matrixC != null && (matrixC.getNumRows() != numRows || matrixC.getNumCols() != numCols)){
+			throw new IllegalArgumentException("Matrices must have same dimensions");
+		}
+		if (matrixC != null && !matrixC.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+
+		double alpha = (scalar == null) ? 1 : scalar.getValue();
+		double beta = isPlus ? 1 : -1;
+		Op op = (matrixC == null) ? Op.MULTIPLY : (isPlus ? Op.PLUS : Op.MINUS);
+		if (matrixA.isMapped() || matrixB.isMapped() || (matrixC != null && matrixC.isMapped())){
+			try{ // too large for the heap, so the answer is streamed into a file
+				_step1Matrix = MM_Multiply.mappedMultiplyAdd(alpha, matrixA, matrixB, beta, matrixC, answerDisplayType);
+			}catch(IOException e){
+				throw new IllegalArgumentException("ERROR: "+e.getMessage());
+			}
+			_solution = new Solution(op,inputs,_step1Matrix,toLatex());
+			return;
+		}
+		double[] result = MM_Multiply.multiplyAdd(alpha, matrixA.toColumnMajor(), matrixB.toColumnMajor(),
+				beta, matrixC == null ? null : matrixC.toColumnMajor(), numRows, matrixA.getNumCols(), numCols);
+
+		_step1Matrix = MM_Multiply.explainedAnswer(this,scalar,matrixA,matrixB,matrixC,isPlus,result,answerDisplayType,answerOnly);
+		Matrix answer = new Matrix(answerDisplayType,numRows,numCols,result);
+
+		List<String> latex = toLatex();
+		_solution = new Solution(op,inputs,answer,latex);
+	}
+
+
+	@Override
+	/**
+	 * Steps:
+	 * - "s * m1 * m2 + m3"
+	 * - the equation at the first few indices
+	 * - the answer matrix
+	 */
+	public List<String> toLatex() {
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		toReturn.add("\\vspace{10mm} \\mathrm{Matrix \\ Multiply" + (_matrixC == null ? "" : (_isPlus ? " \\ and \\ Add" : " \\ and \\ Subtract")) + ":}");
+		StringBuilder b = new StringBuilder();
+		if (_scalar != null){
+			b.append(_scalar.getDisplayValue(_displayType));
+			b.append(" $\\times$ ");
+		}
+		b.append(draw(_matrixA));
+		b.append(" $\\times$ ");
+		b.append(draw(_matrixB));
+		if (_matrixC != null){
+			b.append(_isPlus ? "$\\ + \\ $" : "$\\ - \\ $");
+			b.append(draw(_matrixC));
+		}
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}"+b.toString());
+		if (_step1Matrix.isMapped()){
+			toReturn.add("\\vspace{15mm} \\mathrm{Computed \\ a \\ tile \\ at \\ a \\ time}");
+			toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+_step1Matrix.toLatex());
+			return toReturn;
+		}
+
+		MM_Multiply.addEquationSteps(toReturn,_step1Matrix);
+
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+MatrixDraw.getCorrectLatex(_displayType,_step1Matrix));
+		return toReturn;
+	}
+
+
+	/**
+	 * @param matrix an argument
+	 * @return the argument drawn in the answer's DisplayType, or summarized if it is mapped
+	 */
+	private String draw(Matrix matrix){
+		return matrix.isMapped() ? matrix.toLatex() : MatrixDraw.getCorrectLatex(_displayType,matrix);
+	}
+}
@@ -0,0 +1,81 @@
+package backend.computations.operations;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Tests for MM_MultiplyAdd
+ *
+ * @author baebi
+ */
+public class MM_MultiplyAddTest {
+	private Matrix m1 = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,3.0},{2.0,4.0}});
+	private Matrix m2 = new Matrix(DisplayType.DECIMAL, new Double[][]{{5.0,7.0},{6.0,8.0}});
+	private Matrix m3 = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0},{1.0,1.0}});
+	private Matrix m4 = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0,1.0}});
+	private Scalar s = new Scalar(2,DisplayType.DECIMAL);
+
+
+	@Test // same answer as multiplying, scaling and adding one at a time
+	public void sameAsUnfusedTest(){
+		Solution sol = new MM_MultiplyAdd(s,m1,m2,m3,true,false).getSolution();
+		Matrix product = (Matrix) new MM_Multiply(m1,m2).getSolution().getAnswer();
+		Matrix scaled = (Matrix) new MS_Multiply(s,product).getSolution().getAnswer();
+		Matrix sum = (Matrix) new MM_PlusMinus(scaled,m3,true).getSolution().getAnswer();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(answer.contentEquals(sum));
+		assertTrue(answer.get(0,0) == 39); // 2 * (1*5 + 2*7) + 1
+		assertTrue(sol.getOp() == Op.PLUS && sol.getInputs().size() == 4);
+		assertTrue(!sol.getLatex().isEmpty());
+	}
+
+
+	@Test // the scalar and the added matrix are optional
+	public void optionalArgsTest(){
+		Solution minus = new MM_MultiplyAdd(null,m1,m2,m3,false,true).getSolution();
+		assertTrue(((Matrix) minus.getAnswer()).get(1,1) == 49); // 3*6 + 4*8 - 1
+		assertTrue(minus.getOp() == Op.MINUS && minus.getInputs().size() == 3);
+		assertTrue(minus.getLatex().isEmpty());
+
+		Solution scaled = new MM_MultiplyAdd(s,m1,m2,null,true,true).getSolution();
+		assertTrue(((Matrix) scaled.getAnswer()).get(0,1) == 44); // 2 * (1*6 + 2*8)
+		assertTrue(scaled.getOp() == Op.MULTIPLY && scaled.getInputs().size() == 3);
+	}
+
+
+	@Test // without a scalar or an added matrix, the steps are worded as for a plain product
+	public void sameStepsTest(){
+		List<String> fused = new MM_MultiplyAdd(null,m1,m2,null,true,false).getSolution().getLatex();
+		List<String> plain = new MM_Multiply(m1,m2).getSolution().getLatex();
+		assertTrue(fused.size() == plain.size());
+		for (int i = 2; i < fused.size(); i++){ // after the title and the drawn equation
+			assertTrue(fused.get(i).equals(plain.get(i)));
+		}
+		assertTrue(fused.get(3).contains("Row \\ 1 \\ of \\ 1st \\ matrix \\ multiplied \\ with \\ column \\ 1"));
+	}
+
+
+	@Test // mismatched dimensions
+	public void dimensionErrorTest(){
+		try{
+			new MM_MultiplyAdd(null,m1,m4,null,true,true);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{
+			new MM_MultiplyAdd(null,m1,m2,m4,true,true);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+}
@@ -4,13 +4,18 @@ package backend.computations.operations;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 
 import backend.blocks.Countable.DisplayType;
+import backend.blocks.MappedValues;
 import backend.blocks.Matrix;
 import backend.computations.infrastructure.Solution;
+import backend.computations.infrastructure.TileCache;
+import backend.computations.infrastructure.TileProgressListener;
 
 /**
  * Tests for MM_Multiply
@@ -135,4 +140,108 @@ public class MM_MultiplyTest {
 		}
 	}
 
+	@Test // Test that infinity times a zero entry gives NaN, as in the plain triple loop
+	public void infinityTest(){
+		double inf = Double.POSITIVE_INFINITY;
+		double[] product = MM_Multiply.product(new double[]{inf,1}, new double[]{0,2}, 2, 1, 2);
+		assertTrue(Double.isNaN(product[0]));
+		assertTrue(product[1] == 0);
+		assertTrue(product[2] == inf && product[3] == 2);
+	}
+	
+	
+	@Test // Test a product large enough to be tiled and split across threads
+	public void largeMatrixTest(){
+		int n = 150, m = 170, p = 140;
+		Double[][] aVals = new Double[m][n];
+		Double[][] bVals = new Double[p][m];
+		for (int i = 0; i < m; i++){
+			for (int j = 0; j < n; j++){
+				aVals[i][j] = (double) ((i*31 + j*17) % 11 - 5);
+			}
+			for (int j = 0; j < p; j++){
+				bVals[j][i] = (double) ((i*13 + j*7) % 9 - 4);
+			}
+		}
+		Matrix a = new Matrix(DisplayType.DECIMAL, aVals);
+		Matrix b = new Matrix(DisplayType.DECIMAL, bVals);
+		MM_Multiply testMult = new MM_Multiply(a,b);
+		Matrix l = (Matrix) testMult.getSolution().getAnswer();
+		assertTrue(l.getNumRows() == n);
+		assertTrue(l.getNumCols() == p);
+		for (int row = 0; row < n; row += 7){
+			for (int col = 0; col < p; col += 5){
+				double expected = 0;
+				for (int k = 0; k < m; k++){
+					expected += aVals[k][row] * bVals[col][k];
+				}
+				assertTrue(l.get(row,col) == expected);
+			}
+		}
+	}
+	
+	@Test // Test factors in memory-mapped files, with dimensions that don't divide into whole tiles
+	public void mappedTest() throws IOException {
+		int n = 600, m = 530, p = 700;
+		double[] aVals = new double[n*m];
+		double[] bVals = new double[m*p];
+		for (int i = 0; i < aVals.length; i++){
+			aVals[i] = i % 13 - 6;
+		}
+		for (int i = 0; i < bVals.length; i++){
+			bVals[i] = i % 7 - 3;
+		}
+		Matrix a = new Matrix(DisplayType.DECIMAL, n, m, aVals);
+		Matrix b = new Matrix(DisplayType.DECIMAL, m, p, bVals);
+		Matrix expected = (Matrix) new MM_Multiply(a,b,true).getSolution().getAnswer();
+		
+		Solution sol = new MM_Multiply(toMapped(a),b).getSolution();
+		Matrix l = (Matrix) sol.getAnswer();
+		assertTrue(l.isMapped());
+		assertTrue(Arrays.equals(l.toColumnMajor(), expected.toColumnMajor()));
+		assertTrue(sol.getLatex().get(3).contains("memory \\ mapped"));
+		assertTrue(Arrays.equals(((Matrix) new MM_Multiply(toMapped(a),toMapped(b),true).getSolution().getAnswer()).toColumnMajor(), expected.toColumnMajor()));
+	}
+	
+	
+	@Test // Test the out of core mode on heap factors, with a cache too small to hold either factor
+	public void outOfCoreTest(){
+		int n = 200, m = 150, p = 170;
+		double[] aVals = new double[n*m];
+		double[] bVals = new double[m*p];
+		for (int i = 0; i < aVals.length; i++){
+			aVals[i] = i % 11 - 5;
+		}
+		for (int i = 0; i < bVals.length; i++){
+			bVals[i] = i % 9 - 4;
+		}
+		Matrix a = new Matrix(DisplayType.DECIMAL, n, m, aVals);
+		Matrix b = new Matrix(DisplayType.DECIMAL, m, p, bVals);
+		Matrix expected = (Matrix) new MM_Multiply(a,b,true).getSolution().getAnswer();
+		
+		final int[] progress = new int[2];
+		TileCache cache = new TileCache(64, 8L*64*64*6);
+		Matrix l = (Matrix) new MM_Multiply(a,b,true,cache,new TileProgressListener(){
+			@Override
+			public void tileComputed(int tilesDone, int totalTiles){
+				assertTrue(tilesDone == progress[0] + 1);
+				progress[0] = tilesDone;
+				progress[1] = totalTiles;
+			}
+		}).getSolution().getAnswer();
+		assertTrue(l.isMapped());
+		assertTrue(Arrays.equals(l.toColumnMajor(), expected.toColumnMajor()));
+		assertTrue(progress[0] == 4*3 && progress[1] == 4*3); // 200/64 rounds up to 4 tiles, 170/64 to 3
+		assertTrue(cache.getBytes() <= cache.getMaxBytes());
+		assertTrue(cache.getHits() > cache.getMisses()); // the prefetched tiles
+	}
+	
+	
+	// a copy of m whose values are in a temporary mapped file
+	private Matrix toMapped(Matrix m) throws IOException {
+		MappedValues values = MappedValues.createTemp((long) m.getNumRows()*m.getNumCols());
+		values.put(0, m.toColumnMajor(), 0, m.getNumRows()*m.getNumCols());
+		return new Matrix(m.getDisplayType(), m.getNumRows(), m.getNumCols(), values);
+	}
+
 }
@@ -3,15 +3,19 @@
  */
 package backend.computations.operations;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import matrixDraw.MatrixDraw;
 
 import backend.blocks.Countable;
 import backend.blocks.Countable.DisplayType;
+import backend.blocks.MappedValues;
 import backend.blocks.Matrix;
 import backend.blocks.Op;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
 
@@ -29,6 +33,9 @@ public class MM_PlusMinus extends Computable {
 	private String _opWord;
 	private String _opName;
 	
+	// sums of mapped matrices are computed this many doubles (2MB) of each argument at a time
+	private static final int MAPPED_BLOCK = 1 << 18;
+	
 	@Override
 	public Solution getSolution() {
 		return _solution;
@@ -43,6 +50,20 @@ public class MM_PlusMinus extends Computable {
 	 * @param isPlus true iff this is a plus operation. false iff this is a minus operation
 	 */
 	public MM_PlusMinus(Matrix matrixA, Matrix matrixB, boolean isPlus) throws IllegalArgumentException {
+		this(matrixA,matrixB,isPlus,false);
+	}
+	
+	
+	/** 
+	 * Sums two matrices
+	 * 
+	 * @param matrixA the first matrix to add
+	 * @param matrixB the second matrix to add
+	 * @param isPlus true iff this is a plus operation. false iff this is a minus operation
+	 * @param answerOnly true if only the sum is wanted, in which case no steps are generated
+	 */
+	public MM_PlusMinus(Matrix matrixA, Matrix matrixB, boolean isPlus, boolean answerOnly) throws IllegalArgumentException {
+		_answerOnly = answerOnly;
 		_matrix1 = matrixA;
 		_matrix2 = matrixB;
 		
@@ -52,42 +73,56 @@ public class MM_PlusMinus extends Computable {
 		DisplayType answerDisplayType = resolveDisplayType(matrixList); // choose DisplayType to use
 		_displayType = answerDisplayType;
 		
-		// set the display type of the matrices to the same type
-		matrixA.setDisplayType(answerDisplayType);
-		matrixB.setDisplayType(answerDisplayType);
 		
-		Double[][] aValues = matrixA.getValues();
-		Double[][] bValues = matrixB.getValues();
-		if (aValues.length != bValues.length || aValues[0].length != bValues[0].length){
+		int numRows = matrixA.getNumRows();
+		int numCols = matrixA.getNumCols();
+		if (numCols != matrixB.getNumCols() || numRows != matrixB.getNumRows()){
 			throw new IllegalArgumentException("Matrices must have same dimensions");
 		}
+		if (!matrixA.isComplete() || !matrixB.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
 		
-		String[][] additionStep = new String[aValues.length][aValues[0].length]; // we'll show the addition step in here
-		Double[][] result = new Double[aValues.length][aValues[0].length];       // this will be the result matrix
-		for(int i = 0; i < aValues.length; i++){
-			for (int j = 0; j < aValues[0].length; j++){
-				if (aValues[i][j] == null || bValues[i][j] == null){
-					throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
-				}
+		if (matrixA.isMapped() || matrixB.isMapped()){ // too large for the heap, so the sum is streamed into a file
+			_operation = isPlus ? " + " : " - ";
+			_opName = isPlus ? "Addition" : "Subtraction";
+			try{
+				_step2Matrix = mappedSum(matrixA,matrixB,isPlus,answerDisplayType);
+			}catch(IOException e){
+				throw new IllegalArgumentException("ERROR: "+e.getMessage());
+			}
+			_solution = new Solution(isPlus ? Op.PLUS : Op.MINUS, matrixList, _step2Matrix, toLatex());
+			return;
+		}
+		
+		String[][] additionStep = answerOnly ? null : new String[numCols][numRows]; // we'll show the addition step in here
+		double[] result = new double[numCols*numRows];          // this will be the result matrix (column-major)
+		for(int i = 0; i < numCols; i++){
+			for (int j = 0; j < numRows; j++){
+				double aVal = matrixA.get(j,i);
+				double bVal = matrixB.get(j,i);
 				if (isPlus){
 					_operation = " + ";
 					_opWord = "Add \\";
 					_opName = "Addition";
-					result[i][j] = aValues[i][j] + bValues[i][j];
-					additionStep[i][j] = "$("+getDisplayValue(aValues[i][j],answerDisplayType)+" \\ + \\ "+getDisplayValue(bValues[i][j],answerDisplayType) + ")$";
+					result[i*numRows + j] = aVal + bVal;
+					if (!answerOnly){
+						additionStep[i][j] = "$("+getDisplayValue(aVal,answerDisplayType)+" \\ + \\ "+getDisplayValue(bVal,answerDisplayType) + ")$";
+					}
 				}else{
 					_opName = "Subtraction";
 					_opWord = "Take \\ the \\ difference \\ between \\";
 					_operation = " - ";
-					result[i][j] = aValues[i][j] - bValues[i][j];
-					additionStep[i][j] = "$(" +getDisplayValue(aValues[i][j],answerDisplayType)+" \\ - \\ "+getDisplayValue(bValues[i][j],answerDisplayType) + ")$";
+					result[i*numRows + j] = aVal - bVal;
+					if (!answerOnly){
+						additionStep[i][j] = "$(" +getDisplayValue(aVal,answerDisplayType)+" \\ - \\ "+getDisplayValue(bVal,answerDisplayType) + ")$";
+					}
 				}
 			}
 		}
 		
-		_step1Matrix = new Matrix(DisplayType.CUSTOM, result); // this will show the addition in each index, for instance ("1 + 2")
-		_step1Matrix.setCustomDisplay(additionStep);
-		_step2Matrix = new Matrix(answerDisplayType,result);
+		_step1Matrix = new Matrix(DisplayType.CUSTOM,numRows,numCols,result,additionStep); // this will show the addition in each index, for instance ("1 + 2")
+		_step2Matrix = new Matrix(answerDisplayType,numRows,numCols,result);
 
 		List<String> latex = toLatex();
 		if (isPlus){
@@ -98,6 +133,110 @@ public class MM_PlusMinus extends Computable {
 	}
 
 
+	/** 
+	 * Adds or subtracts two matrices of the same dimensions into a memory-mapped file, a block of columns at a
+	 * time, so neither the arguments nor the answer have to fit on the heap
+	 * 
+	 * @param matrixA the first matrix, mapped or not
+	 * @param matrixB the second matrix, mapped or not
+	 * @param isPlus true to add, false to subtract matrixB
+	 * @param displayType how the answer is drawn
+	 * @return the sum or difference, stored in a temporary mapped file
+	 * @throws IOException if the file for the answer can't be made
+	 */
+	public static Matrix mappedSum(Matrix matrixA, Matrix matrixB, boolean isPlus, DisplayType displayType) throws IOException {
+		int numRows = matrixA.getNumRows();
+		int numCols = matrixA.getNumCols();
+		MappedValues result = MappedValues.createTemp((long) numRows*numCols);
+		int blockCols = Math.max(1, Math.min(numCols, MAPPED_BLOCK / numRows));
+		double[] aBlock = new double[numRows*blockCols];
+		double[] bBlock = new double[numRows*blockCols];
+		for (int col = 0; col < numCols; col += blockCols){
+			int cols = Math.min(blockCols, numCols - col);
+			matrixA.readBlock(0, col, numRows, cols, aBlock);
+			matrixB.readBlock(0, col, numRows, cols, bBlock);
+			for (int i = 0; i < numRows*cols; i++){
+				aBlock[i] = isPlus ? aBlock[i] + bBlock[i] : aBlock[i] - bBlock[i];
+			}
+			result.put((long) col*numRows, aBlock, 0, numRows*cols);
+		}
+		return new Matrix(displayType, numRows, numCols, result);
+	}
+	
+	
+	/** 
+	 * Adds or subtracts two sparse matrices of the same dimensions, merging the sorted rows of each pair of
+	 * columns. Takes time linear in the nonzeros
+	 * 
+	 * @param matrixA the first matrix
+	 * @param matrixB the second matrix
+	 * @param isPlus true to add, false to subtract matrixB
+	 * @param displayType how the answer is drawn
+	 * @return the sum or difference, stored sparsely. Entries that cancel out are dropped
+	 */
+	public static SparseMatrix sparseSum(SparseMatrix matrixA, SparseMatrix matrixB, boolean isPlus, DisplayType displayType){
+		int[] aStart = matrixA.getColumnStarts(), aRows = matrixA.getRowIndices();
+		int[] bStart = matrixB.getColumnStarts(), bRows = matrixB.getRowIndices();
+		double[] aValues = matrixA.getNonZeroValues(), bValues = matrixB.getNonZeroValues();
+		double sign = isPlus ? 1 : -1;
+		int numCols = matrixA.getNumCols();
+		
+		int[] colStart = new int[numCols+1];
+		int[] rowIndex = new int[aValues.length + bValues.length];
+		double[] values = new double[aValues.length + bValues.length];
+		int next = 0;
+		for (int j = 0; j < numCols; j++){
+			int a = aStart[j], b = bStart[j];
+			while (a < aStart[j+1] || b < bStart[j+1]){
+				if (b == bStart[j+1] || (a < aStart[j+1] && aRows[a] < bRows[b])){
+					rowIndex[next] = aRows[a];
+					values[next] = aValues[a++];
+				}else if (a == aStart[j+1] || bRows[b] < aRows[a]){
+					rowIndex[next] = bRows[b];
+					values[next] = sign * bValues[b++];
+				}else{
+					rowIndex[next] = aRows[a];
+					values[next] = aValues[a++] + sign * bValues[b++];
+				}
+				if (values[next] != 0){
+					next++;
+				}
+			}
+			colStart[j+1] = next;
+		}
+		return new SparseMatrix(displayType, matrixA.getNumRows(), numCols, colStart, Arrays.copyOf(rowIndex, next), Arrays.copyOf(values, next));
+	}
+	
+	
+	/** 
+	 * Adds or subtracts a sparse matrix and a dense one of the same dimensions. The answer is dense, so this
+	 * copies the dense matrix and adds the nonzeros of the sparse one to it
+	 * 
+	 * @param sparse the sparse matrix
+	 * @param dense the values of the dense matrix, column-major
+	 * @param sparseFirst true if the sparse matrix is the first argument
+	 * @param isPlus true to add, false to subtract the second argument from the first
+	 * @return the values of the answer, column-major
+	 */
+	public static double[] sparseDenseSum(SparseMatrix sparse, double[] dense, boolean sparseFirst, boolean isPlus){
+		double denseSign = (sparseFirst && !isPlus) ? -1 : 1;
+		double sparseSign = (!sparseFirst && !isPlus) ? -1 : 1;
+		double[] result = new double[dense.length];
+		for (int i = 0; i < dense.length; i++){
+			result[i] = denseSign * dense[i];
+		}
+		int[] colStart = sparse.getColumnStarts(), rowIndex = sparse.getRowIndices();
+		double[] values = sparse.getNonZeroValues();
+		int numRows = sparse.getNumRows();
+		for (int j = 0; j < sparse.getNumCols(); j++){
+			for (int k = colStart[j]; k < colStart[j+1]; k++){
+				result[j*numRows + rowIndex[k]] += sparseSign * values[k];
+			}
+		}
+		return result;
+	}
+
+
 	@Override
 	/**
 	 * Three steps:
@@ -107,7 +246,16 @@ public class MM_PlusMinus extends Computable {
 	 */
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{Matrix \\ " + _opName + ":}");
+		if (_step1Matrix == null){ // mapped matrices are only summarized
+			toReturn.add("\\vspace{10mm} 1. \\\\ \\hspace{15mm} "+_matrix1.toLatex()+" \\ "+_operation.trim()+" \\ "+_matrix2.toLatex());
+			toReturn.add("\\vspace{15mm} \\mathrm{Computed \\ a \\ block \\ of \\ columns \\ at \\ a \\ time}");
+			toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+_step2Matrix.toLatex());
+			return toReturn;
+		}
 		String m1String = MatrixDraw.getCorrectLatex(_displayType,_matrix1);
 		String m2String = MatrixDraw.getCorrectLatex(_displayType,_matrix2);
 		StringBuffer b = new StringBuffer();
@@ -3,11 +3,14 @@ package backend.computations.operations;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 
 import backend.blocks.Countable.DisplayType;
+import backend.blocks.MappedValues;
 import backend.blocks.Matrix;
 import backend.computations.infrastructure.Solution;
 
@@ -115,5 +118,30 @@ public class MM_PlusMinusTest {
 //		System.out.println();
 	}
 	
+	@Test
+	// tests sums of matrices in memory-mapped files, with more than one block of columns
+	public void mappedTest() throws IOException {
+		int numRows = 700, numCols = 900;
+		double[] aVals = new double[numRows*numCols];
+		double[] bVals = new double[numRows*numCols];
+		for (int i = 0; i < aVals.length; i++){
+			aVals[i] = i % 17;
+			bVals[i] = i % 5 - 2.5;
+		}
+		Matrix a = new Matrix(DisplayType.DECIMAL, numRows, numCols, aVals);
+		Matrix b = new Matrix(DisplayType.DECIMAL, numRows, numCols, bVals);
+		MappedValues mapped = MappedValues.createTemp((long) numRows*numCols);
+		mapped.put(0, aVals, 0, aVals.length);
+		Matrix mappedA = new Matrix(DisplayType.DECIMAL, numRows, numCols, mapped);
+		
+		Solution sol = new MM_PlusMinus(mappedA,b,false).getSolution();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(answer.isMapped());
+		assertTrue(Arrays.equals(answer.toColumnMajor(), ((Matrix) new MM_PlusMinus(a,b,false,true).getSolution().getAnswer()).toColumnMajor()));
+		assertTrue(sol.getLatex().get(3).contains("memory \\ mapped"));
+		// a block of a mapped matrix is read in runs down its columns
+		Matrix sum = (Matrix) new MM_PlusMinus(mappedA.subMatrixView(1,2,300,400),a.subMatrixView(0,0,300,400),true,true).getSolution().getAnswer();
+		assertTrue(sum.get(5,7) == aVals[9*numRows + 6] + aVals[7*numRows + 5]);
+	}
 
 }
@@ -0,0 +1,321 @@
+package backend.computations.operations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import matrixDraw.MatrixDraw;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.computations.infrastructure.CholeskyDecomposition;
+import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
+import backend.computations.infrastructure.LUDecomposition;
+import backend.computations.infrastructure.QRDecomposition;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Solves the linear system AX = B, written A \ B, without ever forming the inverse of A. A is factored once and
+ * every column of B is solved against the factors by forward and back substitution, in blocks of right-hand
+ * sides (see LUDecomposition.solve), so solving for many columns costs little more than solving for one:
+ * - a square symmetric A is tried with Cholesky, A = LL^T, which succeeds exactly when it is positive-definite
+ * - any other square A uses LU with partial pivoting, PA = LU
+ * - a tall A (more equations than unknowns) gets the least squares solution from A = QR
+ * - a wide A (fewer equations than unknowns) gets the solution with the least norm from A^T = QR
+ *
+ * The factors come from the FactorizationCache, so solving against a matrix that was already factored, by this
+ * or by another Computable, skips straight to the substitutions.
+ *
+ * The answer is n x k for an m x n A and an m x k B
+ *
+ * @author baebi
+ */
+public class MM_Solve extends Computable {
+	private Solution _solution;
+	private Matrix _matrixA, _matrixB, _answer;
+	private Method _method;
+
+	// the factors the solution came from, kept for the steps. Only the one for _method is set
+	private CholeskyDecomposition _cholesky;
+	private LUDecomposition _lu;
+	private QRDecomposition _qr;
+
+	// steps draw the matrices only for systems with at most this many equations and unknowns
+	private static final int SHOWN_SIZE = 6;
+
+	/**
+	 * How A was factored
+	 */
+	public enum Method {
+		CHOLESKY, LU, LEAST_SQUARES, MINIMUM_NORM
+	}
+
+
+	/* (non-Javadoc)
+	 * @see backend.operations.Computable#getSolution()
+	 */
+	@Override
+	public Solution getSolution() {
+		return _solution;
+	}
+
+
+	/**
+	 * Solves AX = B, with steps
+	 *
+	 * @param matrixA the coefficients
+	 * @param matrixB the right-hand sides, one per column
+	 */
+	public MM_Solve(Matrix matrixA, Matrix matrixB){
+		this(matrixA,matrixB,false);
+	}
+
+
+	/**
+	 * Solves AX = B
+	 *
+	 * @param matrixA the coefficients
+	 * @param matrixB the right-hand sides, one per column
+	 * @param answerOnly true if only the solution is wanted, in which case no steps are generated
+	 */
+	public MM_Solve(Matrix matrixA, Matrix matrixB, boolean answerOnly){
+		if (matrixA.getNumRows() != matrixB.getNumRows()){
+			throw new IllegalArgumentException("ERROR: The number of rows of the right-hand side must equal the number of rows of the matrix");
+		}
+		if (!matrixA.isComplete() || !matrixB.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_answerOnly = answerOnly;
+		_matrixA = matrixA;
+		_matrixB = matrixB;
+		int m = matrixA.getNumRows();
+		int n = matrixA.getNumCols();
+		int k = matrixB.getNumCols();
+		double[] b = matrixB.toColumnMajor();
+
+		double[] x;
+		if (m == n){
+			CholeskyDecomposition cholesky = isSymmetric(matrixA) ? FactorizationCache.getShared().getCholesky(matrixA) : null;
+			if (cholesky != null && cholesky.isPositiveDefinite()){
+				_method = Method.CHOLESKY;
+				_cholesky = cholesky;
+				x = cholesky.solve(b, k);
+			} else {
+				_lu = FactorizationCache.getShared().getLU(matrixA);
+				if (_lu.isSingular()){
+					throw new IllegalArgumentException("ERROR: The matrix is singular, so the system has no unique solution");
+				}
+				_method = Method.LU;
+				x = _lu.solve(b, k);
+			}
+		} else if (m > n){
+			_qr = FactorizationCache.getShared().getQR(matrixA);
+			if (!_qr.isFullRank()){
+				throw new IllegalArgumentException("ERROR: The columns of the matrix are dependent, so the least squares solution is not unique");
+			}
+			_method = Method.LEAST_SQUARES;
+			x = _qr.solve(b, k);
+		} else {
+			_qr = FactorizationCache.getShared().getQR(matrixA.transposeView());
+			if (!_qr.isFullRank()){
+				throw new IllegalArgumentException("ERROR: The rows of the matrix are dependent, so the system may have no solution");
+			}
+			_method = Method.MINIMUM_NORM;
+			x = _qr.solveTransposed(b, k);
+		}
+		_answer = new Matrix(DisplayType.DECIMAL, n, k, x);
+
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrixA);
+		inputs.add(matrixB);
+		_solution = new Solution(Op.SOLVE, inputs, _answer, toLatex());
+	}
+
+
+	/**
+	 * Cholesky reads only the lower triangle, so symmetry has to be exact for its answer to be the answer for A
+	 */
+	private static boolean isSymmetric(Matrix matrix){
+		int n = matrix.getNumRows();
+		for (int i = 0; i < n; i++){
+			for (int j = 0; j < i; j++){
+				if (matrix.get(i,j) != matrix.get(j,i)){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * @return how the matrix was factored
+	 */
+	public Method getMethod(){
+		return _method;
+	}
+
+
+	@Override
+	/**
+	 * Steps:
+	 * - the system
+	 * - the factorization
+	 * - forward substitution, row by row when there is one right-hand side and the system is small
+	 * - back substitution, the same way
+	 * - the solution
+	 */
+	public List<String> toLatex() {
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		int m = _matrixA.getNumRows();
+		int n = _matrixA.getNumCols();
+		boolean draw = m <= SHOWN_SIZE && n <= SHOWN_SIZE;
+		// the substitutions are spelled out for a single right-hand side
+		boolean expand = draw && _matrixB.getNumCols() == 1;
+		double[] b = _matrixB.toColumnMajor();
+
+		toReturn.add("\\vspace{10mm} \\mathrm{Linear \\ System:}");
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}" + (draw ? MatrixDraw.getCorrectLatex(_matrixA.getDisplayType(),_matrixA) : "A")
+				+ " x = " + (draw ? MatrixDraw.getCorrectLatex(_matrixB.getDisplayType(),_matrixB) : "b"));
+
+		String factored, forward, back;
+		String forwardTitle = "\\mathrm{Forward \\ substitution:} \\ ", backTitle = "\\mathrm{Back \\ substitution:} \\ ";
+		List<String> forwardLines = new ArrayList<>(), backLines = new ArrayList<>();
+		switch (_method){
+		case CHOLESKY: {
+			double[] l = _cholesky.getL();
+			factored = "\\mathrm{A \\ is \\ symmetric \\ positive-definite, \\ so \\ A = L L^{T}}" + (draw ? ": \\\\ \\hspace{15mm} L = " + draw(l, n, n) : "");
+			forward = "L y = b";
+			back = "L^{T} x = y";
+			if (expand){
+				double[] y = substitute(l, n, b, true, "y", forwardLines);
+				substitute(transpose(l, n, n), n, y, false, "x", backLines);
+			}
+			break;
+		}
+		case LU: {
+			double[] l = _lu.getL(), u = _lu.getU();
+			factored = "\\mathrm{Factor \\ with \\ partial \\ pivoting, \\ PA = LU}" + (draw ? ": \\\\ \\hspace{15mm} L = " + draw(l, n, n) + ", \\ U = " + draw(u, n, n) : "");
+			forward = "L y = P b";
+			back = "U x = y";
+			if (expand){
+				int[] pivots = _lu.getPivots();
+				double[] pb = new double[n];
+				for (int i = 0; i < n; i++){
+					pb[i] = b[pivots[i]];
+				}
+				double[] y = substitute(l, n, pb, true, "y", forwardLines);
+				substitute(u, n, y, false, "x", backLines);
+			}
+			break;
+		}
+		case LEAST_SQUARES: {
+			double[] r = _qr.getR();
+			factored = "\\mathrm{More \\ equations \\ than \\ unknowns, \\ so \\ minimize \\ |Ax - b| \\ with \\ A = QR}" + (draw ? ": \\\\ \\hspace{15mm} R = " + draw(r, n, n) : "");
+			forwardTitle = "\\mathrm{Reflect \\ b:} \\ ";
+			forward = "y = Q^{T} b";
+			back = "R x = y";
+			if (expand){
+				double[] y = new double[n];
+				System.arraycopy(_qr.applyQTranspose(b, 1), 0, y, 0, n);
+				forwardLines.add("y = " + draw(y, n, 1));
+				substitute(r, n, y, false, "x", backLines);
+			}
+			break;
+		}
+		default: {
+			double[] r = _qr.getR();
+			factored = "\\mathrm{Fewer \\ equations \\ than \\ unknowns, \\ so \\ find \\ the \\ shortest \\ x \\ with \\ A^{T} = QR}" + (draw ? ": \\\\ \\hspace{15mm} R = " + draw(r, m, m) : "");
+			forward = "R^{T} y = b";
+			backTitle = "\\mathrm{Reflect \\ back:} \\ ";
+			back = "x = Q \\begin{bmatrix} y \\\\ 0 \\end{bmatrix}";
+			if (expand){
+				substitute(transpose(r, m, m), m, b, true, "y", forwardLines);
+			}
+			break;
+		}
+		}
+
+		toReturn.add("\\vspace{15mm} 2. \\ " + factored);
+		toReturn.add("\\vspace{15mm} 3. \\ " + forwardTitle + forward + join(forwardLines));
+		toReturn.add("\\vspace{15mm} 4. \\ " + backTitle + back + join(backLines));
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}" + (draw && _answer.getNumCols() <= SHOWN_SIZE
+				? MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_answer)
+				: "\\mathrm{a \\ " + _answer.getNumRows() + " \\times " + _answer.getNumCols() + " \\ matrix}"));
+		return toReturn;
+	}
+
+
+	/**
+	 * Solves a triangular system for the steps, writing out each unknown as its right-hand side minus the known
+	 * terms, over the diagonal entry
+	 *
+	 * @param t the triangular matrix, n x n and column-major
+	 * @param n its dimension
+	 * @param rhs the right-hand side
+	 * @param lower true if t is lower triangular, so that the unknowns are found first to last
+	 * @param name the name of the unknowns
+	 * @param lines gets one line of latex per unknown
+	 * @return the unknowns
+	 */
+	private double[] substitute(double[] t, int n, double[] rhs, boolean lower, String name, List<String> lines){
+		double[] solution = new double[n];
+		for (int step = 0; step < n; step++){
+			int i = lower ? step : n-1-step;
+			double sum = rhs[i];
+			StringBuilder line = new StringBuilder(format(rhs[i]));
+			for (int j = lower ? 0 : i+1; j < (lower ? i : n); j++){
+				double coefficient = t[j*n + i];
+				if (coefficient != 0){
+					sum -= coefficient * solution[j];
+					line.append(" - (").append(format(coefficient)).append(")(").append(format(solution[j])).append(")");
+				}
+			}
+			double diagonal = t[i*n + i];
+			solution[i] = sum / diagonal;
+			String numerator = line.toString();
+			if (diagonal == 1 && sum == rhs[i]){ // nothing to work out
+				lines.add(name + "_{" + (i+1) + "} = " + numerator);
+			}else{
+				lines.add(name + "_{" + (i+1) + "} = " + (diagonal == 1 ? numerator : "\\frac{" + numerator + "}{" + format(diagonal) + "}")
+						+ " = " + format(solution[i]));
+			}
+		}
+		return solution;
+	}
+
+
+	private static double[] transpose(double[] values, int rows, int cols){
+		double[] transposed = new double[rows*cols];
+		for (int j = 0; j < cols; j++){
+			for (int i = 0; i < rows; i++){
+				transposed[i*cols + j] = values[j*rows + i];
+			}
+		}
+		return transposed;
+	}
+
+
+	private static String draw(double[] values, int rows, int cols){
+		return MatrixDraw.getCorrectLatex(DisplayType.DECIMAL, new Matrix(DisplayType.DECIMAL, rows, cols, values));
+	}
+
+
+	private String format(double value){
+		return shortenDecimal(getDisplayValue(value, DisplayType.DECIMAL));
+	}
+
+
+	private static String join(List<String> lines){
+		StringBuilder joined = new StringBuilder();
+		for (String line : lines){
+			joined.append(" \\\\ \\hspace{15mm} ").append(line);
+		}
+		return joined.toString();
+	}
+}
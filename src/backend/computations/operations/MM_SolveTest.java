@@ -0,0 +1,169 @@
+package backend.computations.operations;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * @author baebi
+ *
+ */
+public class MM_SolveTest {
+	private static final double EPSILON = 1e-10;
+
+	private Random _random = new Random(13);
+
+	// the first column needs a row exchange
+	private Matrix m1 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{0.0,2.0,1.0},{1.0,1.0,1.0},{2.0,1.0,3.0}});
+	private Matrix b1 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{4.0,5.0,6.0}});
+	// symmetric positive-definite
+	private Matrix m2 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{4.0,2.0,0.0},{2.0,5.0,2.0},{0.0,2.0,5.0}});
+
+
+	@Test // a known solution, (1,2,1), with its substitutions spelled out
+	public void luTest() {
+		MM_Solve solve = new MM_Solve(m1, b1);
+		Solution sol = solve.getSolution();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(sol.getOp() == Op.SOLVE);
+		assertTrue(solve.getMethod() == MM_Solve.Method.LU);
+		assertTrue(answer.getNumRows() == 3 && answer.getNumCols() == 1);
+		assertEquals(1, answer.get(0,0), EPSILON);
+		assertEquals(2, answer.get(1,0), EPSILON);
+		assertEquals(1, answer.get(2,0), EPSILON);
+		String latex = sol.getLatex().toString();
+		assertTrue(latex.contains("y_{3}") && latex.contains("x_{1}"));
+		assertTrue(new MM_Solve(m1, b1, true).getSolution().getLatex().isEmpty());
+	}
+
+
+	@Test // symmetric positive-definite matrices use Cholesky, symmetric indefinite ones fall back to LU
+	public void choleskyTest() {
+		MM_Solve solve = new MM_Solve(m2, b1);
+		assertTrue(solve.getMethod() == MM_Solve.Method.CHOLESKY);
+		assertTrue(residual(m2, b1, (Matrix) solve.getSolution().getAnswer()) < EPSILON);
+
+		Matrix indefinite = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0},{2.0,1.0}});
+		Matrix b = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{3.0,3.0}});
+		solve = new MM_Solve(indefinite, b);
+		assertTrue(solve.getMethod() == MM_Solve.Method.LU);
+		assertTrue(residual(indefinite, b, (Matrix) solve.getSolution().getAnswer()) < EPSILON);
+	}
+
+
+	@Test // more right-hand sides than fit in one block, for both factorizations
+	public void manyRightHandSidesTest() {
+		int n = 50, k = 40;
+		Matrix a = new Matrix(DisplayType.DECIMAL, n, n, gaussian(n*n));
+		Matrix b = new Matrix(DisplayType.DECIMAL, n, k, gaussian(n*k));
+		Matrix x = (Matrix) new MM_Solve(a, b, true).getSolution().getAnswer();
+		assertTrue(x.getNumRows() == n && x.getNumCols() == k);
+		assertTrue(residual(a, b, x) < 1e-9);
+
+		// A^T A + I is symmetric positive-definite
+		double[] values = a.toColumnMajor();
+		double[] spd = MM_Multiply.product(a.transposeView().toColumnMajor(), values, n, n, n);
+		for (int i = 0; i < n; i++){
+			spd[i*n + i] += 1;
+		}
+		Matrix s = new Matrix(DisplayType.DECIMAL, n, n, spd);
+		MM_Solve solve = new MM_Solve(s, b, true);
+		assertTrue(solve.getMethod() == MM_Solve.Method.CHOLESKY);
+		assertTrue(residual(s, b, (Matrix) solve.getSolution().getAnswer()) < 1e-8);
+	}
+
+
+	@Test // an overdetermined system gets the solution of the normal equations A^T A x = A^T b
+	public void leastSquaresTest() {
+		int m = 30, n = 5;
+		Matrix a = new Matrix(DisplayType.DECIMAL, m, n, gaussian(m*n));
+		Matrix b = new Matrix(DisplayType.DECIMAL, m, 2, gaussian(m*2));
+		MM_Solve solve = new MM_Solve(a, b);
+		Matrix x = (Matrix) solve.getSolution().getAnswer();
+		assertTrue(solve.getMethod() == MM_Solve.Method.LEAST_SQUARES);
+		assertTrue(x.getNumRows() == n && x.getNumCols() == 2);
+		// the residual is orthogonal to the columns of A
+		for (int c = 0; c < 2; c++){
+			for (int j = 0; j < n; j++){
+				double dot = 0;
+				for (int i = 0; i < m; i++){
+					double r = b.get(i,c);
+					for (int p = 0; p < n; p++){
+						r -= a.get(i,p) * x.get(p,c);
+					}
+					dot += a.get(i,j) * r;
+				}
+				assertEquals(0, dot, 1e-9);
+			}
+		}
+	}
+
+
+	@Test // an underdetermined system gets the solution in the row space of A, which is the shortest
+	public void minimumNormTest() {
+		Matrix a = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0},{1.0},{1.0}});
+		Matrix b = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{3.0}});
+		MM_Solve solve = new MM_Solve(a, b);
+		Matrix x = (Matrix) solve.getSolution().getAnswer();
+		assertTrue(solve.getMethod() == MM_Solve.Method.MINIMUM_NORM);
+		assertTrue(x.getNumRows() == 3 && x.getNumCols() == 1);
+		for (int i = 0; i < 3; i++){
+			assertEquals(1, x.get(i,0), EPSILON);
+		}
+
+		Matrix wide = new Matrix(DisplayType.DECIMAL, 4, 9, gaussian(4*9));
+		Matrix rhs = new Matrix(DisplayType.DECIMAL, 4, 3, gaussian(4*3));
+		assertTrue(residual(wide, rhs, (Matrix) new MM_Solve(wide, rhs, true).getSolution().getAnswer()) < EPSILON);
+	}
+
+
+	@Test // singular matrices, mismatched right-hand sides and null entries
+	public void errorTest() {
+		Matrix singular = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0},{2.0,4.0}});
+		Matrix[][] bad = {
+				{singular, new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0}})},
+				{m1, new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0}})},
+				{m1, new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,null,2.0}})},
+				{new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0,3.0},{2.0,4.0,6.0}}), b1}};
+		for (Matrix[] args : bad){
+			try{
+				new MM_Solve(args[0], args[1]);
+				fail();
+			}catch(IllegalArgumentException e){
+			}
+		}
+	}
+
+
+	// the largest entry of AX - B
+	private double residual(Matrix a, Matrix b, Matrix x){
+		double worst = 0;
+		for (int c = 0; c < b.getNumCols(); c++){
+			for (int i = 0; i < a.getNumRows(); i++){
+				double sum = -b.get(i,c);
+				for (int j = 0; j < a.getNumCols(); j++){
+					sum += a.get(i,j) * x.get(j,c);
+				}
+				worst = Math.max(worst, Math.abs(sum));
+			}
+		}
+		return worst;
+	}
+
+
+	private double[] gaussian(int size){
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++){
+			values[i] = _random.nextGaussian();
+		}
+		return values;
+	}
+
+}
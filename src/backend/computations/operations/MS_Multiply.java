@@ -12,6 +12,7 @@ import backend.blocks.Countable.DisplayType;
 import backend.blocks.Matrix;
 import backend.blocks.Op;
 import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
 
@@ -43,6 +44,18 @@ public class MS_Multiply extends Computable {
 	 * @param scalar the scalar to multiply by
 	 */
 	public MS_Multiply(Matrix matrix, Scalar scalar){
+		this(matrix,scalar,false);
+	}
+	
+	
+	/** Generates the Solution to a scalar multiplication
+	 * 
+	 * @param matrix the matrix to multiply
+	 * @param scalar the scalar to multiply by
+	 * @param answerOnly true if only the product is wanted, in which case no steps are generated
+	 */
+	public MS_Multiply(Matrix matrix, Scalar scalar, boolean answerOnly){
+		_answerOnly = answerOnly;
 		generateSolution(matrix,scalar);
 	}
 	
@@ -53,6 +66,18 @@ public class MS_Multiply extends Computable {
 	 * @param matrix the matrix to multiply
 	 */
 	public MS_Multiply(Scalar scalar, Matrix matrix){
+		this(scalar,matrix,false);
+	}
+	
+	
+	/** Generates the Solution to a scalar multiplication
+	 * 
+	 * @param scalar the scalar to multiply by
+	 * @param matrix the matrix to multiply
+	 * @param answerOnly true if only the product is wanted, in which case no steps are generated
+	 */
+	public MS_Multiply(Scalar scalar, Matrix matrix, boolean answerOnly){
+		_answerOnly = answerOnly;
 		_scalarFirst = true;
 		generateSolution(matrix,scalar);
 	}
@@ -72,29 +97,30 @@ public class MS_Multiply extends Computable {
 		DisplayType answerDisplayType = resolveDisplayType(argList);
 		
 		_displayType = answerDisplayType;
-		_scalarArg.setDisplayType(answerDisplayType);
-		_matrixArg.setDisplayType(answerDisplayType);
 		
-		Double[][] matrixVals = matrix.getValues();
-		Double scalarVal = scalar.getValue();
-		String[][] multiplicationStep = new String[matrixVals.length][matrixVals[0].length];
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		}
+		int numRows = matrix.getNumRows();
+		int numCols = matrix.getNumCols();
+		double scalarVal = scalar.getValue();
+		String[][] multiplicationStep = _answerOnly ? null : new String[numCols][numRows];
 		
-		Double[][] result = new Double[matrixVals.length][matrixVals[0].length];
-		for (int i = 0; i < matrixVals.length; i++){
-			for (int j = 0; j < matrixVals[0].length; j++){
-				if (matrixVals[i][j] == null){
-					throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		double[] result = new double[numCols*numRows]; // column-major
+		for (int i = 0; i < numCols; i++){
+			for (int j = 0; j < numRows; j++){
+				double val = matrix.get(j,i);
+				result[i*numRows + j] = val * scalarVal;
+				if (!_answerOnly){
+					multiplicationStep[i][j] = getDisplayValue(val,_displayType)+" \\ \\times \\ "+getDisplayValue(scalarVal,_displayType);
 				}
-				result[i][j] = matrixVals[i][j] * scalarVal;
-				multiplicationStep[i][j] = getDisplayValue(matrixVals[i][j],_displayType)+" \\ \\times \\ "+getDisplayValue(scalarVal,_displayType);
 			}
 		}
 		
-		Matrix step1Matrix = new Matrix(DisplayType.CUSTOM, result);
-		step1Matrix.setCustomDisplay(multiplicationStep);
+		Matrix step1Matrix = new Matrix(DisplayType.CUSTOM,numRows,numCols,result,multiplicationStep);
 		_answer = step1Matrix;
 		
-		Matrix step2Matrix = new Matrix(answerDisplayType, result);
+		Matrix step2Matrix = new Matrix(answerDisplayType,numRows,numCols,result);
 		
 		List<Countable> inputs = new ArrayList<>();
 		inputs.add(matrix);
@@ -105,6 +131,24 @@ public class MS_Multiply extends Computable {
 	}
 
 
+	/** Multiplies a sparse matrix by a scalar. Only the nonzeros are multiplied, and the answer shares where
+	 * they are with the matrix
+	 * 
+	 * @param matrix the matrix to multiply
+	 * @param scalar the value to multiply by
+	 * @param displayType how the answer is drawn
+	 * @return the product, stored sparsely. Multiplying by 0 gives a matrix with no nonzeros
+	 */
+	public static SparseMatrix sparseScale(SparseMatrix matrix, double scalar, DisplayType displayType){
+		double[] values = matrix.getNonZeroValues();
+		double[] scaled = new double[values.length];
+		for (int k = 0; k < values.length; k++){
+			scaled[k] = values[k] * scalar;
+		}
+		return new SparseMatrix(displayType, matrix.getNumRows(), matrix.getNumCols(), matrix.getColumnStarts(), matrix.getRowIndices(), scaled);
+	}
+
+
 	@Override
 	/**
 	 * Steps:
@@ -114,21 +158,24 @@ public class MS_Multiply extends Computable {
 	 */
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{Scalar \\ Matrix \\ Multiplication}");
 		toReturn.add("\\vspace{10mm} 1.");
 		StringBuilder b = new StringBuilder();
 		b.append("\\hspace{15mm}");
 		if (_scalarFirst){
-			b.append(_scalarArg.getDisplayValue());
+			b.append(_scalarArg.getDisplayValue(_displayType));
 			b.append(" \\times ");
 			b.append(MatrixDraw.getCorrectLatex(_displayType,_matrixArg));
 		}else{
 			b.append(MatrixDraw.getCorrectLatex(_displayType,_matrixArg));
 			b.append(" \\times ");
-			b.append(_scalarArg.getDisplayValue());
+			b.append(_scalarArg.getDisplayValue(_displayType));
 		}
 		toReturn.add(b.toString());
-		toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Mutliply \\ each \\ index \\ by \\ "+_scalarArg.getDisplayValue()+"}");
+		toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Mutliply \\ each \\ index \\ by \\ "+_scalarArg.getDisplayValue(_displayType)+"}");
 		toReturn.add("\\hspace{15mm} \\vspace{15mm}"+MatrixDraw.getCorrectLatex(DisplayType.CUSTOM,_answer));
 		toReturn.add("\\vspace{15mm} \\mathrm{Solution:}");
 		toReturn.add("\\hspace{15mm}\\vspace{15mm}"+MatrixDraw.getCorrectLatex(_displayType,_answer));
@@ -2,7 +2,10 @@ package backend.computations.operations;
 
 import backend.blocks.*;
 import backend.blocks.Countable.DisplayType;
+import backend.computations.infrastructure.CompositeStepSource;
 import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
+import backend.computations.infrastructure.LazyStepList;
 import backend.computations.infrastructure.Solution;
 import matrixDraw.*;
 
@@ -28,45 +31,67 @@ public class M_Columnspace extends Computable
 	 *@param matrix the matrix*/
 	public M_Columnspace(Matrix matrix) throws Exception
 	{
-		steps.add("\\vspace{10mm} \\mathrm{Column \\ Space}");
+		this(matrix,false);
+	}
+
+	/**Returns the column space basis of a matrix
+	 *
+	 *@param matrix the matrix
+	 *@param answerOnly true if only the answer is wanted, in which case no steps are generated*/
+	public M_Columnspace(Matrix matrix, boolean answerOnly) throws Exception
+	{
+		_answerOnly=answerOnly;
+		if (!answerOnly)
+			steps.add("\\vspace{10mm} \\mathrm{Column \\ Space}");
 		DisplayType answerDisplayType = matrix.getDisplayType(); // choose DisplayType to use
 
-		Double[][] values = matrix.getValues();
-		for (int i = 0; i < values.length; i++)
+		if (!matrix.isComplete())
 		{
-			for (int j = 0; j < values[0].length; j++)
+			throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		}
+
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
+		int numRows=matrix.getNumRows();
+
+		//without steps, take the pivot columns of the LU factors shared through the FactorizationCache
+		if (answerOnly)
+		{
+			int[] pivotColumns=FactorizationCache.getShared().getLU(matrix).getPivotColumns();
+			double[] pivots=new double[pivotColumns.length*numRows];
+			for (int i=0;i<pivotColumns.length;i++)
 			{
-				if (values[i][j] == null){
-					throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+				for (int j=0;j<numRows;j++)
+				{
+					pivots[i*numRows+j]=matrix.get(j,pivotColumns[i]);
 				}
 			}
+			Matrix answer=new Matrix(answerDisplayType,numRows,pivotColumns.length,pivots);
+			_solution = new Solution(Op.M_COLUMNSPACE, inputs, answer, steps);
+			return;
 		}
 
 		/**the reduced matrix*/
-		M_RowReduce rowreduce=new M_RowReduce(matrix);
-		Solution refsol=rowreduce.getSolution();
+		Solution refsol=M_RowReduce.solve(matrix,false);
 		Matrix ref=(Matrix)(refsol.getAnswer());
-		Double[][] refv=ref.getValues();
-		List<String> rr = rowreduce.toLatex();
-		rr.remove(0);
+		List<String> rr = refsol.getLatex();
 		steps.add("\\vspace{10mm}\\mathrm{1. \\ Determine \\ the \\ row \\ reduced \\ echelon \\ form \\ of \\ the \\ matrix}");
-		for (String stp : rr){
-			steps.add("\\hspace{15mm}" + stp);
-		}
+		//the row reduction steps go here; they are drawn from the cached row reduction when they are looked at
+		int split=steps.size();
 		steps.add("\\vspace{5mm}");
 		List<Integer> isPivot=new ArrayList<>();
 		//first zero row
 		int fzr=0;
 		steps.add("\\vspace{15mm} \\mathrm{2. \\ Identify \\ pivot \\ columns }");
-		for (int i=0;i<refv.length;i++)
+		for (int i=0;i<ref.getNumCols();i++)
 		{
-			if (fzr>=refv[0].length)//beyond the last row
+			if (fzr>=ref.getNumRows())//beyond the last row
 				break;
-			if (refv[i][fzr]!=0)
+			if (ref.get(fzr,i)!=0)
 			{
 				isPivot.add(i);
 				//get to bottom of non-zero
-				while (fzr<refv[0].length && !refv[i][fzr].equals(0.0))
+				while (fzr<ref.getNumRows() && ref.get(fzr,i)!=0.0)
 				{
 					fzr++;
 				}
@@ -75,28 +100,29 @@ public class M_Columnspace extends Computable
 		}
 
 		//the values of the pivot columns
-		Double[][] pivots=new Double[isPivot.size()][values[0].length];
+		double[] pivots=new double[isPivot.size()*numRows];
 		for (int i=0;i<isPivot.size();i++)
 		{
-			for (int j=0;j<values[0].length;j++)
+			for (int j=0;j<numRows;j++)
 			{
-				pivots[i][j]=values[isPivot.get(i)][j];
+				pivots[i*numRows+j]=matrix.get(j,isPivot.get(i));
 			}
 		}
 
-		Matrix answer=new Matrix(answerDisplayType,pivots);
+		Matrix answer=new Matrix(answerDisplayType,numRows,isPivot.size(),pivots);
 		String basis="\\vspace{20mm} \\mathrm{The \\ basis \\ consists \\ of \\ }";
-		for (Double[] col:pivots)
+		for (int col:isPivot)
 		{
-			Double[][] v=new Double[1][values[0].length];
-			v[0]=col;
-			Matrix m=new Matrix(answerDisplayType,v);
+			//read the column in place rather than copying it out
+			Matrix m=matrix.subMatrixView(0,col,numRows,1);
 			basis+=MatrixDraw.getCorrectLatex(answerDisplayType,m)+" ";
 		}
 		steps.add(basis);
 
-		List<Countable> inputs = new ArrayList<>();
-		inputs.add(matrix);
+		steps=new LazyStepList(new CompositeStepSource()
+			.add(steps.subList(0,split))
+			.add(rr.subList(1,rr.size()),"\\hspace{15mm}")
+			.add(steps.subList(split,steps.size())));
 
 		_solution = new Solution(Op.M_COLUMNSPACE, inputs, answer, steps);
 	}
@@ -0,0 +1,1551 @@
+package backend.computations.operations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import matrixDraw.MatrixDraw;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.SparseMatrix;
+import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.LUDecomposition;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Eigenvalues and eigenvectors of a square matrix, A v = lambda v. There are three engines:
+ *
+ * - Symmetric matrices are reduced to tridiagonal form with Householder reflections and diagonalized with
+ *   implicit QL rotations. The eigenvalues are real and the eigenvectors orthonormal.
+ * - Other matrices are reduced to upper Hessenberg form with Householder reflections, then shifted QR steps
+ *   (Francis double shifts, so complex pairs need no complex arithmetic) split it into 1x1 and 2x2 blocks,
+ *   whose eigenvalues are the eigenvalues of the matrix. The eigenvector of each real eigenvalue is found by
+ *   inverse iteration.
+ * - For large or sparse matrices, only the few eigenvalues of largest absolute value are found, from a Krylov
+ *   basis v, Av, A^2 v, ... built with one product by A per vector (Lanczos for symmetric matrices, Arnoldi
+ *   otherwise). The eigenvalues of the matrix projected onto the basis converge to the dominant ones long
+ *   before the basis is as large as the matrix, and a sparse matrix is never stored densely. The basis is
+ *   restarted whenever it is full, so it never holds more than a few dozen vectors.
+ *
+ * The answer is a column of the eigenvalues, largest absolute value first. If any of them are complex, the
+ * answer has a second column with their imaginary parts; complex eigenvalues come in conjugate pairs, the one
+ * with the positive imaginary part first. Eigenvectors of complex eigenvalues are left as zero columns
+ *
+ * @author baebi
+ */
+public class M_Eigen extends Computable {
+	private Solution _solution;
+	private Countable _matrix;
+	private Matrix _answer, _vectors;
+	private double[] _real, _imaginary;
+	private boolean _symmetric, _dominant;
+	private int _iterations, _krylovSize, _restarts;
+
+	// how many eigenvalues the EIGENVALUES Op finds for a large sparse matrix
+	public static final int DEFAULT_DOMINANT_COUNT = 6;
+
+	// matrices with more rows than this get their dominant eigenvalues only
+	private static final int DENSE_LIMIT = 500;
+
+	// entries that differ from their transpose by less than this, relative to the largest entry, count as equal
+	private static final double SYMMETRY_TOLERANCE = 1e-12;
+
+	// QL and QR converge in a few steps per eigenvalue, so this many means the input was not finite
+	private static final int MAX_STEPS_PER_EIGENVALUE = 30;
+
+	// the Krylov basis is restarted once it has this many vectors, or twice as many as there are eigenvalues
+	// wanted. It is never larger than the matrix
+	private static final int KRYLOV_SIZE = 40;
+
+	// restarting this many times without converging means the wanted eigenvalues are too close to the others to
+	// be told apart
+	private static final int MAX_RESTARTS = 100;
+
+	// the projected eigenvalues are compared every this many vectors
+	private static final int KRYLOV_CHECK_INTERVAL = 5;
+
+	// and are converged once they move by less than this, relative to the largest
+	private static final double KRYLOV_TOLERANCE = 1e-12;
+
+	// or, for symmetric matrices, once their residuals are below this, relative to the largest
+	private static final double RESIDUAL_TOLERANCE = 1e-10;
+
+	// inverse iteration shifts the eigenvalue by this, relative to the size of the matrix, so that A - lambda I
+	// can be factored
+	private static final double INVERSE_SHIFT = 1e-10;
+
+	// seeds the start vectors, so that answers are repeatable and can be cached
+	private static final long SEED = 0xE16L;
+
+	// steps draw the matrices only for matrices with at most this many rows
+	private static final int SHOWN_SIZE = 6;
+
+
+	/* (non-Javadoc)
+	 * @see backend.operations.Computable#getSolution()
+	 */
+	@Override
+	public Solution getSolution() {
+		return _solution;
+	}
+
+
+	/**
+	 * Computes every eigenvalue and eigenvector of a matrix, with steps
+	 *
+	 * @param matrix the matrix
+	 */
+	public M_Eigen(Matrix matrix){
+		this(matrix,false);
+	}
+
+
+	/**
+	 * Computes every eigenvalue of a matrix. The eigenvectors are computed too when the steps draw them, which is
+	 * for matrices with at most SHOWN_SIZE rows
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if only the eigenvalues are wanted, in which case no steps are generated
+	 */
+	public M_Eigen(Matrix matrix, boolean answerOnly){
+		this(matrix,answerOnly,!answerOnly && matrix.getNumRows() <= SHOWN_SIZE);
+	}
+
+
+	/**
+	 * Finds the eigenvalues for the EIGENVALUES Op: every eigenvalue of a matrix with at most DENSE_LIMIT rows,
+	 * otherwise the DEFAULT_DOMINANT_COUNT of largest absolute value from a Krylov basis, as for a sparse matrix
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if only the eigenvalues are wanted, in which case no steps are generated
+	 * @return the computation
+	 */
+	public static M_Eigen forOp(Matrix matrix, boolean answerOnly){
+		if (matrix.getNumRows() > DENSE_LIMIT){
+			return new M_Eigen(matrix,DEFAULT_DOMINANT_COUNT,answerOnly,!answerOnly);
+		}
+		return new M_Eigen(matrix,answerOnly);
+	}
+
+
+	/**
+	 * Computes every eigenvalue of a matrix
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if no steps should be generated
+	 * @param withVectors true to compute the eigenvectors along with the eigenvalues
+	 */
+	public M_Eigen(Matrix matrix, boolean answerOnly, boolean withVectors){
+		int n = checkSquare(matrix, matrix.getNumRows(), matrix.getNumCols());
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_answerOnly = answerOnly;
+		_matrix = matrix;
+		double[] a = matrix.toColumnMajor();
+		_symmetric = isSymmetric(a,n);
+		double[] real = new double[n];
+		double[] imaginary = new double[n];
+		double[] vectors = null;
+		if (_symmetric){
+			// the average with the transpose, which only differs from the matrix by rounding
+			double[] v = new double[n*n];
+			for (int j = 0; j < n; j++){
+				for (int i = 0; i < n; i++){
+					v[j*n + i] = (a[j*n + i] + a[i*n + j]) / 2;
+				}
+			}
+			tridiagonalize(v,real,imaginary,n,withVectors);
+			_iterations = diagonalize(real,imaginary,withVectors ? v : null,n);
+			Arrays.fill(imaginary,0);
+			vectors = v;
+		}else{
+			double[] h = a.clone();
+			toHessenberg(h,n);
+			_iterations = hessenbergEigenvalues(h,n,real,imaginary);
+			if (withVectors){
+				vectors = eigenvectors(a,n,real,imaginary);
+			}
+		}
+		finish(n,n,real,imaginary,withVectors ? vectors : null);
+	}
+
+
+	/**
+	 * Computes the eigenvalues of a sparse matrix without storing it densely: every eigenvalue if the matrix has
+	 * at most DENSE_LIMIT rows, otherwise the DEFAULT_DOMINANT_COUNT of largest absolute value. A Krylov basis
+	 * as large as the matrix gives every eigenvalue exactly
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if only the eigenvalues are wanted, in which case no steps or eigenvectors are
+	 * generated
+	 */
+	public M_Eigen(SparseMatrix matrix, boolean answerOnly){
+		this(matrix,matrix.getNumRows() <= DENSE_LIMIT ? matrix.getNumRows() : DEFAULT_DOMINANT_COUNT,answerOnly,!answerOnly);
+	}
+
+
+	/**
+	 * Computes the eigenvalues of largest absolute value of a matrix from a Krylov basis, without the O(n^3)
+	 * work of finding all of them. The matrix is only ever multiplied by vectors, so each vector of the basis
+	 * costs one product and a sparse matrix is never stored densely
+	 *
+	 * @param matrix the matrix, a Matrix or a SparseMatrix
+	 * @param count the number of eigenvalues to find
+	 * @param answerOnly true if no steps should be generated
+	 * @param withVectors true to compute the eigenvectors along with the eigenvalues
+	 */
+	public M_Eigen(Countable matrix, int count, boolean answerOnly, boolean withVectors){
+		final int n;
+		Operator operator;
+		if (matrix instanceof SparseMatrix){
+			final SparseMatrix sparse = (SparseMatrix) matrix;
+			n = checkSquare(sparse, sparse.getNumRows(), sparse.getNumCols());
+			_symmetric = isSymmetric(sparse);
+			final int[] colStart = sparse.getColumnStarts(), rowIndex = sparse.getRowIndices();
+			final double[] values = sparse.getNonZeroValues();
+			operator = new Operator(){
+				@Override
+				public double[] apply(double[] x){
+					double[] y = new double[n];
+					for (int j = 0; j < n; j++){
+						double xj = x[j];
+						if (xj != 0){
+							for (int k = colStart[j]; k < colStart[j+1]; k++){
+								y[rowIndex[k]] += values[k] * xj;
+							}
+						}
+					}
+					return y;
+				}
+			};
+		}else if (matrix instanceof Matrix){
+			Matrix dense = (Matrix) matrix;
+			n = checkSquare(dense, dense.getNumRows(), dense.getNumCols());
+			if (!dense.isComplete()){
+				throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+			}
+			final double[] a = dense.toColumnMajor();
+			_symmetric = isSymmetric(a,n);
+			operator = new Operator(){
+				@Override
+				public double[] apply(double[] x){
+					double[] y = new double[n];
+					for (int j = 0; j < n; j++){
+						double xj = x[j];
+						if (xj != 0){
+							for (int i = 0; i < n; i++){
+								y[i] += a[j*n + i] * xj;
+							}
+						}
+					}
+					return y;
+				}
+			};
+		}else{
+			throw new IllegalArgumentException("ERROR: Eigenvalues require a matrix");
+		}
+		if (count < 1 || count > n){
+			throw new IllegalArgumentException("ERROR: The number of eigenvalues must be from 1 to "+n);
+		}
+		_answerOnly = answerOnly;
+		_matrix = matrix;
+		_dominant = true;
+		krylov(operator,n,count,withVectors);
+	}
+
+
+	/**
+	 * @param matrix a matrix
+	 * @param rows its number of rows
+	 * @param cols its number of columns
+	 * @return the number of rows
+	 * @throws IllegalArgumentException if the matrix isn't square
+	 */
+	private static int checkSquare(Countable matrix, int rows, int cols){
+		if (rows != cols){
+			throw new IllegalArgumentException("ERROR: Eigenvalues require a square matrix");
+		}
+		return rows;
+	}
+
+
+	/**
+	 * Sorts the eigenvalues, keeps the first count of them, and makes the answer and the Solution
+	 *
+	 * @param n the size of the matrix
+	 * @param count the number of eigenvalues to keep
+	 * @param real the real parts of the eigenvalues
+	 * @param imaginary their imaginary parts
+	 * @param vectors an eigenvector for each eigenvalue, n long and back to back, or null
+	 */
+	private void finish(int n, int count, final double[] real, final double[] imaginary, double[] vectors){
+		Integer[] order = new Integer[real.length];
+		for (int i = 0; i < order.length; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer p, Integer q){
+				int byModulus = Double.compare(Math.hypot(real[q],imaginary[q]), Math.hypot(real[p],imaginary[p]));
+				if (byModulus != 0){
+					return byModulus;
+				}
+				int byReal = Double.compare(real[q], real[p]);
+				return byReal != 0 ? byReal : Double.compare(imaginary[q], imaginary[p]);
+			}
+		});
+		_real = new double[count];
+		_imaginary = new double[count];
+		boolean complex = false;
+		double[] sortedVectors = vectors == null ? null : new double[n*count];
+		for (int i = 0; i < count; i++){
+			int from = order[i];
+			_real[i] = real[from];
+			_imaginary[i] = imaginary[from];
+			complex |= imaginary[from] != 0;
+			if (vectors != null){
+				System.arraycopy(vectors, from*n, sortedVectors, i*n, n);
+			}
+		}
+		double[] answer = Arrays.copyOf(_real, complex ? 2*count : count);
+		if (complex){
+			System.arraycopy(_imaginary, 0, answer, count, count);
+		}
+		_answer = new Matrix(DisplayType.DECIMAL, count, complex ? 2 : 1, answer);
+		if (sortedVectors != null){
+			_vectors = new Matrix(DisplayType.DECIMAL, n, count, sortedVectors);
+		}
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(_matrix);
+		_solution = new Solution(Op.M_EIGEN, inputs, _answer, toLatex());
+	}
+
+
+	//===================================
+	// Symmetric engine
+	//===================================
+
+	/**
+	 * @param a a square matrix, column-major
+	 * @param n its size
+	 * @return true if the matrix equals its transpose, up to rounding
+	 */
+	private static boolean isSymmetric(double[] a, int n){
+		double max = 0;
+		for (double value : a){
+			max = Math.max(max, Math.abs(value));
+		}
+		double tolerance = SYMMETRY_TOLERANCE * max;
+		for (int j = 0; j < n; j++){
+			for (int i = j+1; i < n; i++){
+				if (Math.abs(a[j*n + i] - a[i*n + j]) > tolerance){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * @param matrix a square sparse matrix
+	 * @return true if the matrix has the same nonzeros as its transpose, up to rounding
+	 */
+	private static boolean isSymmetric(SparseMatrix matrix){
+		SparseMatrix transpose = M_Transpose.sparseTranspose(matrix);
+		if (!Arrays.equals(matrix.getColumnStarts(), transpose.getColumnStarts()) || !Arrays.equals(matrix.getRowIndices(), transpose.getRowIndices())){
+			return false;
+		}
+		double[] values = matrix.getNonZeroValues(), transposed = transpose.getNonZeroValues();
+		double max = 0;
+		for (double value : values){
+			max = Math.max(max, Math.abs(value));
+		}
+		for (int k = 0; k < values.length; k++){
+			if (Math.abs(values[k] - transposed[k]) > SYMMETRY_TOLERANCE * max){
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Householder reduction of a symmetric matrix to tridiagonal form. Only the lower triangle is read
+	 *
+	 * @param v the matrix, n x n column-major. It ends up as the orthogonal matrix of the reflections if they are
+	 * accumulated, and is used up otherwise
+	 * @param d ends up as the diagonal of the tridiagonal matrix
+	 * @param e ends up as its subdiagonal: e[i] is the entry between rows i-1 and i, and e[0] is 0
+	 * @param n the size of the matrix
+	 * @param accumulate true to multiply the reflections together, which is only needed for the eigenvectors
+	 */
+	static void tridiagonalize(double[] v, double[] d, double[] e, int n, boolean accumulate){
+		for (int j = 0; j < n; j++){
+			d[j] = v[j*n + n-1];
+		}
+		for (int i = n-1; i > 0; i--){
+			// reflect row i into a multiple of e_(i-1)
+			double scale = 0, h = 0;
+			for (int k = 0; k < i; k++){
+				scale += Math.abs(d[k]);
+			}
+			if (scale == 0){
+				e[i] = d[i-1];
+				for (int j = 0; j < i; j++){
+					d[j] = v[j*n + i-1];
+					v[j*n + i] = 0;
+					v[i*n + j] = 0;
+				}
+			}else{
+				for (int k = 0; k < i; k++){
+					d[k] /= scale;
+					h += d[k] * d[k];
+				}
+				double f = d[i-1];
+				double g = Math.sqrt(h);
+				if (f > 0){
+					g = -g;
+				}
+				e[i] = scale * g;
+				h -= f * g;
+				d[i-1] = f - g;
+				for (int j = 0; j < i; j++){
+					e[j] = 0;
+				}
+
+				// apply the reflection to the rest of the lower triangle
+				for (int j = 0; j < i; j++){
+					f = d[j];
+					v[i*n + j] = f;
+					g = e[j] + v[j*n + j] * f;
+					for (int k = j+1; k <= i-1; k++){
+						g += v[j*n + k] * d[k];
+						e[k] += v[j*n + k] * f;
+					}
+					e[j] = g;
+				}
+				f = 0;
+				for (int j = 0; j < i; j++){
+					e[j] /= h;
+					f += e[j] * d[j];
+				}
+				double hh = f / (h + h);
+				for (int j = 0; j < i; j++){
+					e[j] -= hh * d[j];
+				}
+				for (int j = 0; j < i; j++){
+					f = d[j];
+					g = e[j];
+					for (int k = j; k <= i-1; k++){
+						v[j*n + k] -= (f * e[k] + g * d[k]);
+					}
+					d[j] = v[j*n + i-1];
+					v[j*n + i] = 0;
+				}
+			}
+			d[i] = h;
+		}
+		if (!accumulate){
+			// the diagonal is left on the diagonal of v
+			for (int j = 0; j < n; j++){
+				d[j] = v[j*n + j];
+			}
+			if (n > 0){
+				e[0] = 0;
+			}
+			return;
+		}
+
+		// multiply the reflections together
+		for (int i = 0; i < n-1; i++){
+			v[i*n + n-1] = v[i*n + i];
+			v[i*n + i] = 1;
+			double h = d[i+1];
+			if (h != 0){
+				for (int k = 0; k <= i; k++){
+					d[k] = v[(i+1)*n + k] / h;
+				}
+				for (int j = 0; j <= i; j++){
+					double g = 0;
+					for (int k = 0; k <= i; k++){
+						g += v[(i+1)*n + k] * v[j*n + k];
+					}
+					for (int k = 0; k <= i; k++){
+						v[j*n + k] -= g * d[k];
+					}
+				}
+			}
+			for (int k = 0; k <= i; k++){
+				v[(i+1)*n + k] = 0;
+			}
+		}
+		for (int j = 0; j < n; j++){
+			d[j] = v[j*n + n-1];
+			v[j*n + n-1] = 0;
+		}
+		if (n > 0){
+			v[(n-1)*n + n-1] = 1;
+			e[0] = 0;
+		}
+	}
+
+
+	/**
+	 * Implicit QL iteration on a symmetric tridiagonal matrix: rotations chase the off-diagonal entries to zero,
+	 * leaving the eigenvalues on the diagonal
+	 *
+	 * @param d the diagonal, which ends up as the eigenvalues (unsorted)
+	 * @param e the subdiagonal, as left by tridiagonalize. It is used up
+	 * @param v the rotations are applied to the columns of this n x n matrix (the output of tridiagonalize, or
+	 * the identity), which ends up as the eigenvectors. Null to find the eigenvalues only
+	 * @param n the size of the matrix
+	 * @return the number of QL steps it took
+	 * @throws IllegalArgumentException if the iteration doesn't converge
+	 */
+	static int diagonalize(double[] d, double[] e, double[] v, int n){
+		for (int i = 1; i < n; i++){
+			e[i-1] = e[i];
+		}
+		if (n > 0){
+			e[n-1] = 0;
+		}
+		int steps = 0;
+		double f = 0, largest = 0;
+		double eps = Math.ulp(1.0);
+		for (int l = 0; l < n; l++){
+			// find a small subdiagonal entry to split at
+			largest = Math.max(largest, Math.abs(d[l]) + Math.abs(e[l]));
+			int m = l;
+			while (m < n && Math.abs(e[m]) > eps*largest){
+				m++;
+			}
+			int lSteps = 0;
+			while (m > l && Math.abs(e[l]) > eps*largest){
+				if (++lSteps > MAX_STEPS_PER_EIGENVALUE){
+					throw new IllegalArgumentException("ERROR: The eigenvalues did not converge");
+				}
+				steps++;
+				// the implicit shift
+				double g = d[l];
+				double p = (d[l+1] - g) / (2 * e[l]);
+				double r = Math.hypot(p, 1);
+				if (p < 0){
+					r = -r;
+				}
+				d[l] = e[l] / (p + r);
+				d[l+1] = e[l] * (p + r);
+				double dl1 = d[l+1];
+				double h = g - d[l];
+				for (int i = l+2; i < n; i++){
+					d[i] -= h;
+				}
+				f += h;
+
+				// the QL step, a rotation per row from m up to l
+				p = d[m];
+				double c = 1, c2 = c, c3 = c;
+				double el1 = e[l+1];
+				double s = 0, s2 = 0;
+				for (int i = m-1; i >= l; i--){
+					c3 = c2;
+					c2 = c;
+					s2 = s;
+					g = c * e[i];
+					h = c * p;
+					r = Math.hypot(p, e[i]);
+					e[i+1] = s * r;
+					s = e[i] / r;
+					c = p / r;
+					p = c * d[i] - s * g;
+					d[i+1] = h + s * (c * g + s * d[i]);
+					if (v != null){
+						for (int k = 0; k < n; k++){
+							h = v[(i+1)*n + k];
+							v[(i+1)*n + k] = s * v[i*n + k] + c * h;
+							v[i*n + k] = c * v[i*n + k] - s * h;
+						}
+					}
+				}
+				p = -s * s2 * c3 * el1 * e[l] / dl1;
+				e[l] = s * p;
+				d[l] = c * p;
+			}
+			d[l] += f;
+			e[l] = 0;
+		}
+		return steps;
+	}
+
+
+	//===================================
+	// General engine
+	//===================================
+
+	/**
+	 * Householder reduction to upper Hessenberg form, which has the same eigenvalues. The reflections are not
+	 * kept
+	 *
+	 * @param h the matrix, n x n column-major. It ends up upper Hessenberg, with zeros below the subdiagonal
+	 * @param n the size of the matrix
+	 */
+	static void toHessenberg(double[] h, int n){
+		double[] u = new double[n];
+		for (int m = 1; m < n-1; m++){
+			// the reflection that zeroes column m-1 below row m
+			double scale = 0;
+			for (int i = m; i < n; i++){
+				scale += Math.abs(h[(m-1)*n + i]);
+			}
+			if (scale == 0){
+				continue;
+			}
+			double norm = 0;
+			for (int i = n-1; i >= m; i--){
+				u[i] = h[(m-1)*n + i] / scale;
+				norm += u[i] * u[i];
+			}
+			double g = Math.sqrt(norm);
+			if (u[m] > 0){
+				g = -g;
+			}
+			norm -= u[m] * g;
+			u[m] -= g;
+
+			// H = (I - u u^T / norm) H (I - u u^T / norm), from the left a column at a time
+			for (int j = m; j < n; j++){
+				double f = 0;
+				for (int i = m; i < n; i++){
+					f += u[i] * h[j*n + i];
+				}
+				f /= norm;
+				for (int i = m; i < n; i++){
+					h[j*n + i] -= f * u[i];
+				}
+			}
+			// and from the right, a column at a time as well
+			double[] f = new double[n];
+			for (int j = m; j < n; j++){
+				for (int i = 0; i < n; i++){
+					f[i] += h[j*n + i] * u[j];
+				}
+			}
+			for (int j = m; j < n; j++){
+				double uj = u[j] / norm;
+				for (int i = 0; i < n; i++){
+					h[j*n + i] -= f[i] * uj;
+				}
+			}
+			h[(m-1)*n + m] = scale * g;
+			for (int i = m+1; i < n; i++){
+				h[(m-1)*n + i] = 0;
+			}
+		}
+	}
+
+
+	/**
+	 * The eigenvalues of an upper Hessenberg matrix by shifted QR. Each step is a Francis double shift by the
+	 * eigenvalues of the bottom 2x2 block, which keeps the arithmetic real. Once a subdiagonal entry is
+	 * negligible the matrix splits there, and a 1x1 or 2x2 block at the bottom gives one or two eigenvalues
+	 *
+	 * @param h the matrix, n x n column-major. It is used up
+	 * @param n the size of the matrix
+	 * @param real ends up as the real parts of the eigenvalues
+	 * @param imaginary ends up as their imaginary parts
+	 * @return the number of QR steps it took
+	 * @throws IllegalArgumentException if the iteration doesn't converge
+	 */
+	static int hessenbergEigenvalues(double[] h, int n, double[] real, double[] imaginary){
+		double eps = Math.ulp(1.0);
+		double norm = 0;
+		for (int j = 0; j < n; j++){
+			for (int i = 0; i <= Math.min(j+1, n-1); i++){
+				norm += Math.abs(h[j*n + i]);
+			}
+		}
+		double exshift = 0;
+		double p = 0, q = 0, r = 0, s = 0, z = 0, w, x, y;
+		int steps = 0;
+		int iter = 0;
+		int last = n-1; // the bottom of the part that isn't split off yet
+		while (last >= 0){
+			// look for a single small subdiagonal entry
+			int l = last;
+			while (l > 0){
+				s = Math.abs(h[(l-1)*n + l-1]) + Math.abs(h[l*n + l]);
+				if (s == 0){
+					s = norm;
+				}
+				if (Math.abs(h[(l-1)*n + l]) < eps * s){
+					break;
+				}
+				l--;
+			}
+
+			if (l == last){
+				// a 1x1 block: one real eigenvalue
+				real[last] = h[last*n + last] + exshift;
+				imaginary[last] = 0;
+				last--;
+				iter = 0;
+			}else if (l == last-1){
+				// a 2x2 block: two real eigenvalues or a complex pair
+				w = h[last*n + last-1] * h[(last-1)*n + last];
+				p = (h[(last-1)*n + last-1] - h[last*n + last]) / 2;
+				q = p * p + w;
+				z = Math.sqrt(Math.abs(q));
+				x = h[last*n + last] + exshift;
+				if (q >= 0){
+					z = (p >= 0) ? p + z : p - z;
+					real[last-1] = x + z;
+					real[last] = (z != 0) ? x - w / z : x + z;
+					imaginary[last-1] = 0;
+					imaginary[last] = 0;
+				}else{
+					real[last-1] = x + p;
+					real[last] = x + p;
+					imaginary[last-1] = z;
+					imaginary[last] = -z;
+				}
+				last -= 2;
+				iter = 0;
+			}else{
+				if (++iter > MAX_STEPS_PER_EIGENVALUE){
+					throw new IllegalArgumentException("ERROR: The eigenvalues did not converge");
+				}
+				steps++;
+				x = h[last*n + last];
+				y = h[(last-1)*n + last-1];
+				w = h[(last-1)*n + last] * h[last*n + last-1];
+
+				// exceptional shifts, for the rare cycles that ordinary shifts can't break
+				if (iter == 10){
+					exshift += x;
+					for (int i = 0; i <= last; i++){
+						h[i*n + i] -= x;
+					}
+					s = Math.abs(h[(last-1)*n + last]) + Math.abs(h[(last-2)*n + last-1]);
+					x = y = 0.75 * s;
+					w = -0.4375 * s * s;
+				}
+				if (iter == 20){
+					s = (y - x) / 2;
+					s = s * s + w;
+					if (s > 0){
+						s = Math.sqrt(s);
+						if (y < x){
+							s = -s;
+						}
+						s = x - w / ((y - x) / 2 + s);
+						for (int i = 0; i <= last; i++){
+							h[i*n + i] -= s;
+						}
+						exshift += s;
+						x = y = w = 0.964;
+					}
+				}
+
+				// look for two consecutive small subdiagonal entries, to start the step as low as possible
+				int m = last-2;
+				while (m >= l){
+					z = h[m*n + m];
+					r = x - z;
+					s = y - z;
+					p = (r * s - w) / h[m*n + m+1] + h[(m+1)*n + m];
+					q = h[(m+1)*n + m+1] - z - r - s;
+					r = h[(m+1)*n + m+2];
+					s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+					p /= s;
+					q /= s;
+					r /= s;
+					if (m == l){
+						break;
+					}
+					if (Math.abs(h[(m-1)*n + m]) * (Math.abs(q) + Math.abs(r)) <
+							eps * (Math.abs(p) * (Math.abs(h[(m-1)*n + m-1]) + Math.abs(z) + Math.abs(h[(m+1)*n + m+1])))){
+						break;
+					}
+					m--;
+				}
+				for (int i = m+2; i <= last; i++){
+					h[(i-2)*n + i] = 0;
+					if (i > m+2){
+						h[(i-3)*n + i] = 0;
+					}
+				}
+
+				// the double QR step on rows l to last and columns m to last, a 3x3 reflection at a time
+				for (int k = m; k <= last-1; k++){
+					boolean notLast = k != last-1;
+					if (k != m){
+						p = h[(k-1)*n + k];
+						q = h[(k-1)*n + k+1];
+						r = notLast ? h[(k-1)*n + k+2] : 0;
+						x = Math.abs(p) + Math.abs(q) + Math.abs(r);
+						if (x == 0){
+							continue;
+						}
+						p /= x;
+						q /= x;
+						r /= x;
+					}
+					s = Math.sqrt(p * p + q * q + r * r);
+					if (p < 0){
+						s = -s;
+					}
+					if (s == 0){
+						continue;
+					}
+					if (k != m){
+						h[(k-1)*n + k] = -s * x;
+					}else if (l != m){
+						h[(k-1)*n + k] = -h[(k-1)*n + k];
+					}
+					p += s;
+					x = p / s;
+					y = q / s;
+					z = r / s;
+					q /= p;
+					r /= p;
+					for (int j = k; j <= last; j++){
+						p = h[j*n + k] + q * h[j*n + k+1];
+						if (notLast){
+							p += r * h[j*n + k+2];
+							h[j*n + k+2] -= p * z;
+						}
+						h[j*n + k] -= p * x;
+						h[j*n + k+1] -= p * y;
+					}
+					for (int i = l; i <= Math.min(last, k+3); i++){
+						p = x * h[k*n + i] + y * h[(k+1)*n + i];
+						if (notLast){
+							p += z * h[(k+2)*n + i];
+							h[(k+2)*n + i] -= p * r;
+						}
+						h[k*n + i] -= p;
+						h[(k+1)*n + i] -= p * q;
+					}
+				}
+			}
+		}
+		return steps;
+	}
+
+
+	/**
+	 * The eigenvectors of the real eigenvalues of a matrix, by inverse iteration: solving with A - lambda I
+	 * magnifies the part of a vector along the eigenvector of lambda until nothing else is left
+	 *
+	 * @param a the matrix, n x n column-major
+	 * @param n its size
+	 * @param real the real parts of its eigenvalues
+	 * @param imaginary their imaginary parts
+	 * @return a unit eigenvector for each real eigenvalue and zeros for each complex one, n long and back to back
+	 */
+	private static double[] eigenvectors(double[] a, int n, double[] real, double[] imaginary){
+		double norm = 0;
+		for (double value : a){
+			norm = Math.max(norm, Math.abs(value));
+		}
+		double[] vectors = new double[n*real.length];
+		Random random = new Random(SEED);
+		for (int k = 0; k < real.length; k++){
+			double[] start = new double[n];
+			for (int i = 0; i < n; i++){
+				start[i] = random.nextDouble() - 0.5;
+			}
+			if (imaginary[k] == 0){
+				System.arraycopy(inverseIteration(a, n, real[k], norm, start), 0, vectors, k*n, n);
+			}
+		}
+		return vectors;
+	}
+
+
+	/**
+	 * @param a a matrix, n x n column-major
+	 * @param n its size
+	 * @param lambda a real eigenvalue of the matrix
+	 * @param norm the largest absolute value in the matrix
+	 * @param start where to start
+	 * @return a unit eigenvector of lambda, with its largest entry positive, or zeros if none was found
+	 */
+	private static double[] inverseIteration(double[] a, int n, double lambda, double norm, double[] start){
+		double shift = Math.max(norm, Double.MIN_NORMAL) * INVERSE_SHIFT;
+		for (int attempt = 0; attempt < 3; attempt++, shift *= 1000){
+			double[] shifted = a.clone();
+			for (int i = 0; i < n; i++){
+				shifted[i*n + i] -= lambda + shift;
+			}
+			LUDecomposition lu = new LUDecomposition(new Matrix(DisplayType.DECIMAL, n, n, shifted));
+			if (lu.isSingular()){
+				continue; // the shift landed on the eigenvalue to working precision
+			}
+			double[] x = start;
+			boolean finite = true;
+			for (int iteration = 0; iteration < 3 && finite; iteration++){
+				x = lu.solve(x, 1);
+				finite = normalize(x);
+			}
+			if (finite){
+				return x;
+			}
+		}
+		return new double[n];
+	}
+
+
+	/**
+	 * Scales a vector to unit length with its largest entry positive
+	 *
+	 * @param x the vector
+	 * @return false if it couldn't be, because it was zero or not finite
+	 */
+	private static boolean normalize(double[] x){
+		double largest = 0;
+		for (double value : x){
+			if (Math.abs(value) > Math.abs(largest)){
+				largest = value;
+			}
+		}
+		if (largest == 0 || Double.isInfinite(largest)){
+			return false;
+		}
+		double sum = 0;
+		for (double value : x){
+			sum += (value / largest) * (value / largest);
+		}
+		if (Double.isNaN(sum)){
+			return false;
+		}
+		double scale = 1 / (largest * Math.sqrt(sum)); // dividing by the signed largest entry makes it positive
+		for (int i = 0; i < x.length; i++){
+			x[i] *= scale;
+		}
+		return true;
+	}
+
+
+	//===================================
+	// Krylov engine
+	//===================================
+
+	/**
+	 * Multiplies a matrix by vectors, without needing it stored densely
+	 */
+	private interface Operator {
+		/**
+		 * @param x a vector
+		 * @return the matrix times x
+		 */
+		double[] apply(double[] x);
+	}
+
+
+	/**
+	 * Finds the dominant eigenvalues from an orthonormal Krylov basis. Each new vector is A times the last one,
+	 * orthogonalized against the whole basis (twice, so that rounding doesn't let the basis drift), and the
+	 * coefficients form the projected matrix H = V^T A V. For symmetric matrices H is tridiagonal and this is
+	 * Lanczos; otherwise H is Hessenberg and this is Arnoldi. Every few vectors the eigenvalues of H are found
+	 * with the dense engines, and the basis stops growing once the ones wanted are accurate: for Lanczos once
+	 * their residuals are small, and for Arnoldi once they stop moving. A full basis is restarted (see restart)
+	 * down to the part that holds the wanted eigenvalues, so memory stays at KRYLOV_SIZE vectors however large
+	 * the matrix is
+	 *
+	 * @param operator multiplies the matrix by vectors
+	 * @param n the size of the matrix
+	 * @param count the number of eigenvalues wanted
+	 * @param withVectors true to compute the eigenvectors too
+	 * @throws IllegalArgumentException if the eigenvalues did not converge within MAX_RESTARTS restarts
+	 */
+	private void krylov(Operator operator, int n, int count, boolean withVectors){
+		int maxSize = Math.min(n, Math.max(KRYLOV_SIZE, 2*count));
+		// a restart keeps the wanted eigenvalues and as many again of the next ones, which speeds convergence
+		int keep = Math.min(maxSize-1, count + (maxSize - count)/2);
+		int ld = maxSize + 1;
+		double[] projected = new double[ld*maxSize];
+		// the basis, and after it the next vector
+		List<double[]> basis = new ArrayList<>();
+		Random random = new Random(SEED);
+		basis.add(randomUnitVector(random, n, basis));
+
+		int size = 0;
+		double[] previous = null;
+		while (true){
+			int j = size;
+			double[] w = operator.apply(basis.get(j));
+			for (int pass = 0; pass < 2; pass++){
+				for (int i = 0; i <= j; i++){
+					double[] b = basis.get(i);
+					double c = dot(b, w);
+					projected[j*ld + i] += c;
+					for (int k = 0; k < n; k++){
+						w[k] -= c * b[k];
+					}
+				}
+			}
+			double beta = Math.sqrt(dot(w, w));
+			size++;
+			if (size == n){
+				break; // the basis spans everything, so its eigenvalues are exact
+			}
+			double scale = 0;
+			for (int i = 0; i <= j; i++){
+				scale = Math.max(scale, Math.abs(projected[j*ld + i]));
+			}
+			if (beta <= KRYLOV_TOLERANCE * Math.max(scale, Double.MIN_NORMAL)){
+				// the basis spans an invariant subspace, so its eigenvalues are exact; carry on from a new direction
+				basis.add(randomUnitVector(random, n, basis));
+			}else{
+				projected[j*ld + j+1] = beta;
+				for (int k = 0; k < n; k++){
+					w[k] /= beta;
+				}
+				basis.add(w);
+			}
+			if (size >= count && (size % KRYLOV_CHECK_INTERVAL == 0 || size == maxSize)){
+				if (_symmetric){
+					if (residualsSmall(projected, ld, size, count)){
+						break;
+					}
+				}else{
+					double[] now = flatten(ritzValues(projected, ld, size, count), count);
+					if (previous != null && converged(previous, now)){
+						break;
+					}
+					previous = now;
+				}
+			}
+			if (size == maxSize){
+				if (_restarts == MAX_RESTARTS){
+					throw new IllegalArgumentException("ERROR: The eigenvalues did not converge");
+				}
+				_restarts++;
+				size = restart(projected, ld, size, keep, basis, n, random);
+			}
+		}
+		_krylovSize = size;
+
+		// every eigenvalue of H, sorted so the wanted ones come first
+		double[][] all = ritzValues(projected, ld, size, size);
+		double[] real = Arrays.copyOf(all[0], count);
+		double[] imaginary = Arrays.copyOf(all[1], count);
+		double[] vectors = null;
+		if (withVectors){
+			double[] h = square(projected, ld, size);
+			double[] y;
+			if (_symmetric){
+				double[] d = new double[size], e = new double[size];
+				y = new double[size*size];
+				for (int i = 0; i < size; i++){
+					d[i] = h[i*size + i];
+					e[i] = i == 0 ? 0 : h[(i-1)*size + i];
+					y[i*size + i] = 1;
+				}
+				diagonalize(d, e, y, size);
+				y = matchVectors(d, y, size, real);
+			}else{
+				y = eigenvectors(h, size, real, imaginary);
+			}
+			// back from coordinates in the basis to vectors of the matrix
+			vectors = new double[n*count];
+			for (int c = 0; c < count; c++){
+				for (int k = 0; k < size; k++){
+					double coefficient = y[c*size + k];
+					if (coefficient != 0){
+						double[] b = basis.get(k);
+						for (int i = 0; i < n; i++){
+							vectors[c*n + i] += coefficient * b[i];
+						}
+					}
+				}
+				if (imaginary[c] == 0){
+					double[] vector = Arrays.copyOfRange(vectors, c*n, (c+1)*n);
+					normalize(vector);
+					System.arraycopy(vector, 0, vectors, c*n, n);
+				}
+			}
+		}
+		finish(n, count, real, imaginary, vectors);
+	}
+
+
+	/**
+	 * Shrinks a full basis to the part that holds the wanted eigenvalues, by implicit restarting: H is changed to
+	 * Q^T H Q by a shifted QR step (see shiftStep) for each unwanted eigenvalue mu of H, with a complex pair as
+	 * one double shift so everything stays real. That is the basis a new start vector filtered by the factors
+	 * (A - mu I) would have built, so the unwanted eigenvalues are damped out without any products by A. The
+	 * first keep columns of V Q and the leading keep x keep block of H carry on as a Krylov basis and its
+	 * projection, with the next vector made from what was cut off
+	 *
+	 * @param projected H, with leading dimension ld. It is replaced by the restarted H
+	 * @param ld the leading dimension
+	 * @param size the number of vectors in the basis
+	 * @param keep the number of vectors to keep
+	 * @param basis the basis followed by the next vector. It is replaced by the restarted basis and next vector
+	 * @param n the length of the vectors
+	 * @param random where a new direction comes from if the kept vectors span an invariant subspace
+	 * @return the number of vectors in the restarted basis
+	 */
+	private int restart(double[] projected, int ld, int size, int keep, List<double[]> basis, int n, Random random){
+		double beta = projected[(size-1)*ld + size];
+		double[][] ritz = ritzValues(projected, ld, size, size);
+		if (ritz[1][keep-1] > 0){
+			// don't split a complex pair: keep both if there is room, otherwise neither
+			keep += keep+1 < size ? 1 : -1;
+		}
+		double[] h = square(projected, ld, size);
+		double[] q = new double[size*size];
+		for (int i = 0; i < size; i++){
+			q[i*size + i] = 1;
+		}
+		for (int s = keep; s < size; s++){
+			double re = ritz[0][s], im = ritz[1][s];
+			if (im > 0){
+				// mu and its conjugate, which comes next, as one real double shift
+				shiftStep(h, q, size, 2*re, re*re + im*im, true);
+				s++;
+			}else{
+				shiftStep(h, q, size, re, 0, false);
+			}
+		}
+
+		// V Q, one row at a time so no second basis is needed. Column keep of V Q, times the entry of H below
+		// the kept block, plus what was cut off of the last vector, is the rest of the new Krylov relation
+		double cut = h[(keep-1)*size + keep];
+		double sigma = beta * q[(keep-1)*size + size-1];
+		double[] row = new double[size+1];
+		for (int i = 0; i < n; i++){
+			for (int k = 0; k <= size; k++){
+				row[k] = basis.get(k)[i];
+			}
+			for (int c = 0; c <= keep; c++){
+				double sum = 0;
+				for (int k = 0; k < size; k++){
+					sum += row[k] * q[c*size + k];
+				}
+				basis.get(c)[i] = c < keep ? sum : cut*sum + sigma*row[size];
+			}
+		}
+		basis.subList(keep+1, size+1).clear();
+
+		Arrays.fill(projected, 0);
+		for (int c = 0; c < keep; c++){
+			System.arraycopy(h, c*size, projected, c*ld, keep);
+		}
+		double[] next = basis.get(keep);
+		double length = Math.sqrt(dot(next, next));
+		double scale = 0;
+		for (int i = 0; i < keep*size; i++){
+			scale = Math.max(scale, Math.abs(h[i]));
+		}
+		if (length <= KRYLOV_TOLERANCE * Math.max(scale, Double.MIN_NORMAL)){
+			basis.remove(keep);
+			basis.add(randomUnitVector(random, n, basis));
+		}else{
+			projected[(keep-1)*ld + keep] = length;
+			for (int i = 0; i < n; i++){
+				next[i] /= length;
+			}
+		}
+		return keep;
+	}
+
+
+	/**
+	 * One implicitly shifted QR step on an upper Hessenberg matrix, H = Q^T H Q, chasing the bulge down the
+	 * subdiagonal with reflections so that H stays exactly Hessenberg. It is the step that the QR decomposition
+	 * of H - mu I, or of H^2 - s H + t I for a double shift, would give, without forming either
+	 *
+	 * @param h the matrix, column-major. It is replaced by Q^T H Q
+	 * @param q the rotations so far, column-major. It is multiplied by Q
+	 * @param size the number of rows of h and q
+	 * @param s the shift mu, or for a double shift the sum of the two shifts
+	 * @param t for a double shift, the product of the two shifts
+	 * @param twice true for a double shift
+	 */
+	private static void shiftStep(double[] h, double[] q, int size, double s, double t, boolean twice){
+		// the first column of H - mu I, or of H^2 - s H + t I
+		double[] x;
+		if (twice){
+			double h00 = h[0], h10 = h[1], h01 = h[size], h11 = h[size + 1];
+			x = new double[Math.min(3, size)];
+			x[0] = h00*h00 + h01*h10 - s*h00 + t;
+			x[1] = h10 * (h00 + h11 - s);
+			if (size > 2){
+				x[2] = h10 * h[size + 2];
+			}
+		}else{
+			x = new double[]{h[0] - s, h[1]};
+		}
+		reflect(h, q, size, 0, x);
+		// then push the bulge below the subdiagonal off the bottom
+		for (int k = 1; k < size-1; k++){
+			int length = Math.min(x.length, size-k);
+			double[] bulge = new double[length];
+			for (int i = 0; i < length; i++){
+				bulge[i] = h[(k-1)*size + k+i];
+			}
+			reflect(h, q, size, k, bulge);
+			for (int i = k+1; i < k+length; i++){
+				h[(k-1)*size + i] = 0;
+			}
+		}
+	}
+
+
+	/**
+	 * Applies the Householder reflection that takes x to a multiple of its first unit vector to rows and
+	 * columns start to start + x.length - 1 of h, and to the same columns of q
+	 */
+	private static void reflect(double[] h, double[] q, int size, int start, double[] x){
+		double norm = 0;
+		for (double xi : x){
+			norm = Math.hypot(norm, xi);
+		}
+		if (norm == 0){
+			return;
+		}
+		double[] v = x.clone();
+		v[0] += x[0] < 0 ? -norm : norm;
+		double vv = 0;
+		for (double vi : v){
+			vv += vi*vi;
+		}
+		double tau = 2 / vv;
+		int length = v.length;
+		// from the left, on the rows
+		for (int j = 0; j < size; j++){
+			double sum = 0;
+			for (int i = 0; i < length; i++){
+				sum += v[i] * h[j*size + start+i];
+			}
+			sum *= tau;
+			for (int i = 0; i < length; i++){
+				h[j*size + start+i] -= sum * v[i];
+			}
+		}
+		// from the right, on the columns of h and q
+		for (double[] m : new double[][]{h, q}){
+			for (int r = 0; r < size; r++){
+				double sum = 0;
+				for (int i = 0; i < length; i++){
+					sum += m[(start+i)*size + r] * v[i];
+				}
+				sum *= tau;
+				for (int i = 0; i < length; i++){
+					m[(start+i)*size + r] -= sum * v[i];
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @param random where the entries come from
+	 * @param n the length of the vector
+	 * @param basis orthonormal vectors that the new vector must be orthogonal to
+	 * @return a random unit vector orthogonal to the basis
+	 */
+	private static double[] randomUnitVector(Random random, int n, List<double[]> basis){
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++){
+			v[i] = random.nextDouble() - 0.5;
+		}
+		for (int pass = 0; pass < 2; pass++){
+			for (double[] b : basis){
+				double c = dot(b, v);
+				for (int k = 0; k < n; k++){
+					v[k] -= c * b[k];
+				}
+			}
+		}
+		double length = Math.sqrt(dot(v, v));
+		for (int k = 0; k < n; k++){
+			v[k] /= length;
+		}
+		return v;
+	}
+
+
+	/**
+	 * @param projected the projected matrix, with leading dimension ld
+	 * @param ld the leading dimension
+	 * @param size the number of rows and columns in use
+	 * @param count the number of eigenvalues wanted
+	 * @return the real and imaginary parts of the count eigenvalues of the leading size x size block of largest
+	 * absolute value, largest first
+	 */
+	private double[][] ritzValues(double[] projected, int ld, int size, int count){
+		double[] h = square(projected, ld, size);
+		final double[] real = new double[size], imaginary = new double[size];
+		if (_symmetric){
+			double[] e = new double[size];
+			for (int i = 0; i < size; i++){
+				real[i] = h[i*size + i];
+				e[i] = i == 0 ? 0 : h[(i-1)*size + i];
+			}
+			_iterations += diagonalize(real, e, null, size);
+		}else{
+			toHessenberg(h, size);
+			_iterations += hessenbergEigenvalues(h, size, real, imaginary);
+		}
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer p, Integer q){
+				int byModulus = Double.compare(Math.hypot(real[q],imaginary[q]), Math.hypot(real[p],imaginary[p]));
+				if (byModulus != 0){
+					return byModulus;
+				}
+				int byReal = Double.compare(real[q], real[p]);
+				return byReal != 0 ? byReal : Double.compare(imaginary[q], imaginary[p]);
+			}
+		});
+		double[][] values = new double[2][Math.min(count, size)];
+		for (int i = 0; i < values[0].length; i++){
+			values[0][i] = real[order[i]];
+			values[1][i] = imaginary[order[i]];
+		}
+		return values;
+	}
+
+
+	/**
+	 * For Lanczos, the residual |A x - theta x| of an eigenvalue theta of the tridiagonal matrix with eigenvector
+	 * y, taking x = V y, is the next subdiagonal entry times the last entry of y. So the residuals come without
+	 * any products by A
+	 *
+	 * @param projected the tridiagonal matrix, with leading dimension ld
+	 * @param ld the leading dimension
+	 * @param size the number of rows and columns in use
+	 * @param count the number of eigenvalues wanted
+	 * @return true if the residuals of the count eigenvalues of largest absolute value are at most
+	 * RESIDUAL_TOLERANCE relative to the largest
+	 */
+	private boolean residualsSmall(double[] projected, int ld, int size, int count){
+		double beta = projected[(size-1)*ld + size];
+		final double[] d = new double[size];
+		double[] e = new double[size], y = new double[size*size];
+		for (int i = 0; i < size; i++){
+			d[i] = projected[i*ld + i];
+			e[i] = i == 0 ? 0 : projected[(i-1)*ld + i];
+			y[i*size + i] = 1;
+		}
+		_iterations += diagonalize(d, e, y, size);
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer p, Integer q){
+				return Double.compare(Math.abs(d[q]), Math.abs(d[p]));
+			}
+		});
+		double largest = Math.max(Math.abs(d[order[0]]), Double.MIN_NORMAL);
+		for (int i = 0; i < count; i++){
+			if (Math.abs(beta * y[order[i]*size + size-1]) > RESIDUAL_TOLERANCE * largest){
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * @param previous the eigenvalues from the last check, real parts then imaginary parts
+	 * @param now the eigenvalues now, the same way
+	 * @return true if none of them moved by more than KRYLOV_TOLERANCE relative to the largest
+	 */
+	private static boolean converged(double[] previous, double[] now){
+		int count = now.length / 2;
+		double largest = Math.hypot(now[0], now[count]);
+		for (int i = 0; i < now.length; i++){
+			if (Math.abs(now[i] - previous[i]) > KRYLOV_TOLERANCE * Math.max(largest, Double.MIN_NORMAL)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * @param ritz real parts and imaginary parts
+	 * @param count the number of each
+	 * @return the real parts followed by the imaginary parts
+	 */
+	private static double[] flatten(double[][] ritz, int count){
+		double[] flat = new double[2*count];
+		System.arraycopy(ritz[0], 0, flat, 0, count);
+		System.arraycopy(ritz[1], 0, flat, count, count);
+		return flat;
+	}
+
+
+	/**
+	 * For each wanted eigenvalue, the eigenvector of the tridiagonal matrix with the closest eigenvalue
+	 *
+	 * @param d the eigenvalues of the tridiagonal matrix, unsorted
+	 * @param y their eigenvectors, size long and back to back
+	 * @param size the size of the tridiagonal matrix
+	 * @param wanted the eigenvalues wanted
+	 * @return an eigenvector for each wanted eigenvalue, size long and back to back
+	 */
+	private static double[] matchVectors(double[] d, double[] y, int size, double[] wanted){
+		double[] matched = new double[size*wanted.length];
+		boolean[] used = new boolean[size];
+		for (int c = 0; c < wanted.length; c++){
+			int best = -1;
+			for (int i = 0; i < size; i++){
+				if (!used[i] && (best == -1 || Math.abs(d[i] - wanted[c]) < Math.abs(d[best] - wanted[c]))){
+					best = i;
+				}
+			}
+			used[best] = true;
+			System.arraycopy(y, best*size, matched, c*size, size);
+		}
+		return matched;
+	}
+
+
+	/**
+	 * @param projected a matrix with leading dimension ld
+	 * @param ld the leading dimension
+	 * @param size the number of rows and columns to copy
+	 * @return the leading size x size block, packed
+	 */
+	private static double[] square(double[] projected, int ld, int size){
+		double[] h = new double[size*size];
+		for (int j = 0; j < size; j++){
+			System.arraycopy(projected, j*ld, h, j*size, size);
+		}
+		return h;
+	}
+
+
+	/**
+	 * @param x a vector
+	 * @param y a vector as long as x
+	 * @return their dot product
+	 */
+	private static double dot(double[] x, double[] y){
+		double sum = 0;
+		for (int i = 0; i < x.length; i++){
+			sum += x[i] * y[i];
+		}
+		return sum;
+	}
+
+
+	//===================================
+	// Results
+	//===================================
+
+	/**
+	 * @return the real parts of the eigenvalues, largest absolute value first
+	 */
+	public double[] getEigenvalues(){
+		return _real.clone();
+	}
+
+
+	/**
+	 * @return the imaginary parts of the eigenvalues, all zero if they are real
+	 */
+	public double[] getImaginaryParts(){
+		return _imaginary.clone();
+	}
+
+
+	/**
+	 * @return the unit eigenvectors, one per column in the order of the eigenvalues, or null if they were not
+	 * computed. Columns of complex eigenvalues are zero
+	 */
+	public Matrix getEigenvectors(){
+		return _vectors;
+	}
+
+
+	/**
+	 * @return true if the matrix was found to be symmetric, so the symmetric engines were used
+	 */
+	public boolean isSymmetric(){
+		return _symmetric;
+	}
+
+
+	/**
+	 * @return true if only the dominant eigenvalues were found, from a Krylov basis
+	 */
+	public boolean isDominantOnly(){
+		return _dominant;
+	}
+
+
+	/**
+	 * @return the number of vectors in the Krylov basis, or 0 if all eigenvalues were found directly
+	 */
+	public int getKrylovSize(){
+		return _krylovSize;
+	}
+
+
+	/**
+	 * @return the number of times the Krylov basis was full and restarted
+	 */
+	public int getRestarts(){
+		return _restarts;
+	}
+
+
+	@Override
+	/**
+	 * Steps:
+	 * - A v = lambda v
+	 * - how the eigenvalues were found
+	 * - the eigenvectors, drawn for small matrices
+	 * - the eigenvalues
+	 */
+	public List<String> toLatex() {
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		Matrix dense = _matrix instanceof Matrix ? (Matrix) _matrix : null;
+		boolean draw = dense != null && dense.getNumRows() <= SHOWN_SIZE;
+		toReturn.add("\\vspace{10mm} \\mathrm{Eigenvalues:}");
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}" + (draw ? MatrixDraw.getCorrectLatex(dense.getDisplayType(),dense) : "A") + " v = \\lambda v");
+		if (_dominant){
+			toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Build \\ an \\ orthonormal \\ basis \\ for \\ v, \\ Av, \\ A^{2}v, \\ \\ldots \\ of \\ " + _krylovSize
+					+ " \\ vectors \\ (" + (_symmetric ? "Lanczos" : "Arnoldi")
+					+ (_restarts == 0 ? ")}" : ", \\ restarted \\ " + _restarts + (_restarts == 1 ? " \\ time)}" : " \\ times)}")));
+			toReturn.add("\\vspace{15mm} 3. \\ \\mathrm{The \\ eigenvalues \\ of \\ A \\ projected \\ onto \\ the \\ basis \\ approximate \\ the \\ "
+					+ _real.length + " \\ largest}");
+		}else if (_symmetric){
+			toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{The \\ matrix \\ is \\ symmetric, \\ so \\ reduce \\ it \\ to \\ tridiagonal \\ form \\ with \\ Householder \\ reflections}");
+			toReturn.add("\\vspace{15mm} 3. \\ \\mathrm{Rotate \\ away \\ the \\ off-diagonal \\ entries \\ with \\ QL \\ steps \\ (" + _iterations
+					+ (_iterations == 1 ? " \\ step)}" : " \\ steps)}"));
+		}else{
+			toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Reduce \\ the \\ matrix \\ to \\ upper \\ Hessenberg \\ form \\ with \\ Householder \\ reflections}");
+			toReturn.add("\\vspace{15mm} 3. \\ \\mathrm{Run \\ shifted \\ QR \\ steps \\ until \\ it \\ splits \\ into \\ 1 \\times 1 \\ and \\ 2 \\times 2 \\ blocks \\ ("
+					+ _iterations + (_iterations == 1 ? " \\ step)}" : " \\ steps)}"));
+		}
+		if (draw && _vectors != null){
+			toReturn.add("\\vspace{10mm} \\hspace{15mm} \\mathrm{Eigenvectors:} \\ " + MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_vectors));
+		}
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}" + MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_answer)
+				+ (_answer.getNumCols() == 2 ? " \\ \\mathrm{(real \\ and \\ imaginary \\ parts)}" : ""));
+		return toReturn;
+	}
+}
@@ -0,0 +1,247 @@
+package backend.computations.operations;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.SparseMatrix;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * @author baebi
+ *
+ */
+public class M_EigenTest {
+	private static final double EPSILON = 1e-10;
+
+	// symmetric, with eigenvalues 2+sqrt(2), 2 and 2-sqrt(2)
+	private Matrix m1 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{2.0,1.0,0.0},{1.0,2.0,1.0},{0.0,1.0,2.0}});
+	// a quarter turn, with eigenvalues i and -i
+	private Matrix m2 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{0.0,1.0},{-1.0,0.0}});
+
+
+	@Test // known eigenvalues of a symmetric matrix, with orthonormal eigenvectors
+	public void symmetricTest() {
+		M_Eigen eigen = new M_Eigen(m1);
+		Solution sol = eigen.getSolution();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(sol.getOp() == Op.M_EIGEN);
+		assertTrue(eigen.isSymmetric() && !eigen.isDominantOnly());
+		assertTrue(answer.getNumRows() == 3 && answer.getNumCols() == 1);
+		assertEquals(2 + Math.sqrt(2), answer.get(0,0), EPSILON);
+		assertEquals(2, answer.get(1,0), EPSILON);
+		assertEquals(2 - Math.sqrt(2), answer.get(2,0), EPSILON);
+		assertTrue(residual(m1, eigen) < EPSILON);
+		Matrix v = eigen.getEigenvectors();
+		for (int p = 0; p < 3; p++){
+			for (int q = 0; q < 3; q++){
+				double dot = 0;
+				for (int i = 0; i < 3; i++){
+					dot += v.get(i,p) * v.get(i,q);
+				}
+				assertEquals(p == q ? 1 : 0, dot, EPSILON);
+			}
+		}
+		assertTrue(!sol.getLatex().isEmpty());
+	}
+
+
+	@Test // complex pairs get a column of imaginary parts
+	public void complexTest() {
+		Matrix answer = (Matrix) new M_Eigen(m2, true).getSolution().getAnswer();
+		assertTrue(answer.getNumRows() == 2 && answer.getNumCols() == 2);
+		assertEquals(0, answer.get(0,0), EPSILON);
+		assertEquals(1, answer.get(0,1), EPSILON);
+		assertEquals(-1, answer.get(1,1), EPSILON);
+
+		// real eigenvalues of a matrix that isn't symmetric: (5 +- sqrt(33)) / 2
+		Matrix m = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,4.0}});
+		M_Eigen eigen = new M_Eigen(m);
+		assertTrue(!eigen.isSymmetric());
+		assertEquals((5 + Math.sqrt(33)) / 2, eigen.getEigenvalues()[0], EPSILON);
+		assertEquals((5 - Math.sqrt(33)) / 2, eigen.getEigenvalues()[1], EPSILON);
+		assertTrue(residual(m, eigen) < EPSILON);
+	}
+
+
+	@Test // a random matrix: the eigenvalues add up to the trace, and A v = lambda v for the real ones
+	public void generalTest() {
+		int n = 60;
+		Random random = new Random(5);
+		double[] values = new double[n*n];
+		for (int i = 0; i < values.length; i++){
+			values[i] = random.nextGaussian();
+		}
+		Matrix m = new Matrix(DisplayType.DECIMAL, n, n, values);
+		M_Eigen eigen = new M_Eigen(m, false, true);
+		double sum = 0, trace = 0, imaginary = 0;
+		for (int i = 0; i < n; i++){
+			sum += eigen.getEigenvalues()[i];
+			imaginary += eigen.getImaginaryParts()[i];
+			trace += m.get(i,i);
+		}
+		assertEquals(trace, sum, 1e-9);
+		assertEquals(0, imaginary, 1e-9);
+		assertTrue(residual(m, eigen) < 1e-9);
+	}
+
+
+	@Test // the dominant eigenvalues of a sparse matrix too large to store densely
+	public void dominantTest() {
+		int n = 50000;
+		int[] rows = new int[3*n-2], cols = new int[3*n-2];
+		double[] values = new double[3*n-2];
+		int next = 0;
+		for (int i = 0; i < n; i++){ // 1/(i+1) on the diagonal, weakly coupled to its neighbours
+			for (int j = Math.max(0,i-1); j <= Math.min(n-1,i+1); j++){
+				rows[next] = i;
+				cols[next] = j;
+				values[next++] = (i == j) ? 1.0 / (i+1) : 0.01;
+			}
+		}
+		SparseMatrix sparse = SparseMatrix.fromEntries(DisplayType.DECIMAL, n, n, rows, cols, values);
+		M_Eigen eigen = new M_Eigen(sparse, false);
+		assertTrue(eigen.isSymmetric() && eigen.isDominantOnly());
+		assertTrue(eigen.getKrylovSize() < 100);
+		double[] lambda = eigen.getEigenvalues();
+		assertTrue(lambda.length == M_Eigen.DEFAULT_DOMINANT_COUNT);
+		for (int k = 0; k < lambda.length; k++){
+			assertEquals(1.0 / (k+1), lambda[k], 0.01);
+			// A v = lambda v
+			double[] x = new double[n];
+			for (int i = 0; i < n; i++){
+				x[i] = eigen.getEigenvectors().get(i,k);
+			}
+			for (int i = 0; i < n; i++){
+				double ax = x[i] / (i+1) + (i > 0 ? 0.01*x[i-1] : 0) + (i < n-1 ? 0.01*x[i+1] : 0);
+				assertEquals(lambda[k] * x[i], ax, 1e-9);
+			}
+		}
+	}
+
+
+	@Test // the Krylov mode on a dense matrix agrees with finding every eigenvalue
+	public void krylovTest() {
+		int n = 120;
+		Random random = new Random(9);
+		double[] values = new double[n*n];
+		for (int i = 0; i < values.length; i++){
+			values[i] = random.nextGaussian();
+		}
+		Matrix m = new Matrix(DisplayType.DECIMAL, n, n, values);
+		M_Eigen all = new M_Eigen(m, true);
+		M_Eigen dominant = new M_Eigen(m, 4, true, true);
+		for (int i = 0; i < 4; i++){
+			assertEquals(all.getEigenvalues()[i], dominant.getEigenvalues()[i], 1e-8);
+			assertEquals(all.getImaginaryParts()[i], dominant.getImaginaryParts()[i], 1e-8);
+		}
+		assertTrue(residual(m, dominant) < 1e-8);
+	}
+
+
+	@Test // steps only compute the eigenvectors they draw, and a large dense matrix gets its dominant eigenvalues
+	public void largeTest() {
+		int n = 501;
+		double[] values = new double[n*n];
+		for (int i = 0; i < n; i++){
+			values[i*n + i] = i+1;
+			if (i > 0){
+				values[i*n + i-1] = 1; // upper triangular, so the diagonal holds the eigenvalues
+			}
+		}
+		Matrix m = new Matrix(DisplayType.DECIMAL, n, n, values);
+		M_Eigen all = new M_Eigen(m, false);
+		assertTrue(all.getEigenvectors() == null && !all.getSolution().getLatex().isEmpty());
+		assertEquals(n, all.getEigenvalues()[0], 1e-8);
+
+		M_Eigen dominant = M_Eigen.forOp(m, true);
+		assertTrue(dominant.isDominantOnly());
+		assertTrue(dominant.getEigenvalues().length == M_Eigen.DEFAULT_DOMINANT_COUNT);
+		for (int k = 0; k < M_Eigen.DEFAULT_DOMINANT_COUNT; k++){
+			assertEquals(n-k, dominant.getEigenvalues()[k], 1e-6);
+		}
+		assertTrue(!M_Eigen.forOp(m2, true).isDominantOnly());
+	}
+
+
+	@Test // a basis too small to hold the answer is restarted, and the answer is still exact
+	public void restartTest() {
+		int n = 300;
+		M_Eigen eigen = new M_Eigen(laplacian(n), 4, false, true);
+		assertTrue(eigen.getRestarts() > 0 && eigen.getKrylovSize() <= 40);
+		for (int k = 0; k < 4; k++){
+			assertEquals(2 - 2*Math.cos((n-k)*Math.PI/(n+1)), eigen.getEigenvalues()[k], EPSILON);
+		}
+		assertTrue(eigen.getSolution().getLatex().get(2).contains("restarted"));
+	}
+
+
+	@Test // eigenvalues too close together to converge are an error, not a wrong answer
+	public void notConvergedTest() {
+		try{
+			new M_Eigen(laplacian(2000), 6, true, false);
+			fail();
+		}catch(IllegalArgumentException e){
+			assertTrue(e.getMessage().equals("ERROR: The eigenvalues did not converge"));
+		}
+	}
+
+
+	@Test // non-square matrices and null entries
+	public void errorTest() {
+		try{
+			new M_Eigen(new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0}}));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{
+			new M_Eigen(new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,null},{2.0,3.0}}));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+
+	// the n x n second difference matrix, with eigenvalues 2 - 2 cos(k pi / (n+1))
+	private SparseMatrix laplacian(int n){
+		int[] rows = new int[3*n-2], cols = new int[3*n-2];
+		double[] values = new double[3*n-2];
+		int next = 0;
+		for (int i = 0; i < n; i++){
+			for (int j = Math.max(0,i-1); j <= Math.min(n-1,i+1); j++){
+				rows[next] = i;
+				cols[next] = j;
+				values[next++] = (i == j) ? 2 : -1;
+			}
+		}
+		return SparseMatrix.fromEntries(DisplayType.DECIMAL, n, n, rows, cols, values);
+	}
+
+
+	// the largest |A v - lambda v| over the eigenvectors of real eigenvalues
+	private double residual(Matrix m, M_Eigen eigen){
+		Matrix v = eigen.getEigenvectors();
+		double[] lambda = eigen.getEigenvalues(), imaginary = eigen.getImaginaryParts();
+		int n = m.getNumRows();
+		double worst = 0;
+		for (int c = 0; c < lambda.length; c++){
+			if (imaginary[c] != 0){
+				continue;
+			}
+			for (int i = 0; i < n; i++){
+				double sum = 0;
+				for (int j = 0; j < n; j++){
+					sum += m.get(i,j) * v.get(j,c);
+				}
+				worst = Math.max(worst, Math.abs(sum - lambda[c] * v.get(i,c)));
+			}
+		}
+		return worst;
+	}
+
+}
@@ -5,7 +5,10 @@ import java.util.*;
 import backend.blocks.*;
 import backend.blocks.Countable.DisplayType;
 import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
+import backend.computations.infrastructure.LUDecomposition;
 import backend.computations.infrastructure.Solution;
+import matrixDraw.*;
 
 /** Inverse Operation
  *
@@ -14,7 +17,12 @@ import backend.computations.infrastructure.Solution;
 public class M_Inverse extends Computable
 {
 	private Solution _solution;
-	private List<String> steps;
+	private List<String> steps=new ArrayList<>();
+	private int stepNumber=1;
+
+	//a candidate pivot is kept if it is at least this fraction of the largest entry below it in its column.
+	//this keeps the hand-computable pivots of small integer matrices while bounding element growth
+	private static final double PIVOT_THRESHOLD=0.1;
 
 	@Override
 	public Solution getSolution()
@@ -25,106 +33,172 @@ public class M_Inverse extends Computable
 
 	/** Find the inverse of a square matrix
 	 *
-	 * @param matrix the first matrix to add
+	 * @param matrix the matrix to invert
 	 */
 	public M_Inverse(Matrix matrix) throws Exception
 	{
-		Double[][] values = matrix.getValues();
+		this(matrix,false);
+	}
+
 
-		for(int i = 0; i < values.length; i++)
+	/** Find the inverse of a square matrix by Gauss-Jordan elimination on [A | I] when the steps are shown,
+	 * and from its LU factors otherwise
+	 *
+	 * @param matrix the matrix to invert
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 */
+	public M_Inverse(Matrix matrix, boolean answerOnly) throws Exception
+	{
+		_answerOnly=answerOnly;
+		if (!matrix.isComplete())
 		{
-			for (int j = 0; j < values[0].length; j++)
-			{
-				if (values[i][j] == null)
-					throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
-			}
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
 		}
 
-		if (values.length!=values[0].length)
+		if (matrix.getNumRows()!=matrix.getNumCols())
 			throw new IllegalArgumentException("Matrix must have the same number of columns and rows");
 
-		//calculate the determinant of the matrix
-		Determinant determinant=new Determinant(matrix);
-		Solution sol=determinant.getSolution();
-		steps=determinant.toLatex();
-
-		//1x1 matrix
-		if (values.length==1 && values[0].length==1)
-		{
-			if (values[0][0]==0)
-				throw new Exception("Determinant of matrix is 0");
-
-			Double[][] d=new Double[1][1];
-			d[0][0]=1/values[0][0];
-			Matrix answer=new Matrix(DisplayType.DECIMAL,d);
-			steps.add("$1/"+matrix.getDisplayValues()[0][0]+" = "+d[0][0]+"$");
+		int n=matrix.getNumRows();
+		if (!answerOnly)
+			steps.add("\\vspace{10mm} \\mathrm{Matrix \\ Inverse}");
 
-			List<Countable> inputs = new ArrayList<>();
-			inputs.add(matrix);
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
 
-			_solution = new Solution(Op.M_INVERSE, inputs, answer, null);
+		//steps are only shown up to 4 by 4. Otherwise solve AX = I with the LU factors shared through the
+		//FactorizationCache
+		if (answerOnly || n>4)
+		{
+			LUDecomposition lu=FactorizationCache.getShared().getLU(matrix);
+			if (lu.isSingular())
+				throw new Exception("Matrix is singular, so it has no inverse");
+			double[] identity=new double[n*n];
+			for (int i=0;i<n;i++)
+			{
+				identity[i*n+i]=1;
+			}
+			Matrix answer=new Matrix(DisplayType.DECIMAL,n,n,lu.solve(identity,n));
+			if (!answerOnly)
+			{
+				steps.add("\\vspace{10mm} \\mathrm{Steps \\ omitted \\ for \\ matrices \\ larger \\ than \\ 4 \\ by \\ 4, \\ for \\ your \\ own \\ good!}");
+				steps.add("\\vspace{5mm} \\hspace{15mm} "+MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,answer));
+			}
+			_solution = new Solution(Op.M_INVERSE, inputs, answer, steps);
 			return;
 		}
 
-
-		double det=((Scalar)(sol.getAnswer())).getValue();
-		//determinant cannot be 0
-		if (det==0)
-			throw new Exception("Determinant of matrix is 0");
-
-		//calculate cofactor matrix
-		Double[][] cofactor=new Double[values.length][values.length];
-		for(int i = 0; i < values.length; i++)
+		//the augmented matrix [A | I] packed column-major, so the right half is already the answer's layout
+		double[] aug=new double[2*n*n];
+		double maxAbs=0;
+		for (int c=0;c<n;c++)
 		{
-			for (int j = 0; j < values.length; j++)
+			for (int r=0;r<n;r++)
 			{
-				//alternating + and - sign
-				int sign=1;
-				if (i%2 != j%2)
-					sign=-1;
-				//calculate determinant
-				determinant=new Determinant(new Matrix(DisplayType.DECIMAL,removeRowColumn(values,i,j)));
-				Solution s=determinant.getSolution();
-				steps.add("\\mathrm{Calculate \\ the \\ determinant \\ of \\ the \\ cofactor \\ matrix \\ of \\ the \\ value \\ ("+(i+1)+","+(j+1)+") \\ as \\ follow:}");
-				steps.addAll(determinant.toLatex());
-				cofactor[i][j]=sign*(((Scalar)(s.getAnswer())).getValue())/det;
+				aug[c*n+r]=matrix.get(r,c);
+				maxAbs=Math.max(maxAbs,Math.abs(aug[c*n+r]));
 			}
+			aug[(n+c)*n+c]=1;
 		}
+		//anything this small is rounding error, not a usable pivot, by the same test as the LU without steps
+		double tolerance=LUDecomposition.zeroTolerance(maxAbs,n,n);
 
-		//calculate the transpose of the cofactor
-		M_Transpose trans=new M_Transpose(new Matrix(DisplayType.DECIMAL,cofactor));
-		Solution ct=trans.getSolution();
-		steps.add("\\mathrm{Transpose \\ the \\ determinants \\ calculated:}");
-		steps.addAll(trans.toLatex());
-		Countable answer=ct.getAnswer();
+		steps.add("\\vspace{15mm} "+stepNumber+". \\ \\mathrm{Augment \\ the \\ matrix \\ with \\ the \\ identity:}");
+		stepNumber++;
+		steps.add("\\hspace{15mm} "+drawAugmented(aug,n));
 
-		List<Countable> inputs = new ArrayList<>();
-		inputs.add(matrix);
+		double[] factors=new double[n];
+		for (int k=0;k<n;k++)
+		{
+			//choose the pivot row
+			int p=k;
+			double max=0;
+			for (int i=k;i<n;i++)
+			{
+				double abs=Math.abs(aug[k*n+i]);
+				if (abs>max)
+				{
+					max=abs;
+					p=i;
+				}
+			}
+			if (max<=tolerance)
+				throw new Exception("Matrix is singular, so it has no inverse");
+			if (Math.abs(aug[k*n+k])>=PIVOT_THRESHOLD*max)
+				p=k;
 
-		_solution = new Solution(Op.DETERMINANT, inputs, answer, steps);
-	}
+			//swap the pivot row into place. Columns left of k are zero in both rows
+			if (p!=k)
+			{
+				for (int c=k;c<2*n;c++)
+				{
+					double temp=aug[c*n+p];
+					aug[c*n+p]=aug[c*n+k];
+					aug[c*n+k]=temp;
+				}
+				addStep("\\mathrm{Swap \\ Row \\ "+(k+1)+" \\ and \\ Row \\ "+(p+1)+"}",aug,n);
+			}
 
-	/**returns the matrix without the y-th row, and the x-th column*/
-	private Double[][] removeRowColumn(Double[][] m, int x, int y) throws Exception
-	{
-		if (x<0 || y<0 || x>=m.length || y>=m[0].length)
-			throw new IllegalArgumentException("ERROR (Det): removing row "+x+" and column "+y+" is illegal in a "+m.length+"x"+
-				m[0].length+" matrix.");
+			//make the pivot 1
+			double pivot=aug[k*n+k];
+			if (pivot!=1.0)
+			{
+				for (int c=k;c<2*n;c++)
+				{
+					aug[c*n+k]/=pivot;
+				}
+				addStep("\\mathrm{Divide \\ Row \\ "+(k+1)+" \\ by} \\ "+shortenDecimal(Double.toString(pivot)),aug,n);
+			}
 
-		Double[][] m2=new Double[m.length-1][m.length-1];
-		for (int j=0;j<m.length-1;j++)
-		{
-			for (int k=0;k<m[0].length-1;k++)
+			//clear the rest of column k. Walking column by column keeps the inner loop contiguous
+			for (int i=0;i<n;i++)
+			{
+				factors[i]=(i==k) ? 0 : aug[k*n+i];
+			}
+			for (int c=k;c<2*n;c++)
+			{
+				double val=aug[c*n+k];
+				if (val==0)
+					continue;
+				for (int i=0;i<n;i++)
+				{
+					aug[c*n+i]-=factors[i]*val;
+				}
+			}
+			boolean subtracted=false;
+			for (int i=0;i<n;i++)
 			{
-				int x2=j,y2=k;
-				if (x2>=x)
-					x2++;
-				if (y2>=y)
-					y2++;
-				m2[j][k]=m[x2][y2];
+				if (factors[i]==0)
+					continue;
+				subtracted=true;
+				steps.add("\\vspace{15mm}"+stepNumber+". \\ \\mathrm{Subtract \\ Row \\ "+(i+1)+" \\ by \\ (Row} \\ "+(k+1)+" \\ \\times \\ "+
+					shortenDecimal(Double.toString(factors[i]))+")");
+				stepNumber++;
 			}
+			if (subtracted)
+				steps.add("\\hspace{15mm} = "+drawAugmented(aug,n));
 		}
-		return m2;
+
+		Matrix answer=new Matrix(DisplayType.DECIMAL,n,n,Arrays.copyOfRange(aug,n*n,2*n*n));
+		steps.add("\\vspace{15mm} \\mathrm{The \\ left \\ side \\ is \\ now \\ the \\ identity, \\ so \\ the \\ right \\ side \\ is \\ the \\ inverse}");
+		steps.add("\\vspace{5mm} \\hspace{15mm} "+MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,answer));
+
+		_solution = new Solution(Op.M_INVERSE, inputs, answer, steps);
+	}
+
+	/**adds a numbered row operation step followed by the augmented matrix after it*/
+	private void addStep(String operation, double[] aug, int n)
+	{
+		steps.add("\\vspace{15mm}"+stepNumber+". \\ "+operation);
+		stepNumber++;
+		steps.add("\\hspace{15mm} = "+drawAugmented(aug,n));
+	}
+
+	/**returns the latex of the augmented matrix [A | I], drawn as its two halves*/
+	private String drawAugmented(double[] aug, int n)
+	{
+		Matrix snapshot=new Matrix(DisplayType.DECIMAL,n,2*n,aug.clone());
+		return MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,snapshot.subMatrixView(0,0,n,n))+" \\ \\Big| \\ "+
+			MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,snapshot.subMatrixView(0,n,n,n));
 	}
 
 
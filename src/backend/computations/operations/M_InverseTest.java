@@ -83,4 +83,83 @@ public class M_InverseTest
 		catch (Exception e)
 		{}
 	}
+
+	@Test
+	public void size6() throws Exception
+	{
+		Double[][] v=new Double[6][6];
+		for (int i=0;i<6;i++)
+		{
+			for (int j=0;j<6;j++)
+			{
+				v[i][j]=new Double((i==j) ? 10 : (i*7+j*3)%5);
+			}
+		}
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		M_Inverse t=new M_Inverse(m);
+		Matrix inv=(Matrix)(t.getSolution().getAnswer());
+		//A * inv(A) should be the identity
+		for (int r=0;r<6;r++)
+		{
+			for (int c=0;c<6;c++)
+			{
+				double sum=0;
+				for (int k=0;k<6;k++)
+					sum+=m.get(r,k)*inv.get(k,c);
+				assertTrue(Math.abs(sum-((r==c) ? 1 : 0))<1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void needsSwap() throws Exception
+	{
+		Double[][] v=new Double[2][2];
+		v[0][0]=new Double(0);
+		v[0][1]=new Double(1);
+		v[1][0]=new Double(1);
+		v[1][1]=new Double(0);
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		M_Inverse t=new M_Inverse(m);
+		Double[][] d=((Matrix)(t.getSolution().getAnswer())).getValues();
+		assertTrue(d[0][0]==0);
+		assertTrue(d[0][1]==1);
+		assertTrue(d[1][0]==1);
+		assertTrue(d[1][1]==0);
+	}
+
+	@Test
+	public void numericallySingular() throws Exception
+	{
+		//exactly singular, but elimination leaves a rounding-error pivot instead of an exact zero
+		Double[][] v=new Double[][]{{1.0,4.0,7.0},{2.0,5.0,8.0},{3.0,6.0,9.0}};
+		v[0][0]=0.1;
+		v[1][0]=0.2;
+		v[2][0]=0.3;
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		try
+		{
+			new M_Inverse(m);
+			fail();
+		}
+		catch (Exception e)
+		{}
+	}
+
+	@Test
+	public void answerOnly() throws Exception
+	{
+		Double[][] v=new Double[2][2];
+		v[0][0]=new Double(2);
+		v[0][1]=new Double(5);
+		v[1][0]=new Double(3);
+		v[1][1]=new Double(8);
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		M_Inverse t=new M_Inverse(m,true);
+		Double[][] d=((Matrix)(t.getSolution().getAnswer())).getValues();
+		//the LU pivots on the 5, so the answer is only exact to rounding
+		assertTrue(Math.abs(d[0][0]-8)<1e-12);
+		assertTrue(Math.abs(d[1][1]-2)<1e-12);
+		assertTrue(t.toLatex().size()==0);
+	}
 }
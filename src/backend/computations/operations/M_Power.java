@@ -1,11 +1,10 @@
-/**
- * TODO: write, test, toLatex, test toLatex
- */
 package backend.computations.operations;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import matrixDraw.MatrixDraw;
+
 import backend.blocks.Countable;
 import backend.blocks.Countable.DisplayType;
 import backend.blocks.Matrix;
@@ -15,7 +14,7 @@ import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
 
 /**
- * Computes a matrix power
+ * Computes a matrix power by repeated squaring, so A^k takes O(log k) matrix products
  *  
  * @author baebi
  */
@@ -33,12 +32,28 @@ public class M_Power extends Computable {
 	 * @param scalar the scalar exponent
 	 */
 	public M_Power(Matrix matrix, Scalar scalar){
+		this(matrix,scalar,false);
+	}
+	
+	
+	/**
+	 * Computes the solution to a matrix power
+	 * 
+	 * @param matrix the base matrix
+	 * @param scalar the scalar exponent
+	 * @param answerOnly true if only the power is wanted, in which case no steps are generated
+	 */
+	public M_Power(Matrix matrix, Scalar scalar, boolean answerOnly){
+		_answerOnly = answerOnly;
 		if (Math.floor(scalar.getValue()) != scalar.getValue() || scalar.getValue() < 0){
 			throw new IllegalArgumentException("ERROR (M_Power.java) : expects scalar to be non-negative whole-number");
 		}
 		if (matrix.getNumCols() != matrix.getNumRows()){
 			throw new IllegalArgumentException("ERROR: Matrix Power requires a square matrix");
 		}
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		}
 		_scalarArg = scalar;
 		_matrixArg = matrix;
 		List<Countable> argList = new ArrayList<>();
@@ -46,15 +61,174 @@ public class M_Power extends Computable {
 		argList.add(scalar);
 		DisplayType answerDisplayType = resolveDisplayType(argList);
 		
-		_scalarArg.setDisplayType(answerDisplayType);
-		_matrixArg.setDisplayType(answerDisplayType);
-		Matrix toMult = matrix;
-		for (int i = 0; i < (int) scalar.getValue(); i++){
-			MM_Multiply mult = new MM_Multiply(toMult,matrix);
-			_latex.addAll(mult.toLatex());
-			toMult = (Matrix) mult.getSolution().getAnswer();
+		
+		int n = matrix.getNumRows();
+		long exponent = (long) scalar.getValue();
+		double[] base = matrix.toColumnMajor();
+		
+		if (!answerOnly){
+			_latex.add("\\vspace{10mm} \\mathrm{Matrix \\ Power}");
+			_latex.add("\\vspace{10mm} 1. \\\\ \\hspace{15mm}"+MatrixDraw.getCorrectLatex(answerDisplayType,matrix)+"^{"+exponent+"}");
+		}
+		
+		double[] result;
+		if (exponent == 0){
+			// exact identity, no arithmetic
+			result = new double[n*n];
+			for (int i = 0; i < n; i++){
+				result[i*n + i] = 1;
+			}
+			if (!answerOnly){
+				_latex.add("\\vspace{15mm} 2. \\ \\mathrm{Any \\ square \\ matrix \\ to \\ the \\ power \\ 0 \\ is \\ the \\ identity}");
+			}
+		}else if (isFinite(base) && isUpperTriangular(base,n) && isLowerTriangular(base,n)){
+			// diagonal: raise each diagonal entry on its own
+			result = new double[n*n];
+			for (int i = 0; i < n; i++){
+				result[i*n + i] = Math.pow(base[i*n + i], exponent);
+			}
+			if (!answerOnly){
+				_latex.add("\\vspace{15mm} 2. \\ \\mathrm{The \\ matrix \\ is \\ diagonal, \\ so \\ raise \\ each \\ diagonal \\ entry \\ to \\ the \\ power \\ "+exponent+"}");
+			}
+		}else{
+			// the known zeros are only skipped when there is no infinity or NaN for them to multiply
+			boolean finite = isFinite(base);
+			boolean upper = finite && isUpperTriangular(base,n);
+			boolean lower = finite && !upper && isLowerTriangular(base,n);
+			if (!answerOnly){
+				_latex.add("\\vspace{15mm} 2. \\ \\mathrm{Write \\ the \\ exponent \\ as \\ a \\ sum \\ of \\ powers \\ of \\ two:} \\ "+exponent+" = "+binaryExpansion(exponent));
+				if (upper || lower){
+					_latex.add("\\vspace{10mm} \\hspace{15mm} \\mathrm{The \\ matrix \\ is \\ "+(upper ? "upper" : "lower")+" \\ triangular, \\ so \\ every \\ product \\ stays \\ triangular}");
+				}
+				_latex.add("\\vspace{15mm} 3. \\ \\mathrm{Square \\ repeatedly \\ and \\ multiply \\ together \\ the \\ needed \\ powers:}");
+			}
+			
+			result = null;
+			long power = 1;   // base currently holds A^power
+			long reached = 0; // result currently holds A^reached
+			long remaining = exponent;
+			while (true){
+				if ((remaining & 1) == 1){
+					if (result == null){
+						result = base.clone();
+					}else{
+						result = multiply(result,base,n,upper,lower);
+						if (!answerOnly){
+							_latex.add("\\vspace{10mm} \\hspace{15mm} A^{"+(reached+power)+"} = A^{"+reached+"} \\times A^{"+power+"}");
+						}
+					}
+					reached += power;
+				}
+				remaining >>= 1;
+				if (remaining == 0){
+					break;
+				}
+				base = multiply(base,base,n,upper,lower);
+				if (!answerOnly){
+					_latex.add("\\vspace{10mm} \\hspace{15mm} A^{"+(2*power)+"} = A^{"+power+"} \\times A^{"+power+"}");
+				}
+				power *= 2;
+			}
+		}
+		
+		Matrix answer = new Matrix(answerDisplayType,n,n,result);
+		if (!answerOnly){
+			_latex.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+MatrixDraw.getCorrectLatex(answerDisplayType,answer));
+		}
+		_solution = new Solution(Op.POWER,argList,answer,_latex);
+	}
+	
+	
+	/**
+	 * Multiplies two n by n column-major matrices, skipping the known zeros when both are triangular
+	 * 
+	 * @param a the first factor
+	 * @param b the second factor
+	 * @param n the dimension of the factors
+	 * @param upper true if both factors are upper triangular
+	 * @param lower true if both factors are lower triangular
+	 * @return the product, column-major
+	 */
+	private static double[] multiply(double[] a, double[] b, int n, boolean upper, boolean lower){
+		if (!upper && !lower){
+			return MM_Multiply.product(a,b,n,n,n);
+		}
+		double[] c = new double[n*n];
+		for (int j = 0; j < n; j++){
+			// column j of b is nonzero only in rows k <= j (upper) or k >= j (lower)
+			int kStart = upper ? 0 : j;
+			int kEnd = upper ? j : n-1;
+			for (int k = kStart; k <= kEnd; k++){
+				double bkj = b[j*n + k];
+				// column k of a is nonzero only in rows i <= k (upper) or i >= k (lower)
+				int iStart = upper ? 0 : k;
+				int iEnd = upper ? k : n-1;
+				for (int i = iStart; i <= iEnd; i++){
+					c[j*n + i] += a[k*n + i] * bkj;
+				}
+			}
+		}
+		return c;
+	}
+	
+	
+	/**
+	 * @return true iff every entry below the diagonal of the n by n column-major matrix is zero
+	 */
+	private static boolean isUpperTriangular(double[] values, int n){
+		for (int j = 0; j < n; j++){
+			for (int i = j+1; i < n; i++){
+				if (values[j*n + i] != 0){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * @return true iff every entry above the diagonal of the n by n column-major matrix is zero
+	 */
+	private static boolean isLowerTriangular(double[] values, int n){
+		for (int j = 0; j < n; j++){
+			for (int i = 0; i < j; i++){
+				if (values[j*n + i] != 0){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * @return true iff no entry of the matrix is infinite or NaN
+	 */
+	private static boolean isFinite(double[] values){
+		for (double v : values){
+			if (Double.isInfinite(v) || Double.isNaN(v)){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * @return the exponent written as a sum of powers of two, largest first (ex: 13 -> "8 + 4 + 1")
+	 */
+	private static String binaryExpansion(long exponent){
+		StringBuilder b = new StringBuilder();
+		for (long bit = Long.highestOneBit(exponent); bit > 0; bit >>= 1){
+			if ((exponent & bit) != 0){
+				if (b.length() > 0){
+					b.append(" + ");
+				}
+				b.append(bit);
+			}
 		}
-		_solution = new Solution(Op.POWER,argList,toMult,_latex);
+		return b.toString();
 	}
 	
 	
@@ -67,12 +241,11 @@ public class M_Power extends Computable {
 	}
 	
 
-	// TODO: finish
 	@Override
 	/**
 	 * Steps:
 	 * - "m1 ^ s1"
-	 * - one multiplication per power
+	 * - the exponent in binary, and one line per squaring or multiplication
 	 * - answer
 	 */
 	public List<String> toLatex() {
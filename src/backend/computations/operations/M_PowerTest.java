@@ -1,21 +1,104 @@
 /**
- * 
+ *
  */
 package backend.computations.operations;
 
-import static org.junit.Assert.*;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Scalar;
+
 /**
- * @author baebi
+ * Tests for Matrix powers
  *
+ * @author baebi
  */
 public class M_PowerTest {
+	private Matrix m1 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,1.0},{1.0,0.0}}); // fibonacci matrix
+	private Matrix m2 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{2.0,0.0},{0.0,3.0}});
+	private Matrix m3 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,0.0,0.0},{1.0,1.0,0.0},{1.0,1.0,1.0}});
+	private Matrix m4 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,2.0,3.0},{4.0,5.0,6.0}});
+
+	@Test // A^k is A multiplied together k times, not k+1 times
+	public void powerTest() {
+		Matrix answer = (Matrix) new M_Power(m1, new Scalar(10,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 89);
+		assertTrue(answer.get(0,1) == 55);
+		assertTrue(answer.get(1,0) == 55);
+		assertTrue(answer.get(1,1) == 34);
+
+		answer = (Matrix) new M_Power(m1, new Scalar(1,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 1);
+		assertTrue(answer.get(1,1) == 0);
+	}
+
+	@Test // anything to the 0th power is exactly the identity
+	public void zeroPowerTest() {
+		Matrix answer = (Matrix) new M_Power(m1, new Scalar(0,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 1);
+		assertTrue(answer.get(0,1) == 0);
+		assertTrue(answer.get(1,0) == 0);
+		assertTrue(answer.get(1,1) == 1);
+	}
+
+	@Test // diagonal fast path
+	public void diagonalTest() {
+		Matrix answer = (Matrix) new M_Power(m2, new Scalar(5,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 32);
+		assertTrue(answer.get(1,1) == 243);
+		assertTrue(answer.get(0,1) == 0);
+	}
+
+	@Test // triangular fast path: powers of the all-ones upper triangular matrix
+	public void triangularTest() {
+		Matrix answer = (Matrix) new M_Power(m3, new Scalar(4,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 1);
+		assertTrue(answer.get(0,1) == 4);
+		assertTrue(answer.get(0,2) == 10);
+		assertTrue(answer.get(1,2) == 4);
+		assertTrue(answer.get(2,0) == 0);
+	}
+
+	@Test // a large exponent only takes a handful of squarings
+	public void largePowerTest() {
+		Matrix rotation = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{0.0,1.0},{-1.0,0.0}});
+		M_Power pow = new M_Power(rotation, new Scalar(1001,DisplayType.WHOLENUMBER));
+		Matrix answer = (Matrix) pow.getSolution().getAnswer();
+		assertTrue(answer.get(0,1) == -1);
+		assertTrue(answer.get(1,0) == 1);
+		assertTrue(pow.toLatex().size() < 30);
+	}
+
+	@Test // infinity times zero is NaN, as in the plain triple loop, for diagonal, triangular and other matrices
+	public void infinityTest() {
+		double inf = Double.POSITIVE_INFINITY;
+		Matrix diagonal = new Matrix(DisplayType.DECIMAL, new Double[][]{{inf,0.0},{0.0,1.0}});
+		Matrix answer = (Matrix) new M_Power(diagonal, new Scalar(2,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == inf);
+		assertTrue(Double.isNaN(answer.get(0,1)));
+
+		Matrix upper = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,0.0},{inf,0.0}});
+		answer = (Matrix) new M_Power(upper, new Scalar(2,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(Double.isNaN(answer.get(0,0)));
+		assertTrue(Double.isNaN(answer.get(0,1)));
+
+		Matrix full = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0},{inf,0.0}});
+		answer = (Matrix) new M_Power(full, new Scalar(2,DisplayType.WHOLENUMBER)).getSolution().getAnswer();
+		assertTrue(Double.isNaN(answer.get(0,1)));
+		assertTrue(answer.get(1,1) == inf);
+	}
 
-	@Test
-	public void test() {
-		fail("Not yet implemented");
+	@Test // non-square matrices can't be raised to a power
+	public void nonSquareTest() {
+		try{
+			new M_Power(m4, new Scalar(2,DisplayType.WHOLENUMBER));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
 	}
 
 }
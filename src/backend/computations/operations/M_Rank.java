@@ -2,7 +2,10 @@ package backend.computations.operations;
 
 import backend.blocks.*;
 import backend.blocks.Countable.DisplayType;
+import backend.computations.infrastructure.CompositeStepSource;
 import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
+import backend.computations.infrastructure.LazyStepList;
 import backend.computations.infrastructure.Solution;
 import java.util.*;
 
@@ -26,46 +29,58 @@ public class M_Rank extends Computable
 	 *@param matrix the matrix*/
 	public M_Rank(Matrix matrix) throws Exception
 	{
-		steps.add("\\vspace{10mm} \\mathrm{Determining \\ Matrix \\ Rank}");
+		this(matrix,false);
+	}
+
+	/**Returns the rank of a matrix
+	 *
+	 *@param matrix the matrix
+	 *@param answerOnly true if only the answer is wanted, in which case no steps are generated*/
+	public M_Rank(Matrix matrix, boolean answerOnly) throws Exception
+	{
+		_answerOnly=answerOnly;
+		if (!answerOnly)
+			steps.add("\\vspace{10mm} \\mathrm{Determining \\ Matrix \\ Rank}");
 		@SuppressWarnings("unused")
 		DisplayType answerDisplayType = matrix.getDisplayType(); // choose DisplayType to use
 
-		Double[][] values = matrix.getValues();
-		for (int i = 0; i < values.length; i++)
+		if (!matrix.isComplete())
 		{
-			for (int j = 0; j < values[0].length; j++)
-			{
-				if (values[i][j] == null){
-					throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
-				}
-			}
+			throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		}
+
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
+
+		//without steps, count the pivots of the LU factors shared through the FactorizationCache
+		if (answerOnly)
+		{
+			Scalar answer=new Scalar(FactorizationCache.getShared().getLU(matrix).getRank(),DisplayType.WHOLENUMBER);
+			_solution = new Solution(Op.M_RANK, inputs, answer, steps);
+			return;
 		}
 
 		/**the reduced matrix*/
-		M_RowReduce rowreduce=new M_RowReduce(matrix);
-		Solution refsol=rowreduce.getSolution();
+		Solution refsol=M_RowReduce.solve(matrix,false);
 		Matrix ref=(Matrix)(refsol.getAnswer());
-		Double[][] refv=ref.getValues();
-		List<String> rrSteps = rowreduce.toLatex();
-		rrSteps.remove(0);
+		List<String> rrSteps = refsol.getLatex();
 		steps.add("\\vspace{10mm}\\mathrm{1. \\ Determine \\ the \\ row \\ reduced \\ echelon \\ form \\ of \\ the \\ matrix}");
-		for (String s : rrSteps){
-			steps.add("\\hspace{15mm}"+s);
-		}
+		//the row reduction steps go here; they are drawn from the cached row reduction when they are looked at
+		int split=steps.size();
 		//first zero row
 		int fzr=0;
 		int rank=0;
 		
 		steps.add("\\vspace{15mm} \\mathrm{2. \\ Identify \\ pivot \\ columns}");
-		for (int i=0;i<refv.length;i++)
+		for (int i=0;i<ref.getNumCols();i++)
 		{
-			if (fzr>=refv[0].length)//beyond the last row
+			if (fzr>=ref.getNumRows())//beyond the last row
 				break;
-			if (refv[i][fzr]!=0)
+			if (ref.get(fzr,i)!=0)
 			{
 				rank++;
 				//get to bottom of non-zero
-				while (fzr<refv[0].length && refv[i][fzr]!=0)
+				while (fzr<ref.getNumRows() && ref.get(fzr,i)!=0)
 				{
 					fzr++;
 				}
@@ -79,9 +94,10 @@ public class M_Rank extends Computable
 			steps.add("\\vspace{15mm} \\mathrm{There \\ is \\ in \\ total \\ 1 \\ pivot \\ column \\ so \\ the \\ rank \\ is \\ 1}");
 		else
 			steps.add("\\vspace{15mm} \\mathrm{There \\ are} \\ "+answer.getDisplayValue()+" \\ \\mathrm{pivot \\ columns; \\ the \\ rank \\ is} \\ "+answer.getDisplayValue());
-		List<Countable> inputs = new ArrayList<>();
-		inputs.add(matrix);
-
+		steps=new LazyStepList(new CompositeStepSource()
+			.add(steps.subList(0,split))
+			.add(rrSteps.subList(1,rrSteps.size()),"\\hspace{15mm}")
+			.add(steps.subList(split,steps.size())));
 		_solution = new Solution(Op.M_RANK, inputs, answer, steps);
 	}
 
@@ -3,7 +3,12 @@ package backend.computations.operations;
 import backend.blocks.*;
 import backend.blocks.Countable.DisplayType;
 import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.FactorizationCache;
+import backend.computations.infrastructure.LUDecomposition;
+import backend.computations.infrastructure.LazyStepList;
 import backend.computations.infrastructure.Solution;
+import backend.computations.infrastructure.SolutionCache;
+import backend.computations.infrastructure.StepSource;
 import matrixDraw.*;
 
 import java.util.*;
@@ -16,7 +21,8 @@ public class M_RowReduce extends Computable
 {
   	private Solution _solution;
   	private List<String> steps=new ArrayList<>();
-  	private int stepNumber = 1;
+  	//the row operations in the order they were done, from which the steps are drawn when they are looked at
+  	private List<RowOperation> operations=new ArrayList<>();
 
 	@Override
 	public Solution getSolution()
@@ -29,15 +35,66 @@ public class M_RowReduce extends Computable
 	 *@param matrix the matrix*/
 	public M_RowReduce(Matrix matrix) throws Exception
 	{
-		steps.add("\\vspace{10mm} \\mathrm{Row \\ Reduction}");
+		this(matrix,false);
+	}
+
+	/**Row reduces a matrix through the shared SolutionCache, so that the Computables built on row reduction
+	 * don't redo it for a matrix that was already reduced
+	 *
+	 *@param matrix the matrix
+	 *@param answerOnly true if only the reduced matrix is wanted, in which case no steps are generated
+	 *@return the Solution of the row reduction*/
+	static Solution solve(final Matrix matrix, final boolean answerOnly) throws Exception
+	{
+		return SolutionCache.getShared().get(Op.ROW_REDUCE,answerOnly,new SolutionCache.Loader<Exception>()
+		{
+			@Override
+			public Solution load() throws Exception
+			{
+				return new M_RowReduce(matrix,answerOnly).getSolution();
+			}
+		},matrix);
+	}
+
+	/**Returns the reduced echelon form of a matrix
+	 *
+	 *@param matrix the matrix
+	 *@param answerOnly true if only the reduced matrix is wanted, in which case no steps are generated*/
+	public M_RowReduce(Matrix matrix, boolean answerOnly) throws Exception
+	{
+		_answerOnly=answerOnly;
+		if (!matrix.isComplete())
+		{
+			throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
+		}
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
+
+		//without steps, finish the reduction from the LU factors shared through the FactorizationCache
+		if (answerOnly)
+		{
+			double[] reduced=FactorizationCache.getShared().getLU(matrix).getReducedEchelonForm();
+			Matrix answer=new Matrix(DisplayType.DECIMAL,matrix.getNumRows(),matrix.getNumCols(),reduced);
+			_solution = new Solution(Op.ROW_REDUCE, inputs, answer, steps);
+			return;
+		}
 		Double[][] values = matrix.getValues();
-		for (int i = 0; i < values.length; i++)
+
+		//values this small are rounding error, by the same test as the LU without steps, so both find the same
+		//pivots. Any in the matrix are zeroed, and so are any left in rows without a pivot yet
+		double maxAbs=0;
+		for (Double[] column : values)
 		{
-			for (int j = 0; j < values[0].length; j++)
+			for (Double value : column)
+				maxAbs=Math.max(maxAbs,Math.abs(value));
+		}
+		double tolerance=LUDecomposition.zeroTolerance(maxAbs,matrix.getNumRows(),matrix.getNumCols());
+		for (Double[] column : values)
+		{
+			for (int i=0;i<column.length;i++)
 			{
-				if (values[i][j] == null){
-					throw new IllegalArgumentException("ERROR: Each matrix index must contain a non-null entry");
-				}
+				if (Math.abs(column[i])<=tolerance)
+					column[i]=0.0;
 			}
 		}
 
@@ -80,12 +137,8 @@ public class M_RowReduce extends Computable
 			}
 		}
 
-		Matrix stepMatrix=new Matrix(DisplayType.DECIMAL,moved);
-		if (changed)
-			steps.add("");
-			steps.add("\\vspace{15mm} "+stepNumber+". \\ \\mathrm{Rearrange \\ rows \\ to:}");
-			stepNumber++;
-			steps.add("\\hspace{15mm} "+MatrixDraw.getCorrectLatex(matrix.getDisplayType(),stepMatrix));
+		//the rearranged matrix, which the recorded row operations are replayed on to draw the steps
+		double[] rearranged=new Matrix(DisplayType.DECIMAL,moved).toColumnMajor();
 
 		//the row to work on
 		for (int j=0;j<Math.min(moved.length,moved[0].length);j++)
@@ -107,11 +160,7 @@ public class M_RowReduce extends Computable
 				{
 					moved[k][j]/=pivot;
 				}
-				stepMatrix=new Matrix(DisplayType.DECIMAL,moved);
-				String piv = shortenDecimal(Double.toString(pivot));
-				steps.add("\\vspace{15mm}"+stepNumber+". \\ \\mathrm{Divide \\ Row \\ "+(j+1)+" \\ by} \\ "+piv);
-				stepNumber++;
-				steps.add("\\hspace{15mm} = "+ MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,stepMatrix));
+				operations.add(new RowOperation(true,j,j,i,pivot));
 			}
 
 			//make the whole column zero except for pivot
@@ -130,17 +179,12 @@ public class M_RowReduce extends Computable
 				for (int k=i+1;k<moved.length;k++)
 				{
 					moved[k][l]-=moved[k][j]*factor;
+					//rows below haven't been divided by a pivot, so they are still on the scale of the tolerance
+					if (l>j && Math.abs(moved[k][l])<=tolerance)
+						moved[k][l]=0.0;
 				}
 				
-				String num = shortenDecimal(Double.toString(factor));
-
-				
-				
-				stepMatrix=new Matrix(DisplayType.DECIMAL,moved);
-				steps.add("\\vspace{15mm}"+stepNumber+". \\ \\mathrm{Subtract \\ Row \\ "+(l+1)+" \\ by \\ (Row} \\ "+(j+1)+" \\ \\times \\ "+
-					num+")");
-				stepNumber++;
-				steps.add("\\hspace{15mm} = "+ MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,stepMatrix));
+				operations.add(new RowOperation(false,l,j,i,factor));
 			}
 		}
 
@@ -177,11 +221,8 @@ public class M_RowReduce extends Computable
 		}
 
 		Matrix answer=new Matrix(DisplayType.DECIMAL,moved);
-		steps.add("\\vspace{15mm} \\mathrm{The \\ row \\ reduced \\ echelon \\ form \\ is}");
-		steps.add("\\vspace{5mm} \\hspace{15mm} "+MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,answer));
-
-		List<Countable> inputs = new ArrayList<>();
-		inputs.add(matrix);
+		steps=new LazyStepList(new RowReduceSteps(matrix.getDisplayType(),changed,rearranged,
+			matrix.getNumRows(),matrix.getNumCols(),tolerance,answer));
 
 		_solution = new Solution(Op.ROW_REDUCE, inputs, answer, steps);
 	}
@@ -191,7 +232,136 @@ public class M_RowReduce extends Computable
 	{
 		return steps;
 	}
-	
-	
+
+	/** One recorded row operation: either a row divided by its pivot, or a multiple of the pivot row subtracted
+	 * from another row. Both only touch the columns from the pivot column on
+	 */
+	private static class RowOperation
+	{
+		boolean divide;
+		int row;
+		int pivotRow;
+		int pivotCol;
+		double factor;
+
+		RowOperation(boolean divide, int row, int pivotRow, int pivotCol, double factor)
+		{
+			this.divide=divide;
+			this.row=row;
+			this.pivotRow=pivotRow;
+			this.pivotCol=pivotCol;
+			this.factor=factor;
+		}
+
+		/**Does this operation to a column-major matrix, with the same arithmetic as the reduction itself
+		 *
+		 *@param tolerance the largest value in a row below the pivot row that is zeroed as rounding error*/
+		void apply(double[] values, int numRows, int numCols, double tolerance)
+		{
+			if (divide)
+			{
+				for (int k=pivotCol;k<numCols;k++)
+				{
+					values[k*numRows+row]/=factor;
+				}
+			}
+			else
+			{
+				values[pivotCol*numRows+row]=0.0;
+				for (int k=pivotCol+1;k<numCols;k++)
+				{
+					values[k*numRows+row]-=values[k*numRows+pivotRow]*factor;
+					if (row>pivotRow && Math.abs(values[k*numRows+row])<=tolerance)
+						values[k*numRows+row]=0.0;
+				}
+			}
+		}
+	}
+
+	/** Draws the steps of the reduction from the recorded row operations. The matrix after an operation is found
+	 * by replaying the operations on the rearranged matrix; reading the steps in order replays each one once
+	 */
+	private class RowReduceSteps implements StepSource
+	{
+		private DisplayType inputType;
+		private double[] rearranged;
+		private int numRows;
+		private int numCols;
+		private double tolerance;
+		private Matrix answer;
+		//number of text lines before the rearranged matrix
+		private int leading;
+
+		//the rearranged matrix with the first <applied> operations done to it
+		private double[] current;
+		private int applied;
+
+		RowReduceSteps(DisplayType inputType, boolean changed, double[] rearranged, int numRows, int numCols,
+			double tolerance, Matrix answer)
+		{
+			this.inputType=inputType;
+			this.rearranged=rearranged;
+			this.numRows=numRows;
+			this.numCols=numCols;
+			this.tolerance=tolerance;
+			this.answer=answer;
+			leading=changed ? 3 : 2;
+		}
+
+		@Override
+		public int size()
+		{
+			return leading+1+2*operations.size()+2;
+		}
+
+		@Override
+		public String getStep(int index)
+		{
+			if (index==0)
+				return "\\vspace{10mm} \\mathrm{Row \\ Reduction}";
+			if (index<leading-1)
+				return "";
+			if (index==leading-1)
+				return "\\vspace{15mm} 1. \\ \\mathrm{Rearrange \\ rows \\ to:}";
+			if (index==leading)
+				return "\\hspace{15mm} "+MatrixDraw.getCorrectLatex(inputType,new Matrix(DisplayType.DECIMAL,numRows,numCols,rearranged.clone()));
+
+			int op=(index-leading-1)/2;
+			if (op>=operations.size())
+			{
+				if (index==size()-2)
+					return "\\vspace{15mm} \\mathrm{The \\ row \\ reduced \\ echelon \\ form \\ is}";
+				return "\\vspace{5mm} \\hspace{15mm} "+MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,answer);
+			}
+
+			RowOperation operation=operations.get(op);
+			int stepNumber=op+2;
+			if ((index-leading-1)%2==0)
+			{
+				String num=shortenDecimal(Double.toString(operation.factor));
+				if (operation.divide)
+					return "\\vspace{15mm}"+stepNumber+". \\ \\mathrm{Divide \\ Row \\ "+(operation.row+1)+" \\ by} \\ "+num;
+				return "\\vspace{15mm}"+stepNumber+". \\ \\mathrm{Subtract \\ Row \\ "+(operation.row+1)+" \\ by \\ (Row} \\ "+
+					(operation.pivotRow+1)+" \\ \\times \\ "+num+")";
+			}
+			return "\\hspace{15mm} = "+MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,matrixAfter(op));
+		}
+
+		/**@return the matrix after the operation at index op has been done*/
+		private Matrix matrixAfter(int op)
+		{
+			if (current==null || applied>op+1)
+			{
+				current=rearranged.clone();
+				applied=0;
+			}
+			while (applied<=op)
+			{
+				operations.get(applied).apply(current,numRows,numCols,tolerance);
+				applied++;
+			}
+			return new Matrix(DisplayType.DECIMAL,numRows,numCols,current.clone());
+		}
+	}
 
 }
@@ -7,6 +7,8 @@ import org.junit.*;
 
 import backend.computations.infrastructure.*;
 
+import java.util.*;
+
 public class M_RowReduceTest
 {
    @Test
@@ -349,4 +351,44 @@ public class M_RowReduceTest
 		assertTrue(a[1][0].equals(2.0));
 		assertTrue(a[1][1].equals(0.0));
 	}
+
+	@Test
+	public void answerOnly() throws Exception
+	{
+		Double[][] v=new Double[3][3];
+		v[0][0]=new Double(0);
+		v[0][1]=new Double(2);
+		v[0][2]=new Double(1);
+		v[1][0]=new Double(3);
+		v[1][1]=new Double(4);
+		v[1][2]=new Double(1);
+		v[2][0]=new Double(5);
+		v[2][1]=new Double(6);
+		v[2][2]=new Double(2);
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		M_RowReduce full=new M_RowReduce(m);
+		M_RowReduce t=new M_RowReduce(m,true);
+		assertTrue(t.toLatex().isEmpty());
+		Matrix a=(Matrix)(full.getSolution().getAnswer());
+		Matrix b=(Matrix)(t.getSolution().getAnswer());
+		for (int i=0;i<3;i++)
+			for (int j=0;j<3;j++)
+				assertTrue(a.get(i,j)==b.get(i,j));
+	}
+
+	@Test
+	public void stepsOutOfOrder() throws Exception
+	{
+		Double[][] v=new Double[4][4];
+		for (int i=0;i<4;i++)
+			for (int j=0;j<4;j++)
+				v[i][j]=new Double((i*3+j*5)%7+1);
+		Matrix m=new Matrix(DisplayType.DECIMAL,v);
+		List<String> steps=new M_RowReduce(m).toLatex();
+		List<String> inOrder=new ArrayList<>(steps);
+		//steps are drawn when asked for, so reading them backwards must give the same strings
+		for (int i=steps.size()-1;i>=0;i--)
+			assertTrue(steps.get(i).equals(inOrder.get(i)));
+		assertTrue(steps.get(0).equals("\\vspace{10mm} \\mathrm{Row \\ Reduction}"));
+	}
 }
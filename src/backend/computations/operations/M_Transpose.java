@@ -6,6 +6,7 @@ import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
 import matrixDraw.*;
 
+import java.io.IOException;
 import java.util.*;
 
 /** Matrix Transpose Operation
@@ -15,10 +16,13 @@ import java.util.*;
 public class M_Transpose extends Computable
 {
 	private Solution _solution;
-	private Double[][] input;
-	private Double[][] output;
+	private Matrix input;
+	private Matrix output;
 	DisplayType answerDisplayType;
 
+	//mapped matrices are transposed in square tiles of this many rows and columns, 2MB each
+	private static final int MAPPED_TILE=512;
+
 	@Override
 	public Solution getSolution()
 	{
@@ -30,22 +34,37 @@ public class M_Transpose extends Computable
 	 *@param matrix the matrix*/
 	public M_Transpose(Matrix matrix)
 	{
+		this(matrix,false);
+	}
+
+	/**Returns the transpose of a matrix
+	 *
+	 *@param matrix the matrix
+	 *@param answerOnly true if only the transpose is wanted, in which case no steps are generated*/
+	public M_Transpose(Matrix matrix, boolean answerOnly)
+	{
+		_answerOnly=answerOnly;
 		answerDisplayType = matrix.getDisplayType(); // choose DisplayType to use
 
-		Double[][] values = matrix.getValues();
-		input=values;
+		input=matrix;
 
-		//the transposed values
-		output = new Double[values[0].length][values.length];
-		for (int i=0;i<values[0].length;i++)
+		//the transposed matrix is a view that reads the input's values in place with its strides swapped, which is
+		//safe since matrices are immutable. a mapped matrix is copied instead, since reading a file across its
+		//layout pages in a block per value
+		if (matrix.isMapped())
 		{
-			for (int j=0;j<values.length;j++)
+			try
+			{
+				output=mappedTranspose(matrix);
+			}
+			catch (IOException e)
 			{
-				output[i][j]=values[j][i];
+				throw new IllegalArgumentException("ERROR: "+e.getMessage());
 			}
 		}
-		//the transposed matrix
-		Matrix answer=new Matrix(answerDisplayType,output);
+		else
+			output=matrix.transposeView();
+		Matrix answer=output;
 
 		List<Countable> inputs = new ArrayList<>();
 		inputs.add(matrix);
@@ -54,24 +73,94 @@ public class M_Transpose extends Computable
 		_solution = new Solution(Op.M_TRANSPOSE, inputs, answer, latex);
 	}
 
+	/**Transposes a matrix into a memory-mapped file, one square tile at a time. Each tile is read a column at a
+	 * time and written back a column at a time, so both files are read in runs rather than a value at a time
+	 *
+	 *@param matrix the matrix, mapped or not
+	 *@return the transpose, stored in a temporary mapped file
+	 *@throws IOException if the file for the answer can't be made*/
+	public static Matrix mappedTranspose(Matrix matrix) throws IOException
+	{
+		int numRows=matrix.getNumRows();
+		int numCols=matrix.getNumCols();
+		MappedValues result=MappedValues.createTemp((long) numRows*numCols);
+		double[] tile=new double[MAPPED_TILE*MAPPED_TILE];
+		double[] flipped=new double[MAPPED_TILE*MAPPED_TILE];
+		for (int row=0;row<numRows;row+=MAPPED_TILE)
+		{
+			int rows=Math.min(MAPPED_TILE,numRows-row);
+			for (int col=0;col<numCols;col+=MAPPED_TILE)
+			{
+				int cols=Math.min(MAPPED_TILE,numCols-col);
+				matrix.readBlock(row,col,rows,cols,tile);
+				for (int j=0;j<cols;j++)
+					for (int i=0;i<rows;i++)
+						flipped[i*cols+j]=tile[j*rows+i];
+				//row i of the tile is part of column row+i of the answer
+				for (int i=0;i<rows;i++)
+					result.put((long) (row+i)*numCols+col,flipped,i*cols,cols);
+			}
+		}
+		return new Matrix(matrix.getDisplayType(),numCols,numRows,result);
+	}
+
+	/**Transposes a sparse matrix. The columns of the answer are the rows of the matrix, found with a counting
+	 * sort over the row indices, so it takes time linear in the nonzeros and the dimensions
+	 *
+	 *@param matrix the matrix
+	 *@return the transpose, stored sparsely*/
+	public static SparseMatrix sparseTranspose(SparseMatrix matrix)
+	{
+		int[] colStart=matrix.getColumnStarts();
+		int[] rowIndex=matrix.getRowIndices();
+		double[] values=matrix.getNonZeroValues();
+		int numRows=matrix.getNumRows();
+
+		//the answer has a column per row of the matrix; count the nonzeros of each
+		int[] start=new int[numRows+1];
+		for (int k=0;k<rowIndex.length;k++)
+			start[rowIndex[k]+1]++;
+		for (int i=0;i<numRows;i++)
+			start[i+1]+=start[i];
+
+		//going through the columns in order keeps the rows of each answer column increasing
+		int[] next=Arrays.copyOf(start,numRows);
+		int[] tRowIndex=new int[rowIndex.length];
+		double[] tValues=new double[values.length];
+		for (int j=0;j<matrix.getNumCols();j++)
+		{
+			for (int k=colStart[j];k<colStart[j+1];k++)
+			{
+				int at=next[rowIndex[k]]++;
+				tRowIndex[at]=j;
+				tValues[at]=values[k];
+			}
+		}
+		return new SparseMatrix(matrix.getDisplayType(),matrix.getNumCols(),numRows,start,tRowIndex,tValues);
+	}
+
 	@Override
 	public List<String> toLatex()
 	{
 		List<String> steps=new ArrayList<>();
+		if (_answerOnly)
+		{
+			return steps;
+		}
 		steps.add("\\vspace{10mm} \\mathrm{Matrix \\ Transpose}");
-		for (int i=0;i<input.length;i++)
+		if (input.isMapped())
+		{
+			steps.add("\\vspace{10mm} 1. \\\\ \\hspace{15mm} "+input.toLatex()+"^{T}");
+			steps.add("\\vspace{15mm} \\mathrm{Each \\ "+MAPPED_TILE+" \\times "+MAPPED_TILE+" \\ tile \\ is \\ flipped \\ across \\ the \\ diagonal}");
+			steps.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}"+output.toLatex());
+			return steps;
+		}
+		for (int i=0;i<input.getNumCols();i++)
 		{
 			//the original column
-			Double[][] column=new Double[1][input[0].length];
-			column[0]=input[i];
-			Matrix from=new Matrix(answerDisplayType,column);
+			Matrix from=input.subMatrixView(0,i,input.getNumRows(),1);
 			//the resulted row
-			Double[][] row=new Double[output.length][1];
-			for (int j=0;j<output.length;j++)
-			{
-				row[j][0]=output[j][i];
-			}
-			Matrix to=new Matrix(answerDisplayType,row);
+			Matrix to=output.subMatrixView(i,0,1,output.getNumCols());
 			steps.add("\\vspace{10mm} "+(i+1)+". \\\\");
 			steps.add("\\hspace{15mm} \\mathrm{Column} \\ "+(i+1)+" = "+MatrixDraw.getCorrectLatex(answerDisplayType,from)+
 				" \\mathrm{becomes \\ Row} \\ "+(i+1)+" = "+MatrixDraw.getCorrectLatex(answerDisplayType,to));
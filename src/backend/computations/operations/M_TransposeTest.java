@@ -5,6 +5,10 @@ import static org.junit.Assert.*;
 import backend.blocks.Countable.DisplayType;
 import org.junit.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
 import backend.computations.infrastructure.*;
 
 /**
@@ -155,4 +159,39 @@ public class M_TransposeTest
 			" Row 5 = \\begin{bmatrix} 5.0\\end{bmatrix}";
 		assertTrue(t.toLatex().get(4).equals(l));
 	}
+
+	@Test
+	public void mappedMatrix() throws IOException
+	{
+		//more than one tile each way, and not a whole number of tiles
+		int numRows=1100;
+		int numCols=600;
+		MappedValues v=MappedValues.createTemp((long) numRows*numCols);
+		for (int i=0;i<numRows*numCols;i++)
+			v.put(i,i);
+		Matrix m=new Matrix(DisplayType.DECIMAL,numRows,numCols,v);
+		M_Transpose t=new M_Transpose(m);
+		Matrix answer=(Matrix) t.getSolution().getAnswer();
+		assertTrue(answer.isMapped());
+		assertTrue(answer.getNumRows()==numCols);
+		assertTrue(answer.getNumCols()==numRows);
+		assertTrue(Arrays.equals(answer.toColumnMajor(),m.transposeView().toColumnMajor()));
+		assertTrue(t.toLatex().get(1).contains("memory \\ mapped"));
+	}
+
+	@Test
+	public void tempFileDeleted() throws Exception
+	{
+		MappedValues v=MappedValues.createTemp(1000);
+		File file=v.getFile();
+		assertTrue(file.exists());
+		v=null;
+		//the file goes once the values are collected
+		for (int i=0;i<100 && file.exists();i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertTrue(!file.exists());
+	}
 }
@@ -30,33 +30,42 @@ public class SS_MultiplyDivide extends Computable {
 	 * 
 	 * @param a the first number
 	 * @param b the second number
-	 * @param isPlus true iff this is an addition operation. false iff this is a subtraction operation
+	 * @param isTimes true iff this is a multiplication operation. false iff this is a division operation
 	 */
 	public SS_MultiplyDivide(Scalar a, Scalar b, boolean isTimes){
+		this(a,b,isTimes,false);
+	}
+	
+	
+	/** 
+	 * Computes the solution to a scalar multiplication or division operation. Expects non-null inputs
+	 * 
+	 * @param a the first number
+	 * @param b the second number
+	 * @param isTimes true iff this is a multiplication operation. false iff this is a division operation
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 */
+	public SS_MultiplyDivide(Scalar a, Scalar b, boolean isTimes, boolean answerOnly){
+		_answerOnly = answerOnly;
 		List<Countable> args = new ArrayList<>();
 		args.add(a);
 		args.add(b);
 		DisplayType answerDisplayType = DisplayType.DECIMAL;
 		Double aVal = a.getValue();
 		Double bVal = b.getValue();
-		a.setDisplayType(answerDisplayType);
-		b.setDisplayType(answerDisplayType);
-		String aString = a.getDisplayValue();
-		String bString = b.getDisplayValue();
 		
 		Double answer;
 		if (isTimes){
 			_op = "Multiplication";
-			_operatorStep = aString + " * " + bString;
 			answer = aVal * bVal;
 		}else{
 			_op = "Division";
-			_operatorStep = aString + " / " + bString;
 			answer = aVal / bVal;
 		}
 		
-		Scalar opStep = new Scalar(answer,DisplayType.CUSTOM);
-		opStep.setCustomDisplayValue(_operatorStep);
+		if (!answerOnly){
+			_operatorStep = a.getDisplayValue(answerDisplayType) + (isTimes ? " * " : " / ") + b.getDisplayValue(answerDisplayType);
+		}
 		_answerStep = new Scalar(answer,answerDisplayType);
 		
 		List<String> latex = toLatex();
@@ -80,6 +89,9 @@ public class SS_MultiplyDivide extends Computable {
 	@Override
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{"+_op+"}");
 		StringBuffer b = new StringBuffer();
 		b.append("\\hspace{15mm}");
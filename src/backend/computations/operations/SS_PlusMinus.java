@@ -34,12 +34,24 @@ public class SS_PlusMinus extends Computable {
 	 * @param isPlus true iff this is an addition operation. false iff this is a subtraction operation
 	 */
 	public SS_PlusMinus(Scalar a, Scalar b, boolean isPlus){
+		this(a,b,isPlus,false);
+	}
+	
+	
+	/** 
+	 * Computes the solution to a scalar addition or subtraction operation. Expects non-null inputs
+	 * 
+	 * @param a the first number
+	 * @param b the second number
+	 * @param isPlus true iff this is an addition operation. false iff this is a subtraction operation
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 */
+	public SS_PlusMinus(Scalar a, Scalar b, boolean isPlus, boolean answerOnly){
+		_answerOnly = answerOnly;
 		List<Countable> args = new ArrayList<>();
 		args.add(a);
 		args.add(b);
 		DisplayType answerDisplayType = resolveDisplayType(args);
-		a.setDisplayType(answerDisplayType);
-		b.setDisplayType(answerDisplayType);
 		
 		Double aVal = a.getValue();
 		Double bVal = b.getValue();
@@ -48,16 +60,15 @@ public class SS_PlusMinus extends Computable {
 		Double answer;
 		if (isPlus){
 			_op = "Addition";
-			_operatorStep = a.getDisplayValue() + " \\ + \\ " + b.getDisplayValue();
 			answer = aVal + bVal;
 		}else{
 			_op = "Subtraction";
-			_operatorStep = a.getDisplayValue() + " \\ - \\ " + b.getDisplayValue();
 			answer = aVal - bVal;
 		}
 		
-		Scalar opStep = new Scalar(answer,DisplayType.CUSTOM);
-		opStep.setCustomDisplayValue(_operatorStep);
+		if (!answerOnly){
+			_operatorStep = a.getDisplayValue(answerDisplayType) + (isPlus ? " \\ + \\ " : " \\ - \\ ") + b.getDisplayValue(answerDisplayType);
+		}
 		_answerStep = new Scalar(answer,answerDisplayType);
 		
 		List<String> latex = toLatex();
@@ -82,6 +93,9 @@ public class SS_PlusMinus extends Computable {
 	 */
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{"+_op+"}");
 		StringBuilder b = new StringBuilder();
 		b.append("\\hspace{15mm}");
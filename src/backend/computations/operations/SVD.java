@@ -1,32 +1,514 @@
-/**
- * 
- */
 package backend.computations.operations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import matrixDraw.MatrixDraw;
 
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
 import backend.computations.infrastructure.Computable;
 import backend.computations.infrastructure.Solution;
 
 /**
- * @author
+ * Singular value decomposition A = U * S * V^T, computed by one-sided Jacobi: pairs of columns of A are rotated
+ * until every pair is orthogonal. The lengths of the columns are then the singular values, and the columns
+ * divided by their lengths are U. The same rotations applied to the identity give V.
  *
+ * Each sweep pairs up the columns in rounds (round-robin order), so the pairs in a round share no column and
+ * are rotated in parallel. Jacobi finds small singular values to high relative accuracy, which is what makes
+ * the rank and pseudo-inverse computed from them reliable.
+ *
+ * The answer is the column of singular values, largest first. For an m x n matrix there are min(m,n) of them,
+ * U is m x min(m,n) and V is n x min(m,n). Columns of U for singular values of 0 are 0
+ *
+ * @author baebi
  */
 public class SVD extends Computable {
+	private Solution _solution;
+	private Matrix _matrix, _u, _v, _answer;
+	private double[] _singularValues;
+	private int _sweeps;
+
+	// a pair of columns counts as orthogonal once the cosine of the angle between them is below this
+	private static final double TOLERANCE = 1e-15;
+
+	// Jacobi converges quadratically, so this many sweeps means the input was not finite
+	private static final int MAX_SWEEPS = 60;
+
+	// jacobi scales a matrix whose largest entry is outside [SAFE_MIN, SAFE_MAX] to have entries near 1, so that
+	// the squared lengths of its columns neither overflow nor underflow
+	private static final double SAFE_MAX = Math.scalb(1.0, 480);
+	private static final double SAFE_MIN = Math.scalb(1.0, -480);
+
+	// rounds with fewer multiply-adds than this are rotated on one thread
+	private static final long PARALLEL_THRESHOLD = 1 << 15;
+
+	// the fewest pairs of columns one fork-join task rotates
+	private static final int MIN_TASK_PAIRS = 4;
+
+	// steps draw U, S and V only for matrices with at most this many rows and columns
+	private static final int SHOWN_SIZE = 6;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
 
 	/* (non-Javadoc)
 	 * @see backend.operations.Computable#getSolution()
 	 */
 	@Override
 	public Solution getSolution() {
-		// TODO Auto-generated method stub
-		return null;
+		return _solution;
+	}
+
+
+	/**
+	 * Computes the singular value decomposition of a matrix, with steps
+	 *
+	 * @param matrix the matrix
+	 */
+	public SVD(Matrix matrix){
+		this(matrix,false);
+	}
+
+
+	/**
+	 * Computes the singular value decomposition of a matrix. In answer-only mode only the singular values are
+	 * computed, which skips accumulating V and normalizing U
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if only the singular values are wanted, in which case no steps are generated
+	 */
+	public SVD(Matrix matrix, boolean answerOnly){
+		this(matrix,answerOnly,!answerOnly);
+	}
+
+
+	/**
+	 * Computes the singular value decomposition of a matrix
+	 *
+	 * @param matrix the matrix
+	 * @param answerOnly true if no steps should be generated
+	 * @param withVectors true to compute U and V along with the singular values. Must be true if steps are
+	 * generated
+	 */
+	public SVD(Matrix matrix, boolean answerOnly, boolean withVectors){
+		if (!answerOnly && !withVectors){
+			throw new IllegalArgumentException("ERROR (SVD): the steps show U and V, so they must be computed");
+		}
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_answerOnly = answerOnly;
+		_matrix = matrix;
+
+		// Jacobi needs at least as many rows as columns, so a wide matrix is decomposed through its transpose:
+		// if A^T = U' S V'^T then A = V' S U'^T
+		boolean wide = matrix.getNumRows() < matrix.getNumCols();
+		Matrix tall = wide ? matrix.transposeView() : matrix;
+		int m = tall.getNumRows();
+		int n = tall.getNumCols();
+		double[] w = tall.toColumnMajor();
+		double[] v = null;
+		if (withVectors){
+			v = new double[n*n];
+			for (int i = 0; i < n; i++){
+				v[i*n + i] = 1;
+			}
+		}
+		_sweeps = jacobi(w,v,m,n);
+
+		// the singular values are the lengths of the columns; sort them largest first
+		final double[] lengths = new double[n];
+		Integer[] order = new Integer[n];
+		for (int j = 0; j < n; j++){
+			lengths[j] = norm(w, j*m, m);
+			order[j] = j;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer a, Integer b){
+				return Double.compare(lengths[b], lengths[a]);
+			}
+		});
+		_singularValues = new double[n];
+		for (int j = 0; j < n; j++){
+			_singularValues[j] = lengths[order[j]];
+		}
+		_answer = new Matrix(DisplayType.DECIMAL, n, 1, _singularValues.clone());
+
+		if (withVectors){
+			double[] u = new double[m*n];
+			double[] sortedV = new double[n*n];
+			for (int j = 0; j < n; j++){
+				int from = order[j];
+				double length = lengths[from];
+				if (length > 0){
+					for (int i = 0; i < m; i++){
+						u[j*m + i] = w[from*m + i] / length;
+					}
+				}
+				System.arraycopy(v, from*n, sortedV, j*n, n);
+			}
+			Matrix left = new Matrix(DisplayType.DECIMAL, m, n, u);
+			Matrix right = new Matrix(DisplayType.DECIMAL, n, n, sortedV);
+			_u = wide ? right : left;
+			_v = wide ? left : right;
+		}
+
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
+		_solution = new Solution(Op.SVD, inputs, _answer, toLatex());
+	}
+
+
+	/**
+	 * Rotates pairs of columns of w until every pair is orthogonal, applying the same rotations to v. The pairs
+	 * of each sweep are visited in rounds of disjoint pairs: column 0 stays put while the others move around a
+	 * circle, so every pair meets once per sweep. The squared lengths of the columns are computed at the start of
+	 * each sweep and updated by each rotation, so a pair only needs its dot product. A matrix with entries too
+	 * large or too small to square is scaled by a power of two while it is rotated, which is exact
+	 *
+	 * @param w an m x n matrix, column-major, with m >= n. Its columns end up as U times the singular values
+	 * @param v an n x n matrix to apply the rotations to (the identity, to get V), or null
+	 * @param m the number of rows of w
+	 * @param n the number of columns of w
+	 * @return the number of sweeps it took
+	 */
+	public static int jacobi(double[] w, double[] v, int m, int n){
+		int size = n + (n % 2); // an odd column count gets a column that sits out each round
+		int[] circle = new int[size];
+		for (int i = 0; i < size; i++){
+			circle[i] = i;
+		}
+		int[] pairs = new int[size];
+		double[] norms = new double[n];
+		boolean parallel = (long) m*n > PARALLEL_THRESHOLD;
+
+		double maxAbs = 0;
+		for (int i = 0; i < m*n; i++){
+			maxAbs = Math.max(maxAbs, Math.abs(w[i]));
+		}
+		int exponent = 0;
+		if (maxAbs > 0 && (maxAbs < SAFE_MIN || maxAbs > SAFE_MAX) && !Double.isInfinite(maxAbs)){
+			exponent = Math.getExponent(maxAbs);
+			scale(w, m*n, -exponent);
+		}
+		int sweep = 1;
+		for (; sweep <= MAX_SWEEPS; sweep++){
+			for (int j = 0; j < n; j++){
+				double sum = 0;
+				for (int i = 0; i < m; i++){
+					sum += w[j*m + i] * w[j*m + i];
+				}
+				norms[j] = sum;
+			}
+			boolean rotated = false;
+			for (int round = 0; round < size-1; round++){
+				int numPairs = 0;
+				for (int i = 0; i < size/2; i++){
+					int p = circle[i], q = circle[size-1-i];
+					if (p < n && q < n){
+						pairs[2*numPairs] = Math.min(p,q);
+						pairs[2*numPairs+1] = Math.max(p,q);
+						numPairs++;
+					}
+				}
+				if (parallel){
+					rotated |= POOL.invoke(new RoundTask(w,v,norms,m,n,pairs,0,numPairs));
+				}else{
+					rotated |= rotatePairs(w,v,norms,m,n,pairs,0,numPairs);
+				}
+				// everyone but circle[0] moves one place around the circle
+				int last = circle[size-1];
+				System.arraycopy(circle, 1, circle, 2, size-2);
+				circle[1] = last;
+			}
+			if (!rotated){
+				break;
+			}
+		}
+		if (exponent != 0){
+			scale(w, m*n, exponent);
+		}
+		return Math.min(sweep, MAX_SWEEPS);
+	}
+
+
+	/**
+	 * Multiplies the first length values of x by 2^exponent
+	 */
+	private static void scale(double[] x, int length, int exponent){
+		for (int i = 0; i < length; i++){
+			x[i] = Math.scalb(x[i], exponent);
+		}
+	}
+
+
+	/**
+	 * The length of a run of values, summed relative to the largest value so far as in LAPACK's dnrm2, so it is
+	 * accurate for values whose squares would overflow or underflow
+	 *
+	 * @param x the values
+	 * @param start the first value of the run
+	 * @param length the number of values
+	 * @return the square root of the sum of the squares of the values
+	 */
+	public static double norm(double[] x, int start, int length){
+		double scale = 0, sum = 1;
+		for (int i = start; i < start + length; i++){
+			if (x[i] != 0){
+				double abs = Math.abs(x[i]);
+				if (abs > scale){
+					sum = 1 + sum * (scale/abs) * (scale/abs);
+					scale = abs;
+				}else{
+					sum += (abs/scale) * (abs/scale);
+				}
+			}
+		}
+		return scale * Math.sqrt(sum);
 	}
 
+
+	/**
+	 * Rotates a range of the pairs of a round
+	 *
+	 * @param w the columns being orthogonalized, m x n
+	 * @param v the accumulated rotations, n x n, or null
+	 * @param norms the squared lengths of the columns of w, updated as they are rotated
+	 * @param m the number of rows of w
+	 * @param n the number of columns of w
+	 * @param pairs the pairs of the round, two column indices each
+	 * @param start the first pair to rotate
+	 * @param end one past the last pair to rotate
+	 * @return true if any pair was rotated, false if they were all orthogonal already
+	 */
+	private static boolean rotatePairs(double[] w, double[] v, double[] norms, int m, int n, int[] pairs, int start, int end){
+		boolean rotated = false;
+		for (int k = start; k < end; k++){
+			int p = pairs[2*k], q = pairs[2*k+1];
+			double alpha = norms[p], beta = norms[q], gamma = 0;
+			for (int i = 0; i < m; i++){
+				gamma += w[p*m + i] * w[q*m + i];
+			}
+			if (gamma == 0 || Math.abs(gamma) <= TOLERANCE*Math.sqrt(alpha)*Math.sqrt(beta)){
+				continue;
+			}
+			rotated = true;
+			// the rotation that makes columns p and q orthogonal
+			double zeta = (beta - alpha) / (2*gamma);
+			double t = (zeta >= 0 ? 1 : -1) / (Math.abs(zeta) + Math.hypot(1, zeta));
+			double c = 1 / Math.sqrt(1 + t*t);
+			double s = c*t;
+			rotate(w,m,p,q,c,s);
+			norms[p] = alpha - t*gamma;
+			norms[q] = beta + t*gamma;
+			if (v != null){
+				rotate(v,n,p,q,c,s);
+			}
+		}
+		return rotated;
+	}
+
+
+	/**
+	 * Rotates two columns of a matrix by the angle with the given cosine and sine
+	 *
+	 * @param x the matrix, column-major
+	 * @param rows its number of rows
+	 * @param p the first column
+	 * @param q the second column
+	 * @param c the cosine
+	 * @param s the sine
+	 */
+	private static void rotate(double[] x, int rows, int p, int q, double c, double s){
+		for (int i = 0; i < rows; i++){
+			double a = x[p*rows + i], b = x[q*rows + i];
+			x[p*rows + i] = c*a - s*b;
+			x[q*rows + i] = s*a + c*b;
+		}
+	}
+
+
+	/**
+	 * Rotates a range of the pairs of a round, splitting the range in half until it is small. The pairs share no
+	 * columns, so no locking is needed
+	 */
+	private static class RoundTask extends RecursiveTask<Boolean> {
+		private static final long serialVersionUID = 1L;
+		private double[] _w, _v, _norms;
+		private int[] _pairs;
+		private int _m, _n, _start, _end;
+
+		public RoundTask(double[] w, double[] v, double[] norms, int m, int n, int[] pairs, int start, int end){
+			_w = w;
+			_v = v;
+			_norms = norms;
+			_m = m;
+			_n = n;
+			_pairs = pairs;
+			_start = start;
+			_end = end;
+		}
+
+		@Override
+		protected Boolean compute(){
+			int numPairs = _end - _start;
+			if (numPairs <= MIN_TASK_PAIRS || (long) numPairs*(_m + _n) < PARALLEL_THRESHOLD){
+				return rotatePairs(_w,_v,_norms,_m,_n,_pairs,_start,_end);
+			}
+			int mid = _start + numPairs/2;
+			RoundTask left = new RoundTask(_w,_v,_norms,_m,_n,_pairs,_start,mid);
+			left.fork();
+			boolean right = new RoundTask(_w,_v,_norms,_m,_n,_pairs,mid,_end).compute();
+			return left.join() | right;
+		}
+	}
+
+
+	/**
+	 * @return the singular values, largest first
+	 */
+	public double[] getSingularValues(){
+		return _singularValues.clone();
+	}
+
+
+	/**
+	 * @return the left singular vectors, one per column, or null if they were not computed
+	 */
+	public Matrix getU(){
+		return _u;
+	}
+
+
+	/**
+	 * @return the right singular vectors, one per column, or null if they were not computed
+	 */
+	public Matrix getV(){
+		return _v;
+	}
+
+
+	/**
+	 * @return the number of sweeps Jacobi took
+	 */
+	public int getSweeps(){
+		return _sweeps;
+	}
+
+
+	/**
+	 * Singular values at or below this are taken to be rounding error: the largest singular value times the
+	 * larger dimension times the machine epsilon
+	 *
+	 * @return the tolerance
+	 */
+	public double getTolerance(){
+		double largest = _singularValues.length == 0 ? 0 : _singularValues[0];
+		return largest * Math.max(_matrix.getNumRows(), _matrix.getNumCols()) * Math.ulp(1.0);
+	}
+
+
+	/**
+	 * @return the numerical rank: the number of singular values above getTolerance()
+	 */
+	public int getRank(){
+		double tolerance = getTolerance();
+		int rank = 0;
+		while (rank < _singularValues.length && _singularValues[rank] > tolerance){
+			rank++;
+		}
+		return rank;
+	}
+
+
+	/**
+	 * Computes the Moore-Penrose pseudo-inverse V * S^+ * U^T, where S^+ inverts the singular values above
+	 * getTolerance() and drops the rest. For an invertible matrix this is the inverse
+	 *
+	 * @return the n x m pseudo-inverse of the m x n matrix
+	 * @throws IllegalStateException if U and V were not computed
+	 */
+	public Matrix getPseudoInverse(){
+		if (_u == null){
+			throw new IllegalStateException("ERROR (SVD): the pseudo-inverse needs U and V, which were not computed");
+		}
+		int m = _matrix.getNumRows();
+		int n = _matrix.getNumCols();
+		int rank = getRank();
+		// V with each column divided by its singular value, times U^T
+		double[] scaledV = new double[n*rank];
+		double[] uTranspose = new double[rank*m];
+		for (int k = 0; k < rank; k++){
+			for (int i = 0; i < n; i++){
+				scaledV[k*n + i] = _v.get(i,k) / _singularValues[k];
+			}
+			for (int i = 0; i < m; i++){
+				uTranspose[i*rank + k] = _u.get(i,k);
+			}
+		}
+		double[] pseudoInverse = (rank == 0) ? new double[n*m] : MM_Multiply.product(scaledV, uTranspose, n, rank, m);
+		return new Matrix(DisplayType.DECIMAL, n, m, pseudoInverse);
+	}
+
+
+	/**
+	 * @param matrix a matrix
+	 * @return its numerical rank (see getRank), computed from the singular values alone
+	 */
+	public static int rank(Matrix matrix){
+		return new SVD(matrix,true,false).getRank();
+	}
+
+
+	/**
+	 * @param matrix a matrix
+	 * @return its pseudo-inverse (see getPseudoInverse)
+	 */
+	public static Matrix pseudoInverse(Matrix matrix){
+		return new SVD(matrix,true,true).getPseudoInverse();
+	}
+
+
 	@Override
+	/**
+	 * Steps:
+	 * - A = U S V^T
+	 * - how many sweeps of rotations it took
+	 * - U, S and V^T, drawn for small matrices
+	 * - the singular values
+	 */
 	public List<String> toLatex() {
-		// TODO Auto-generated method stub
-		return null;
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		boolean draw = _matrix.getNumRows() <= SHOWN_SIZE && _matrix.getNumCols() <= SHOWN_SIZE;
+		toReturn.add("\\vspace{10mm} \\mathrm{Singular \\ Value \\ Decomposition:}");
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}" + (draw ? MatrixDraw.getCorrectLatex(_matrix.getDisplayType(),_matrix) : "A") + " = U S V^{T}");
+		toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Rotate \\ pairs \\ of \\ columns \\ until \\ every \\ pair \\ is \\ orthogonal \\ (" + _sweeps
+				+ (_sweeps == 1 ? " \\ sweep)}" : " \\ sweeps)}"));
+		toReturn.add("\\vspace{15mm} 3. \\ \\mathrm{The \\ lengths \\ of \\ the \\ columns \\ are \\ the \\ singular \\ values, \\ and \\ the \\ columns \\ divided \\ by \\ them \\ are \\ U}");
+		if (draw){
+			int k = _singularValues.length;
+			double[] s = new double[k*k];
+			for (int i = 0; i < k; i++){
+				s[i*k + i] = _singularValues[i];
+			}
+			toReturn.add("\\vspace{10mm} \\hspace{15mm} U = " + MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_u) + " \\ S = "
+					+ MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,new Matrix(DisplayType.DECIMAL,k,k,s)) + " \\ V^{T} = "
+					+ MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_v.transposeView()));
+		}
+		toReturn.add("\\vspace{15mm} \\mathrm{Rank:} \\ " + getRank());
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}" + MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_answer));
+		return toReturn;
 	}
-
 }
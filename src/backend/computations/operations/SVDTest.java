@@ -1,21 +1,181 @@
 /**
- * 
+ *
  */
 package backend.computations.operations;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.computations.infrastructure.Solution;
+
 /**
  * @author baebi
  *
  */
 public class SVDTest {
+	private static final double EPSILON = 1e-10;
+
+	// [3 0; 4 5], whose singular values are sqrt(45) and sqrt(5)
+	private Matrix m1 = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{3.0,4.0},{0.0,5.0}});
+	// 2x3, wider than it is tall
+	private Matrix m2 = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,4.0},{2.0,5.0},{3.0,6.0}});
+	// the third row is the sum of the first two, so the rank is 2
+	private Matrix m3 = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,0.0,1.0},{2.0,1.0,3.0},{0.0,1.0,1.0}});
+
+
+	@Test // known singular values, and U S V^T gives back the matrix
+	public void decomposeTest() {
+		SVD svd = new SVD(m1);
+		Solution sol = svd.getSolution();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(sol.getOp() == Op.SVD);
+		assertTrue(answer.getNumRows() == 2 && answer.getNumCols() == 1);
+		assertEquals(Math.sqrt(45), answer.get(0,0), EPSILON);
+		assertEquals(Math.sqrt(5), answer.get(1,0), EPSILON);
+		assertTrue(reconstructs(svd, m1));
+		assertTrue(!sol.getLatex().isEmpty());
+	}
+
+
+	@Test // a wide matrix is decomposed through its transpose
+	public void wideTest() {
+		SVD svd = new SVD(m2, true, true);
+		assertTrue(svd.getU().getNumRows() == 2 && svd.getU().getNumCols() == 2);
+		assertTrue(svd.getV().getNumRows() == 3 && svd.getV().getNumCols() == 2);
+		assertTrue(reconstructs(svd, m2));
+		assertTrue(svd.getRank() == 2);
+	}
+
+
+	@Test // answer only skips the vectors and the steps, not the singular values
+	public void answerOnlyTest() {
+		SVD svd = new SVD(m1, true);
+		assertTrue(svd.getU() == null && svd.getV() == null);
+		assertTrue(svd.getSolution().getLatex().isEmpty());
+		assertEquals(Math.sqrt(5), svd.getSingularValues()[1], EPSILON);
+		try{
+			svd.getPseudoInverse();
+			fail();
+		}catch(IllegalStateException e){
+		}
+	}
+
+
+	@Test // rank from the singular values, and the pseudo-inverse of singular and invertible matrices
+	public void rankAndPseudoInverseTest() {
+		assertTrue(SVD.rank(m3) == 2);
+		Matrix pinv = SVD.pseudoInverse(m3);
+		// A A+ A = A and A+ A A+ = A+
+		assertTrue(close(multiply(multiply(m3, pinv), m3), m3));
+		assertTrue(close(multiply(multiply(pinv, m3), pinv), pinv));
+
+		Matrix inverse = SVD.pseudoInverse(m1);
+		assertTrue(close(multiply(m1, inverse), new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,0.0},{0.0,1.0}})));
+	}
+
+
+	@Test // a matrix large enough to rotate in parallel, with a known rank
+	public void largeTest() {
+		int n = 500;
+		Random random = new Random(7);
+		// the product of 500x480 and 480x500 random matrices has rank 480
+		double[] a = new double[n*480];
+		double[] b = new double[480*n];
+		for (int i = 0; i < a.length; i++){
+			a[i] = random.nextDouble() - 0.5;
+			b[i] = random.nextDouble() - 0.5;
+		}
+		Matrix product = new Matrix(DisplayType.DECIMAL, n, n, MM_Multiply.product(a, b, n, 480, n));
+		SVD svd = new SVD(product, true, true);
+		assertTrue(svd.getRank() == 480);
+		assertTrue(reconstructs(svd, product));
+	}
+
+
+	@Test // entries whose squares overflow or underflow still give their singular values and rank
+	public void scaledTest() {
+		SVD large = new SVD(new Matrix(DisplayType.DECIMAL, new Double[][]{{1e200,0.0},{0.0,3e200}}), true, true);
+		assertEquals(3e200, large.getSingularValues()[0], 3e200*EPSILON);
+		assertEquals(1e200, large.getSingularValues()[1], 1e200*EPSILON);
+		assertTrue(large.getRank() == 2);
+		assertEquals(1e-200, large.getPseudoInverse().get(0,0), 1e-200*EPSILON);
+
+		SVD small = new SVD(new Matrix(DisplayType.DECIMAL, new Double[][]{{1e-170,0.0},{0.0,2e-170}}), true, true);
+		assertEquals(2e-170, small.getSingularValues()[0], 2e-170*EPSILON);
+		assertEquals(1e-170, small.getSingularValues()[1], 1e-170*EPSILON);
+		assertTrue(small.getRank() == 2);
+		assertEquals(5e169, small.getPseudoInverse().get(1,1), 5e169*EPSILON);
+
+		// columns that aren't orthogonal are rotated without overflowing: [1 1; 2 1] has singular values phi^2
+		// and 1/phi^2
+		double phi = (1 + Math.sqrt(5)) / 2;
+		Matrix rotated = new Matrix(DisplayType.DECIMAL, new Double[][]{{1e200,2e200},{1e200,1e200}});
+		SVD svd = new SVD(rotated, true, true);
+		assertEquals(phi*phi*1e200, svd.getSingularValues()[0], 1e200*EPSILON);
+		assertEquals(1e200/(phi*phi), svd.getSingularValues()[1], 1e200*EPSILON);
+		assertTrue(svd.getSweeps() < 10 && reconstructs(svd, rotated));
+	}
+
+
+	@Test // null entries
+	public void nullTest() {
+		try{
+			new SVD(new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,null}}));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+
+	// true if U S V^T is within EPSILON of m, relative to the largest singular value, and U and V have orthonormal columns
+	private boolean reconstructs(SVD svd, Matrix m){
+		Matrix u = svd.getU(), v = svd.getV();
+		double[] s = svd.getSingularValues();
+		double scale = Math.max(1, s[0]);
+		for (int i = 0; i < m.getNumRows(); i++){
+			for (int j = 0; j < m.getNumCols(); j++){
+				double sum = 0;
+				for (int k = 0; k < s.length; k++){
+					sum += u.get(i,k) * s[k] * v.get(j,k);
+				}
+				if (Math.abs(sum - m.get(i,j)) > EPSILON*scale){
+					return false;
+				}
+			}
+		}
+		return close(multiply(u.transposeView(), u), identity(s.length)) && close(multiply(v.transposeView(), v), identity(s.length));
+	}
+
+
+	private Matrix multiply(Matrix a, Matrix b){
+		return (Matrix) new MM_Multiply(a.withDisplayType(DisplayType.DECIMAL), b.withDisplayType(DisplayType.DECIMAL), true).getSolution().getAnswer();
+	}
+
+
+	private Matrix identity(int n){
+		double[] values = new double[n*n];
+		for (int i = 0; i < n; i++){
+			values[i*n + i] = 1;
+		}
+		return new Matrix(DisplayType.DECIMAL, n, n, values);
+	}
+
 
-	@Test
-	public void test() {
-		fail("Not yet implemented");
+	private boolean close(Matrix a, Matrix b){
+		for (int i = 0; i < a.getNumRows(); i++){
+			for (int j = 0; j < a.getNumCols(); j++){
+				if (Math.abs(a.get(i,j) - b.get(i,j)) > EPSILON){
+					return false;
+				}
+			}
+		}
+		return true;
 	}
 
 }
@@ -41,22 +41,33 @@ public class S_Power extends Computable {
 	 * @param b the exponent number
 	 */
 	public S_Power(Scalar a, Scalar b){
+		this(a,b,false);
+	}
+	
+	
+	/** 
+	 * Computes the solution to a scalar power operation. Expects non-null inputs
+	 * 
+	 * @param a the base number
+	 * @param b the exponent number
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 */
+	public S_Power(Scalar a, Scalar b, boolean answerOnly){
+		_answerOnly = answerOnly;
 		List<Countable> args = new ArrayList<>();
 		args.add(a);
 		args.add(b);
 		DisplayType answerDisplayType = resolveDisplayType(args);
 		
-		a.setDisplayType(answerDisplayType);
-		b.setDisplayType(answerDisplayType);
 		
 		Double aVal = a.getValue();
 		Double bVal = b.getValue();
 		
-		_operatorStep = a.getDisplayValue() +"^{"+b.getDisplayValue()+"}";
 		Double answer = Math.pow(aVal,bVal);
 		
-		Scalar opStep = new Scalar(answer,DisplayType.CUSTOM);
-		opStep.setCustomDisplayValue(_operatorStep);
+		if (!answerOnly){
+			_operatorStep = a.getDisplayValue(answerDisplayType) +"^{"+b.getDisplayValue(answerDisplayType)+"}";
+		}
 		_answerStep = new Scalar(answer,answerDisplayType);
 		
 		List<String> latex = toLatex();
@@ -71,6 +82,9 @@ public class S_Power extends Computable {
 	 */
 	public List<String> toLatex() {
 		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
 		toReturn.add("\\vspace{10mm} \\mathrm{Scalar \\ Power}");
 		StringBuilder b = new StringBuilder();
 		b.append("\\hspace{15mm}"+_operatorStep);
@@ -0,0 +1,192 @@
+package backend.computations.operations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
+import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Computes the operations that have sparse kernels (adding, subtracting, multiplying and transposing) when at
+ * least one argument is a SparseMatrix. The other argument may be a dense Matrix or, for multiplying, a Scalar.
+ *
+ * Answers computed sparsely stay sparse unless more than SparseMatrix.DENSE_FILL_RATIO of them is nonzero, and
+ * answers computed densely (ex: sparse * dense) become sparse if few enough of them are nonzero. Operations
+ * without a sparse kernel are computed on the dense form of the matrix instead (see SparseMatrix.toMatrix)
+ *
+ * @author baebi
+ */
+public class SparseOperation extends Computable {
+	private Solution _solution;
+	private Op _type;
+	private Countable _arg1, _arg2, _answer;
+
+
+	/* (non-Javadoc)
+	 * @see backend.operations.Computable#getSolution()
+	 */
+	@Override
+	public Solution getSolution() {
+		return _solution;
+	}
+
+
+	/**
+	 * @param type an operation
+	 * @param arg1 its first argument, or null if it is unary
+	 * @param arg2 its second argument
+	 * @return true if <type> has a sparse kernel and one of the arguments is a SparseMatrix
+	 */
+	public static boolean handles(Op type, Countable arg1, Countable arg2){
+		if (!(arg1 instanceof SparseMatrix) && !(arg2 instanceof SparseMatrix)){
+			return false;
+		}
+		switch (type){
+			case PLUS:
+			case MINUS:{
+				return !(arg1 instanceof Scalar) && !(arg2 instanceof Scalar);
+			}
+			case MULTIPLY:
+			case M_TRANSPOSE:{
+				return true;
+			}
+			default:{
+				return false;
+			}
+		}
+	}
+
+
+	/**
+	 * Computes an operation with a sparse kernel
+	 *
+	 * @param type PLUS, MINUS, MULTIPLY or M_TRANSPOSE
+	 * @param arg1 the first argument, or null for M_TRANSPOSE
+	 * @param arg2 the second argument
+	 * @param answerOnly true if only the answer is wanted, in which case no steps are generated
+	 * @throws IllegalArgumentException if the operation can't be computed on these arguments
+	 */
+	public SparseOperation(Op type, Countable arg1, Countable arg2, boolean answerOnly) throws IllegalArgumentException {
+		if (!handles(type, arg1, arg2)){
+			throw new IllegalArgumentException("ERROR: " + type.getName() + " has no sparse kernel for these arguments");
+		}
+		_answerOnly = answerOnly;
+		_type = type;
+		_arg1 = arg1;
+		_arg2 = arg2;
+		List<Countable> inputs = new ArrayList<>();
+		if (arg1 != null){
+			inputs.add(arg1);
+		}
+		inputs.add(arg2);
+		DisplayType displayType = resolveDisplayType(inputs);
+		for (Countable input : inputs){
+			if (input instanceof Matrix && !((Matrix) input).isComplete()){
+				throw new IllegalArgumentException("ERROR: Matrix should not contain null indices");
+			}
+		}
+
+		switch (type){
+			case M_TRANSPOSE:{
+				SparseMatrix transpose = M_Transpose.sparseTranspose((SparseMatrix) arg2);
+				_answer = transpose.withDisplayType(displayType);
+				break;
+			}
+			case PLUS:
+			case MINUS:{
+				if (getNumRows(arg1) != getNumRows(arg2) || getNumCols(arg1) != getNumCols(arg2)){
+					throw new IllegalArgumentException("Matrices must have same dimensions");
+				}
+				boolean isPlus = type == Op.PLUS;
+				if (arg1 instanceof SparseMatrix && arg2 instanceof SparseMatrix){
+					_answer = MM_PlusMinus.sparseSum((SparseMatrix) arg1, (SparseMatrix) arg2, isPlus, displayType).toPreferredStorage();
+				}else{
+					boolean sparseFirst = arg1 instanceof SparseMatrix;
+					SparseMatrix sparse = (SparseMatrix) (sparseFirst ? arg1 : arg2);
+					Matrix dense = (Matrix) (sparseFirst ? arg2 : arg1);
+					double[] sum = MM_PlusMinus.sparseDenseSum(sparse, dense.toColumnMajor(), sparseFirst, isPlus);
+					_answer = SparseMatrix.fromColumnMajorPreferred(displayType, sparse.getNumRows(), sparse.getNumCols(), sum);
+				}
+				break;
+			}
+			default:{ // MULTIPLY
+				if (arg1 instanceof Scalar || arg2 instanceof Scalar){
+					SparseMatrix sparse = (SparseMatrix) (arg1 instanceof Scalar ? arg2 : arg1);
+					double scalar = ((Scalar) (arg1 instanceof Scalar ? arg1 : arg2)).getValue();
+					_answer = MS_Multiply.sparseScale(sparse, scalar, displayType);
+					break;
+				}
+				if (getNumCols(arg1) != getNumRows(arg2)){
+					throw new IllegalArgumentException("Number of columns of first matrix must equal number of rows of second matrix");
+				}
+				if (arg1 instanceof SparseMatrix && arg2 instanceof SparseMatrix){
+					_answer = MM_Multiply.sparseProduct((SparseMatrix) arg1, (SparseMatrix) arg2, displayType).toPreferredStorage();
+				}else{
+					boolean sparseFirst = arg1 instanceof SparseMatrix;
+					SparseMatrix sparse = (SparseMatrix) (sparseFirst ? arg1 : arg2);
+					Matrix dense = (Matrix) (sparseFirst ? arg2 : arg1);
+					double[] product = MM_Multiply.sparseDenseProduct(sparse, dense.toColumnMajor(), dense.getNumRows(), dense.getNumCols(), sparseFirst);
+					_answer = SparseMatrix.fromColumnMajorPreferred(displayType, getNumRows(arg1), getNumCols(arg2), product);
+				}
+			}
+		}
+
+		_solution = new Solution(type, inputs, _answer, toLatex());
+	}
+
+
+	/**
+	 * @param matrix a Matrix or SparseMatrix
+	 * @return its number of rows
+	 */
+	private static int getNumRows(Countable matrix){
+		return matrix instanceof SparseMatrix ? ((SparseMatrix) matrix).getNumRows() : ((Matrix) matrix).getNumRows();
+	}
+
+
+	/**
+	 * @param matrix a Matrix or SparseMatrix
+	 * @return its number of columns
+	 */
+	private static int getNumCols(Countable matrix){
+		return matrix instanceof SparseMatrix ? ((SparseMatrix) matrix).getNumCols() : ((Matrix) matrix).getNumCols();
+	}
+
+
+	@Override
+	/**
+	 * Steps:
+	 * - the operation on its arguments. Large sparse matrices are summarized rather than drawn
+	 * - the answer
+	 */
+	public List<String> toLatex() {
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		switch (_type){
+			case PLUS:       toReturn.add("\\vspace{10mm} \\mathrm{Sparse \\ Matrix \\ Addition:}"); break;
+			case MINUS:      toReturn.add("\\vspace{10mm} \\mathrm{Sparse \\ Matrix \\ Subtraction:}"); break;
+			case MULTIPLY:   toReturn.add("\\vspace{10mm} \\mathrm{Sparse \\ Matrix \\ Multiply:}"); break;
+			default:         toReturn.add("\\vspace{10mm} \\mathrm{Sparse \\ Matrix \\ Transpose:}");
+		}
+		StringBuilder b = new StringBuilder();
+		if (_arg1 != null){
+			b.append(_arg1.toLatex()).append(" \\ ").append(_type == Op.MULTIPLY ? "\\times" : _type.getString()).append(" \\ ");
+		}
+		b.append(_arg2.toLatex());
+		if (_type == Op.M_TRANSPOSE){
+			b.append("^{T}");
+		}
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}" + b.toString());
+		toReturn.add("\\vspace{15mm} \\mathrm{Only \\ the \\ nonzero \\ entries \\ are \\ computed}");
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}" + _answer.toLatex());
+		return toReturn;
+	}
+}
@@ -0,0 +1,125 @@
+package backend.computations.operations;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * Tests for SparseOperation and the sparse kernels it uses
+ *
+ * @author baebi
+ */
+public class SparseOperationTest {
+	// 3x4 and 4x3, mostly zeros
+	private SparseMatrix s1 = SparseMatrix.fromEntries(DisplayType.DECIMAL, 3, 4, new int[]{0,2,1,2}, new int[]{0,0,2,3}, new double[]{1,2,3,4});
+	private SparseMatrix s2 = SparseMatrix.fromEntries(DisplayType.DECIMAL, 4, 3, new int[]{0,2,3,3}, new int[]{1,0,2,2}, new double[]{5,6,7,1}); // (3,2) is 7 + 1
+	private Matrix d2 = s2.toMatrix();
+
+
+	@Test // every sparse kernel agrees with the dense Computable
+	public void sameAsDenseTest(){
+		Matrix dense1 = s1.toMatrix();
+		assertTrue(s2.get(3,2) == 8 && s2.getNumNonZeros() == 3);
+
+		Countable product = new SparseOperation(Op.MULTIPLY, s1, s2, true).getSolution().getAnswer();
+		assertTrue(equal(product, new MM_Multiply(dense1, d2, true).getSolution().getAnswer()));
+		assertTrue(equal(new SparseOperation(Op.MULTIPLY, s1, d2, true).getSolution().getAnswer(), product));
+		assertTrue(equal(new SparseOperation(Op.MULTIPLY, dense1, s2, true).getSolution().getAnswer(), product));
+
+		Countable difference = new SparseOperation(Op.MINUS, s1, M_Transpose.sparseTranspose(s2), true).getSolution().getAnswer();
+		Matrix denseDifference = (Matrix) new MM_PlusMinus(dense1, d2.transposeView(), false, true).getSolution().getAnswer();
+		assertTrue(equal(difference, denseDifference));
+		assertTrue(equal(new SparseOperation(Op.MINUS, dense1, M_Transpose.sparseTranspose(s2), true).getSolution().getAnswer(), denseDifference));
+		assertTrue(equal(new SparseOperation(Op.MINUS, s1, d2.transposeView(), true).getSolution().getAnswer(), denseDifference));
+
+		Countable scaled = new SparseOperation(Op.MULTIPLY, new Scalar(2,DisplayType.DECIMAL), s1, true).getSolution().getAnswer();
+		assertTrue(scaled instanceof SparseMatrix && ((SparseMatrix) scaled).get(2,3) == 8);
+
+		Countable transpose = new SparseOperation(Op.M_TRANSPOSE, null, s1, false).getSolution().getAnswer();
+		assertTrue(equal(transpose, dense1.transposeView()));
+	}
+
+
+	@Test // answers that fill up are stored densely, and ones that cancel out are stored sparsely
+	public void fillRatioTest(){
+		Matrix full = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0,1.0},{1.0,1.0,1.0},{1.0,1.0,1.0},{1.0,1.0,1.0}});
+		assertTrue(new SparseOperation(Op.PLUS, s1, full, true).getSolution().getAnswer() instanceof Matrix);
+		Countable zero = new SparseOperation(Op.MINUS, s1, s1, true).getSolution().getAnswer();
+		assertTrue(zero instanceof SparseMatrix && ((SparseMatrix) zero).getNumNonZeros() == 0);
+	}
+
+
+	@Test // a matrix far too large to store densely
+	public void largeTest(){
+		int n = 100000;
+		int[] rows = new int[3*n-2], cols = new int[3*n-2];
+		double[] values = new double[3*n-2];
+		int next = 0;
+		for (int i = 0; i < n; i++){ // the second difference stencil
+			for (int j = Math.max(0,i-1); j <= Math.min(n-1,i+1); j++){
+				rows[next] = i;
+				cols[next] = j;
+				values[next++] = (i == j) ? -2 : 1;
+			}
+		}
+		SparseMatrix stencil = SparseMatrix.fromEntries(DisplayType.WHOLENUMBER, n, n, rows, cols, values);
+		assertTrue(!stencil.fitsDensely());
+		Solution sol = new SparseOperation(Op.MULTIPLY, stencil, stencil, false).getSolution();
+		SparseMatrix square = (SparseMatrix) sol.getAnswer();
+		assertTrue(square.getNumNonZeros() == 5*n - 6);
+		assertTrue(square.get(500,500) == 6 && square.get(500,502) == 1 && square.get(500,503) == 0);
+		assertTrue(sol.getLatex().get(1).contains("sparse"));
+		try{
+			square.toMatrix();
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+
+	@Test // mismatched dimensions and entries out of range
+	public void errorTest(){
+		try{
+			new SparseOperation(Op.PLUS, s1, s2, true);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{
+			new SparseOperation(Op.MULTIPLY, s1, s1, true);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{
+			SparseMatrix.fromEntries(DisplayType.DECIMAL, 2, 2, new int[]{2}, new int[]{0}, new double[]{1});
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+
+	// true if a and b have the same values, however they are stored
+	private boolean equal(Countable a, Countable b){
+		Matrix x = a instanceof SparseMatrix ? ((SparseMatrix) a).toMatrix() : (Matrix) a;
+		Matrix y = b instanceof SparseMatrix ? ((SparseMatrix) b).toMatrix() : (Matrix) b;
+		if (x.getNumRows() != y.getNumRows() || x.getNumCols() != y.getNumCols()){
+			return false;
+		}
+		for (int i = 0; i < x.getNumRows(); i++){
+			for (int j = 0; j < x.getNumCols(); j++){
+				if (x.get(i,j) != y.get(i,j)){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,240 @@
+package backend.computations.operations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import matrixDraw.MatrixDraw;
+
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.computations.infrastructure.Computable;
+import backend.computations.infrastructure.QRDecomposition;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * The best rank-k approximation of a matrix, U_k * S_k * V_k^T, from the k largest singular values and their
+ * vectors. They are found with a randomized range finder rather than a full SVD: the matrix is multiplied by a
+ * random n x l Gaussian matrix (l is k plus a few extra columns), which with high probability captures the span
+ * of its top singular vectors. A few power iterations, A A^T applied to that span with a QR after each
+ * multiply, sharpen it when the singular values decay slowly. The matrix projected onto the span is only l
+ * columns wide, so its exact SVD (see SVD.jacobi) is cheap.
+ *
+ * Every step is a product with l columns or a QR of l columns, so for k much smaller than m and n this takes
+ * O(mnk) time instead of the O(mn min(m,n)) of a full SVD. The random matrix is seeded the same way every time,
+ * so the same matrix always gets the same answer.
+ *
+ * The answer is the m x n approximation. U_k, S_k and V_k are available from the getters
+ *
+ * @author baebi
+ */
+public class TruncatedSVD extends Computable {
+	private Solution _solution;
+	private Matrix _matrix, _u, _v, _answer;
+	private double[] _singularValues;
+	private int _rank, _sketchSize;
+
+	// extra columns in the sketch beyond the rank asked for, which make missing part of the span unlikely
+	private static final int OVERSAMPLING = 10;
+
+	// passes of A A^T over the sketch
+	private static final int POWER_ITERATIONS = 2;
+
+	// seeds the random matrix, so that answers are repeatable and can be cached
+	private static final long SEED = 0x5EEDL;
+
+	// steps draw the matrices only for matrices with at most this many rows and columns
+	private static final int SHOWN_SIZE = 6;
+
+
+	/* (non-Javadoc)
+	 * @see backend.operations.Computable#getSolution()
+	 */
+	@Override
+	public Solution getSolution() {
+		return _solution;
+	}
+
+
+	/**
+	 * Computes the best rank-k approximation of a matrix, with steps
+	 *
+	 * @param matrix the matrix
+	 * @param rank k, the number of singular values to keep
+	 */
+	public TruncatedSVD(Matrix matrix, Scalar rank){
+		this(matrix,rank,false);
+	}
+
+
+	/**
+	 * Computes the best rank-k approximation of a matrix
+	 *
+	 * @param matrix the matrix
+	 * @param rank k, the number of singular values to keep
+	 * @param answerOnly true if only the approximation is wanted, in which case no steps are generated
+	 */
+	public TruncatedSVD(Matrix matrix, Scalar rank, boolean answerOnly){
+		int m = matrix.getNumRows();
+		int n = matrix.getNumCols();
+		int maxRank = Math.min(m,n);
+		if (Math.floor(rank.getValue()) != rank.getValue() || rank.getValue() < 1 || rank.getValue() > maxRank){
+			throw new IllegalArgumentException("ERROR: The rank of a truncated SVD must be a whole number from 1 to "+maxRank);
+		}
+		if (!matrix.isComplete()){
+			throw new IllegalArgumentException("ERROR: Each index must contain a non-null entry");
+		}
+		_answerOnly = answerOnly;
+		_matrix = matrix;
+		int k = (int) rank.getValue();
+		int l = Math.min(k + OVERSAMPLING, maxRank);
+		_rank = k;
+		_sketchSize = l;
+
+		double[] a = matrix.toColumnMajor();
+		double[] aTranspose = matrix.transposeView().toColumnMajor();
+
+		// an orthonormal basis for the range of A times a Gaussian matrix
+		Random random = new Random(SEED);
+		double[] omega = new double[n*l];
+		for (int i = 0; i < omega.length; i++){
+			omega[i] = random.nextGaussian();
+		}
+		double[] q = orthonormalize(MM_Multiply.product(a, omega, m, n, l), m, l);
+		for (int i = 0; i < POWER_ITERATIONS; i++){
+			double[] z = orthonormalize(MM_Multiply.product(aTranspose, q, n, m, l), n, l);
+			q = orthonormalize(MM_Multiply.product(a, z, m, n, l), m, l);
+		}
+
+		// A is about Q B, with B = Q^T A small. Decompose B^T = A^T Q, which is n x l with n >= l:
+		// if B^T = W S X^T then A is about (Q X) S W^T
+		double[] w = MM_Multiply.product(aTranspose, q, n, m, l);
+		double[] x = new double[l*l];
+		for (int i = 0; i < l; i++){
+			x[i*l + i] = 1;
+		}
+		SVD.jacobi(w, x, n, l);
+
+		// the singular values are the lengths of the columns of w; keep the k largest
+		final double[] lengths = new double[l];
+		Integer[] order = new Integer[l];
+		for (int j = 0; j < l; j++){
+			lengths[j] = SVD.norm(w, j*n, n);
+			order[j] = j;
+		}
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer p, Integer r){
+				return Double.compare(lengths[r], lengths[p]);
+			}
+		});
+		_singularValues = new double[k];
+		double[] v = new double[n*k];
+		double[] xk = new double[l*k];
+		for (int j = 0; j < k; j++){
+			int from = order[j];
+			double length = lengths[from];
+			_singularValues[j] = length;
+			if (length > 0){
+				for (int i = 0; i < n; i++){
+					v[j*n + i] = w[from*n + i] / length;
+				}
+			}
+			System.arraycopy(x, from*l, xk, j*l, l);
+		}
+		double[] u = MM_Multiply.product(q, xk, m, l, k);
+		_u = new Matrix(DisplayType.DECIMAL, m, k, u);
+		_v = new Matrix(DisplayType.DECIMAL, n, k, v);
+
+		// U_k S_k times V_k^T
+		double[] us = new double[m*k];
+		double[] vTranspose = new double[k*n];
+		for (int j = 0; j < k; j++){
+			for (int i = 0; i < m; i++){
+				us[j*m + i] = u[j*m + i] * _singularValues[j];
+			}
+			for (int i = 0; i < n; i++){
+				vTranspose[i*k + j] = v[j*n + i];
+			}
+		}
+		_answer = new Matrix(DisplayType.DECIMAL, m, n, MM_Multiply.product(us, vTranspose, m, k, n));
+
+		List<Countable> inputs = new ArrayList<>();
+		inputs.add(matrix);
+		inputs.add(rank);
+		_solution = new Solution(Op.TRUNCATED_SVD, inputs, _answer, toLatex());
+	}
+
+
+	/**
+	 * @param values a rows x cols matrix, column-major, with rows >= cols. It is used up
+	 * @param rows its number of rows
+	 * @param cols its number of columns
+	 * @return an orthonormal basis for its columns, rows x cols and column-major
+	 */
+	private static double[] orthonormalize(double[] values, int rows, int cols){
+		return new QRDecomposition(values, rows, cols).getQ();
+	}
+
+
+	/**
+	 * @return the k largest singular values, largest first
+	 */
+	public double[] getSingularValues(){
+		return _singularValues.clone();
+	}
+
+
+	/**
+	 * @return the left singular vectors of the k largest singular values, one per column
+	 */
+	public Matrix getU(){
+		return _u;
+	}
+
+
+	/**
+	 * @return the right singular vectors of the k largest singular values, one per column
+	 */
+	public Matrix getV(){
+		return _v;
+	}
+
+
+	@Override
+	/**
+	 * Steps:
+	 * - A is about U_k S_k V_k^T
+	 * - the sketch and the power iterations
+	 * - the SVD of the projected matrix
+	 * - the singular values kept, and the approximation
+	 */
+	public List<String> toLatex() {
+		List<String> toReturn = new ArrayList<>();
+		if (_answerOnly){
+			return toReturn;
+		}
+		boolean draw = _matrix.getNumRows() <= SHOWN_SIZE && _matrix.getNumCols() <= SHOWN_SIZE;
+		toReturn.add("\\vspace{10mm} \\mathrm{Truncated \\ Singular \\ Value \\ Decomposition:}");
+		toReturn.add("\\vspace{10mm} 1.\\\\ \\hspace{15mm}" + (draw ? MatrixDraw.getCorrectLatex(_matrix.getDisplayType(),_matrix) : "A")
+				+ " \\approx U_{" + _rank + "} S_{" + _rank + "} V_{" + _rank + "}^{T}");
+		toReturn.add("\\vspace{15mm} 2. \\ \\mathrm{Multiply \\ A \\ by \\ a \\ random \\ " + _matrix.getNumCols() + " \\times " + _sketchSize
+				+ " \\ matrix \\ and \\ orthonormalize \\ the \\ columns \\ (QR) \\ to \\ get \\ Q}");
+		toReturn.add("\\vspace{15mm} 3. \\ \\mathrm{Replace \\ Q \\ by \\ an \\ orthonormal \\ basis \\ for \\ A A^{T} Q, \\ " + POWER_ITERATIONS + " \\ times}");
+		toReturn.add("\\vspace{15mm} 4. \\ \\mathrm{Decompose \\ the \\ " + _sketchSize + " \\times " + _matrix.getNumCols()
+				+ " \\ matrix \\ Q^{T} A = X S W^{T}, \\ so \\ A \\approx (Q X) S W^{T}}");
+		StringBuilder values = new StringBuilder();
+		for (int i = 0; i < _singularValues.length; i++){
+			values.append(i == 0 ? "" : ", ").append(new Scalar(_singularValues[i],DisplayType.DECIMAL).getDisplayValue());
+		}
+		toReturn.add("\\vspace{15mm} 5. \\ \\mathrm{Keep \\ the \\ " + _rank + " \\ largest \\ singular \\ values:} \\ " + values);
+		toReturn.add("\\vspace{15mm} \\mathrm{Solution:} \\\\ \\hspace{15mm}" + (draw ? MatrixDraw.getCorrectLatex(DisplayType.DECIMAL,_answer)
+				: "\\mathrm{a \\ " + _answer.getNumRows() + " \\times " + _answer.getNumCols() + " \\ matrix \\ of \\ rank \\ " + _rank + "}"));
+		return toReturn;
+	}
+}
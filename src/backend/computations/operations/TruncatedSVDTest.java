@@ -0,0 +1,125 @@
+package backend.computations.operations;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Op;
+import backend.blocks.Scalar;
+import backend.computations.infrastructure.QRDecomposition;
+import backend.computations.infrastructure.Solution;
+
+/**
+ * @author baebi
+ *
+ */
+public class TruncatedSVDTest {
+	private static final double EPSILON = 1e-9;
+
+	private Random _random = new Random(11);
+
+
+	@Test // a matrix of rank 3 is its own rank-3 approximation
+	public void lowRankTest() {
+		Matrix m = new Matrix(DisplayType.DECIMAL, 40, 30, MM_Multiply.product(gaussian(40*3), gaussian(3*30), 40, 3, 30));
+		Solution sol = new TruncatedSVD(m, new Scalar(3,DisplayType.WHOLENUMBER)).getSolution();
+		Matrix answer = (Matrix) sol.getAnswer();
+		assertTrue(sol.getOp() == Op.TRUNCATED_SVD);
+		assertTrue(answer.getNumRows() == 40 && answer.getNumCols() == 30);
+		assertTrue(!sol.getLatex().isEmpty());
+		double scale = new SVD(m, true).getSingularValues()[0];
+		for (int i = 0; i < 40; i++){
+			for (int j = 0; j < 30; j++){
+				assertEquals(m.get(i,j), answer.get(i,j), EPSILON*scale);
+			}
+		}
+	}
+
+
+	@Test // the top singular values and vectors of a matrix with a decaying spectrum match the full SVD
+	public void topValuesTest() {
+		int m = 80, n = 60, k = 5;
+		// U diag(2^-i) V^T with random orthonormal U and V
+		double[] u = new QRDecomposition(gaussian(m*n), m, n).getQ();
+		double[] v = new QRDecomposition(gaussian(n*n), n, n).getQ();
+		double[] vTranspose = new double[n*n];
+		for (int j = 0; j < n; j++){
+			for (int i = 0; i < m; i++){
+				u[j*m + i] *= Math.pow(2, -j);
+			}
+			for (int i = 0; i < n; i++){
+				vTranspose[i*n + j] = v[j*n + i];
+			}
+		}
+		Matrix matrix = new Matrix(DisplayType.DECIMAL, m, n, MM_Multiply.product(u, vTranspose, m, n, n));
+
+		TruncatedSVD truncated = new TruncatedSVD(matrix, new Scalar(k,DisplayType.WHOLENUMBER), true);
+		SVD full = new SVD(matrix, true, true);
+		assertTrue(truncated.getSolution().getLatex().isEmpty());
+		assertTrue(truncated.getU().getNumCols() == k && truncated.getV().getNumRows() == n);
+		for (int i = 0; i < k; i++){
+			assertEquals(Math.pow(2, -i), truncated.getSingularValues()[i], EPSILON);
+			assertEquals(full.getSingularValues()[i], truncated.getSingularValues()[i], EPSILON);
+			// the same vectors, up to sign
+			double uDot = 0, vDot = 0;
+			for (int r = 0; r < m; r++){
+				uDot += truncated.getU().get(r,i) * full.getU().get(r,i);
+			}
+			for (int r = 0; r < n; r++){
+				vDot += truncated.getV().get(r,i) * full.getV().get(r,i);
+			}
+			assertEquals(1, Math.abs(uDot), 1e-6);
+			assertEquals(1, Math.abs(vDot), 1e-6);
+		}
+	}
+
+
+	@Test // a wide matrix, and the same answer every time
+	public void wideTest() {
+		Matrix m = new Matrix(DisplayType.DECIMAL, 4, 25, gaussian(4*25));
+		Matrix first = (Matrix) new TruncatedSVD(m, new Scalar(2,DisplayType.WHOLENUMBER), true).getSolution().getAnswer();
+		Matrix second = (Matrix) new TruncatedSVD(m, new Scalar(2,DisplayType.WHOLENUMBER), true).getSolution().getAnswer();
+		assertTrue(first.getNumRows() == 4 && first.getNumCols() == 25);
+		assertTrue(first.contentEquals(second));
+		// keeping every singular value gives back the matrix
+		Matrix all = (Matrix) new TruncatedSVD(m, new Scalar(4,DisplayType.WHOLENUMBER), true).getSolution().getAnswer();
+		for (int i = 0; i < 4; i++){
+			for (int j = 0; j < 25; j++){
+				assertEquals(m.get(i,j), all.get(i,j), EPSILON);
+			}
+		}
+	}
+
+
+	@Test // ranks that aren't whole numbers from 1 to min(m,n), and null entries
+	public void errorTest() {
+		Matrix m = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,4.0},{5.0,6.0}});
+		double[] badRanks = {0, 2.5, 3, -1};
+		for (double rank : badRanks){
+			try{
+				new TruncatedSVD(m, new Scalar(rank,DisplayType.DECIMAL));
+				fail();
+			}catch(IllegalArgumentException e){
+			}
+		}
+		try{
+			new TruncatedSVD(new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,null}}), new Scalar(1,DisplayType.WHOLENUMBER));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+
+	private double[] gaussian(int size){
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++){
+			values[i] = _random.nextGaussian();
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,522 @@
+package backend.main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import backend.blocks.Countable;
+import backend.blocks.Matrix;
+import backend.blocks.Numerical;
+import backend.blocks.Op;
+import backend.blocks.Operation;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
+import backend.computations.operations.Determinant;
+import backend.computations.operations.MM_Multiply;
+import backend.computations.operations.MM_MultiplyAdd;
+import backend.computations.operations.MM_PlusMinus;
+import backend.computations.operations.MM_Solve;
+import backend.computations.operations.MS_Multiply;
+import backend.computations.operations.M_Columnspace;
+import backend.computations.operations.M_Eigen;
+import backend.computations.operations.M_Inverse;
+import backend.computations.operations.M_Power;
+import backend.computations.operations.M_Rank;
+import backend.computations.operations.M_RowReduce;
+import backend.computations.operations.M_Transpose;
+import backend.computations.operations.SS_MultiplyDivide;
+import backend.computations.operations.SS_PlusMinus;
+import backend.computations.operations.S_Power;
+import backend.computations.operations.SVD;
+import backend.computations.operations.TruncatedSVD;
+
+/**
+ *  A compiled equation that can be evaluated over and over with different Countables. The tree of Operations
+ *  is flattened once into a list of instructions in the order they have to run, and the Computable for each
+ *  instruction (MM vs MS vs SS, etc) is picked once from the types of its arguments. Executing the plan only
+ *  runs the arithmetic: no validation of the input, no tree building and no steps.
+ *
+ *  The Countables of the equation are the bindings of the plan. They are numbered left to right as they appear
+ *  in the equation (ex: inv A * B + C -> A is binding 0, B is 1 and C is 2), and every execution has to bind
+ *  each of them to a Countable of the same kind (Matrix or Scalar) as the one the plan was compiled with.
+ *  Matrix dimensions are free to change between executions. A SparseMatrix can be bound to a matrix binding,
+ *  but plans only have dense kernels, so it is converted to a Matrix first.
+ *
+ *  Scaled products and products with a matrix added (ex: s * A * B + C) are compiled into one multiply-add
+ *  instruction (see MM_MultiplyAdd), so executing them doesn't make the product or the scaled product.
+ *
+ *  Plans are immutable, so a plan can be shared and executed from several threads at once.
+ *
+ * @author baebi
+ */
+public class EvaluationPlan {
+
+	// instruction i either loads binding _operands[i][0] (when _kernels[i] is null) or runs _kernels[i] on the
+	// results of the instructions in _operands[i], where -1 stands for an argument that is left out. The last
+	// instruction gives the answer
+	private final Kernel[] _kernels;
+	private final int[][] _operands;
+
+	// whether each binding has to be a Matrix (as opposed to a Scalar)
+	private final boolean[] _bindingIsMatrix;
+
+
+	/**
+	 * Compiles a tree of Operations, as built by Parser.createSortedTree
+	 *
+	 * @param root the root of the tree. The tree is only read, so it can be changed or reused afterward
+	 * @throws IllegalArgumentException if some operation can't take the kinds of arguments it is given
+	 */
+	EvaluationPlan(Numerical root) throws IllegalArgumentException {
+		List<Kernel> kernels = new ArrayList<>();
+		List<int[]> operands = new ArrayList<>();
+		Set<Integer> folded = new HashSet<>(); // instructions folded into multiply-adds, which aren't kept
+		List<Boolean> isMatrix = new ArrayList<>(); // whether each instruction results in a Matrix
+		List<Boolean> bindingIsMatrix = new ArrayList<>();
+
+		// post-order walk with an explicit stack, so that deep trees can't overflow the call stack. Arguments
+		// are visited first to second, which numbers the bindings left to right
+		Deque<Numerical> toVisit = new ArrayDeque<>();
+		Deque<Boolean> expanded = new ArrayDeque<>();
+		Deque<Integer> results = new ArrayDeque<>(); // instructions whose results haven't been used yet
+		toVisit.push(root);
+		expanded.push(false);
+		while (!toVisit.isEmpty()){
+			Numerical numr = toVisit.pop();
+			boolean isExpanded = expanded.pop();
+
+			if (numr instanceof Countable){
+				kernels.add(null);
+				operands.add(new int[]{bindingIsMatrix.size()});
+				isMatrix.add(numr instanceof Matrix || numr instanceof SparseMatrix);
+				bindingIsMatrix.add(numr instanceof Matrix || numr instanceof SparseMatrix);
+				results.push(kernels.size()-1);
+			}else if (!(numr instanceof Operation)){
+				throw new IllegalArgumentException("ERROR: Equation may only contain Countables and Operations");
+			}else if (!isExpanded){
+				Operation op = (Operation) numr;
+				if (op.getSecondArg() == null || (op.isUnary() != (op.getFirstArg() == null))){
+					throw new IllegalArgumentException("ERROR: " + op.getType().getName() + " is missing an argument");
+				}
+				toVisit.push(op);
+				expanded.push(true);
+				toVisit.push(op.getSecondArg());
+				expanded.push(false);
+				if (!op.isUnary()){
+					toVisit.push(op.getFirstArg());
+					expanded.push(false);
+				}
+			}else{
+				Operation op = (Operation) numr;
+				int secondArg = results.pop();
+				int firstArg = op.isUnary() ? -1 : results.pop();
+				Kernel kernel = Kernel.resolve(op.getType(), firstArg != -1 && isMatrix.get(firstArg), isMatrix.get(secondArg));
+				int[] args = op.isUnary() ? new int[]{secondArg} : new int[]{firstArg, secondArg};
+				isMatrix.add(kernel._returnsMatrix);
+				int[] fused = foldMultiplyAdd(kernel, args, kernels, operands, folded);
+				if (fused != null){
+					kernel = (kernel == Kernel.MM_MINUS) ? Kernel.MULTIPLY_SUBTRACT : Kernel.MULTIPLY_ADD;
+					args = fused;
+				}
+				kernels.add(kernel);
+				operands.add(args);
+				results.push(kernels.size()-1);
+			}
+		}
+
+		// drop the folded instructions, renumbering the rest
+		int size = kernels.size() - folded.size();
+		_kernels = new Kernel[size];
+		_operands = new int[size][];
+		int[] renumbered = new int[kernels.size()];
+		int next = 0;
+		for (int i = 0; i < kernels.size(); i++){
+			if (folded.contains(i)){
+				continue;
+			}
+			int[] args = operands.get(i);
+			if (kernels.get(i) != null){
+				for (int j = 0; j < args.length; j++){
+					args[j] = args[j] == -1 ? -1 : renumbered[args[j]];
+				}
+			}
+			_kernels[next] = kernels.get(i);
+			_operands[next] = args;
+			renumbered[i] = next++;
+		}
+		_bindingIsMatrix = new boolean[bindingIsMatrix.size()];
+		for (int i = 0; i < _bindingIsMatrix.length; i++){
+			_bindingIsMatrix[i] = bindingIsMatrix.get(i);
+		}
+	}
+
+
+	/**
+	 * Folds the products and scalings an instruction is computed from into one multiply-add, when the
+	 * instruction is a sum or difference with a product of two matrices first (or second, for a sum), or a
+	 * product of two matrices with a scalar factor. Every instruction is used once, since the equation is a
+	 * tree, so the folded instructions aren't needed anywhere else
+	 *
+	 * @param kernel the kernel of the instruction
+	 * @param args the instructions it takes results from
+	 * @param kernels the kernels of the instructions so far
+	 * @param operands the arguments of the instructions so far
+	 * @param folded the instructions already folded, which this adds to
+	 * @return the arguments of the multiply-add {scalar, first factor, second factor, added matrix}, with -1
+	 * 		for a missing scalar or added matrix, or null if the instruction isn't a multiply-add
+	 */
+	private static int[] foldMultiplyAdd(Kernel kernel, int[] args, List<Kernel> kernels, List<int[]> operands, Set<Integer> folded){
+		if (kernel == Kernel.MM_PLUS || kernel == Kernel.MM_MINUS){
+			int[] factors = factorsOf(kernels.get(args[0]), operands.get(args[0]), kernels, operands);
+			int product = args[0], addend = args[1];
+			if (factors == null && kernel == Kernel.MM_PLUS){
+				factors = factorsOf(kernels.get(args[1]), operands.get(args[1]), kernels, operands);
+				product = args[1];
+				addend = args[0];
+			}
+			if (factors == null){
+				return null;
+			}
+			folded.add(product);
+			if (factors[3] != -1){
+				folded.add(factors[3]);
+			}
+			return new int[]{factors[0], factors[1], factors[2], addend};
+		}
+		int[] factors = factorsOf(kernel, args, kernels, operands);
+		if (factors == null || factors[0] == -1){
+			return null; // a plain product is already a single multiplication
+		}
+		if (factors[3] != -1){
+			folded.add(factors[3]);
+		}
+		return new int[]{factors[0], factors[1], factors[2], -1};
+	}
+
+
+	/**
+	 * @param kernel the kernel of an instruction
+	 * @param args the instructions it takes results from
+	 * @param kernels the kernels of the instructions so far
+	 * @param operands the arguments of the instructions so far
+	 * @return {scalar, first factor, second factor, inner} if the instruction computes a product of two
+	 * 		matrices, possibly scaled, where inner is the product or scaling it was computed from that has to be
+	 * 		folded along with it. -1 for a missing scalar or inner instruction. null otherwise
+	 */
+	private static int[] factorsOf(Kernel kernel, int[] args, List<Kernel> kernels, List<int[]> operands){
+		if (kernel == null){
+			return null;
+		}
+		switch (kernel){
+			case MM_MULTIPLY:{
+				Kernel first = kernels.get(args[0]), second = kernels.get(args[1]);
+				if (first == Kernel.SM_MULTIPLY || first == Kernel.MS_MULTIPLY){ // (s * A) * B
+					int[] scaled = operands.get(args[0]);
+					return first == Kernel.SM_MULTIPLY ? new int[]{scaled[0], scaled[1], args[1], args[0]} : new int[]{scaled[1], scaled[0], args[1], args[0]};
+				}
+				if (second == Kernel.SM_MULTIPLY || second == Kernel.MS_MULTIPLY){ // A * (s * B)
+					int[] scaled = operands.get(args[1]);
+					return second == Kernel.SM_MULTIPLY ? new int[]{scaled[0], args[0], scaled[1], args[1]} : new int[]{scaled[1], args[0], scaled[0], args[1]};
+				}
+				return new int[]{-1, args[0], args[1], -1};
+			}
+			case SM_MULTIPLY:{ // s * (A * B)
+				return kernels.get(args[1]) == Kernel.MM_MULTIPLY ? new int[]{args[0], operands.get(args[1])[0], operands.get(args[1])[1], args[1]} : null;
+			}
+			case MS_MULTIPLY:{ // (A * B) * s
+				return kernels.get(args[0]) == Kernel.MM_MULTIPLY ? new int[]{args[1], operands.get(args[0])[0], operands.get(args[0])[1], args[0]} : null;
+			}
+			case MULTIPLY_ADD:{ // a scaled product that was already folded
+				return args[3] == -1 ? new int[]{args[0], args[1], args[2], -1} : null;
+			}
+			default:{
+				return null;
+			}
+		}
+	}
+
+
+	/**
+	 * Evaluates the equation with the given Countables in place of the ones it was compiled with
+	 *
+	 * @param bindings one Countable per binding, in order (see class comment)
+	 * @return the answer to the equation
+	 * @throws IllegalArgumentException if the bindings don't fit the plan, or if a computation fails (for
+	 * 		instance because of mismatched dimensions or a singular matrix)
+	 */
+	public Countable execute(List<? extends Countable> bindings) throws IllegalArgumentException {
+		if (bindings.size() != _bindingIsMatrix.length){
+			throw new IllegalArgumentException("ERROR: Equation requires " + _bindingIsMatrix.length + " bindings");
+		}
+		for (int i = 0; i < _bindingIsMatrix.length; i++){
+			boolean isMatrix = bindings.get(i) instanceof Matrix || bindings.get(i) instanceof SparseMatrix;
+			if (_bindingIsMatrix[i] ? !isMatrix : !(bindings.get(i) instanceof Scalar)){
+				throw new IllegalArgumentException("ERROR: Binding " + i + " must be a " + (_bindingIsMatrix[i] ? "matrix" : "scalar"));
+			}
+		}
+
+		Countable[] results = new Countable[_kernels.length];
+		for (int i = 0; i < _kernels.length; i++){
+			int[] operands = _operands[i];
+			if (_kernels[i] == null){
+				Countable binding = bindings.get(operands[0]);
+				results[i] = binding instanceof SparseMatrix ? ((SparseMatrix) binding).toMatrix() : binding;
+				continue;
+			}
+			Countable[] args = new Countable[operands.length];
+			for (int j = 0; j < operands.length; j++){
+				args[j] = operands[j] == -1 ? null : results[operands[j]];
+			}
+			try{
+				results[i] = _kernels[i].apply(args);
+			}catch(IllegalArgumentException e){
+				throw e;
+			}catch(Exception e){
+				throw new IllegalArgumentException("ERROR: " + e.getMessage());
+			}
+		}
+		return results[_kernels.length-1];
+	}
+
+
+	/**
+	 * @return the number of Countables each execution has to bind
+	 */
+	public int getNumBindings(){
+		return _bindingIsMatrix.length;
+	}
+
+
+	/**
+	 * @param index the index of a binding
+	 * @return true if the binding has to be a Matrix, false if it has to be a Scalar
+	 */
+	public boolean isMatrixBinding(int index){
+		return _bindingIsMatrix[index];
+	}
+
+
+
+	//===================================
+	//  Kernels
+	//===================================
+
+	/**
+	 * The Computable behind each instruction, specialized to the kinds of its arguments. Kernels run in
+	 * answer-only mode, so no steps are made
+	 */
+	private enum Kernel {
+		SS_PLUS(false){
+			Countable apply(Countable[] args){
+				return new SS_PlusMinus((Scalar) args[0], (Scalar) args[1], true, true).getSolution().getAnswer();
+			}
+		},
+		SS_MINUS(false){
+			Countable apply(Countable[] args){
+				return new SS_PlusMinus((Scalar) args[0], (Scalar) args[1], false, true).getSolution().getAnswer();
+			}
+		},
+		MM_PLUS(true){
+			Countable apply(Countable[] args){
+				return new MM_PlusMinus((Matrix) args[0], (Matrix) args[1], true, true).getSolution().getAnswer();
+			}
+		},
+		MM_MINUS(true){
+			Countable apply(Countable[] args){
+				return new MM_PlusMinus((Matrix) args[0], (Matrix) args[1], false, true).getSolution().getAnswer();
+			}
+		},
+		SS_MULTIPLY(false){
+			Countable apply(Countable[] args){
+				return new SS_MultiplyDivide((Scalar) args[0], (Scalar) args[1], true, true).getSolution().getAnswer();
+			}
+		},
+		SS_DIVIDE(false){
+			Countable apply(Countable[] args){
+				return new SS_MultiplyDivide((Scalar) args[0], (Scalar) args[1], false, true).getSolution().getAnswer();
+			}
+		},
+		MM_MULTIPLY(true){
+			Countable apply(Countable[] args){
+				return new MM_Multiply((Matrix) args[0], (Matrix) args[1], true).getSolution().getAnswer();
+			}
+		},
+		MM_SOLVE(true){
+			Countable apply(Countable[] args){
+				return new MM_Solve((Matrix) args[0], (Matrix) args[1], true).getSolution().getAnswer();
+			}
+		},
+		MS_MULTIPLY(true){
+			Countable apply(Countable[] args){
+				return new MS_Multiply((Matrix) args[0], (Scalar) args[1], true).getSolution().getAnswer();
+			}
+		},
+		SM_MULTIPLY(true){
+			Countable apply(Countable[] args){
+				return new MS_Multiply((Scalar) args[0], (Matrix) args[1], true).getSolution().getAnswer();
+			}
+		},
+		S_POWER(false){
+			Countable apply(Countable[] args){
+				return new S_Power((Scalar) args[0], (Scalar) args[1], true).getSolution().getAnswer();
+			}
+		},
+		M_POWER(true){
+			Countable apply(Countable[] args){
+				return new M_Power((Matrix) args[0], (Scalar) args[1], true).getSolution().getAnswer();
+			}
+		},
+		DETERMINANT(false){
+			Countable apply(Countable[] args) throws Exception {
+				return new Determinant((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		ROW_REDUCE(true){
+			Countable apply(Countable[] args) throws Exception {
+				return new M_RowReduce((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		M_COLUMNSPACE(true){
+			Countable apply(Countable[] args) throws Exception {
+				return new M_Columnspace((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		M_INVERSE(true){
+			Countable apply(Countable[] args) throws Exception {
+				return new M_Inverse((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		M_RANK(false){
+			Countable apply(Countable[] args) throws Exception {
+				return new M_Rank((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		M_TRANSPOSE(true){
+			Countable apply(Countable[] args){
+				return new M_Transpose((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		SVD(true){
+			Countable apply(Countable[] args){
+				return new SVD((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		M_EIGEN(true){
+			Countable apply(Countable[] args){
+				return M_Eigen.forOp((Matrix) args[0], true).getSolution().getAnswer();
+			}
+		},
+		TRUNCATED_SVD(true){
+			Countable apply(Countable[] args){
+				return new TruncatedSVD((Matrix) args[0], (Scalar) args[1], true).getSolution().getAnswer();
+			}
+		},
+		MULTIPLY_ADD(true){ // args are the scalar, the two factors and the added matrix. See foldMultiplyAdd
+			Countable apply(Countable[] args){
+				return new MM_MultiplyAdd((Scalar) args[0], (Matrix) args[1], (Matrix) args[2], (Matrix) args[3], true, true).getSolution().getAnswer();
+			}
+		},
+		MULTIPLY_SUBTRACT(true){
+			Countable apply(Countable[] args){
+				return new MM_MultiplyAdd((Scalar) args[0], (Matrix) args[1], (Matrix) args[2], (Matrix) args[3], false, true).getSolution().getAnswer();
+			}
+		};
+
+		private final boolean _returnsMatrix;
+
+		private Kernel(boolean returnsMatrix){
+			_returnsMatrix = returnsMatrix;
+		}
+
+
+		/**
+		 * Runs the computation
+		 *
+		 * @param args the arguments, in order. Unary operations have one
+		 * @return the answer
+		 */
+		abstract Countable apply(Countable[] args) throws Exception;
+
+
+		/**
+		 * Picks the kernel for an operation, with the same rules and errors as Parser.compute
+		 *
+		 * @param op the operation
+		 * @param firstIsMatrix true if the first argument is a Matrix. Ignored for unary operations
+		 * @param secondIsMatrix true if the second argument is a Matrix
+		 * @return the kernel that computes <op> on arguments of these kinds
+		 * @throws IllegalArgumentException if <op> can't take arguments of these kinds
+		 */
+		static Kernel resolve(Op op, boolean firstIsMatrix, boolean secondIsMatrix) throws IllegalArgumentException {
+			switch (op){
+				case PLUS:
+				case MINUS:{
+					boolean isPlus = op == Op.PLUS;
+					if (firstIsMatrix != secondIsMatrix){
+						throw new IllegalArgumentException(isPlus ? "ERROR: Cannot add a matrix and a scalar" : "ERROR: Cannot subtract a matrix and a scalar");
+					}
+					if (firstIsMatrix){
+						return isPlus ? MM_PLUS : MM_MINUS;
+					}
+					return isPlus ? SS_PLUS : SS_MINUS;
+				}
+				case MULTIPLY:{
+					if (firstIsMatrix && secondIsMatrix){
+						return MM_MULTIPLY;
+					}else if (firstIsMatrix){
+						return MS_MULTIPLY;
+					}else if (secondIsMatrix){
+						return SM_MULTIPLY;
+					}
+					return SS_MULTIPLY;
+				}
+				case SS_DIVIDE:{
+					if (firstIsMatrix || secondIsMatrix){
+						throw new IllegalArgumentException("ERROR: Divide arguments must be scalars");
+					}
+					return SS_DIVIDE;
+				}
+				case SOLVE:{
+					if (!firstIsMatrix || !secondIsMatrix){
+						throw new IllegalArgumentException("ERROR: A linear system takes a matrix and then a matrix of right-hand sides");
+					}
+					return MM_SOLVE;
+				}
+				case POWER:{
+					if (secondIsMatrix){
+						throw new IllegalArgumentException("ERROR: Matrices cannot be used as exponents");
+					}
+					return firstIsMatrix ? M_POWER : S_POWER;
+				}
+				case TRUNCATED_SVD:{
+					if (!firstIsMatrix || secondIsMatrix){
+						throw new IllegalArgumentException("ERROR: A truncated SVD takes a matrix and then a scalar rank");
+					}
+					return TRUNCATED_SVD;
+				}
+				default:{
+					if (!op.isUnary()){
+						throw new IllegalArgumentException("ERROR: Unrecognized operation");
+					}
+					if (!secondIsMatrix){
+						throw new IllegalArgumentException("ERROR: " + op.getName() + " operator requires matrix type argument");
+					}
+					switch (op){
+						case DETERMINANT:   return DETERMINANT;
+						case ROW_REDUCE:    return ROW_REDUCE;
+						case M_COLUMNSPACE: return M_COLUMNSPACE;
+						case M_INVERSE:     return M_INVERSE;
+						case M_RANK:        return M_RANK;
+						case M_TRANSPOSE:   return M_TRANSPOSE;
+						case SVD:           return SVD;
+						case M_EIGEN:       return M_EIGEN;
+						default:            throw new IllegalArgumentException("ERROR: Unrecognized operation");
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package backend.main;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import backend.blocks.Bracket;
+import backend.blocks.Countable;
+import backend.blocks.Countable.DisplayType;
+import backend.blocks.Matrix;
+import backend.blocks.Numerical;
+import backend.blocks.Op;
+import backend.blocks.Operation;
+import backend.blocks.Scalar;
+
+/**
+ * Tests for compiled equations
+ *
+ * @author baebi
+ */
+public class EvaluationPlanTest {
+	private Matrix matrixA = new Matrix(DisplayType.DECIMAL, new Double[][]{{2.0,0.0},{0.0,4.0}});
+	private Matrix matrixB = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0},{3.0,4.0}});
+	private Matrix matrixC = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0},{1.0,1.0}});
+	private Scalar scalar = new Scalar(3,DisplayType.DECIMAL);
+
+	// inv A * B + C
+	private List<Numerical> inverseTimesPlus(){
+		List<Numerical> l = new ArrayList<>();
+		l.add(new Operation(Op.M_INVERSE));
+		l.add(matrixA);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(matrixB);
+		l.add(new Operation(Op.PLUS));
+		l.add(matrixC);
+		return l;
+	}
+
+	@Test // gives the same answer as parsing
+	public void sameAsParseTest(){
+		EvaluationPlan plan = Parser.compile(inverseTimesPlus());
+		assertTrue(plan.getNumBindings() == 3);
+		Matrix planned = (Matrix) plan.execute(Arrays.asList(matrixA,matrixB,matrixC));
+		Matrix parsed = (Matrix) Parser.parse(inverseTimesPlus(),true).getSolution().getAnswer();
+		for (int r = 0; r < 2; r++){
+			for (int c = 0; c < 2; c++){
+				assertTrue(planned.get(r,c) == parsed.get(r,c));
+			}
+		}
+		assertTrue(planned.get(0,0) == 1.5);
+		assertTrue(planned.get(1,1) == 2);
+	}
+
+	@Test // one plan, many executions with different Countables and dimensions
+	public void reuseTest(){
+		EvaluationPlan plan = Parser.compile(inverseTimesPlus());
+		Matrix identity = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,0.0,0.0},{0.0,1.0,0.0},{0.0,0.0,1.0}});
+		Matrix b = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0,3.0}});
+		Matrix c = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0,1.0}});
+		Matrix answer = (Matrix) plan.execute(Arrays.asList(identity,b,c));
+		assertTrue(answer.getNumRows() == 3 && answer.getNumCols() == 1);
+		assertTrue(answer.get(2,0) == 4);
+
+		answer = (Matrix) plan.execute(Arrays.asList(matrixA,matrixB,matrixC));
+		assertTrue(answer.get(0,0) == 1.5);
+	}
+
+	@Test // matrix times scalar and scalar times scalar pick different kernels
+	public void mixedTypesTest(){
+		List<Numerical> l = new ArrayList<>();
+		l.add(scalar);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(scalar);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(new Operation(Op.DETERMINANT));
+		l.add(matrixB);
+		EvaluationPlan plan = Parser.compile(l);
+		assertTrue(!plan.isMatrixBinding(0) && !plan.isMatrixBinding(1) && plan.isMatrixBinding(2));
+		Countable answer = plan.execute(Arrays.asList(scalar,new Scalar(2,DisplayType.DECIMAL),matrixB));
+		assertTrue(((Scalar) answer).getValue() == -12);
+	}
+
+	@Test // scaled products and multiply-adds give the same answers fused as parsing does
+	public void multiplyAddTest(){
+		List<Numerical> l = new ArrayList<>(); // C + A * (B * 3)
+		l.add(matrixC);
+		l.add(new Operation(Op.PLUS));
+		l.add(matrixA);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(new Bracket(true));
+		l.add(matrixB);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(scalar);
+		l.add(new Bracket(false));
+		EvaluationPlan plan = Parser.compile(new ArrayList<>(l));
+		assertTrue(plan.getNumBindings() == 4);
+		Matrix planned = (Matrix) plan.execute(Arrays.asList(matrixC,matrixA,matrixB,scalar));
+		Matrix parsed = (Matrix) Parser.parse(l,true).getSolution().getAnswer();
+		assertTrue(planned.contentEquals(parsed));
+		assertTrue(planned.get(0,1) == 19); // 1 + 2*3*3
+
+		l.clear(); // 3 * A * B - C
+		l.add(scalar);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(matrixA);
+		l.add(new Operation(Op.MULTIPLY));
+		l.add(matrixB);
+		l.add(new Operation(Op.MINUS));
+		l.add(matrixC);
+		plan = Parser.compile(new ArrayList<>(l));
+		planned = (Matrix) plan.execute(Arrays.asList(scalar,matrixA,matrixB,matrixC));
+		parsed = (Matrix) Parser.parse(l,true).getSolution().getAnswer();
+		assertTrue(planned.contentEquals(parsed));
+		assertTrue(planned.get(1,0) == 23); // 3*4*2 - 1
+	}
+
+	@Test // type errors are found when compiling
+	public void compileErrorTest(){
+		List<Numerical> l = new ArrayList<>();
+		l.add(matrixA);
+		l.add(new Operation(Op.PLUS));
+		l.add(scalar);
+		try{
+			Parser.compile(l);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+
+	@Test // bindings have to fit the plan
+	public void bindingErrorTest(){
+		EvaluationPlan plan = Parser.compile(inverseTimesPlus());
+		try{
+			plan.execute(Arrays.asList(matrixA,matrixB));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{
+			plan.execute(Arrays.<Countable>asList(matrixA,scalar,matrixC));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+		try{ // singular matrix
+			plan.execute(Arrays.asList(matrixC,matrixB,matrixC));
+			fail();
+		}catch(IllegalArgumentException e){
+		}
+	}
+}
@@ -0,0 +1,862 @@
+package backend.main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import backend.blocks.Countable;
+import backend.blocks.Matrix;
+import backend.blocks.Numerical;
+import backend.blocks.Op;
+import backend.blocks.Operation;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
+import backend.computations.infrastructure.CompositeStepSource;
+import backend.computations.infrastructure.Solution;
+import backend.computations.infrastructure.SolutionCache;
+import backend.computations.operations.MM_MultiplyAdd;
+
+/**
+ *  A tree of Operations with its repeated parts merged. Subtrees that do the same operations on Countables with
+ *  the same content become one node, so in det A * det A + inv A the determinant of A is a single node used twice.
+ *  Each node is computed once, and nodes that don't depend on each other are computed at the same time.
+ *
+ *  Runs of matrix multiplications (ex: A * B * C * D) are regrouped into the order that takes the fewest scalar
+ *  multiplications for the dimensions of the matrices, when those are known before computing (see
+ *  MatrixChainOrder). The order chosen is the first step of the last product of the run.
+ *
+ *  A product of two matrices that is scaled, added to a matrix or both (ex: s * A * B + C) is computed as one
+ *  multiply-add (see MM_MultiplyAdd), so the product and the scaled product are never made. The product and
+ *  the scaling are only folded in when nothing else uses them, and when showing steps only when every argument
+ *  is a Countable, since the steps of the fused node stand in for theirs.
+ *
+ *  The ParseNodes given back still form a tree with one ParseNode per computation at each place in the
+ *  equation, since each place gets its own depiction of the equation state. Merged places share the same Solution
+ *
+ * @author baebi
+ */
+class ExpressionDag {
+
+	// computes independent nodes of an equation at the same time. Computables don't change their inputs, so
+	// the nodes can safely share Countables
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	// a merged node: a Countable, or an operation on other nodes
+	private static class Node {
+		private final Op _type;          // null for Countables
+		private final Countable _value;  // the Countable, for Countables only
+		private final Node _first;       // null for Countables and unary operations
+		private final Node _second;      // null for Countables
+		private final int _level;        // 0 for Countables, otherwise one more than the highest argument
+
+		// what this node will be, as far as can be told before computing: a scalar, or a matrix of known
+		// dimensions. Neither if it can't be told (ex: the column space depends on the rank)
+		private final boolean _isScalar;
+		private final int _rows, _cols; // -1 unless a matrix of known dimensions
+
+		// steps reporting how a run of multiplications was regrouped, for the last product of the run. null if none
+		private List<String> _chainSteps;
+
+		// set when this node is computed as one multiply-add (see fuse), in which case it is computed from these
+		// rather than from _first and _second. _fusedArgs holds the non-null ones in the order they were written
+		private List<Node> _fusedArgs;
+		private Node _scale, _factorA, _factorB, _addend; // _scale and _addend may be null
+
+		private Solution _solution;
+		private RuntimeException _error;
+
+		Node(Countable value){
+			_type = null;
+			_value = value;
+			_first = _second = null;
+			_level = 0;
+			_isScalar = value instanceof Scalar;
+			if (value instanceof SparseMatrix){
+				_rows = ((SparseMatrix) value).getNumRows();
+				_cols = ((SparseMatrix) value).getNumCols();
+			}else{
+				_rows = value instanceof Matrix ? ((Matrix) value).getNumRows() : -1;
+				_cols = value instanceof Matrix ? ((Matrix) value).getNumCols() : -1;
+			}
+		}
+
+		Node(Op type, Node first, Node second){
+			_type = type;
+			_value = null;
+			_first = first;
+			_second = second;
+			_level = 1 + Math.max(first == null ? 0 : first._level, second._level);
+
+			boolean isScalar = false;
+			int rows = -1, cols = -1;
+			switch (type){
+				case PLUS:
+				case MINUS:{
+					isScalar = first._isScalar && second._isScalar;
+					if (first.isMatrix() && second.isMatrix() && first._rows == second._rows && first._cols == second._cols){
+						rows = first._rows;
+						cols = first._cols;
+					}
+					break;
+				}
+				case MULTIPLY:{
+					isScalar = first._isScalar && second._isScalar;
+					if (first.isMatrix() && second.isMatrix() && first._cols == second._rows){
+						rows = first._rows;
+						cols = second._cols;
+					}else if (first._isScalar && second.isMatrix()){
+						rows = second._rows;
+						cols = second._cols;
+					}else if (first.isMatrix() && second._isScalar){
+						rows = first._rows;
+						cols = first._cols;
+					}
+					break;
+				}
+				case POWER:{
+					isScalar = first._isScalar;
+					rows = first._rows;
+					cols = first._cols;
+					break;
+				}
+				case SOLVE:{ // one unknown per column of the matrix, for each right-hand side
+					if (first.isMatrix() && second.isMatrix() && first._rows == second._rows){
+						rows = first._cols;
+						cols = second._cols;
+					}
+					break;
+				}
+				case TRUNCATED_SVD:{ // the approximation has the shape of the matrix
+					rows = first._rows;
+					cols = first._cols;
+					break;
+				}
+				case SS_DIVIDE:
+				case DETERMINANT:
+				case M_RANK:{
+					isScalar = true;
+					break;
+				}
+				case M_TRANSPOSE:{
+					rows = second._cols;
+					cols = second._rows;
+					break;
+				}
+				case SVD:{
+					if (second.isMatrix()){ // the column of singular values
+						rows = Math.min(second._rows, second._cols);
+						cols = 1;
+					}
+					break;
+				}
+				case M_INVERSE:
+				case ROW_REDUCE:{
+					rows = second._rows;
+					cols = second._cols;
+					break;
+				}
+				default:{
+					// the number of columns of a column space isn't known until it is computed
+				}
+			}
+			_isScalar = isScalar;
+			_rows = rows;
+			_cols = cols;
+		}
+
+		/**
+		 * @return true if this node will be a matrix of known dimensions
+		 */
+		boolean isMatrix(){
+			return _rows != -1 && _cols != -1;
+		}
+
+		/**
+		 * @return the nodes this node is computed from, in the order they were written
+		 */
+		List<Node> getArgs(){
+			if (_fusedArgs != null){
+				return _fusedArgs;
+			}
+			return _first == null ? Arrays.asList(_second) : Arrays.asList(_first, _second);
+		}
+
+		/**
+		 * @return the value of this node once it has been computed
+		 */
+		Countable getAnswer(){
+			return _type == null ? _value : _solution.getAnswer();
+		}
+
+		/**
+		 * Computes this node from its arguments. Errors are kept rather than thrown, and an argument's error
+		 * becomes this node's error, preferring the first argument's. That way the error that reaches the root
+		 * is the one computing the tree from left to right would have thrown
+		 *
+		 * @param answerOnly true if the Solution should only hold the answer, without steps
+		 */
+		void compute(boolean answerOnly){
+			for (Node arg : getArgs()){
+				if (arg._error != null){
+					_error = arg._error;
+					return;
+				}
+			}
+			if (_fusedArgs != null){
+				computeFused(answerOnly);
+			}else{
+				try{
+					Solution solution = Parser.solve(_type, _first == null ? null : _first.getAnswer(), _second.getAnswer(), answerOnly);
+					if (_chainSteps != null && !answerOnly){
+						solution = new Solution(solution.getOp(), solution.getInputs(), solution.getAnswer(),
+								new CompositeStepSource().add(_chainSteps).add(solution.getLatex()));
+					}
+					_solution = solution;
+				}catch(RuntimeException e){
+					_error = e;
+				}
+			}
+		}
+
+		/**
+		 * Computes this node as one multiply-add, through the shared Solution cache. Computed arguments that
+		 * turn out to be sparse are multiplied and added one operation at a time instead, with the sparse kernels
+		 *
+		 * @param answerOnly true if the Solution should only hold the answer, without steps
+		 */
+		private void computeFused(final boolean answerOnly){
+			if (_factorA.getAnswer() instanceof SparseMatrix || _factorB.getAnswer() instanceof SparseMatrix ||
+					(_addend != null && _addend.getAnswer() instanceof SparseMatrix)){
+				try{
+					Countable product = Parser.solve(Op.MULTIPLY, _factorA.getAnswer(), _factorB.getAnswer(), answerOnly).getAnswer();
+					if (_addend == null){
+						_solution = Parser.solve(Op.MULTIPLY, _scale.getAnswer(), product, answerOnly);
+						return;
+					}
+					if (_scale != null){
+						product = Parser.solve(Op.MULTIPLY, _scale.getAnswer(), product, answerOnly).getAnswer();
+					}
+					_solution = Parser.solve(_type, product, _addend.getAnswer(), answerOnly);
+				}catch(RuntimeException e){
+					_error = e;
+				}
+				return;
+			}
+			final Scalar scale = _scale == null ? null : (Scalar) _scale.getAnswer();
+			final Matrix a = (Matrix) _factorA.getAnswer();
+			final Matrix b = (Matrix) _factorB.getAnswer();
+			final Matrix c = _addend == null ? null : (Matrix) _addend.getAnswer();
+			final boolean isPlus = _type != Op.MINUS;
+			List<Countable> inputs = new ArrayList<>();
+			for (Countable input : new Countable[]{scale, a, b, c}){
+				if (input != null){
+					inputs.add(input);
+				}
+			}
+			try{
+				_solution = SolutionCache.getShared().get(_type, answerOnly, new SolutionCache.Loader<RuntimeException>(){
+					@Override
+					public Solution load(){
+						return new MM_MultiplyAdd(scale, a, b, c, isPlus, answerOnly).getSolution();
+					}
+				}, inputs.toArray(new Countable[inputs.size()]));
+			}catch(RuntimeException e){
+				_error = e;
+			}
+		}
+	}
+
+
+	// What a node is merged by. Countables are compared by content and operations by their type and the
+	// identity of their (already merged) arguments
+	private static class Key {
+		private final Op _type;
+		private final Countable _value;
+		private final Node _first, _second;
+
+		Key(Countable value){
+			_type = null;
+			_value = value;
+			_first = _second = null;
+		}
+
+		Key(Op type, Node first, Node second){
+			_type = type;
+			_value = null;
+			_first = first;
+			_second = second;
+		}
+
+		@Override
+		public int hashCode(){
+			if (_type == null){
+				return _value.contentHash();
+			}
+			return 31*(31*_type.ordinal() + System.identityHashCode(_first)) + System.identityHashCode(_second);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			if (_type == null){
+				return other._type == null && _value.contentEquals(other._value);
+			}
+			return _type == other._type && _first == other._first && _second == other._second;
+		}
+	}
+
+
+	// the most factors a run of multiplications can have to be regrouped. The dynamic program is cubic
+	static final int MAX_CHAIN_FACTORS = 128;
+
+	private final Node _root;
+	private final boolean _answerOnly;
+
+	// the node each Operation of the original tree was merged into
+	private final Map<Operation,Node> _nodeOf = new IdentityHashMap<>();
+
+	// the merged nodes, so that the nodes made when regrouping multiplications are merged too
+	private final Map<Key,Node> _merged = new HashMap<>();
+
+	// the distinct operation nodes the answer depends on, by level. Every node's arguments are on lower levels
+	private final List<List<Node>> _levels = new ArrayList<>();
+	private int _numNodes = 0;
+
+
+	/**
+	 * Merges a tree of Operations, as built by Parser.createSortedTree. The tree is walked with a stack rather
+	 * than recursion, so equations of any depth can be merged
+	 *
+	 * @param root the root of the tree. It is only read
+	 * @param answerOnly true if the Solutions should only hold answers, without steps
+	 * @throws IllegalArgumentException if some Operation is missing an argument
+	 */
+	ExpressionDag(Operation root, boolean answerOnly) throws IllegalArgumentException {
+		_answerOnly = answerOnly;
+		Map<Countable,Node> leaves = new IdentityHashMap<>(); // skips hashing the same Countable twice
+
+		Deque<Operation> toVisit = new ArrayDeque<>();
+		Deque<Boolean> expanded = new ArrayDeque<>();
+		Deque<Boolean> inProduct = new ArrayDeque<>(); // true if the parent is also a multiplication
+		toVisit.push(root);
+		expanded.push(false);
+		inProduct.push(false);
+		while (!toVisit.isEmpty()){
+			Operation op = toVisit.pop();
+			boolean isInProduct = inProduct.pop();
+			if (!expanded.pop()){
+				Parser.checkArgs(op);
+				toVisit.push(op);
+				expanded.push(true);
+				inProduct.push(isInProduct);
+				boolean isProduct = op.getType() == Op.MULTIPLY;
+				if (op.getSecondArg() instanceof Operation){
+					toVisit.push((Operation) op.getSecondArg());
+					expanded.push(false);
+					inProduct.push(isProduct);
+				}
+				if (op.getFirstArg() instanceof Operation){
+					toVisit.push((Operation) op.getFirstArg());
+					expanded.push(false);
+					inProduct.push(isProduct);
+				}
+				continue;
+			}
+
+			Node first = op.isUnary() ? null : getNode(op.getFirstArg(), leaves);
+			Node second = getNode(op.getSecondArg(), leaves);
+			Node node = merge(op.getType(), first, second);
+			if (op.getType() == Op.MULTIPLY && !isInProduct){
+				node = orderProduct(node); // the whole run of multiplications is known now
+			}
+			_nodeOf.put(op, node);
+		}
+		_root = _nodeOf.get(root);
+		fuse();
+		schedule();
+	}
+
+
+	/**
+	 * @param type the operation
+	 * @param first the first argument, or null for unary operations
+	 * @param second the second argument
+	 * @return the node of <type> on the arguments, which is made if there isn't one already
+	 */
+	private Node merge(Op type, Node first, Node second){
+		Key key = new Key(type, first, second);
+		Node node = _merged.get(key);
+		if (node == null){
+			node = new Node(type, first, second);
+			_merged.put(key, node);
+		}
+		return node;
+	}
+
+
+	/**
+	 * @param arg an argument of an Operation whose arguments have already been merged
+	 * @param leaves the nodes of Countables that have already been seen
+	 * @return the merged node of <arg>
+	 */
+	private Node getNode(Numerical arg, Map<Countable,Node> leaves){
+		if (arg instanceof Operation){
+			return _nodeOf.get(arg);
+		}
+		if (!(arg instanceof Countable)){
+			throw new IllegalArgumentException("ERROR: Operations may only take Countables and Operations as arguments");
+		}
+		Countable countable = (Countable) arg;
+		Node node = leaves.get(countable);
+		if (node == null){
+			Key key = new Key(countable);
+			node = _merged.get(key);
+			if (node == null){
+				node = new Node(countable);
+				_merged.put(key, node);
+			}
+			leaves.put(countable, node);
+		}
+		return node;
+	}
+
+
+	/**
+	 * Regroups a run of multiplications into the cheapest order. Only runs of three or more matrices whose
+	 * dimensions are all known and fit together are regrouped; anything else is left as written. Scalars in the
+	 * run (ex: s * A * B * C) are a coefficient of the whole run: the matrices are regrouped on their own and the
+	 * product of the scalars scales the result once
+	 *
+	 * @param product the last multiplication of the run, as written
+	 * @return the last multiplication of the run in the cheapest order
+	 */
+	private Node orderProduct(Node product){
+		// the matrix factors and the scalars of the run from left to right, and what multiplying them as
+		// written costs
+		List<Node> factors = new ArrayList<>();
+		List<Node> scalars = new ArrayList<>();
+		long writtenCost = 0;
+		Deque<Node> toVisit = new ArrayDeque<>();
+		toVisit.push(product);
+		while (!toVisit.isEmpty()){
+			Node node = toVisit.pop();
+			if (node._type == Op.MULTIPLY && !node._isScalar && (node._first._isScalar || node._second._isScalar)){
+				Node matrix = node._first._isScalar ? node._second : node._first;
+				if (!matrix.isMatrix()){
+					return product;
+				}
+				scalars.add(node._first._isScalar ? node._first : node._second);
+				writtenCost += (long) matrix._rows*matrix._cols;
+				toVisit.push(matrix);
+			}else if (node._type == Op.MULTIPLY && !node._isScalar){
+				if (!node._first.isMatrix() || !node._second.isMatrix() || node._first._cols != node._second._rows){
+					return product;
+				}
+				writtenCost += (long) node._first._rows*node._first._cols*node._second._cols;
+				toVisit.push(node._second);
+				toVisit.push(node._first);
+			}else{
+				factors.add(node);
+				if (factors.size() > MAX_CHAIN_FACTORS){
+					return product;
+				}
+			}
+		}
+		if (factors.size() < 3){
+			return product;
+		}
+
+		int[] dims = new int[factors.size()+1];
+		for (int i = 0; i < factors.size(); i++){
+			dims[i] = factors.get(i)._rows;
+		}
+		dims[factors.size()] = factors.get(factors.size()-1)._cols;
+		MatrixChainOrder order = new MatrixChainOrder(dims);
+		long cost = order.getCost();
+		if (!scalars.isEmpty()){
+			// the scalars multiplied together, then the result scaled by them once
+			cost += scalars.size()-1 + (long) dims[0]*dims[factors.size()];
+		}
+		Node ordered = product;
+		if (cost < writtenCost){
+			ordered = buildProduct(order, factors);
+			if (!scalars.isEmpty()){
+				Node coefficient = scalars.get(0);
+				for (int i = 1; i < scalars.size(); i++){
+					coefficient = merge(Op.MULTIPLY, coefficient, scalars.get(i));
+				}
+				ordered = merge(Op.MULTIPLY, coefficient, ordered);
+			}
+		}
+
+		List<String> steps = new ArrayList<>();
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < factors.size(); i++){
+			if (i > 0){
+				b.append(", \\ ");
+			}
+			b.append("M_{").append(i+1).append("} \\ ").append(dims[i]).append(" \\times ").append(dims[i+1]);
+		}
+		if (!scalars.isEmpty()){
+			b.append(", \\ s \\ \\mathrm{").append(scalars.size() == 1 ? "the \\ scalar" : "the \\ product \\ of \\ the \\ " + scalars.size() + " \\ scalars").append("}");
+		}
+		String scale = scalars.isEmpty() ? "" : "s \\, ";
+		steps.add("\\vspace{10mm} \\mathrm{Order \\ of \\ multiplication:} \\ " + (ordered == product ? "\\mathrm{as \\ written}" : scale + order.toLatex()));
+		steps.add("\\hspace{15mm} " + b.toString());
+		steps.add("\\hspace{15mm} \\mathrm{" + cost + " \\ scalar \\ multiplications, \\ as \\ written \\ " + writtenCost + "}");
+		ordered._chainSteps = steps;
+		return ordered;
+	}
+
+
+	/**
+	 * Builds the nodes of a run of multiplications in a given order, without recursion
+	 *
+	 * @param order the order
+	 * @param factors the factors of the run, from left to right
+	 * @return the last multiplication
+	 */
+	private Node buildProduct(MatrixChainOrder order, List<Node> factors){
+		// each entry is a sub-chain {i, j, expanded}
+		Deque<int[]> toVisit = new ArrayDeque<>();
+		Deque<Node> built = new ArrayDeque<>();
+		toVisit.push(new int[]{0, factors.size()-1, 0});
+		while (!toVisit.isEmpty()){
+			int[] chain = toVisit.pop();
+			int i = chain[0], j = chain[1];
+			if (i == j){
+				built.push(factors.get(i));
+			}else if (chain[2] == 0){
+				int k = order.getSplit(i,j);
+				toVisit.push(new int[]{i, j, 1});
+				toVisit.push(new int[]{k+1, j, 0});
+				toVisit.push(new int[]{i, k, 0});
+			}else{
+				Node second = built.pop();
+				Node first = built.pop();
+				built.push(merge(Op.MULTIPLY, first, second));
+			}
+		}
+		return built.pop();
+	}
+
+
+	/**
+	 * Turns scaled products and products with a matrix added (ex: s * A * B + C) into single multiply-add nodes.
+	 * Nodes are tried from the top down, so the largest pattern is found first. A product or scaling is only
+	 * folded into a node that is its only user, so nothing else needs it to be computed. When showing steps,
+	 * only nodes whose arguments are all Countables are fused, since the steps of the folded computations would
+	 * otherwise be lost
+	 */
+	private void fuse(){
+		// how many nodes use each node the answer depends on
+		Map<Node,Integer> uses = new IdentityHashMap<>();
+		List<Node> nodes = new ArrayList<>();
+		Deque<Node> toVisit = new ArrayDeque<>();
+		toVisit.push(_root);
+		uses.put(_root, 1);
+		while (!toVisit.isEmpty()){
+			Node node = toVisit.pop();
+			if (node._type == null){
+				continue;
+			}
+			nodes.add(node);
+			for (Node arg : node.getArgs()){
+				Integer count = uses.get(arg);
+				uses.put(arg, count == null ? 1 : count+1);
+				if (count == null){
+					toVisit.push(arg);
+				}
+			}
+		}
+
+		Collections.sort(nodes, new Comparator<Node>(){
+			@Override
+			public int compare(Node a, Node b){
+				return b._level - a._level;
+			}
+		});
+		Map<Node,Boolean> folded = new IdentityHashMap<>();
+		for (Node node : nodes){
+			if (!folded.containsKey(node)){
+				fuse(node, uses, folded);
+			}
+		}
+	}
+
+
+	/**
+	 * Makes a node a multiply-add if it is one
+	 *
+	 * @param node the node
+	 * @param uses how many nodes use each node
+	 * @param folded the nodes already folded into multiply-adds, which this adds to
+	 */
+	private void fuse(Node node, Map<Node,Integer> uses, Map<Node,Boolean> folded){
+		Node product = null, addend = null;
+		boolean addendFirst = false;
+		if ((node._type == Op.PLUS || node._type == Op.MINUS) && isFoldable(node._first, uses) && node._second.isMatrix()){
+			product = node._first;
+			addend = node._second;
+		}else if (node._type == Op.PLUS && isFoldable(node._second, uses) && node._first.isMatrix()){
+			product = node._second;
+			addend = node._first;
+			addendFirst = true;
+		}else if (node._type == Op.MULTIPLY){
+			product = node;
+		}
+		if (product == null){
+			return;
+		}
+
+		// the factors of the product, with one level of scaling or multiplying folded in
+		Node first = product._first, second = product._second;
+		List<Node> factors = new ArrayList<>();
+		Node inner = null;
+		if (first._isScalar && second.isMatrix() && isProductOf(second, true, uses)){ // s * (A * B)
+			inner = second;
+			factors.addAll(Arrays.asList(first, second._first, second._second));
+		}else if (first.isMatrix() && second._isScalar && isProductOf(first, true, uses)){ // (A * B) * s
+			inner = first;
+			factors.addAll(Arrays.asList(first._first, first._second, second));
+		}else if (first.isMatrix() && second.isMatrix() && isProductOf(first, false, uses)){ // (s * A) * B
+			inner = first;
+			factors.addAll(Arrays.asList(first._first, first._second, second));
+		}else if (first.isMatrix() && second.isMatrix() && isProductOf(second, false, uses)){ // A * (s * B)
+			inner = second;
+			factors.addAll(Arrays.asList(first, second._first, second._second));
+		}else{
+			factors.addAll(Arrays.asList(first, second));
+		}
+
+		Node scale = null;
+		List<Node> matrices = new ArrayList<>();
+		for (Node factor : factors){
+			if (factor._isScalar){
+				scale = factor;
+			}else{
+				matrices.add(factor);
+			}
+		}
+		if (matrices.size() != 2 || (scale == null && addend == null)){
+			return; // a plain product is already a single multiplication
+		}
+		Node a = matrices.get(0), b = matrices.get(1);
+		if (!a.isMatrix() || !b.isMatrix() || a._cols != b._rows){
+			return;
+		}
+		if (addend != null && (addend._rows != a._rows || addend._cols != b._cols)){
+			return;
+		}
+
+		List<Node> args = new ArrayList<>(factors);
+		if (addend != null){
+			args.add(addendFirst ? 0 : args.size(), addend);
+		}
+		int computed = 0;
+		for (Node arg : args){
+			if (arg._type != null){
+				computed++;
+			}else if (arg._value instanceof SparseMatrix){
+				return; // the sparse kernels are faster than a dense multiply-add
+			}
+		}
+		if (computed > (_answerOnly ? 2 : 0) || (!_answerOnly && (node._chainSteps != null || product._chainSteps != null))){
+			return;
+		}
+
+		node._fusedArgs = args;
+		node._scale = scale;
+		node._factorA = a;
+		node._factorB = b;
+		node._addend = addend;
+		folded.put(product, true);
+		if (inner != null){
+			folded.put(inner, true);
+		}
+	}
+
+
+	/**
+	 * @param node a node
+	 * @param uses how many nodes use each node
+	 * @return true if <node> is a multiplication that only one node uses and that hasn't been folded already
+	 */
+	private boolean isFoldable(Node node, Map<Node,Integer> uses){
+		return node._type == Op.MULTIPLY && node._fusedArgs == null && uses.get(node) == 1;
+	}
+
+
+	/**
+	 * @param node a node
+	 * @param ofMatrices true to look for a product of two matrices, false for a matrix times a scalar
+	 * @param uses how many nodes use each node
+	 * @return true if <node> is that kind of product and can be folded into its user
+	 */
+	private boolean isProductOf(Node node, boolean ofMatrices, Map<Node,Integer> uses){
+		if (!isFoldable(node, uses)){
+			return false;
+		}
+		if (ofMatrices){
+			return node._first.isMatrix() && node._second.isMatrix() && !node._first._isScalar && !node._second._isScalar;
+		}
+		return (node._first._isScalar && node._second.isMatrix()) || (node._first.isMatrix() && node._second._isScalar);
+	}
+
+
+	/**
+	 * Sorts the operation nodes the answer depends on into levels
+	 */
+	private void schedule(){
+		Map<Node,Boolean> seen = new IdentityHashMap<>();
+		Deque<Node> toVisit = new ArrayDeque<>();
+		toVisit.push(_root);
+		while (!toVisit.isEmpty()){
+			Node node = toVisit.pop();
+			if (node._type == null || seen.put(node, true) != null){
+				continue;
+			}
+			while (_levels.size() < node._level){
+				_levels.add(new ArrayList<Node>());
+			}
+			_levels.get(node._level-1).add(node);
+			_numNodes++;
+			for (Node arg : node.getArgs()){
+				toVisit.push(arg);
+			}
+		}
+	}
+
+
+	/**
+	 * Computes every node once, level by level. The nodes of a level only depend on lower levels, so they are
+	 * computed at the same time
+	 *
+	 * @throws IllegalArgumentException if the equation can't be computed. This is the error that computing the
+	 * 		tree from left to right would have run into first
+	 */
+	void evaluate() throws IllegalArgumentException {
+		for (List<Node> level : _levels){
+			if (level.isEmpty()){
+				continue; // every node that was on it was folded into a multiply-add
+			}
+			if (level.size() == 1){
+				level.get(0).compute(_answerOnly);
+				continue;
+			}
+			LevelTask task = new LevelTask(level, 0, level.size(), _answerOnly);
+			if (ForkJoinTask.getPool() == POOL){
+				task.invoke();
+			}else{
+				POOL.invoke(task);
+			}
+		}
+
+		RuntimeException error = _root._error;
+		if (error != null){
+			throw error;
+		}
+	}
+
+
+	/**
+	 * Computes a range of the nodes of one level, splitting it in half until each task has one node
+	 */
+	private static class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<Node> _level;
+		private final int _start, _end;
+		private final boolean _answerOnly;
+
+		LevelTask(List<Node> level, int start, int end, boolean answerOnly){
+			_level = level;
+			_start = start;
+			_end = end;
+			_answerOnly = answerOnly;
+		}
+
+		@Override
+		protected void compute(){
+			if (_end - _start == 1){
+				_level.get(_start).compute(_answerOnly);
+				return;
+			}
+			int mid = (_start + _end) >>> 1;
+			invokeAll(new LevelTask(_level, _start, mid, _answerOnly), new LevelTask(_level, mid, _end, _answerOnly));
+		}
+	}
+
+
+	/**
+	 * Builds a ParseNode for each place a computation appears in the equation, holding the Solution of its
+	 * merged node. Arguments that are Countables have no ParseNode, as in Parser.compute
+	 *
+	 * @return the root of the ParseNode tree
+	 */
+	ParseNode toParseTree(){
+		Deque<Node> toVisit = new ArrayDeque<>();
+		Deque<Boolean> expanded = new ArrayDeque<>();
+		Deque<ParseNode> built = new ArrayDeque<>();
+		toVisit.push(_root);
+		expanded.push(false);
+		while (!toVisit.isEmpty()){
+			Node node = toVisit.pop();
+			List<Node> args = node.getArgs();
+			if (!expanded.pop()){
+				toVisit.push(node);
+				expanded.push(true);
+				for (int i = args.size()-1; i >= 0; i--){
+					if (args.get(i)._type != null){
+						toVisit.push(args.get(i));
+						expanded.push(false);
+					}
+				}
+				continue;
+			}
+			// at most two arguments are computations (see fuse). A lone one goes on the right if it is the
+			// last argument, as for unary operations, and on the left otherwise
+			List<ParseNode> children = new ArrayList<>();
+			Node lastComputed = null;
+			for (int i = args.size()-1; i >= 0; i--){
+				if (args.get(i)._type != null){
+					children.add(0, built.pop());
+					if (lastComputed == null){
+						lastComputed = args.get(i);
+					}
+				}
+			}
+			ParseNode first = null, second = null;
+			if (children.size() == 2){
+				first = children.get(0);
+				second = children.get(1);
+			}else if (children.size() == 1 && lastComputed == args.get(args.size()-1)){
+				second = children.get(0);
+			}else if (children.size() == 1){
+				first = children.get(0);
+			}
+			built.push(new ParseNode(node._solution, first, second));
+		}
+		return built.pop();
+	}
+
+
+	/**
+	 * @return the number of Operations that are actually computed, after merging and regrouping
+	 */
+	int getNumComputations(){
+		return _numNodes;
+	}
+}
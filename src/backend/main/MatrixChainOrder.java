@@ -0,0 +1,99 @@
+package backend.main;
+
+/**
+ *  Finds the cheapest order to multiply a chain of matrices in, with the classic dynamic program over their
+ *  dimensions. Multiplying a p by q matrix with a q by r matrix takes pqr scalar multiplications, and the order
+ *  the products are taken in can change the total by orders of magnitude (ex: 1000x2 * 2x1000 * 1000x5 costs
+ *  7,000,000 multiplications left to right but 20,000 right to left)
+ *
+ * @author baebi
+ */
+class MatrixChainOrder {
+	private final int[] _dims;
+
+	// _cost[i][j] is the fewest multiplications to multiply factors i through j, and _split[i][j] is the k such
+	// that the last product is (i..k)(k+1..j)
+	private final long[][] _cost;
+	private final int[][] _split;
+
+
+	/**
+	 * Finds the best order. Takes O(n^3) time for n factors
+	 *
+	 * @param dims the dimensions of the chain: factor i is dims[i] by dims[i+1], so n factors have n+1 dims
+	 */
+	MatrixChainOrder(int[] dims){
+		int n = dims.length - 1;
+		_dims = dims;
+		_cost = new long[n][n];
+		_split = new int[n][n];
+		for (int length = 2; length <= n; length++){
+			for (int i = 0; i + length - 1 < n; i++){
+				int j = i + length - 1;
+				_cost[i][j] = Long.MAX_VALUE;
+				for (int k = i; k < j; k++){
+					long cost = _cost[i][k] + _cost[k+1][j] + (long) dims[i]*dims[k+1]*dims[j+1];
+					if (cost < _cost[i][j]){
+						_cost[i][j] = cost;
+						_split[i][j] = k;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @return the number of factors in the chain
+	 */
+	int getNumFactors(){
+		return _dims.length - 1;
+	}
+
+
+	/**
+	 * @return the fewest scalar multiplications the whole chain can be multiplied with
+	 */
+	long getCost(){
+		return _cost[0][getNumFactors()-1];
+	}
+
+
+	/**
+	 * @param i the first factor of a sub-chain
+	 * @param j the last factor of the sub-chain, after i
+	 * @return the last factor of the first half of the best last product of factors i through j
+	 */
+	int getSplit(int i, int j){
+		return _split[i][j];
+	}
+
+
+	/**
+	 * Writes the best order with brackets (ex: (M_{1}(M_{2}M_{3})))
+	 *
+	 * @return the parenthesization in LaTeX, with the factors numbered from 1
+	 */
+	String toLatex(){
+		StringBuilder b = new StringBuilder();
+		appendLatex(b, 0, getNumFactors()-1);
+		return b.toString();
+	}
+
+
+	/**
+	 * @param b the builder to write to
+	 * @param i the first factor of the sub-chain to write
+	 * @param j the last factor of the sub-chain to write
+	 */
+	private void appendLatex(StringBuilder b, int i, int j){
+		if (i == j){
+			b.append("M_{").append(i+1).append("}");
+			return;
+		}
+		b.append("(");
+		appendLatex(b, i, _split[i][j]);
+		appendLatex(b, _split[i][j]+1, j);
+		b.append(")");
+	}
+}
@@ -0,0 +1,35 @@
+package backend.main;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the matrix-chain multiplication order
+ *
+ * @author baebi
+ */
+public class MatrixChainOrderTest {
+
+	@Test // the textbook chain of six matrices
+	public void sixMatricesTest(){
+		MatrixChainOrder order = new MatrixChainOrder(new int[]{30,35,15,5,10,20,25});
+		assertTrue(order.getCost() == 15125);
+		assertTrue(order.toLatex().equals("((M_{1}(M_{2}M_{3}))((M_{4}M_{5})M_{6}))"));
+	}
+
+	@Test // a thin matrix in the middle should be multiplied first
+	public void mixedShapesTest(){
+		MatrixChainOrder order = new MatrixChainOrder(new int[]{1000,2,1000,5});
+		assertTrue(order.getCost() == 20000);
+		assertTrue(order.getSplit(0,2) == 0);
+		assertTrue(order.toLatex().equals("(M_{1}(M_{2}M_{3}))"));
+	}
+
+	@Test // two factors have only one order
+	public void twoMatricesTest(){
+		MatrixChainOrder order = new MatrixChainOrder(new int[]{3,4,5});
+		assertTrue(order.getCost() == 60);
+		assertTrue(order.toLatex().equals("(M_{1}M_{2})"));
+	}
+}
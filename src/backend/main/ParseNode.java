@@ -6,7 +6,9 @@ import java.util.List;
 import matrixDraw.MatrixDraw;
 import backend.blocks.Countable;
 import backend.blocks.Matrix;
+import backend.blocks.Op;
 import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Solution;
 
 /** A tree of ParseNodes is returned to the front-end after a computation. This allows the front-end to understand the order 
@@ -107,8 +109,13 @@ public class ParseNode {
 		
 		String toSetArg1 = getToSet(args.get(0));
 		
-		if (args.size() == 2){ // was it a unary or binary operator?
-			String toSetArg2 = getToSet(args.get(1));
+		// a fused computation (see MM_MultiplyAdd): every input but the last is a factor of the product
+		for (int i = 1; i < args.size() - 1; i++){
+			toSetArg1 += Op.MULTIPLY.getString() + getToSet(args.get(i));
+		}
+		
+		if (args.size() >= 2){ // was it a unary or binary operator?
+			String toSetArg2 = getToSet(args.get(args.size()-1));
 			toReplace.setLeft(new ToComputeTreeNode(null,null,"{("+toSetArg1));
 			toReplace.setRight(new ToComputeTreeNode(null,null,toSetArg2+")}"));
 			_toComputeTree = copyTree(root);
@@ -133,8 +140,12 @@ public class ParseNode {
 	 * @return the latex string for the <c>
 	 */
 	private String getToSet(Countable c){
-		if (c instanceof Matrix){
+		if (c instanceof Matrix && ((Matrix) c).isMapped()){
+			return c.toLatex(); // too large to draw
+		}else if (c instanceof Matrix){
 			return  MatrixDraw.getCorrectLatex(_solution.getDisplayType(),(Matrix) c);
+		}else if (c instanceof SparseMatrix){
+			return c.toLatex();
 		}else{
 			return ((Scalar) c).getDisplayValue();
 		}
@@ -1,7 +1,9 @@
 
 package backend.main;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 import matrixDraw.MatrixDraw;
@@ -12,12 +14,16 @@ import backend.blocks.Numerical;
 import backend.blocks.Op;
 import backend.blocks.Operation;
 import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Solution;
+import backend.computations.infrastructure.SolutionCache;
 import backend.computations.operations.Determinant;
 import backend.computations.operations.MM_Multiply;
 import backend.computations.operations.MM_PlusMinus;
+import backend.computations.operations.MM_Solve;
 import backend.computations.operations.MS_Multiply;
 import backend.computations.operations.M_Columnspace;
+import backend.computations.operations.M_Eigen;
 import backend.computations.operations.M_Inverse;
 import backend.computations.operations.M_Power;
 import backend.computations.operations.M_Rank;
@@ -26,6 +32,9 @@ import backend.computations.operations.M_Transpose;
 import backend.computations.operations.SS_MultiplyDivide;
 import backend.computations.operations.SS_PlusMinus;
 import backend.computations.operations.S_Power;
+import backend.computations.operations.SVD;
+import backend.computations.operations.TruncatedSVD;
+import backend.computations.operations.SparseOperation;
 
 /** 
  *  Processes a sequence of Numericals representing a computation and generates a tree structure of solutions
@@ -60,32 +69,73 @@ public class Parser {
 	 * 
 	 */
 	public static ParseNode parse(List<Numerical> input) throws IllegalArgumentException {
+		return parse(input,false);
+	}
+	
+	
+	/** 
+	 *  Returns a tree of ParseNodes that each contain Solution objects, as in parse(input). If answerOnly is true
+	 *  no Computable generates steps: each Solution only holds its answer and inputs, its latex is empty and
+	 *  no equation-state strings are drawn. This is much faster for large matrices when only the result is needed
+	 * 
+	 * @param input A list of numericals representing a sequence of computations (ex: MatrixA * ScalarB + .... )
+	 * @param answerOnly true if only the answers are wanted, without steps
+	 * @return A ParseNode root of a ParseNode tree
+	 */
+	public static ParseNode parse(List<Numerical> input, boolean answerOnly) throws IllegalArgumentException {
 		checkValidInput(input);
 		if (input.size() == 1 || removeOuterBrackets(input).size() == 1){
 			if (input.size() ==1){
-				return handleSingleCountable(input);
+				return handleSingleCountable(input,answerOnly);
 			}else{
-				return handleSingleCountable(removeOuterBrackets(input));
+				return handleSingleCountable(removeOuterBrackets(input),answerOnly);
 			}
 		}else{
 			Numerical operationTree = createSortedTree(input); 
-			ParseNode parseTree =  compute(operationTree);
-			ToComputeTreeNode toComputeRoot = new ToComputeTreeNode(null,null,null);
-			createToComputeStrings(parseTree,toComputeRoot,toComputeRoot);
+			if (operationTree instanceof Countable){ // only redundant brackets around it, ex: ((A))
+				List<Numerical> single = new ArrayList<>();
+				single.add(operationTree);
+				return handleSingleCountable(single,answerOnly);
+			}
+			ParseNode parseTree =  compute(operationTree,answerOnly);
+			if (!answerOnly){
+				ToComputeTreeNode toComputeRoot = new ToComputeTreeNode(null,null,null);
+				createToComputeStrings(parseTree,toComputeRoot,toComputeRoot);
+			}
 			return parseTree;
 		}
 	}
 	
+	/**
+	 *  Validates an equation and compiles it into a plan that can be executed many times with different
+	 *  Countables, without validating, parsing or making steps again (see EvaluationPlan)
+	 * 
+	 * @param input A list of numericals representing a sequence of computations (ex: MatrixA * ScalarB + .... )
+	 * @return the compiled plan. Its bindings are the Countables of <input>, from left to right
+	 * @throws IllegalArgumentException if the input is not a valid equation
+	 */
+	public static EvaluationPlan compile(List<Numerical> input) throws IllegalArgumentException {
+		checkValidInput(input);
+		return new EvaluationPlan(createSortedTree(input));
+	}
+	
+	
 	/**
 	 * If there is just a single Countable in the input, there is no need to parse anything
 	 * 
 	 * @param input The list of length one containing the Countable
+	 * @param answerOnly true if the Countable should not be drawn
 	 * @return A ParseNode describing how to display the Countable
 	 */
-	private static ParseNode handleSingleCountable(List<Numerical> input) {
+	private static ParseNode handleSingleCountable(List<Numerical> input, boolean answerOnly) {
 		List<String> l = new ArrayList<>();
+		if (answerOnly){
+			return new ParseNode(new Solution(null,null,(Countable) input.get(0),l),null,null);
+		}
 		if (input.get(0) instanceof Scalar){
 			l.add("\\hspace{5mm} \\mathrm{Scalar \\ Value: \\ }"+((Scalar) input.get(0)).getDisplayValue()+"\\vspace{10mm}");
+		}else if (input.get(0) instanceof SparseMatrix || ((Matrix) input.get(0)).isMapped()){ // drawn as a summary
+			l.add("\\hspace{5mm} \\mathrm{Matrix:\\vspace{15mm} \\ }"+input.get(0).toLatex());
 		}else{
 			l.add("\\hspace{5mm} \\mathrm{Matrix:\\vspace{15mm} \\ }"+MatrixDraw.getCorrectLatex(((Matrix) input.get(0)).getDisplayType(),(Matrix)input.get(0)));
 		}
@@ -128,71 +178,26 @@ public class Parser {
 	 * @return a tree of ParseNodes containing solutions to all parts of the whole equation. The root contains the overall answer
 	 */
 	protected static ParseNode compute(Numerical root) throws IllegalArgumentException{
-
+		return compute(root,false);
+	}
+	
+	
+	/** 
+	 *  Computes a sequence of computations organized into a tree structure of ParseNodes, as in compute(root).
+	 *  Identical subtrees over identical operands (ex: the two det A in det A * det A) are merged first and
+	 *  only computed once; every place they appear still gets its own ParseNode, sharing the one Solution. 
+	 *  Scaled products and products with a matrix added (ex: s * A * B + C) get a single ParseNode computed 
+	 *  by one multiply-add
+	 * 
+	 * @param root the first operation to perform in the equation
+	 * @param answerOnly true if the Solutions should only hold answers, without steps
+	 * @return a tree of ParseNodes containing solutions to all parts of the whole equation. The root contains the overall answer
+	 */
+	protected static ParseNode compute(Numerical root, boolean answerOnly) throws IllegalArgumentException{
 		if (root instanceof Operation){
-			Operation rootAsOp = (Operation) root;
-			Op op = rootAsOp.getType();
-			switch (op){
-				// addition
-				case PLUS: {
-					return computePlusMinus(rootAsOp,true); // recursive call to compute() in here
-				}
-				
-				// subtraction
-				case MINUS: {
-					return computePlusMinus(rootAsOp,false); // recursive call to compute() in here
-				}
-				
-				// scalar multiplication
-				case MULTIPLY: {
-					return computeMultiply(rootAsOp); // recursive call to compute() in here		
-				}
-				
-				// scalar division
-				case SS_DIVIDE: {
-					return computeScalarDivide(rootAsOp); // recursive call to compute() in here
-				}
-				
-				// power
-				case POWER: {
-					return computePower(rootAsOp); // recursive call to compute() in here
-				}
-				
-				// determinant
-				case DETERMINANT: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				// row-reduction
-				case ROW_REDUCE: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				// matrix rank
-				case M_RANK: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				// matrix transpose
-				case M_TRANSPOSE: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				// matrix inverse
-				case M_INVERSE: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				case M_COLUMNSPACE: { // recursive call to compute() in here
-					return computeUnaryMatrixOp(rootAsOp,op);
-				}
-				
-				// unrecognized operation
-				default: {
-					System.err.println("ERROR: Unrecognized operation"); // Should be unreachable code
-					return null;
-				}
-			}
+			ExpressionDag dag = new ExpressionDag((Operation) root, answerOnly);
+			dag.evaluate();
+			return dag.toParseTree();
 		}else if(root instanceof Countable){
 			return null;
 		}else{
@@ -201,25 +206,6 @@ public class Parser {
 			return null;
 		}
 	}
-
-
-	/** 
-	 * Gets the Numerical that served as the argument to an Operation
-	 * 
-	 * @param arg the result of a call to compute with <childOfOp> as an argument
-	 * @param childOfOp the result of call to get[...]Arg() from an Operation 
-	 * @return the Numerical that served as an argument to an Operation
-	 */
-	private static Numerical getNextArg(ParseNode arg,Numerical childOfOp){
-		Numerical toReturn;
-		if (arg ==null){
-			toReturn = childOfOp;
-		}else{
-			Solution arg1Sol = arg.getSolution();
-			toReturn = arg1Sol.getAnswer();
-		}
-		return toReturn;
-	}
 	
 	
 	/** 
@@ -228,85 +214,88 @@ public class Parser {
 	 *  must be computed before operators higher in the tree. Note that the leaves, which
 	 *  will inevitably be Countables, are implicit as they are
 	 *  included in the Operations with no left or right children.
+	 *  
+	 *  The tree is built in one pass over the input with an operand stack and an operator stack (shunting-yard),
+	 *  so it takes linear time and no recursion however long or deeply bracketed the input is. Binary operations
+	 *  of lower rank are preferred, and ties go left to right (ex: A + B + C -> A + B comes first). Unary
+	 *  operators apply to the single Countable or bracketed group right after them, before any binary operation
 	 * 
 	 * @param input the list of Numericals making up the input equation
-	 * @return  Numerical that is the root of the parsed tree of Operations
+	 * @return  Numerical that is the root of the parsed tree of Operations, or null if input is empty
 	 */
 	protected static Numerical createSortedTree(List<Numerical> input) {
-		input = removeOuterBrackets(input);
-		
 		if (input.size() == 0){
 			return null;
-		}else if(input.size() == 1){
-			return input.get(0); //This must be a Countable
 		}
 		
-		int prefOpIndex = findLeastPreferentialOp(input);
-
-		// This code should be unreachable
-		if (prefOpIndex == -1){
-			System.err.println("ERROR: createSortedTree passed invalid input");	
+		Deque<Numerical> operands = new ArrayDeque<>();
+		Deque<Numerical> operators = new ArrayDeque<>(); // Operations and open Brackets
+		for (Numerical numr : input){
+			if (numr instanceof Countable){
+				operands.push(numr);
+				applyUnaryOps(operands,operators);
+			}else if (numr instanceof Bracket){
+				if (((Bracket) numr).isOpen()){
+					operators.push(numr);
+				}else{
+					while (!(operators.peek() instanceof Bracket)){
+						applyBinaryOp(operands,operators);
+					}
+					operators.pop(); // the matching open bracket
+					applyUnaryOps(operands,operators);
+				}
+			}else{
+				Operation op = (Operation) numr;
+				if (!op.isUnary()){
+					// everything on the stack that is at least as preferential has to be done first
+					while (operators.peek() instanceof Operation && ((Operation) operators.peek()).getRank() <= op.getRank()){
+						applyBinaryOp(operands,operators);
+					}
+				}
+				operators.push(op);
+			}
+		}
+		while (!operators.isEmpty()){
+			applyBinaryOp(operands,operators);
 		}
 		
-		List<Numerical> prev = new ArrayList<>(input.subList(0, prefOpIndex));
-		List<Numerical> next = new ArrayList<>(input.subList(prefOpIndex+1, input.size()));
-		Operation root = (Operation) input.get(prefOpIndex);
-		root.setFirstArg(createSortedTree(prev));
-		root.setSecondArg(createSortedTree(next));
-		return root;
+		if (operands.size() != 1){
+			throw new IllegalArgumentException("ERROR: Each operand must be joined to the next by a binary operation");
+		}
+		return operands.pop();
 	}
 	
 	
-	/** 
-	 *  Returns the index of the operation that must be performed last among the operations present
-	 *  in the computation. If there is no preference due to Operator rank, preference is 
-	 *  set by list order. (ex: A + B + C -> B + C comes last). EXPECTS A SEQUENCE OF NUMERICALS
-	 *  THAT IS NOT IN ITS ENTIRETY SURROUNDED BY A PAIR OF PARENS
-	 *  
-	 *  ALSO NOTE: this function assumes unary operators to be more preferential to binary operators,
-	 *  and equally preferential to each other
+	/**
+	 * Once an operand is complete, gives it to the unary operators waiting right before it, innermost first
 	 * 
-	 * @param input the list of numericals making up the input equation
-	 * @return the index in the list of the operation that should be computed last
+	 * @param operands the operand stack of createSortedTree
+	 * @param operators the operator stack of createSortedTree
 	 */
-	protected static int findLeastPreferentialOp(List<Numerical> input) {
-		Numerical currentNumr;
-		int maxRank = -1;
-		int currRank;
-		int toReturn = -1; // index to return
-		int openBrackets = 0;
-		boolean unaryHasMaxRank = false;
-		for (int i = 0; i < input.size(); i++){
-			currentNumr = input.get(i);
-			if (currentNumr instanceof Bracket){
-				if(((Bracket) currentNumr).isOpen()){
-					openBrackets++;
-				}else{
-					openBrackets--;
-				}
-			}else{
-				if (currentNumr instanceof Operation && openBrackets == 0) {
-					currRank = ((Operation) currentNumr).getRank();
-					if (currRank >= maxRank){
-						if (((Operation) currentNumr).isUnary()){
-							
-							// basically, we are saying that if only unary ops are found, the 1st one found is least preferential
-							if (!unaryHasMaxRank){ 
-								maxRank = currRank;
-								toReturn = i;
-							}
-							
-							unaryHasMaxRank = true;
-						}else{
-							unaryHasMaxRank = false;
-							maxRank = currRank;
-							toReturn = i;
-						}
-					}
-				} 
-			}
+	private static void applyUnaryOps(Deque<Numerical> operands, Deque<Numerical> operators){
+		while (operators.peek() instanceof Operation && ((Operation) operators.peek()).isUnary()){
+			Operation op = (Operation) operators.pop();
+			op.setFirstArg(null);
+			op.setSecondArg(operands.pop());
+			operands.push(op);
+		}
+	}
+	
+	
+	/**
+	 * Pops the top binary operator and gives it the top two operands
+	 * 
+	 * @param operands the operand stack of createSortedTree
+	 * @param operators the operator stack of createSortedTree
+	 */
+	private static void applyBinaryOp(Deque<Numerical> operands, Deque<Numerical> operators){
+		Operation op = (Operation) operators.pop();
+		if (operands.size() < 2){
+			throw new IllegalArgumentException("ERROR: Binary operation requires two operands");
 		}
-		return toReturn;
+		op.setSecondArg(operands.pop());
+		op.setFirstArg(operands.pop());
+		operands.push(op);
 	}
 	
 	
@@ -449,214 +438,228 @@ public class Parser {
 	//===================================
 	
 	/**
-	 * Computes a ParseNode containing the solution and arguments to a unary matrix operation
+	 * Checks that an Operation has the arguments its type needs
 	 * 
-	 * @param op the operation to compute
-	 * @param type the type of operation to compute
-	 * @return the ParseNode containing the solution and arguments to <op>
+	 * @param op the Operation to check
+	 * @throws IllegalArgumentException if an argument is missing, or a unary Operation has two
 	 */
-	private static ParseNode computeUnaryMatrixOp(Operation op, Op type){
-		if ((op.getSecondArg() == null) || !(op.getFirstArg() == null)){
-			throw new IllegalArgumentException("ERROR: " +  type.getName() + " requires one argument");
-		}
-		
-		Numerical second = op.getSecondArg();           // this could return an Operation or a Countable
-		ParseNode secondArg = compute(second);          // this will return null if passed a Countable
-		Numerical arg1 = getNextArg(secondArg,second);  // b/c we need to actually compute, gets the Countable arguments
-		
-		if (!(arg1 instanceof Matrix)){
-			System.out.println(arg1 instanceof Scalar);
-			throw new IllegalArgumentException("ERROR: " + type.getName() + " operator requires matrix type argument"); // should be unreachable code
+	static void checkArgs(Operation op) throws IllegalArgumentException {
+		Op type = op.getType();
+		if (type.isUnary()){
+			if ((op.getSecondArg() == null) || !(op.getFirstArg() == null)){
+				throw new IllegalArgumentException("ERROR: " +  type.getName() + " requires one argument");
+			}
+			return;
 		}
-		
-		try {
-			switch(type){
-				case M_RANK:{
-					M_Rank rank = new M_Rank((Matrix) arg1);
-					Solution answer = rank.getSolution();
-					return new ParseNode(answer,null, secondArg);
-				}
-				case DETERMINANT:{
-					Determinant det = new Determinant((Matrix) arg1);
-					Solution answer = det.getSolution();
-					return new ParseNode(answer,null, secondArg);
+		if (op.getFirstArg() == null || op.getSecondArg() == null){
+			switch (type){
+				case PLUS:
+				case MINUS:{
+					throw new IllegalArgumentException("ERROR: Addition requires two arguments"); // should be unreachable code
 				}
-				case ROW_REDUCE:{
-					M_RowReduce rr = new M_RowReduce((Matrix) arg1);
-					Solution answer = rr.getSolution();
-					return new ParseNode(answer,null, secondArg);
+				case MULTIPLY:{
+					throw new IllegalArgumentException("ERROR: Multiplication requires two arguments"); // should be unreachable code
 				}
-				case M_TRANSPOSE:{
-					M_Transpose t = new M_Transpose((Matrix) arg1);
-					Solution answer = t.getSolution();
-					return new ParseNode(answer,null,secondArg);
-				}
-				case M_COLUMNSPACE:{
-					M_Columnspace t = new M_Columnspace((Matrix) arg1);
-					Solution answer = t.getSolution();
-					return new ParseNode(answer,null,secondArg);
-				}
-				case M_INVERSE:{
-					M_Inverse t = new M_Inverse((Matrix) arg1);
-					Solution answer = t.getSolution();
-					return new ParseNode(answer,null,secondArg);
+				case SS_DIVIDE:{
+					throw new IllegalArgumentException("ERROR: Division requires two arguments"); // should be unreachable code
 				}
 				default:{
-					System.err.println("ERROR: Parser.java : computeUnaryMatrix -- unrecognized op"); // should be unreachable code
-					return null;
+					throw new IllegalArgumentException("ERROR: " + type.getName() + " requires two arguments"); // should be unreachable code
 				}
 			}
-		} catch (Exception e) {
-			throw new IllegalArgumentException("ERROR: "+ e.getMessage());
 		}
 	}
 	
 	
 	/**
-	 * Computes a ParseNode containing the Solution and arguments to the Division operation
+	 * Computes one operation on arguments that have already been computed. Solutions come from the shared
+	 * SolutionCache when the same operation was already done on equal arguments; otherwise the Computable that
+	 * fits the kinds of the arguments makes them. SparseMatrix arguments go to the sparse kernels when the
+	 * operation has one (see SparseOperation), and are converted to dense matrices when it doesn't
 	 * 
-	 * @param op the Operation to compute
-	 * @return the ParseNode containing the solution and arguments to <op>
+	 * @param type the operation
+	 * @param first the first argument, or null for unary operations
+	 * @param second the second argument, or the only argument of unary operations
+	 * @param answerOnly true if the Solution should only hold the answer, without steps
+	 * @return the Solution of <type> on the arguments
+	 * @throws IllegalArgumentException if the operation can't be done on these arguments
 	 */
-	private static ParseNode computeScalarDivide(Operation op) {
-		if ((op.getFirstArg() == null || (op.getSecondArg() == null))) {
-			throw new IllegalArgumentException("ERROR: Division requires two arguments"); // should be unreachable code
+	static Solution solve(final Op type, Countable first, Countable second, final boolean answerOnly) throws IllegalArgumentException {
+		switch (type){
+			case PLUS:
+			case MINUS:{
+				if ((first instanceof Scalar && isMatrix(second)) || (second instanceof Scalar && isMatrix(first))){
+					if (type == Op.PLUS){
+						throw new IllegalArgumentException("ERROR: Cannot add a matrix and a scalar");
+					}else{
+						throw new IllegalArgumentException("ERROR: Cannot subtract a matrix and a scalar");
+					}
+				}
+				break;
+			}
+			case SS_DIVIDE:{
+				if (!(first instanceof Scalar) || !(second instanceof Scalar)){
+					throw new IllegalArgumentException("ERROR: Divide arguments must be scalars"); // should be unreachable code
+				}
+				break;
+			}
+			case POWER:{
+				if (isMatrix(second)){
+					throw new IllegalArgumentException("ERROR: Matrices cannot be used as exponents");
+				}
+				break;
+			}
+			case SOLVE:{
+				if (!isMatrix(first) || !isMatrix(second)){
+					throw new IllegalArgumentException("ERROR: A linear system takes a matrix and then a matrix of right-hand sides");
+				}
+				break;
+			}
+			case TRUNCATED_SVD:{
+				if (!isMatrix(first) || isMatrix(second)){
+					throw new IllegalArgumentException("ERROR: A truncated SVD takes a matrix and then a scalar rank");
+				}
+				break;
+			}
+			default:{
+				if (type.isUnary() && !isMatrix(second)){
+					throw new IllegalArgumentException("ERROR: " + type.getName() + " operator requires matrix type argument"); // should be unreachable code
+				}
+			}
 		}
-	
-		Numerical first = op.getFirstArg();           // this could return an Operation or a Countable
-		Numerical second = op.getSecondArg();  
-		
-		ParseNode firstArg = compute(first);          // this will return null if passed a Countable
-		ParseNode secondArg= compute(second);
 		
-		Numerical arg1 = getNextArg(firstArg,first);  // b/c we need to actually compute, gets the Countable arguments
-		Numerical arg2 = getNextArg(secondArg,second);
+		final boolean isSparse = SparseOperation.handles(type, first, second);
+		final Countable arg1 = isSparse ? first : toDense(first);
+		// eigenvalues of sparse matrices are found from products with vectors, without storing them densely
+		final Countable arg2 = (isSparse || type == Op.M_EIGEN) ? second : toDense(second);
+		SolutionCache.Loader<IllegalArgumentException> loader = new SolutionCache.Loader<IllegalArgumentException>(){
+			@Override
+			public Solution load(){
+				if (isSparse){
+					return new SparseOperation(type, arg1, arg2, answerOnly).getSolution();
+				}
+				switch(type){
+					case PLUS:
+					case MINUS:{
+						if (arg1 instanceof Scalar){
+							return new SS_PlusMinus((Scalar) arg1, (Scalar) arg2, type == Op.PLUS, answerOnly).getSolution();
+						}
+						return new MM_PlusMinus((Matrix) arg1, (Matrix) arg2, type == Op.PLUS, answerOnly).getSolution();
+					}
+					case MULTIPLY:{
+						if (arg1 instanceof Scalar && arg2 instanceof Scalar){
+							return new SS_MultiplyDivide((Scalar) arg1, (Scalar) arg2, true, answerOnly).getSolution();
+						}else if (arg1 instanceof Matrix && arg2 instanceof Matrix){
+							return new MM_Multiply((Matrix) arg1, (Matrix) arg2, answerOnly).getSolution();
+						}else if (arg1 instanceof Matrix){
+							return new MS_Multiply((Matrix) arg1, (Scalar) arg2, answerOnly).getSolution();
+						}
+						return new MS_Multiply((Scalar) arg1, (Matrix) arg2, answerOnly).getSolution();
+					}
+					case SS_DIVIDE:{
+						return new SS_MultiplyDivide((Scalar) arg1, (Scalar) arg2, false, answerOnly).getSolution();
+					}
+					case POWER:{
+						if (arg1 instanceof Scalar){
+							return new S_Power((Scalar) arg1, (Scalar) arg2, answerOnly).getSolution();
+						}
+						return new M_Power((Matrix) arg1, (Scalar) arg2, answerOnly).getSolution();
+					}
+					case SOLVE:{
+						return new MM_Solve((Matrix) arg1, (Matrix) arg2, answerOnly).getSolution();
+					}
+					case TRUNCATED_SVD:{
+						return new TruncatedSVD((Matrix) arg1, (Scalar) arg2, answerOnly).getSolution();
+					}
+					case M_EIGEN:{
+						if (arg2 instanceof SparseMatrix){
+							return new M_Eigen((SparseMatrix) arg2, answerOnly).getSolution();
+						}
+						return solveUnaryMatrixOp(type, (Matrix) arg2, answerOnly);
+					}
+					default:{
+						return solveUnaryMatrixOp(type, (Matrix) arg2, answerOnly);
+					}
+				}
+			}
+		};
 		
-		if (!(arg1 instanceof Scalar) || !(arg2 instanceof Scalar)){
-			throw new IllegalArgumentException("ERROR: Divide arguments must be scalars"); // should be unreachable code
+		Solution answer;
+		if (type.isUnary()){
+			answer = SolutionCache.getShared().get(type,answerOnly,loader,arg2);
+		}else{
+			answer = SolutionCache.getShared().get(type,answerOnly,loader,arg1,arg2);
 		}
-
-		SS_MultiplyDivide multDiv = new SS_MultiplyDivide((Scalar) arg1, (Scalar) arg2,false); // calculate solution
-		Solution answer = multDiv.getSolution();					// get solution
-		return new ParseNode(answer,firstArg,secondArg);
+		if (answer == null){
+			throw new IllegalArgumentException("ERROR: Unrecognized operation"); // should be unreachable code
+		}
+		return answer;
 	}
 	
 	
 	/**
-	 * Computes a ParseNode containing the Solution and arguments to the Multiply operation
-	 * 
-	 * @param op the Operation to compute
-	 * @return A ParseNode containing the Solution and arguments to <op>
+	 * @param countable a Countable, or null
+	 * @return true if <countable> is a matrix, stored densely or sparsely
 	 */
-	private static ParseNode computeMultiply(Operation op){
-		if ((op.getFirstArg() == null || (op.getSecondArg() == null))) {
-			throw new IllegalArgumentException("ERROR: Multiplication requires two arguments"); // should be unreachable code
-		}
-	
-		Numerical first = op.getFirstArg();           // this could return an Operation or a Countable
-		Numerical second = op.getSecondArg();  
-		
-		ParseNode firstArg = compute(first);          // this will return null if passed a Countable
-		ParseNode secondArg= compute(second);
-		
-		Numerical arg1 = getNextArg(firstArg,first);  // b/c we need to actually compute, gets the Countable arguments
-		Numerical arg2 = getNextArg(secondArg,second);
-		
-		if (arg1 instanceof Scalar && arg2 instanceof Scalar){
-			SS_MultiplyDivide multDiv = new SS_MultiplyDivide((Scalar) arg1, (Scalar) arg2,true); // calculate solution
-			Solution answer = multDiv.getSolution();					// get solution
-			return new ParseNode(answer,firstArg,secondArg);
-		}else if(arg1 instanceof Matrix && arg2 instanceof Matrix){
-			MM_Multiply mult = new MM_Multiply((Matrix) arg1, (Matrix) arg2); // calculate solution
-			Solution answer = mult.getSolution();	
-			return new ParseNode(answer,firstArg,secondArg);
-		}else{
-			Solution answer;
-			if (arg1 instanceof Matrix){
-				MS_Multiply mult = new MS_Multiply((Matrix) arg1, (Scalar) arg2); // calculate solution
-				answer = mult.getSolution();
-			}else{
-				MS_Multiply mult = new MS_Multiply((Scalar) arg1, (Matrix) arg2); // calculate solution
-				answer = mult.getSolution();
-			}
-			return new ParseNode(answer,firstArg,secondArg);
-		}
+	private static boolean isMatrix(Countable countable){
+		return countable instanceof Matrix || countable instanceof SparseMatrix;
 	}
 	
 	
 	/**
-	 * Computes a ParseNode containing the Solution and arguments to the Power operation
+	 * The dense fallback for operations without a sparse kernel
 	 * 
-	 * @param op the Operation to compute
-	 * @return A ParseNode containing the Solution and arguments to <op>
+	 * @param countable a Countable, or null
+	 * @return <countable> as a dense Matrix if it is a SparseMatrix, otherwise <countable> itself
+	 * @throws IllegalArgumentException if the matrix is too large to store densely
 	 */
-	private static ParseNode computePower(Operation op){
-		if ((op.getFirstArg() == null || (op.getSecondArg() == null))){
-			throw new IllegalArgumentException("ERROR: Power requires two arguments"); // should be unreachable code
-		}
-	
-		Numerical first = op.getFirstArg();           // this could return an Operation or a Countable
-		Numerical second = op.getSecondArg();  
-		
-		ParseNode firstArg = compute(first);          // this will return null if passed a Countable
-		ParseNode secondArg= compute(second);
-		
-		Numerical arg1 = getNextArg(firstArg,first);  // b/c we need to actually compute, gets the Countable arguments
-		Numerical arg2 = getNextArg(secondArg,second);
-		if (arg2 instanceof Matrix){
-			throw new IllegalArgumentException("ERROR: Matrices cannot be used as exponents");
-		}
-		
-		if (arg1 instanceof Scalar){
-			S_Power pow = new S_Power((Scalar) arg1, (Scalar) arg2);
-			Solution answer = pow.getSolution();
-			return new ParseNode(answer,firstArg,secondArg);
-		}else{
-			M_Power pow = new M_Power((Matrix) arg1, (Scalar) arg2); // calculate solution
-			Solution answer = pow.getSolution();
-			return new ParseNode(answer,firstArg,secondArg);
-		}
+	private static Countable toDense(Countable countable){
+		return countable instanceof SparseMatrix ? ((SparseMatrix) countable).toMatrix() : countable;
 	}
 	
 	
 	/**
-	 * Computes a ParseNode containing the Solution and arguments to the Plus or Minus operation
+	 * Computes the Solution to a unary matrix operation
 	 * 
-	 * @param op the Operation to compute
-	 * @param isPlus true iff this is a plus operation, false iff this is a minus operation
-	 * @return A ParseNode containing the Solution and arguments to <op>
+	 * @param type the type of operation to compute
+	 * @param matrix the argument
+	 * @param answerOnly true if the Solution should only hold the answer, without steps
+	 * @return the Solution of <type> on <matrix>, or null if <type> isn't a unary matrix operation
 	 */
-	private static ParseNode computePlusMinus(Operation op, boolean isPlus){
-		if ((op.getFirstArg() == null || (op.getSecondArg() == null))){
-			throw new IllegalArgumentException("ERROR: Addition requires two arguments"); // should be unreachable code
-		}
-	
-		Numerical first = op.getFirstArg();           // this could return an Operation or a Countable
-		Numerical second = op.getSecondArg();  
-		
-		ParseNode firstArg = compute(first);          // this will return null if passed a Countable
-		ParseNode secondArg= compute(second);
-		
-		Numerical arg1 = getNextArg(firstArg,first);  // b/c we need to actually compute, gets the Countable arguments
-		Numerical arg2 = getNextArg(secondArg,second);
-		
-		if ((arg1 instanceof Scalar && arg2 instanceof Matrix) || (arg2 instanceof Scalar && arg1 instanceof Matrix)){
-			if (isPlus){
-				throw new IllegalArgumentException("ERROR: Cannot add a matrix and a scalar");
-			}else{
-				throw new IllegalArgumentException("ERROR: Cannot subtract a matrix and a scalar");
+	private static Solution solveUnaryMatrixOp(Op type, Matrix matrix, boolean answerOnly){
+		try {
+			switch(type){
+				case M_RANK:{
+					return new M_Rank(matrix,answerOnly).getSolution();
+				}
+				case DETERMINANT:{
+					return new Determinant(matrix,answerOnly).getSolution();
+				}
+				case ROW_REDUCE:{
+					return new M_RowReduce(matrix,answerOnly).getSolution();
+				}
+				case M_TRANSPOSE:{
+					return new M_Transpose(matrix,answerOnly).getSolution();
+				}
+				case M_COLUMNSPACE:{
+					return new M_Columnspace(matrix,answerOnly).getSolution();
+				}
+				case M_INVERSE:{
+					return new M_Inverse(matrix,answerOnly).getSolution();
+				}
+				case SVD:{
+					return new SVD(matrix,answerOnly).getSolution();
+				}
+				case M_EIGEN:{
+					return M_Eigen.forOp(matrix,answerOnly).getSolution();
+				}
+				default:{
+					System.err.println("ERROR: Parser.java : computeUnaryMatrix -- unrecognized op"); // should be unreachable code
+					return null;
+				}
 			}
-		}
-		
-		Solution answer;
-		if (arg1 instanceof Scalar){
-			SS_PlusMinus plus = new SS_PlusMinus((Scalar) arg1, (Scalar) arg2,isPlus);
-			answer = plus.getSolution();
-			return new ParseNode(answer,firstArg,secondArg);
-		}else{
-			MM_PlusMinus plus = new MM_PlusMinus((Matrix) arg1, (Matrix) arg2,isPlus); // calculate solution
-			answer = plus.getSolution();					// get solution
-			return new ParseNode(answer,firstArg,secondArg);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("ERROR: "+ e.getMessage());
 		}
 	}
 
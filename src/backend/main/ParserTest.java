@@ -14,7 +14,10 @@ import backend.blocks.Matrix;
 import backend.blocks.Numerical;
 import backend.blocks.Op;
 import backend.blocks.Operation;
+import backend.blocks.Scalar;
+import backend.blocks.SparseMatrix;
 import backend.computations.infrastructure.Solution;
+import backend.computations.operations.MM_Multiply;
 
 public class ParserTest {
 	private Matrix matrixA = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,1.0},{1.0,1.0}});
@@ -183,7 +186,7 @@ public class ParserTest {
 	
 	
 	//==================================
-	// Test findLeastPreferentialOp
+	// Test which operation ends up at the root
 	//==================================
 	
 	@Test
@@ -194,7 +197,7 @@ public class ParserTest {
 		l.add(matrixA);
 		l.add(plus);
 		l.add(matrixA);
-		assertTrue(Parser.findLeastPreferentialOp(l)==1);
+		assertTrue(Parser.createSortedTree(l)==plus);
 	}
 	
 	@Test
@@ -207,7 +210,8 @@ public class ParserTest {
 		l.add(matrixA);
 		l.add(plus);
 		l.add(matrixA);
-		assertTrue(Parser.findLeastPreferentialOp(l)==3);
+		assertTrue(Parser.createSortedTree(l)==plus);
+		assertTrue(plus.getFirstArg()==times);
 	}
 	
 	@Test
@@ -222,20 +226,23 @@ public class ParserTest {
 		l.add(plus);
 		l.add(matrixA);
 		l.add(closeBracket);
-		assertTrue(Parser.findLeastPreferentialOp(l)==1);
+		assertTrue(Parser.createSortedTree(l)==times);
+		assertTrue(times.getSecondArg()==plus);
 	}
 	
 	@Test
 	// chooses first + over second +
 	// A + A + A
 	public void leftToRightTest(){
+		Operation plus2 = new Operation(Op.PLUS);
 		List<Numerical> l = new ArrayList<>();
 		l.add(matrixA);
 		l.add(plus);
 		l.add(matrixA);
-		l.add(plus);
+		l.add(plus2);
 		l.add(matrixA);
-		assertTrue(Parser.findLeastPreferentialOp(l)==3);
+		assertTrue(Parser.createSortedTree(l)==plus2);
+		assertTrue(plus2.getFirstArg()==plus);
 	}
 	
 	@Test
@@ -243,7 +250,65 @@ public class ParserTest {
 	public void noOpTest(){
 		List<Numerical> l = new ArrayList<>();
 		l.add(matrixA);
-		assertTrue(Parser.findLeastPreferentialOp(l)==-1);
+		assertTrue(Parser.createSortedTree(l)==matrixA);
+	}
+	
+	@Test
+	// generated expressions with thousands of tokens and deep nesting don't overflow the stack
+	// ((((A + A) + A) + A) ... ) * A + A + ... + A
+	public void longExpressionTest(){
+		int depth = 5000;
+		List<Numerical> l = new ArrayList<>();
+		for (int i = 0; i < depth; i++){
+			l.add(new Bracket(true));
+		}
+		l.add(matrixA);
+		for (int i = 0; i < depth; i++){
+			l.add(new Operation(Op.PLUS));
+			l.add(matrixA);
+			l.add(new Bracket(false));
+		}
+		Operation mult = new Operation(Op.MULTIPLY);
+		l.add(mult);
+		l.add(matrixA);
+		Operation last = null;
+		for (int i = 0; i < depth; i++){
+			last = new Operation(Op.PLUS);
+			l.add(last);
+			l.add(matrixA);
+		}
+		
+		Numerical root = Parser.createSortedTree(l);
+		assertTrue(root==last);
+		// walk down the left spine: depth pluses, the multiply, then depth bracketed pluses
+		Numerical node = root;
+		for (int i = 0; i < depth; i++){
+			assertTrue(((Operation) node).getType()==Op.PLUS);
+			assertTrue(((Operation) node).getSecondArg()==matrixA);
+			node = ((Operation) node).getFirstArg();
+		}
+		assertTrue(node==mult);
+		node = mult.getFirstArg();
+		for (int i = 0; i < depth; i++){
+			assertTrue(((Operation) node).getType()==Op.PLUS);
+			node = ((Operation) node).getFirstArg();
+		}
+		assertTrue(node==matrixA);
+	}
+	
+	@Test
+	// two operands with nothing joining them
+	// A det B
+	public void missingBinaryOpTest(){
+		List<Numerical> l = new ArrayList<>();
+		l.add(matrixA);
+		l.add(new Operation(Op.DETERMINANT));
+		l.add(matrixB);
+		try{
+			Parser.createSortedTree(l);
+			fail();
+		}catch(IllegalArgumentException e){
+		}
 	}
 	
 
@@ -735,4 +800,267 @@ public class ParserTest {
 		}
 	}
 	
+	@Test
+	// Test that answer-only parsing gives the same answers with no steps anywhere in the tree
+	//          *
+	//         / \
+	//        +   mc
+	//       / \ 
+	//      ma  mb
+	public void answerOnlyTest(){
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(openBracket);
+		comp.add(matrixA);
+		comp.add(plus);
+		comp.add(matrixB);
+		comp.add(closeBracket);
+		comp.add(times);
+		comp.add(matrixC);
+		ParseNode result = Parser.parse(comp,true);
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		assertTrue(answer.get(0,0)==12.0);
+		assertTrue(answer.get(1,1)==12.0);
+		assertTrue(result.getSolution().getLatex().isEmpty());
+		assertTrue(result.getLeft().getSolution().getLatex().isEmpty());
+		
+		result = Parser.parse(comp);
+		assertTrue(((Matrix) result.getSolution().getAnswer()).get(0,0)==12.0);
+		assertTrue(!result.getSolution().getLatex().isEmpty());
+	}
+	
+	@Test
+	// Test sibling subtrees that share an operand, which are computed at the same time. The shared matrix
+	// must not be changed by either of them
+	//          +
+	//        /   \
+	//       *     *
+	//      / \   / \
+	//     mw ma mw  mb
+	public void parallelSubtreesTest(){
+		Matrix whole = new Matrix(DisplayType.WHOLENUMBER, new Double[][]{{1.0,0.0},{0.0,1.0}});
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(whole);
+		comp.add(times);
+		comp.add(matrixA);
+		comp.add(plus);
+		comp.add(whole);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(matrixB);
+		ParseNode result = Parser.parse(comp);
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		assertTrue(answer.get(0,0)==3.0);
+		assertTrue(answer.get(1,0)==3.0);
+		assertTrue(result.getLeft() != null && result.getRight() != null);
+		assertTrue(whole.getDisplayType() == DisplayType.WHOLENUMBER);
+	}
+	
+	@Test
+	// Test that an error in a subtree computed on another thread still reaches the caller unchanged
+	public void parallelSubtreeErrorTest(){
+		Matrix tall = new Matrix(DisplayType.DECIMAL, new Double[][]{{1.0,2.0,3.0}});
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(tall);
+		comp.add(times);
+		comp.add(tall);
+		comp.add(plus);
+		comp.add(matrixA);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(matrixB);
+		try{
+			Parser.parse(comp);
+			fail();
+		}catch(IllegalArgumentException e){
+			assertTrue(!e.getMessage().startsWith("java.lang"));
+		}
+	}
+	
+	@Test
+	// Test that repeated subtrees are computed once but still appear in the tree at each place
+	// det A * det A * inv A
+	public void commonSubexpressionTest(){
+		Matrix m = new Matrix(DisplayType.DECIMAL, new Double[][]{{2.0,0.0},{0.0,4.0}});
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(new Operation(Op.DETERMINANT));
+		comp.add(m);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(new Operation(Op.DETERMINANT));
+		comp.add(new Matrix(DisplayType.DECIMAL, new Double[][]{{2.0,0.0},{0.0,4.0}})); // same content, other object
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(new Operation(Op.M_INVERSE));
+		comp.add(m);
+		
+		Numerical tree = Parser.createSortedTree(new ArrayList<>(comp));
+		assertTrue(new ExpressionDag((Operation) tree, false).getNumComputations() == 4);
+		
+		ParseNode result = Parser.parse(comp);
+		ParseNode product = result.getLeft();
+		assertTrue(product.getLeft() != product.getRight());
+		assertTrue(product.getLeft().getSolution() == product.getRight().getSolution());
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		assertTrue(answer.get(0,0) == 32);
+		assertTrue(answer.get(1,1) == 16);
+	}
+	
+	@Test
+	// Test that a run of multiplications is regrouped by the dimensions of the matrices, and that the order is
+	// reported in the steps
+	// A * B * C where A is 40x2, B is 2x40 and C is 40x3 -> A * (B * C)
+	public void matrixChainTest(){
+		Matrix a = filledMatrix(40,2);
+		Matrix b = filledMatrix(2,40);
+		Matrix c = filledMatrix(40,3);
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(a);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(b);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(c);
+		ParseNode result = Parser.parse(comp);
+		
+		assertTrue(result.getLeft() == null); // A
+		assertTrue(result.getRight() != null); // B * C
+		assertTrue(result.getSolution().getLatex().get(0).contains("(M_{1}(M_{2}M_{3}))"));
+		
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		Matrix expected = (Matrix) Parser.parse(comp,true).getSolution().getAnswer();
+		double[] ab = MM_Multiply.product(a.toColumnMajor(),b.toColumnMajor(),40,2,40);
+		double[] abc = MM_Multiply.product(ab,c.toColumnMajor(),40,40,3);
+		for (int i = 0; i < 40; i++){
+			for (int j = 0; j < 3; j++){
+				assertTrue(answer.get(i,j) == abc[j*40 + i]);
+				assertTrue(expected.get(i,j) == abc[j*40 + i]);
+			}
+		}
+	}
+	
+	@Test
+	// Test that scalars in a run of multiplications don't stop it from being regrouped
+	// 2 * A * B * C * 3 with the matrices of matrixChainTest -> 6 * (A * (B * C))
+	public void scaledMatrixChainTest(){
+		Matrix a = filledMatrix(40,2);
+		Matrix b = filledMatrix(2,40);
+		Matrix c = filledMatrix(40,3);
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(new Scalar(2,DisplayType.WHOLENUMBER));
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(a);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(b);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(c);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(new Scalar(3,DisplayType.WHOLENUMBER));
+		ParseNode result = Parser.parse(comp);
+		
+		assertTrue(result.getSolution().getLatex().get(0).contains("(M_{1}(M_{2}M_{3}))"));
+		assertTrue(result.getRight() != null && result.getRight().getRight() != null); // A * (B * C), then B * C
+		
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		Matrix expected = (Matrix) Parser.parse(comp,true).getSolution().getAnswer();
+		double[] bc = MM_Multiply.product(b.toColumnMajor(),c.toColumnMajor(),2,40,3);
+		double[] abc = MM_Multiply.product(a.toColumnMajor(),bc,40,2,3);
+		for (int i = 0; i < 40; i++){
+			for (int j = 0; j < 3; j++){
+				assertTrue(answer.get(i,j) == 6*abc[j*40 + i]);
+				assertTrue(expected.get(i,j) == 6*abc[j*40 + i]);
+			}
+		}
+	}
+	
+	@Test
+	// Test that a scaled product with a matrix added is computed as one multiply-add, and that a subtracted
+	// product is not
+	// 2 * A * B + C and C - A * B
+	public void multiplyAddTest(){
+		Matrix a = filledMatrix(3,2);
+		Matrix b = filledMatrix(2,4);
+		Matrix c = filledMatrix(3,4);
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(new Scalar(2,DisplayType.WHOLENUMBER));
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(a);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(b);
+		comp.add(new Operation(Op.PLUS));
+		comp.add(c);
+		Numerical tree = Parser.createSortedTree(new ArrayList<>(comp));
+		assertTrue(new ExpressionDag((Operation) tree, false).getNumComputations() == 1);
+		
+		ParseNode result = Parser.parse(comp);
+		assertTrue(result.getLeft() == null && result.getRight() == null);
+		assertTrue(result.getSolution().getInputs().size() == 4);
+		assertTrue(!result.getSolution().getLatex().isEmpty());
+		double[] ab = MM_Multiply.product(a.toColumnMajor(),b.toColumnMajor(),3,2,4);
+		Matrix answer = (Matrix) result.getSolution().getAnswer();
+		for (int i = 0; i < 3; i++){
+			for (int j = 0; j < 4; j++){
+				assertTrue(answer.get(i,j) == 2*ab[j*3 + i] + c.get(i,j));
+			}
+		}
+		
+		comp.clear();
+		comp.add(c);
+		comp.add(new Operation(Op.MINUS));
+		comp.add(a);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(b);
+		result = Parser.parse(comp,true);
+		assertTrue(result.getRight() != null); // A * B on its own
+		answer = (Matrix) result.getSolution().getAnswer();
+		assertTrue(answer.get(2,3) == c.get(2,3) - ab[3*3 + 2]);
+	}
+	
+	@Test
+	// Test that sparse matrices are taken wherever matrices are: sparse kernels where there are some, and the
+	// dense form where there aren't
+	// det (S * S + S) and S * S - S with steps
+	public void sparseMatrixTest(){
+		SparseMatrix sparse = SparseMatrix.fromEntries(DisplayType.WHOLENUMBER, 3, 3, new int[]{0,1,2}, new int[]{0,2,1}, new double[]{2,1,3});
+		List<Numerical> comp = new ArrayList<>();
+		comp.add(new Operation(Op.DETERMINANT));
+		comp.add(new Bracket(true));
+		comp.add(sparse);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(sparse);
+		comp.add(new Operation(Op.PLUS));
+		comp.add(sparse);
+		comp.add(new Bracket(false));
+		Matrix dense = sparse.toMatrix();
+		ParseNode expected = Parser.parse(replace(comp, sparse, dense), true);
+		ParseNode result = Parser.parse(comp, true);
+		assertTrue(result.getRight().getSolution().getAnswer() instanceof Matrix); // over a tenth nonzero, so stored densely
+		assertTrue(result.getRight().getSolution().getAnswer().contentEquals(expected.getRight().getSolution().getAnswer()));
+		assertTrue(((Scalar) result.getSolution().getAnswer()).getValue() == ((Scalar) expected.getSolution().getAnswer()).getValue());
+		
+		comp.clear();
+		comp.add(sparse);
+		comp.add(new Operation(Op.MULTIPLY));
+		comp.add(sparse);
+		comp.add(new Operation(Op.MINUS));
+		comp.add(sparse);
+		result = Parser.parse(comp);
+		assertTrue(result.getLeft() != null); // not fused into a dense multiply-add
+		assertTrue(!result.getSolution().getLatex().isEmpty());
+	}
+	
+	// a copy of <comp> with <from> replaced by <to>
+	private List<Numerical> replace(List<Numerical> comp, Numerical from, Numerical to){
+		List<Numerical> copy = new ArrayList<>();
+		for (Numerical n : comp){
+			copy.add(n == from ? to : n);
+		}
+		return copy;
+	}
+	
+	// a rows by cols matrix of small whole numbers
+	private Matrix filledMatrix(int rows, int cols){
+		Double[][] values = new Double[cols][rows];
+		for (int i = 0; i < cols; i++){
+			for (int j = 0; j < rows; j++){
+				values[i][j] = (double) ((i*7 + j*3) % 5);
+			}
+		}
+		return new Matrix(DisplayType.WHOLENUMBER, values);
+	}
+	
 }
@@ -252,11 +252,10 @@ public class Compute extends JPanel {
 			
 			//DFS for each child .getsolution().getsteps();
 			
-			List<List<String>> list = new ArrayList<>();
-			list.add(new ArrayList<String>());
-			list.add(new ArrayList<String>());
-			list.add(new ArrayList<String>());
-			_solPanel.setSolution(traverseTree(result, list), result.getSolution().getAnswer());
+			List<String> computeStrings = new ArrayList<>();
+			List<List<String>> stepLists = new ArrayList<>();
+			traverseTree(result, computeStrings, stepLists);
+			_solPanel.setSolution(computeStrings, stepLists, answer);
 		} catch (IllegalArgumentException e){
 			System.out.println(e.getMessage());
 //			_solPanel.setError("\\text{" + e.getMessage() + "}");
@@ -264,44 +263,28 @@ public class Compute extends JPanel {
 	}
 	
 	/**
-	 * Solutions are stored in a list of list of strings
-	 * list 0 is for the computeString
-	 * list 1 is for the concatenated steps strings
-	 * list 2 is for latex export string
+	 * Collects the computeString and the step list of each node, children first.
+	 * The step lists are passed on as they are rather than concatenated, so steps
+	 * that are rendered lazily are only rendered when they are displayed
 	 * @param n
-	 * @param list
-	 * @return
+	 * @param computeStrings
+	 * @param stepLists
 	 */
-	public List<List<String>> traverseTree(ParseNode n, List<List<String>> list){
+	public void traverseTree(ParseNode n, List<String> computeStrings, List<List<String>> stepLists){
 		if(n.getLeft() != null){
-			traverseTree(n.getLeft(), list);
+			traverseTree(n.getLeft(), computeStrings, stepLists);
 		}
 		if(n.getRight() != null){
-			traverseTree(n.getRight(), list);
+			traverseTree(n.getRight(), computeStrings, stepLists);
 		}
-		//put all strings in the step list into one long string
-		List<String> nList = n.getSolution().getLatex();
-		StringBuilder sb = new StringBuilder();
-		//used for pdf output;
-		StringBuilder output = new StringBuilder();
-		for(String s : nList){
-			sb.append(s);
-			sb.append("\\\\");
-			s = s.replaceAll("\\\\vspace\\{\\d\\dmm\\}", "");
-			s = s.replaceAll("\\\\hspace\\{\\d\\dmm\\}", "");
-			s = s.replaceAll("\\$", "");
-			output.append("$" + s + "$\\\\\\\\\n");
-		}
-		list.get(1).add(sb.toString());
-		list.get(2).add(output.toString());
+		stepLists.add(n.getSolution().getLatex());
 		
-		//add the computeString to list 0
+		//add the computeString
 		try {
-			list.get(0).add(n.getComputeString());
+			computeStrings.add(n.getComputeString());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		return list;
 	}
 	
 	/**
@@ -43,9 +43,15 @@ import frontend.swing.StringDialog;
 public class StepSolution extends JPanel {
 	
 	private static final long serialVersionUID = 1780266591415441861L;
+	//steps of one computation drawn at a time
+	public static final int STEPS_PER_PAGE = 20;
 	private Saved _savePanel;
 	private Solution _display, _answer, _comp;
-	private List<String> _solList, _compList, _exportList;
+	private List<String> _compList;
+	//the steps of each computation, read by index one page at a time
+	private List<List<String>> _stepLists;
+	//_firstPage[i] is the page at which computation i starts, the last entry is the number of pages
+	private int[] _firstPage = {0};
 	private int _stepNumber = 0;
 	private ScrollPane _scroll;
 	private JButton _forwardButton, _backButton;
@@ -64,7 +70,7 @@ public class StepSolution extends JPanel {
 		this.setBorder(CurrentConstants.STEPSOLUTION_BORDER);
 		this.setPreferredSize(new Dimension(100,100));
 
-		_solList = new ArrayList<>();
+		_stepLists = new ArrayList<>();
 		
 		//main display
 		_display = new Solution("\\text{Solutions will be displayed here}");
@@ -261,24 +267,26 @@ public class StepSolution extends JPanel {
 	 * @param file
 	 */
 	public void exportPDF(File file){
-		if(_solList.size() != 0){
-			StringBuilder sb = new StringBuilder();
-			sb.append("\\documentclass[12pt,letterpaper]{article}\n");
-			sb.append("\\usepackage{amsmath,amsthm,amsfonts,amssymb,amscd}\n");
-			sb.append("\\setlength{\\parindent}{0.0in}");
-			sb.append("\\begin{document}\n");
-			for(String ls : _exportList){
-				sb.append(ls + "\n");
-			}
-			sb.append("\\end{document}");
-			
-			FileWriter fw;
+		if(_stepLists.size() != 0){
+			//the steps are written as they are read so they never all exist at once
 			try {
-				fw = new FileWriter(file.getAbsoluteFile());
-				BufferedWriter bw = new BufferedWriter(fw);
-				bw.write(sb.toString());
+				BufferedWriter bw = new BufferedWriter(new FileWriter(file.getAbsoluteFile()));
+				bw.write("\\documentclass[12pt,letterpaper]{article}\n");
+				bw.write("\\usepackage{amsmath,amsthm,amsfonts,amssymb,amscd}\n");
+				bw.write("\\setlength{\\parindent}{0.0in}");
+				bw.write("\\begin{document}\n");
+				for(List<String> steps : _stepLists){
+					for(int i = 0; i < steps.size(); i++){
+						String s = steps.get(i);
+						s = s.replaceAll("\\\\vspace\\{\\d\\dmm\\}", "");
+						s = s.replaceAll("\\\\hspace\\{\\d\\dmm\\}", "");
+						s = s.replaceAll("\\$", "");
+						bw.write("$" + s + "$\\\\\\\\\n");
+					}
+					bw.write("\n");
+				}
+				bw.write("\\end{document}");
 				bw.close();
-				fw.close();
 				Runtime.getRuntime().exec("pdflatex " + "--output-directory " + file.getParent() + " " + file.getAbsolutePath());
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
@@ -303,27 +311,32 @@ public class StepSolution extends JPanel {
 		_answer.setTex("");
 		_stepNumber = 0;
 		_tabbedPane.setTitleAt(0, "Solution");
-		_solList.clear();
+		_stepLists = new ArrayList<>();
+		_firstPage = new int[]{0};
 		_ans = null;
 		checkButtons();
 	}
 	
 	/**
-	 * Sets the display on all three of the panels, the steps variable is a list
-	 * of lists. list 0 is the computation list, list 1 are the steps and list 2 
-	 * is the exportable latex string. 
-	 * @param steps
+	 * Sets the display on all three of the panels. computeStrings has the
+	 * computation of each node and stepLists its steps, which are only read
+	 * a page at a time as they are displayed
+	 * @param computeStrings
+	 * @param stepLists
 	 * @param answer
 	 */
-	public void setSolution(List<List<String>> steps, Countable answer){
+	public void setSolution(List<String> computeStrings, List<List<String>> stepLists, Countable answer){
 		_bottomBar.setVisible(true);
-		_solList = steps.get(1);
-		_compList = steps.get(0);
-		_exportList = steps.get(2);
+		_compList = computeStrings;
+		_stepLists = stepLists;
+		_firstPage = new int[stepLists.size() + 1];
+		for(int i = 0; i < stepLists.size(); i++){
+			int pages = (stepLists.get(i).size() + STEPS_PER_PAGE - 1) / STEPS_PER_PAGE;
+			_firstPage[i + 1] = _firstPage[i] + Math.max(pages, 1);
+		}
 		_stepNumber = 0;
 		setStepNumbers();
-		_display.setTex(_solList.get(0));
-		_comp.setTex(_compList.get(0));
+		showPage();
 		_answer.setTex(answer.toLatex());
 		_ans = answer;
 		checkButtons();
@@ -331,6 +344,34 @@ public class StepSolution extends JPanel {
 		this.repaint();
 	}
 	
+	/**
+	 * @return the computation the current page belongs to
+	 */
+	private int currentComputation(){
+		int i = 0;
+		while(_firstPage[i + 1] <= _stepNumber){
+			i++;
+		}
+		return i;
+	}
+	
+	/**
+	 * Draws the current page: only its steps are read from the step list
+	 */
+	private void showPage(){
+		int comp = currentComputation();
+		List<String> steps = _stepLists.get(comp);
+		int start = (_stepNumber - _firstPage[comp]) * STEPS_PER_PAGE;
+		int end = Math.min(steps.size(), start + STEPS_PER_PAGE);
+		StringBuilder sb = new StringBuilder();
+		for(int i = start; i < end; i++){
+			sb.append(steps.get(i));
+			sb.append("\\\\");
+		}
+		_display.setTex(sb.toString());
+		_comp.setTex(_compList.get(comp));
+	}
+	
 	/**
 	 * Displays and error in the display panel
 	 * @param error
@@ -344,22 +385,24 @@ public class StepSolution extends JPanel {
 	 * Sets the step number displayed in the bar
 	 */
 	private void setStepNumbers() {
-		_stepNumberLabel.setText("<html>Step <font color=#BFD9F2>" + (_stepNumber + 1) + "</font> of " + _solList.size());
-		_tabbedPane.setTitleAt(0, "<html>Step <font color=#BFD9F2>" + (_stepNumber + 1) + "</font> of " + _solList.size());
+		int comp = currentComputation();
+		String step = "<html>Step <font color=#BFD9F2>" + (comp + 1) + "</font> of " + _stepLists.size();
+		int pages = _firstPage[comp + 1] - _firstPage[comp];
+		String page = pages > 1 ? ", page " + (_stepNumber - _firstPage[comp] + 1) + " of " + pages : "";
+		_stepNumberLabel.setText(step + page);
+		_tabbedPane.setTitleAt(0, step);
 	}
 	
 	/**
 	 * Moves forward to next possible step
 	 */
 	public void next(){
-		if(_stepNumber < _solList.size() - 1){
+		if(_stepNumber < numPages() - 1){
 			_stepNumber++;
-			_stepNumberLabel.setText("<html>Step <font color=#BFD9F2>" + (_stepNumber + 1) + "</font> of " + _solList.size());
 		}
 		checkButtons();
 		setStepNumbers();
-		_display.setTex(_solList.get(_stepNumber));
-		_comp.setTex(_compList.get(_stepNumber));
+		showPage();
 		resetScroll();
 		this.repaint();
 	}
@@ -373,8 +416,7 @@ public class StepSolution extends JPanel {
 		}
 		checkButtons();
 		setStepNumbers();
-		_display.setTex(_solList.get(_stepNumber));
-		_comp.setTex(_compList.get(_stepNumber));
+		showPage();
 		resetScroll();
 		this.repaint();
 	}
@@ -388,11 +430,18 @@ public class StepSolution extends JPanel {
 		if(_stepNumber == 0){
 			_backButton.setEnabled(false);
 		}
-		if(_stepNumber == _solList.size()-1 || _solList.size() == 0){
+		if(_stepNumber >= numPages()-1){
 			_forwardButton.setEnabled(false);
 		}
 	}
 	
+	/**
+	 * @return the number of pages of steps over all the computations
+	 */
+	private int numPages(){
+		return _firstPage[_firstPage.length - 1];
+	}
+	
 	/**
 	 * Resets scrollbars back to the top left position
 	 */
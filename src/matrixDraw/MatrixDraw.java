@@ -52,24 +52,16 @@ public class MatrixDraw extends JPanel{
 	 * @return the LaTeX string for the matrix where the indices are in custom format
 	 */
 	private static String getLatexCustom(Matrix m) {
-		Double[][] values = m.getValues();
-		String[][] customValues = m.getCustomDisplayValues();
 		StringBuilder b = new StringBuilder();
 		b.append("\\begin{bmatrix} ");
-		int count = 0;
-		for(String[] i : customValues){
-			for(String j : i){
-				b.append(j.toString());
-				if(count != i.length - 1){
+		for(int i = 0; i < m.getNumCols(); i++){
+			for(int j = 0; j < m.getNumRows(); j++){
+				b.append(m.getCustomDisplayIndex(j, i));
+				if(j != m.getNumRows() - 1){
 					b.append(" & ");
-					count++;
-				} else {
-					count = 0;
 				}
 			}
-			if(!i.equals(values[values.length - 1])){
-				b.append("\\\\");
-			}
+			b.append("\\\\");
 		}
 		b.append("\\end{bmatrix}");
 		return b.toString();
@@ -80,12 +72,11 @@ public class MatrixDraw extends JPanel{
 	 * @return the LaTeX string for the matrix where the indices are in decimal format
 	 */
 	public static String getLatex(Matrix m){
-		Double[][] values = m.getValues();
 		StringBuilder b = new StringBuilder();
 		b.append("\\begin{bmatrix} ");
-		for(int i = 0; i < values[0].length; i++){
-			for(int j = 0; j < values.length; j++){
-				String num = values[j][i].toString();
+		for(int i = 0; i < m.getNumRows(); i++){
+			for(int j = 0; j < m.getNumCols(); j++){
+				String num = Double.toString(m.get(i, j));
 				boolean foundDecimal = false;
 				int numAfterDecimal = 0;
 				for (int k = 0; k < num.length(); k++){
@@ -102,11 +93,11 @@ public class MatrixDraw extends JPanel{
 				}
 
 				b.append(num + " ");
-				if(j != values.length -1){
+				if(j != m.getNumCols() -1){
 					b.append(" & ");
 				}
 			}
-			if(i != values[0].length - 1){
+			if(i != m.getNumRows() - 1){
 				b.append("\\\\");
 			}
 		}
@@ -120,19 +111,18 @@ public class MatrixDraw extends JPanel{
 	 * @return the LaTeX string for the matrix where the indices are in wholenumber format
 	 */
 	public static String getLatexWhole(Matrix m){
-		Double[][] values = m.getValues();
 		StringBuilder b = new StringBuilder();
 		b.append("\\begin{bmatrix} ");
-		for(int i = 0; i < values[0].length; i++){
-			for(int j = 0; j < values.length; j++){
-				String num = values[j][i].toString();
+		for(int i = 0; i < m.getNumRows(); i++){
+			for(int j = 0; j < m.getNumCols(); j++){
+				String num = Double.toString(m.get(i, j));
 				num=num.substring(0,num.indexOf("."));
 				b.append(num + " ");
-				if(j != values.length -1){
+				if(j != m.getNumCols() -1){
 					b.append(" & ");
 				}
 			}
-			if(i != values[0].length - 1){
+			if(i != m.getNumRows() - 1){
 				b.append("\\\\");
 			}
 		}